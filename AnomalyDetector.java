@@ -0,0 +1,494 @@
+package com.finance.manager;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * AnomalyDetector - Singleton flagging expenses far above a category's usual amount
+ * Keeps count, mean and sum of squared deviations of expense amounts per
+ * (user, category), updated in O(1) per write with Welford's algorithm
+ * through TransactionObserver. Removals run the update backwards, so edits
+ * and deletes keep the statistics exact without revisiting history.
+ *
+ * The statistics are saved after writes and read back on the next launch.
+ * History is only scanned by the one-off backfill, on diskIO, when no
+ * saved file matches the ledger (first launch with this feature, or after
+ * a bulk change, which deletes the saved files).
+ *
+ * Saved statistics, one file per ledger, integers as SnapshotFormat varints
+ * and doubles as their IEEE 754 bits:
+ * <pre>
+ * file  := magic "FMAS" | version u8 | changeLogHead varint | count varint | stats*
+ * stats := category string | count varint | mean f64 | m2 f64
+ * </pre>
+ * The file is only used while the ledger's change log head still matches,
+ * and is deleted when the ledger is reloaded in bulk (sync, restore), which
+ * leaves the head alone
+ */
+public class AnomalyDetector implements TransactionObserver {
+
+    private static final String TAG = "AnomalyDetector";
+
+    static final byte[] MAGIC = {'F', 'M', 'A', 'S'};
+    static final int VERSION = 1;
+
+    private static final String STATS_DIRECTORY = "expense-stats";
+    private static final String STAGING_SUFFIX = ".tmp";
+
+    // Expenses a category needs before anything in it is called unusual
+    private static final int MIN_SAMPLES = 8;
+
+    // Standard deviations above the mean that make an expense unusual
+    private static final double MIN_DEVIATIONS = 3;
+
+    // Floor on the deviation as a share of the mean, so a category that is
+    // always the same amount doesn't flag every small change
+    private static final double MIN_SPREAD = 0.25;
+
+    /**
+     * An expense flagged as unusual, and what is usual for its category
+     */
+    public static final class Anomaly {
+        public final String category;
+        public final double amount;
+        public final double mean;
+        public final double deviations;
+
+        Anomaly(String category, double amount, double mean, double deviations) {
+            this.category = category;
+            this.amount = amount;
+            this.mean = mean;
+            this.deviations = deviations;
+        }
+    }
+
+    // Volatile ensures visibility of changes across threads
+    private static volatile AnomalyDetector instance;
+
+    private final Context appContext;
+    private final DatabaseHelper databaseHelper;
+
+    // Guarded by this
+    private final Map<String, Map<String, Stats>> users = new HashMap<>();
+    private final Set<String> loading = new HashSet<>();
+    // Users written to while their statistics were loading; the load is redone
+    private final Set<String> raced = new HashSet<>();
+    private final Set<String> saveScheduled = new HashSet<>();
+
+    /**
+     * Private constructor to prevent direct instantiation
+     * Always use getInstance() method
+     */
+    private AnomalyDetector(Context context) {
+        appContext = context;
+        databaseHelper = DatabaseHelper.getInstance(context);
+        databaseHelper.addTransactionObserver(this);
+    }
+
+    /**
+     * Double-checked locking singleton pattern
+     * Thread-safe and efficient
+     *
+     * @param context Application context
+     * @return Singleton instance of AnomalyDetector
+     */
+    public static AnomalyDetector getInstance(Context context) {
+        if (instance == null) { // First check (no locking)
+            synchronized (AnomalyDetector.class) {
+                if (instance == null) { // Second check (with locking)
+                    instance = new AnomalyDetector(context.getApplicationContext());
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Prevent cloning of singleton instance
+     */
+    @Override
+    protected Object clone() throws CloneNotSupportedException {
+        throw new CloneNotSupportedException("Cannot clone singleton instance");
+    }
+
+    // ==================== QUERIES ====================
+
+    /**
+     * Load a user's statistics on diskIO, unless they are loaded or loading already
+     */
+    public void prepare(String userEmail) {
+        synchronized (this) {
+            if (users.containsKey(userEmail) || !loading.add(userEmail)) {
+                return;
+            }
+        }
+        AppExecutors.getInstance().diskIO().execute(() -> load(userEmail));
+    }
+
+    /**
+     * Whether an expense about to be saved is unusually large for its category
+     * Call before saving, so the expense isn't part of what it is compared to.
+     * Only reads memory; until the statistics are loaded it returns null and
+     * loads them in the background
+     *
+     * @return The anomaly, or null if the amount is usual or there is too little history
+     */
+    public Anomaly check(String userEmail, String category, double amount) {
+        return check(userEmail, category, amount, null);
+    }
+
+    /**
+     * Same as check(), for an edit: the row being edited is left out of what
+     * the new amount is compared to
+     *
+     * @param replaced The expense as it is saved now, or null for a new one
+     * @return The anomaly, or null if the amount is usual or there is too little history
+     */
+    public Anomaly check(String userEmail, String category, double amount, Transaction replaced) {
+        long start = Metrics.start();
+        Anomaly anomaly = null;
+        boolean loaded;
+        synchronized (this) {
+            Map<String, Stats> stats = users.get(userEmail);
+            loaded = stats != null;
+            Stats categoryStats = loaded ? stats.get(category) : null;
+            if (categoryStats != null && replaced != null && "expense".equals(replaced.getType())
+                    && category.equals(replaced.getCategory())) {
+                categoryStats = categoryStats.copy();
+                if (!categoryStats.remove(replaced.getAmount())) {
+                    categoryStats = null;
+                }
+            }
+            if (categoryStats != null && categoryStats.count >= MIN_SAMPLES) {
+                double spread = Math.max(categoryStats.deviation(), categoryStats.mean * MIN_SPREAD);
+                double deviations = spread > 0 ? (amount - categoryStats.mean) / spread : 0;
+                if (deviations >= MIN_DEVIATIONS) {
+                    anomaly = new Anomaly(category, amount, categoryStats.mean, deviations);
+                }
+            }
+        }
+        if (!loaded) {
+            prepare(userEmail);
+        }
+        Metrics.record("anomaly.check", start, anomaly != null ? 1 : 0);
+        return anomaly;
+    }
+
+    // ==================== TRANSACTION OBSERVER ====================
+
+    @Override
+    public synchronized void onTransactionAdded(Transaction transaction) {
+        apply(transaction, true);
+    }
+
+    @Override
+    public synchronized void onTransactionUpdated(Transaction before, Transaction after) {
+        apply(before, false);
+        apply(after, true);
+    }
+
+    @Override
+    public synchronized void onTransactionDeleted(Transaction transaction) {
+        apply(transaction, false);
+    }
+
+    @Override
+    public synchronized void onTransactionsReloaded(String userEmail) {
+        // Sync and restores write without moving the change log head, so the
+        // head can't tell a saved file is stale; delete the user's to force a backfill
+        if (userEmail == null) {
+            users.clear();
+            raced.addAll(loading);
+        } else {
+            users.remove(userEmail);
+            if (loading.contains(userEmail)) {
+                raced.add(userEmail);
+            }
+        }
+        deleteSavedStats(userEmail);
+    }
+
+    /**
+     * Forget the in-memory statistics but keep the saved files, so the next
+     * load reads them back. Package-private for DataBenchmark
+     */
+    synchronized void unload() {
+        users.clear();
+        raced.addAll(loading);
+    }
+
+    private void apply(Transaction transaction, boolean add) {
+        if (!"expense".equals(transaction.getType())) {
+            return;
+        }
+        String userEmail = transaction.getUserEmail();
+        Map<String, Stats> stats = users.get(userEmail);
+        if (stats == null) {
+            if (loading.contains(userEmail)) {
+                raced.add(userEmail);
+            }
+            return;
+        }
+        update(stats, transaction, add);
+        if (saveScheduled.add(userEmail)) {
+            AppExecutors.getInstance().diskIO().execute(() -> save(userEmail));
+        }
+    }
+
+    private static void update(Map<String, Stats> stats, Transaction transaction, boolean add) {
+        Stats categoryStats = stats.get(transaction.getCategory());
+        if (add) {
+            if (categoryStats == null) {
+                categoryStats = new Stats();
+                stats.put(transaction.getCategory(), categoryStats);
+            }
+            categoryStats.add(transaction.getAmount());
+        } else if (categoryStats != null && !categoryStats.remove(transaction.getAmount())) {
+            stats.remove(transaction.getCategory());
+        }
+    }
+
+    // ==================== LOADING ====================
+
+    /**
+     * Read the saved statistics, or backfill them from the user's history
+     * if they are missing or stale. Runs on diskIO without holding the
+     * lock, so checks and writes never wait for it. Package-private for DataBenchmark
+     */
+    void load(String userEmail) {
+        long start = Metrics.start();
+        long head = databaseHelper.getChangeLog(userEmail).getHead();
+        Map<String, Stats> stats = read(userEmail, head);
+        boolean backfilled = stats == null;
+        if (backfilled) {
+            stats = backfill(userEmail);
+        }
+
+        boolean again;
+        synchronized (this) {
+            loading.remove(userEmail);
+            again = raced.remove(userEmail);
+            if (!again) {
+                users.put(userEmail, stats);
+            }
+        }
+        Metrics.record(backfilled ? "anomaly.backfill" : "anomaly.readStats", start, stats.size());
+
+        if (again) {
+            // A write landed mid-scan; it may or may not be counted, so start over
+            prepare(userEmail);
+        } else if (backfilled) {
+            save(userEmail);
+        }
+    }
+
+    /**
+     * One pass over every expense the user has, archived ones included
+     */
+    private Map<String, Stats> backfill(String userEmail) {
+        Map<String, Stats> stats = new HashMap<>();
+        databaseHelper.forEachTransaction(userEmail, transaction -> {
+            if ("expense".equals(transaction.getType())) {
+                update(stats, transaction, true);
+            }
+        });
+        return stats;
+    }
+
+    private Map<String, Stats> read(String userEmail, long head) {
+        File file = statsFile(userEmail);
+        if (!file.exists()) {
+            return null;
+        }
+        try {
+            SnapshotFormat.Bytes bytes = new SnapshotFormat.Bytes(0);
+            bytes.data = Files.readAllBytes(file.toPath());
+            bytes.length = bytes.data.length;
+            return decode(bytes, head);
+        } catch (IOException e) {
+            Log.w(TAG, "Discarding unreadable expense statistics", e);
+            return null;
+        }
+    }
+
+    /**
+     * Write the statistics through a staging file, so a crash leaves the old one
+     * A write committed just before the head is read may not be counted
+     * yet, but its observer call schedules another save that includes it
+     */
+    private void save(String userEmail) {
+        long start = Metrics.start();
+        long head = databaseHelper.getChangeLog(userEmail).getHead();
+        SnapshotFormat.Bytes bytes;
+        Map<String, Stats> saved;
+        synchronized (this) {
+            saveScheduled.remove(userEmail);
+            Map<String, Stats> stats = users.get(userEmail);
+            if (stats == null) {
+                return;
+            }
+            bytes = encode(stats, head);
+            saved = stats;
+        }
+
+        File file = statsFile(userEmail);
+        File staging = new File(file.getPath() + STAGING_SUFFIX);
+        File directory = file.getParentFile();
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            Log.w(TAG, "Could not create " + directory);
+            return;
+        }
+        try (OutputStream out = new FileOutputStream(staging)) {
+            out.write(bytes.data, 0, bytes.length);
+        } catch (IOException e) {
+            Log.w(TAG, "Could not save expense statistics", e);
+            staging.delete();
+            return;
+        }
+        synchronized (this) {
+            // A reload while writing made these statistics stale
+            if (users.get(userEmail) != saved || !staging.renameTo(file)) {
+                staging.delete();
+                return;
+            }
+        }
+        Metrics.record("anomaly.saveStats", start, bytes.length);
+    }
+
+    /**
+     * @param userEmail User whose file to delete, or null for every user's
+     */
+    private void deleteSavedStats(String userEmail) {
+        File[] files = userEmail != null
+                ? new File[] { statsFile(userEmail) }
+                : new File(appContext.getNoBackupFilesDir(), STATS_DIRECTORY).listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (!file.exists()) {
+                continue;
+            }
+            if (!file.delete()) {
+                Log.w(TAG, "Could not delete " + file);
+            }
+        }
+    }
+
+    /**
+     * Derived data, so it stays out of backups and is backfilled after a restore
+     */
+    private File statsFile(String userEmail) {
+        return new File(new File(appContext.getNoBackupFilesDir(), STATS_DIRECTORY),
+                DatabaseHelper.ledgerName(userEmail));
+    }
+
+    private static SnapshotFormat.Bytes encode(Map<String, Stats> stats, long head) {
+        SnapshotFormat.Bytes bytes = new SnapshotFormat.Bytes(1024);
+        for (byte b : MAGIC) {
+            bytes.writeByte(b);
+        }
+        bytes.writeByte(VERSION);
+        bytes.writeVarint(head);
+        bytes.writeVarint(stats.size());
+        for (Map.Entry<String, Stats> entry : stats.entrySet()) {
+            Stats categoryStats = entry.getValue();
+            bytes.writeString(entry.getKey());
+            bytes.writeVarint(categoryStats.count);
+            bytes.writeVarint(Double.doubleToLongBits(categoryStats.mean));
+            bytes.writeVarint(Double.doubleToLongBits(categoryStats.m2));
+        }
+        return bytes;
+    }
+
+    /**
+     * @return The saved statistics, or null if they were saved at another head
+     */
+    private static Map<String, Stats> decode(SnapshotFormat.Bytes bytes, long head) throws IOException {
+        for (byte b : MAGIC) {
+            if (bytes.position >= bytes.length || bytes.data[bytes.position++] != b) {
+                throw new IOException("Not an expense statistics file");
+            }
+        }
+        if (bytes.position >= bytes.length || bytes.data[bytes.position++] != VERSION) {
+            return null;
+        }
+        if (bytes.readVarint() != head) {
+            return null;
+        }
+        int count = bytes.readInt();
+        Map<String, Stats> stats = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            String category = bytes.readString();
+            Stats categoryStats = new Stats();
+            categoryStats.count = bytes.readVarint();
+            categoryStats.mean = Double.longBitsToDouble(bytes.readVarint());
+            categoryStats.m2 = Double.longBitsToDouble(bytes.readVarint());
+            stats.put(category, categoryStats);
+        }
+        return stats;
+    }
+
+    // ==================== STATISTICS ====================
+
+    /**
+     * Welford's running mean and sum of squared deviations
+     */
+    private static final class Stats {
+        long count;
+        double mean;
+        double m2;
+
+        Stats copy() {
+            Stats copy = new Stats();
+            copy.count = count;
+            copy.mean = mean;
+            copy.m2 = m2;
+            return copy;
+        }
+
+        void add(double amount) {
+            count++;
+            double delta = amount - mean;
+            mean += delta / count;
+            m2 += delta * (amount - mean);
+        }
+
+        /**
+         * Undo an earlier add() of the same amount
+         *
+         * @return false once nothing is left
+         */
+        boolean remove(double amount) {
+            if (count <= 1) {
+                count = 0;
+                mean = 0;
+                m2 = 0;
+                return false;
+            }
+            double oldMean = mean;
+            count--;
+            mean = (oldMean * (count + 1) - amount) / count;
+            // Rounding can leave a tiny negative where the spread is zero
+            m2 = Math.max(0, m2 - (amount - oldMean) * (amount - mean));
+            return true;
+        }
+
+        /**
+         * Sample standard deviation
+         */
+        double deviation() {
+            return count > 1 ? Math.sqrt(m2 / (count - 1)) : 0;
+        }
+    }
+}
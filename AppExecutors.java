@@ -0,0 +1,80 @@
+package com.finance.manager;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * AppExecutors - Singleton holding the shared background executors
+ * Database and hashing work goes to diskIO(), UI updates go to mainThread()
+ */
+public class AppExecutors {
+
+    // Volatile ensures visibility of changes across threads
+    private static volatile AppExecutors instance;
+
+    private final ExecutorService diskIO;
+    private final Executor mainThread;
+
+    /**
+     * Private constructor to prevent direct instantiation
+     * Always use getInstance() method
+     */
+    private AppExecutors() {
+        diskIO = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "finance-disk-io");
+            thread.setPriority(Thread.NORM_PRIORITY - 1);
+            return thread;
+        });
+
+        Handler mainHandler = new Handler(Looper.getMainLooper());
+        mainThread = mainHandler::post;
+    }
+
+    /**
+     * Double-checked locking singleton pattern
+     * Thread-safe and efficient
+     *
+     * @return Singleton instance of AppExecutors
+     */
+    public static AppExecutors getInstance() {
+        if (instance == null) { // First check (no locking)
+            synchronized (AppExecutors.class) {
+                if (instance == null) { // Second check (with locking)
+                    instance = new AppExecutors();
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Prevent cloning of singleton instance
+     */
+    @Override
+    protected Object clone() throws CloneNotSupportedException {
+        throw new CloneNotSupportedException("Cannot clone singleton instance");
+    }
+
+    /**
+     * Executor for database and password hashing work
+     * Single thread so writes are serialized
+     *
+     * @return Background executor
+     */
+    public ExecutorService diskIO() {
+        return diskIO;
+    }
+
+    /**
+     * Executor that posts to the UI thread
+     *
+     * @return Main thread executor
+     */
+    public Executor mainThread() {
+        return mainThread;
+    }
+}
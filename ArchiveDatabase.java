@@ -0,0 +1,224 @@
+package com.finance.manager;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.SQLException;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * ArchiveDatabase - Cold storage for transactions older than the archive cutoff
+ * A separate file next to each user's ledger, so years of history don't
+ * weigh on the ledger's indexes and scans. Rows keep their original ids.
+ * Owned by DatabaseHelper, which opens it only when a query reaches past the cutoff
+ */
+class ArchiveDatabase extends SQLiteOpenHelper {
+
+    private static final String TAG = "ArchiveDatabase";
+
+    // The single archive file from before ledgers were split per user
+    static final String LEGACY_DATABASE_NAME = "FinanceManager-archive.db";
+    static final int DATABASE_VERSION = 2;
+
+    // Same columns as the main transactions table
+    private static final String TABLE_TRANSACTIONS = "transactions";
+    private static final String COL_TRANS_ID = "id";
+    private static final String COL_USER_EMAIL = "userEmail";
+    private static final String COL_AMOUNT = "amount";
+    private static final String COL_DATE = "date";
+    private static final String COL_CATEGORY = "category";
+    private static final String COL_DESCRIPTION = "description";
+    private static final String COL_TYPE = "type";
+    private static final String COL_RECURRING_RULE_ID = "recurringRuleId";
+    private static final String COL_EPOCH_DAY = "epochDay";
+    private static final String COL_YEAR_MONTH = "yearMonth";
+    private static final String COL_DELETED_AT = "deletedAt";
+
+    ArchiveDatabase(Context context, String name) {
+        super(context.getApplicationContext(), name, null, DATABASE_VERSION);
+        setWriteAheadLoggingEnabled(true);
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        // No AUTOINCREMENT: ids come from the ledger
+        db.execSQL("CREATE TABLE " + TABLE_TRANSACTIONS + " (" +
+                COL_TRANS_ID + " INTEGER PRIMARY KEY, " +
+                COL_USER_EMAIL + " TEXT NOT NULL, " +
+                COL_AMOUNT + " REAL NOT NULL, " +
+                COL_DATE + " INTEGER NOT NULL, " +
+                COL_CATEGORY + " TEXT NOT NULL, " +
+                COL_DESCRIPTION + " TEXT, " +
+                COL_TYPE + " TEXT NOT NULL, " +
+                COL_RECURRING_RULE_ID + " INTEGER, " +
+                COL_EPOCH_DAY + " INTEGER, " +
+                COL_YEAR_MONTH + " INTEGER, " +
+                COL_DELETED_AT + " INTEGER)");
+
+        db.execSQL("CREATE INDEX idx_archive_user_type_date ON " + TABLE_TRANSACTIONS +
+                "(" + COL_USER_EMAIL + ", " + COL_TYPE + ", " + COL_DATE + ")");
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        if (oldVersion < 2) {
+            // Mirrors the ledger's tombstone column; archived rows are never tombstones
+            db.execSQL("ALTER TABLE " + TABLE_TRANSACTIONS + " ADD COLUMN " + COL_DELETED_AT + " INTEGER");
+        }
+    }
+
+    // ==================== WRITES ====================
+
+    /**
+     * Copy rows into the archive in one transaction
+     * Rows already archived under the same id are replaced, so a copy
+     * interrupted before the ledger committed can simply be redone
+     *
+     * @param rows Cursor over full transaction rows from a ledger or another archive
+     * @return Number of rows copied, or -1 if the copy was rolled back
+     */
+    int copyRows(Cursor rows) {
+        SQLiteDatabase db = getWritableDatabase();
+        ContentValues values = new ContentValues();
+        int copied = 0;
+
+        db.beginTransactionNonExclusive();
+        try {
+            while (rows.moveToNext()) {
+                values.clear();
+                DatabaseUtils.cursorRowToContentValues(rows, values);
+                db.insertWithOnConflict(TABLE_TRANSACTIONS, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+                copied++;
+            }
+            db.setTransactionSuccessful();
+            return copied;
+        } catch (SQLException e) {
+            Log.e(TAG, "Archive copy rolled back", e);
+            return -1;
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Full row of an archived transaction, for moving it back to the ledger
+     *
+     * @return Column values, or null if the id is not archived
+     */
+    ContentValues getRow(int id) {
+        SQLiteDatabase db = getReadableDatabase();
+        Cursor cursor = db.query(TABLE_TRANSACTIONS, null, COL_TRANS_ID + "=?",
+                new String[]{String.valueOf(id)}, null, null, null);
+
+        ContentValues values = null;
+        if (cursor.moveToFirst()) {
+            values = new ContentValues();
+            DatabaseUtils.cursorRowToContentValues(cursor, values);
+        }
+        cursor.close();
+        return values;
+    }
+
+    /**
+     * Full rows of a user's archived transactions, for copying them to another archive
+     * The caller closes the cursor
+     */
+    Cursor getRows(String userEmail) {
+        SQLiteDatabase db = getReadableDatabase();
+        return db.query(TABLE_TRANSACTIONS, null, COL_USER_EMAIL + "=?", new String[]{userEmail}, null, null, null);
+    }
+
+    boolean delete(int id) {
+        SQLiteDatabase db = getWritableDatabase();
+        return db.delete(TABLE_TRANSACTIONS, COL_TRANS_ID + "=?", new String[]{String.valueOf(id)}) > 0;
+    }
+
+    void deleteUser(String userEmail) {
+        SQLiteDatabase db = getWritableDatabase();
+        db.delete(TABLE_TRANSACTIONS, COL_USER_EMAIL + "=?", new String[]{userEmail});
+    }
+
+    // ==================== QUERIES ====================
+
+    /**
+     * Archived transactions dated in [startDate, endDate), newest first
+     */
+    List<Transaction> getTransactions(String userEmail, String type, long startDate, long endDate) {
+        SQLiteDatabase db = getReadableDatabase();
+        String query = "SELECT * FROM " + TABLE_TRANSACTIONS +
+                " WHERE " + COL_USER_EMAIL + "=? AND " + COL_TYPE + "=?" +
+                " AND " + COL_DATE + ">=? AND " + COL_DATE + "<?" +
+                " ORDER BY " + COL_DATE + " DESC";
+
+        Cursor cursor = db.rawQuery(query, new String[]{userEmail, type, String.valueOf(startDate), String.valueOf(endDate)});
+
+        List<Transaction> transactions = new ArrayList<>();
+        if (cursor.moveToFirst()) {
+            do {
+                transactions.add(readTransaction(cursor));
+            } while (cursor.moveToNext());
+        }
+        cursor.close();
+        return transactions;
+    }
+
+    /**
+     * Visit every archived transaction of a user, oldest first
+     *
+     * @return Number of transactions visited
+     */
+    int forEachTransaction(String userEmail, Consumer<Transaction> visitor) {
+        SQLiteDatabase db = getReadableDatabase();
+        Cursor cursor = db.query(TABLE_TRANSACTIONS, null, COL_USER_EMAIL + "=?",
+                new String[]{userEmail}, null, null, COL_DATE + " ASC");
+
+        int count = 0;
+        try {
+            while (cursor.moveToNext()) {
+                visitor.accept(readTransaction(cursor));
+                count++;
+            }
+        } finally {
+            cursor.close();
+        }
+        return count;
+    }
+
+    /**
+     * Sum of archived amounts dated in [startDate, endDate)
+     */
+    double getTotalAmount(String userEmail, String type, long startDate, long endDate) {
+        SQLiteDatabase db = getReadableDatabase();
+        String query = "SELECT SUM(" + COL_AMOUNT + ") FROM " + TABLE_TRANSACTIONS +
+                " WHERE " + COL_USER_EMAIL + "=? AND " + COL_TYPE + "=?" +
+                " AND " + COL_DATE + ">=? AND " + COL_DATE + "<?";
+
+        Cursor cursor = db.rawQuery(query, new String[]{userEmail, type, String.valueOf(startDate), String.valueOf(endDate)});
+
+        double total = 0;
+        if (cursor.moveToFirst()) {
+            total = cursor.getDouble(0);
+        }
+        cursor.close();
+        return total;
+    }
+
+    private Transaction readTransaction(Cursor cursor) {
+        Transaction transaction = new Transaction();
+        transaction.setId(cursor.getInt(cursor.getColumnIndexOrThrow(COL_TRANS_ID)));
+        transaction.setUserEmail(cursor.getString(cursor.getColumnIndexOrThrow(COL_USER_EMAIL)));
+        transaction.setAmount(cursor.getDouble(cursor.getColumnIndexOrThrow(COL_AMOUNT)));
+        transaction.setDate(cursor.getLong(cursor.getColumnIndexOrThrow(COL_DATE)));
+        transaction.setCategory(cursor.getString(cursor.getColumnIndexOrThrow(COL_CATEGORY)));
+        transaction.setDescription(cursor.getString(cursor.getColumnIndexOrThrow(COL_DESCRIPTION)));
+        transaction.setType(cursor.getString(cursor.getColumnIndexOrThrow(COL_TYPE)));
+        return transaction;
+    }
+}
@@ -28,14 +28,17 @@ public class BudgetAdapter extends RecyclerView.Adapter<BudgetAdapter.BudgetView
 
     private List<Budget> budgets;
     private Map<String, Double> spentAmounts;
+    private Map<String, Double> projectedAmounts;
     private BudgetActionListener listener;
 
     // ================= CONSTRUCTOR =================
     public BudgetAdapter(List<Budget> budgets,
                          Map<String, Double> spentAmounts,
+                         Map<String, Double> projectedAmounts,
                          BudgetActionListener listener) {
         this.budgets = budgets;
         this.spentAmounts = spentAmounts;
+        this.projectedAmounts = projectedAmounts;
         this.listener = listener;
     }
 
@@ -85,15 +88,19 @@ public class BudgetAdapter extends RecyclerView.Adapter<BudgetAdapter.BudgetView
         }
 
         // ===== Alert text =====
-        if (budget.shouldAlert(spent)) {
+        Double projected = projectedAmounts.get(budget.getCategory());
+        double overrun = projected != null ? projected - budget.getLimitAmount() : 0;
+        if (percentage >= 100) {
             holder.alertText.setVisibility(View.VISIBLE);
-            if (percentage >= 100) {
-                holder.alertText.setText("⚠️ Budget exceeded!");
-            } else {
-                holder.alertText.setText(
-                        "⚠️ You've reached " + budget.getAlertThreshold() + "% of your budget"
-                );
-            }
+            holder.alertText.setText("⚠️ Budget exceeded!");
+        } else if (overrun >= 0.01 && budget.getLimitAmount() > 0) {
+            holder.alertText.setVisibility(View.VISIBLE);
+            holder.alertText.setText("📈 On track to exceed by " + formatter.format(overrun));
+        } else if (budget.shouldAlert(spent)) {
+            holder.alertText.setVisibility(View.VISIBLE);
+            holder.alertText.setText(
+                    "⚠️ You've reached " + budget.getAlertThreshold() + "% of your budget"
+            );
         } else {
             holder.alertText.setVisibility(View.GONE);
         }
@@ -119,9 +126,11 @@ public class BudgetAdapter extends RecyclerView.Adapter<BudgetAdapter.BudgetView
 
     // ================= UPDATE DATA =================
     public void updateBudgets(List<Budget> newBudgets,
-                              Map<String, Double> newSpentAmounts) {
+                              Map<String, Double> newSpentAmounts,
+                              Map<String, Double> newProjectedAmounts) {
         this.budgets = newBudgets;
         this.spentAmounts = newSpentAmounts;
+        this.projectedAmounts = newProjectedAmounts;
         notifyDataSetChanged();
     }
 
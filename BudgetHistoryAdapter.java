@@ -0,0 +1,95 @@
+package com.finance.manager;
+
+import android.content.res.ColorStateList;
+import android.graphics.Color;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.ProgressBar;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.text.NumberFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+public class BudgetHistoryAdapter extends RecyclerView.Adapter<BudgetHistoryAdapter.HistoryViewHolder> {
+
+    private final List<BudgetHistoryEntry> entries = new ArrayList<>();
+    private final NumberFormat formatter = NumberFormat.getCurrencyInstance(new Locale("en", "US"));
+
+    // ================= VIEW HOLDER =================
+    @NonNull
+    @Override
+    public HistoryViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        View view = LayoutInflater.from(parent.getContext())
+                .inflate(R.layout.item_budget_history, parent, false);
+        return new HistoryViewHolder(view);
+    }
+
+    // ================= BIND =================
+    @Override
+    public void onBindViewHolder(@NonNull HistoryViewHolder holder, int position) {
+        BudgetHistoryEntry entry = entries.get(position);
+        Budget budget = entry.getBudget();
+        double spent = entry.getSpent();
+
+        // Month header only on the first row of each month
+        boolean firstOfMonth = position == 0
+                || entries.get(position - 1).getPeriod() != entry.getPeriod();
+        holder.monthHeaderText.setVisibility(firstOfMonth ? View.VISIBLE : View.GONE);
+        holder.monthHeaderText.setText(budget.getMonthName() + " " + budget.getYear());
+
+        holder.categoryText.setText(budget.getCategory());
+        holder.amountsText.setText(formatter.format(spent) + " of " + formatter.format(budget.getLimitAmount()));
+
+        double percentage = budget.getPercentageSpent(spent);
+        holder.percentageText.setText(String.format("%.0f%%", percentage));
+        holder.progressBar.setProgress((int) Math.min(percentage, 100));
+
+        int color;
+        if (percentage >= 100) {
+            color = Color.parseColor("#F44336"); // Red
+        } else if (percentage >= budget.getAlertThreshold()) {
+            color = Color.parseColor("#FF9800"); // Orange
+        } else {
+            color = Color.parseColor("#4CAF50"); // Green
+        }
+        holder.percentageText.setTextColor(color);
+        holder.progressBar.setProgressTintList(ColorStateList.valueOf(color));
+    }
+
+    @Override
+    public int getItemCount() {
+        return entries.size();
+    }
+
+    // ================= UPDATE DATA =================
+    /**
+     * Append the next (older) page of months
+     */
+    public void appendPage(List<BudgetHistoryEntry> page) {
+        int start = entries.size();
+        entries.addAll(page);
+        notifyItemRangeInserted(start, page.size());
+    }
+
+    // ================= VIEW HOLDER CLASS =================
+    static class HistoryViewHolder extends RecyclerView.ViewHolder {
+
+        TextView monthHeaderText, categoryText, amountsText, percentageText;
+        ProgressBar progressBar;
+
+        HistoryViewHolder(@NonNull View itemView) {
+            super(itemView);
+            monthHeaderText = itemView.findViewById(R.id.monthHeaderText);
+            categoryText = itemView.findViewById(R.id.categoryText);
+            amountsText = itemView.findViewById(R.id.amountsText);
+            percentageText = itemView.findViewById(R.id.percentageText);
+            progressBar = itemView.findViewById(R.id.historyProgressBar);
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.finance.manager;
+
+/**
+ * One row of the budget history report: a month's budget for a category
+ * together with what was actually spent in that category that month
+ */
+public class BudgetHistoryEntry {
+    private final Budget budget;
+    private final double spent;
+
+    public BudgetHistoryEntry(Budget budget, double spent) {
+        this.budget = budget;
+        this.spent = spent;
+    }
+
+    public Budget getBudget() { return budget; }
+
+    public double getSpent() { return spent; }
+
+    /**
+     * Month key used for paging and grouping, e.g. 202603
+     */
+    public int getPeriod() {
+        return budget.getYear() * 100 + budget.getMonth();
+    }
+}
@@ -0,0 +1,55 @@
+package com.finance.manager;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * BudgetOps - Sorting of budgets by limit and percentage spent
+ * Plain Java with no Android dependencies, like TransactionOps
+ */
+public final class BudgetOps {
+
+    public static final int SORT_CATEGORY_ASC = 0;
+    public static final int SORT_CATEGORY_DESC = 1;
+    public static final int SORT_HIGHEST_LIMIT = 2;
+    public static final int SORT_LOWEST_LIMIT = 3;
+    public static final int SORT_MOST_SPENT = 4;
+    public static final int SORT_LEAST_SPENT = 5;
+
+    private BudgetOps() {
+        // Static utility
+    }
+
+    /**
+     * Comparator for one of the SORT_* options
+     *
+     * @param spentAmounts Category -> amount spent, used by the percentage sorts
+     */
+    public static Comparator<Budget> comparator(int sortOption, Map<String, Double> spentAmounts) {
+        switch (sortOption) {
+            case SORT_CATEGORY_DESC:
+                return (b1, b2) -> b2.getCategory().compareToIgnoreCase(b1.getCategory());
+            case SORT_HIGHEST_LIMIT:
+                return (b1, b2) -> Double.compare(b2.getLimitAmount(), b1.getLimitAmount());
+            case SORT_LOWEST_LIMIT:
+                return (b1, b2) -> Double.compare(b1.getLimitAmount(), b2.getLimitAmount());
+            case SORT_MOST_SPENT:
+                return (b1, b2) -> Double.compare(percentageSpent(b2, spentAmounts), percentageSpent(b1, spentAmounts));
+            case SORT_LEAST_SPENT:
+                return (b1, b2) -> Double.compare(percentageSpent(b1, spentAmounts), percentageSpent(b2, spentAmounts));
+            case SORT_CATEGORY_ASC:
+            default:
+                return (b1, b2) -> b1.getCategory().compareToIgnoreCase(b2.getCategory());
+        }
+    }
+
+    public static void sort(List<Budget> budgets, int sortOption, Map<String, Double> spentAmounts) {
+        Collections.sort(budgets, comparator(sortOption, spentAmounts));
+    }
+
+    public static double percentageSpent(Budget budget, Map<String, Double> spentAmounts) {
+        return budget.getPercentageSpent(spentAmounts.getOrDefault(budget.getCategory(), 0.0));
+    }
+}
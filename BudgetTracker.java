@@ -0,0 +1,262 @@
+package com.finance.manager;
+
+import android.content.Context;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * BudgetTracker - Singleton keeping budget vs. spent per (user, month) in memory
+ * Each month is seeded once with a single SQL query and then kept current
+ * in O(1) from DatabaseHelper transaction writes. Threshold crossings
+ * (alertThreshold, 100%) are reported exactly once per upward crossing;
+ * dropping back below re-arms the alert
+ */
+public class BudgetTracker implements TransactionObserver {
+
+    public static final int LEVEL_OK = 0;
+    public static final int LEVEL_ALERT = 1;
+    public static final int LEVEL_EXCEEDED = 2;
+
+    /**
+     * Receives threshold crossings on the main thread
+     */
+    public interface Listener {
+        void onThresholdCrossed(Budget budget, double spent, int level);
+    }
+
+    // Volatile ensures visibility of changes across threads
+    private static volatile BudgetTracker instance;
+
+    private final DatabaseHelper databaseHelper;
+    private final Map<String, MonthState> months = new HashMap<>();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Private constructor to prevent direct instantiation
+     * Always use getInstance() method
+     */
+    private BudgetTracker(Context context) {
+        databaseHelper = DatabaseHelper.getInstance(context);
+        databaseHelper.addTransactionObserver(this);
+    }
+
+    /**
+     * Double-checked locking singleton pattern
+     * Thread-safe and efficient
+     *
+     * @param context Application context
+     * @return Singleton instance of BudgetTracker
+     */
+    public static BudgetTracker getInstance(Context context) {
+        if (instance == null) { // First check (no locking)
+            synchronized (BudgetTracker.class) {
+                if (instance == null) { // Second check (with locking)
+                    instance = new BudgetTracker(context.getApplicationContext());
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Prevent cloning of singleton instance
+     */
+    @Override
+    protected Object clone() throws CloneNotSupportedException {
+        throw new CloneNotSupportedException("Cannot clone singleton instance");
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    // ==================== QUERIES ====================
+
+    /**
+     * Number of budgets at or over 100% in a month
+     * Seeds the month on first use, O(1) afterwards
+     */
+    public synchronized int getExceededCount(String userEmail, int month, int year) {
+        return getMonth(userEmail, month, year).exceededCount;
+    }
+
+    // ==================== TRANSACTION OBSERVER ====================
+
+    @Override
+    public void onTransactionAdded(Transaction transaction) {
+        apply(new Transaction[]{transaction}, new double[]{transaction.getAmount()});
+    }
+
+    @Override
+    public void onTransactionUpdated(Transaction before, Transaction after) {
+        apply(new Transaction[]{before, after}, new double[]{-before.getAmount(), after.getAmount()});
+    }
+
+    @Override
+    public void onTransactionDeleted(Transaction transaction) {
+        apply(new Transaction[]{transaction}, new double[]{-transaction.getAmount()});
+    }
+
+    @Override
+    public synchronized void onTransactionsReloaded(String userEmail) {
+        if (userEmail == null) {
+            months.clear();
+        } else {
+            // Keys are userEmail|period
+            months.keySet().removeIf(key -> key.startsWith(userEmail + "|"));
+        }
+    }
+
+    @Override
+    public synchronized void onBudgetsChanged() {
+        // Limits or thresholds changed - reseed lazily on next use
+        months.clear();
+    }
+
+    /**
+     * Apply the amount changes of one write
+     * Months not seeded yet are seeded from SQL, which already includes
+     * this write, so its deltas are rewound first to see the crossing
+     */
+    private void apply(Transaction[] transactions, double[] deltas) {
+        String[] keys = new String[transactions.length];
+        Set<String> seededNow = new HashSet<>();
+        List<Crossing> crossings = new ArrayList<>();
+
+        synchronized (this) {
+            for (int i = 0; i < transactions.length; i++) {
+                Transaction transaction = transactions[i];
+                if (!"expense".equals(transaction.getType())) continue;
+
+                int period = PeriodResolver.getInstance().yearMonthOf(transaction.getDate());
+                int month = period % 100;
+                int year = period / 100;
+
+                keys[i] = key(transaction.getUserEmail(), month, year);
+                if (!months.containsKey(keys[i])) {
+                    seed(transaction.getUserEmail(), month, year);
+                    seededNow.add(keys[i]);
+                }
+            }
+
+            for (int i = 0; i < transactions.length; i++) {
+                if (keys[i] == null || !seededNow.contains(keys[i])) continue;
+                MonthState state = months.get(keys[i]);
+                Entry entry = state.entries.get(transactions[i].getCategory());
+                if (entry != null) {
+                    entry.spent -= deltas[i];
+                    state.setLevel(entry, level(entry.budget, entry.spent));
+                }
+            }
+
+            for (int i = 0; i < transactions.length; i++) {
+                if (keys[i] == null) continue;
+                MonthState state = months.get(keys[i]);
+                Entry entry = state.entries.get(transactions[i].getCategory());
+                if (entry == null) continue;
+
+                entry.spent += deltas[i];
+                int newLevel = level(entry.budget, entry.spent);
+                if (newLevel > entry.level) {
+                    crossings.add(new Crossing(entry.budget, entry.spent, newLevel));
+                }
+                state.setLevel(entry, newLevel);
+            }
+        }
+
+        for (Crossing crossing : crossings) {
+            dispatch(crossing.budget, crossing.spent, crossing.level);
+        }
+    }
+
+    private void dispatch(Budget budget, double spent, int level) {
+        AppExecutors.getInstance().mainThread().execute(() -> {
+            for (Listener listener : listeners) {
+                listener.onThresholdCrossed(budget, spent, level);
+            }
+        });
+    }
+
+    // ==================== STATE ====================
+
+    private MonthState getMonth(String userEmail, int month, int year) {
+        MonthState state = months.get(key(userEmail, month, year));
+        return state != null ? state : seed(userEmail, month, year);
+    }
+
+    private MonthState seed(String userEmail, int month, int year) {
+        Map<String, Double> spentAmounts = new HashMap<>();
+        List<Budget> budgets = databaseHelper.getBudgetsWithSpent(userEmail, month, year, spentAmounts);
+
+        MonthState state = new MonthState();
+        for (Budget budget : budgets) {
+            Entry entry = new Entry(budget);
+            entry.spent = spentAmounts.getOrDefault(budget.getCategory(), 0.0);
+            state.entries.put(budget.getCategory(), entry);
+            state.setLevel(entry, level(budget, entry.spent));
+        }
+        months.put(key(userEmail, month, year), state);
+        return state;
+    }
+
+    private static int level(Budget budget, double spent) {
+        if (budget.getLimitAmount() <= 0) {
+            return LEVEL_OK;
+        }
+
+        double percentage = budget.getPercentageSpent(spent);
+        if (percentage >= 100) {
+            return LEVEL_EXCEEDED;
+        } else if (percentage >= budget.getAlertThreshold()) {
+            return LEVEL_ALERT;
+        }
+        return LEVEL_OK;
+    }
+
+    private static String key(String userEmail, int month, int year) {
+        return userEmail + "|" + (year * 100 + month);
+    }
+
+    private static class Entry {
+        final Budget budget;
+        double spent;
+        int level = LEVEL_OK;
+
+        Entry(Budget budget) {
+            this.budget = budget;
+        }
+    }
+
+    private static class MonthState {
+        final Map<String, Entry> entries = new HashMap<>();
+        int exceededCount;
+
+        void setLevel(Entry entry, int level) {
+            if (entry.level == LEVEL_EXCEEDED) exceededCount--;
+            if (level == LEVEL_EXCEEDED) exceededCount++;
+            entry.level = level;
+        }
+    }
+
+    private static class Crossing {
+        final Budget budget;
+        final double spent;
+        final int level;
+
+        Crossing(Budget budget, double spent, int level) {
+            this.budget = budget;
+            this.spent = spent;
+            this.level = level;
+        }
+    }
+}
@@ -21,24 +21,27 @@ import androidx.recyclerview.widget.RecyclerView;
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
 
 import java.util.ArrayList;
-import java.util.Calendar;
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 public class BudgetsFragment extends Fragment {
 
+    // Months loaded per page of the budget history
+    private static final int HISTORY_PAGE_MONTHS = 6;
+
     private RecyclerView budgetsRecyclerView;
     private FloatingActionButton addBudgetFab;
     private Spinner sortSpinner;
+    private com.google.android.material.button.MaterialButton historyButton;
     private BudgetAdapter adapter;
 
     private DatabaseHelper databaseHelper;
+    private SpendingForecaster forecaster;
     private String userEmail;
     private List<Budget> budgetList;
     private Map<String, Double> spentAmounts;
+    private Map<String, Double> projectedAmounts;
     private int selectedSortOption = 0;
 
     @Nullable
@@ -55,16 +58,19 @@ public class BudgetsFragment extends Fragment {
         }
 
         databaseHelper = DatabaseHelper.getInstance(requireContext());
+        forecaster = SpendingForecaster.getInstance(requireContext());
 
         budgetsRecyclerView = view.findViewById(R.id.budgetsRecyclerView);
         addBudgetFab = view.findViewById(R.id.addBudgetFab);
         sortSpinner = view.findViewById(R.id.sortSpinner);
+        historyButton = view.findViewById(R.id.historyButton);
 
         setupRecyclerView();
         setupSortSpinner();
         loadBudgets();
 
         addBudgetFab.setOnClickListener(v -> showAddBudgetDialog());
+        historyButton.setOnClickListener(v -> showBudgetHistoryDialog());
 
         return view;
     }
@@ -73,10 +79,12 @@ public class BudgetsFragment extends Fragment {
         budgetsRecyclerView.setLayoutManager(new LinearLayoutManager(getContext()));
         budgetList = new ArrayList<>();
         spentAmounts = new HashMap<>();
+        projectedAmounts = new HashMap<>();
 
         adapter = new BudgetAdapter(
                 budgetList,
                 spentAmounts,
+                projectedAmounts,
                 new BudgetAdapter.BudgetActionListener() {
                     @Override
                     public void onEdit(Budget budget) {
@@ -145,90 +153,95 @@ public class BudgetsFragment extends Fragment {
     }
 
     private void sortBudgets() {
-        switch (selectedSortOption) {
-            case 0: // Category A-Z
-                Collections.sort(budgetList, new Comparator<Budget>() {
-                    @Override
-                    public int compare(Budget b1, Budget b2) {
-                        return b1.getCategory().compareToIgnoreCase(b2.getCategory());
-                    }
-                });
-                break;
-            case 1: // Category Z-A
-                Collections.sort(budgetList, new Comparator<Budget>() {
-                    @Override
-                    public int compare(Budget b1, Budget b2) {
-                        return b2.getCategory().compareToIgnoreCase(b1.getCategory());
-                    }
-                });
-                break;
-            case 2: // Highest Budget
-                Collections.sort(budgetList, new Comparator<Budget>() {
-                    @Override
-                    public int compare(Budget b1, Budget b2) {
-                        return Double.compare(b2.getLimitAmount(), b1.getLimitAmount());
-                    }
-                });
-                break;
-            case 3: // Lowest Budget
-                Collections.sort(budgetList, new Comparator<Budget>() {
-                    @Override
-                    public int compare(Budget b1, Budget b2) {
-                        return Double.compare(b1.getLimitAmount(), b2.getLimitAmount());
-                    }
-                });
-                break;
-            case 4: // Most Spent %
-                Collections.sort(budgetList, new Comparator<Budget>() {
-                    @Override
-                    public int compare(Budget b1, Budget b2) {
-                        double spent1 = spentAmounts.getOrDefault(b1.getCategory(), 0.0);
-                        double spent2 = spentAmounts.getOrDefault(b2.getCategory(), 0.0);
-                        double percentage1 = b1.getPercentageSpent(spent1);
-                        double percentage2 = b2.getPercentageSpent(spent2);
-                        return Double.compare(percentage2, percentage1);
-                    }
-                });
-                break;
-            case 5: // Least Spent %
-                Collections.sort(budgetList, new Comparator<Budget>() {
-                    @Override
-                    public int compare(Budget b1, Budget b2) {
-                        double spent1 = spentAmounts.getOrDefault(b1.getCategory(), 0.0);
-                        double spent2 = spentAmounts.getOrDefault(b2.getCategory(), 0.0);
-                        double percentage1 = b1.getPercentageSpent(spent1);
-                        double percentage2 = b2.getPercentageSpent(spent2);
-                        return Double.compare(percentage1, percentage2);
-                    }
-                });
-                break;
-        }
-        adapter.updateBudgets(budgetList, spentAmounts);
+        BudgetOps.sort(budgetList, selectedSortOption, spentAmounts);
+        adapter.updateBudgets(budgetList, spentAmounts, projectedAmounts);
     }
 
     private void loadBudgets() {
+        Metrics.Screen screen = Metrics.beginScreen("BudgetsFragment.loadBudgets");
         budgetList.clear();
         spentAmounts.clear();
+        projectedAmounts.clear();
+
+        int period = PeriodResolver.getInstance().yearMonthOf(System.currentTimeMillis());
+        int currentMonth = period % 100;
+        int currentYear = period / 100;
+
+        // One query for all budgets of the month and their spent totals
+        budgetList.addAll(databaseHelper.getBudgetsWithSpent(
+                userEmail, currentMonth, currentYear, spentAmounts));
+
+        // Month-end projections come from memory; none until the forecaster is seeded
+        for (Budget budget : budgetList) {
+            double spent = spentAmounts.getOrDefault(budget.getCategory(), 0.0);
+            double projected = forecaster.getProjectedTotal(userEmail, budget.getCategory(), spent);
+            if (!Double.isNaN(projected)) {
+                projectedAmounts.put(budget.getCategory(), projected);
+            }
+        }
 
-        Calendar calendar = Calendar.getInstance();
-        int currentMonth = calendar.get(Calendar.MONTH) + 1;
-        int currentYear = calendar.get(Calendar.YEAR);
+        sortBudgets();
+        Metrics.endScreen(screen);
+    }
 
-        List<String> categories = databaseHelper.getCategories(userEmail, "expense");
+    private void showBudgetHistoryDialog() {
+        View dialogView = getLayoutInflater().inflate(R.layout.dialog_budget_history, null);
+        RecyclerView historyRecyclerView = dialogView.findViewById(R.id.historyRecyclerView);
+        TextView emptyText = dialogView.findViewById(R.id.historyEmptyText);
+        View loadOlderButton = dialogView.findViewById(R.id.loadOlderButton);
+
+        BudgetHistoryAdapter historyAdapter = new BudgetHistoryAdapter();
+        historyRecyclerView.setLayoutManager(new LinearLayoutManager(getContext()));
+        historyRecyclerView.setAdapter(historyAdapter);
+
+        // Newest month of the next page to load, as months since year 0
+        int current = PeriodResolver.getInstance().yearMonthOf(System.currentTimeMillis());
+        int[] nextPageEnd = {(current / 100) * 12 + current % 100 - 1};
+
+        Runnable loadPage = () -> {
+            loadOlderButton.setEnabled(false);
+            AppExecutors.getInstance().diskIO().execute(() -> {
+                int earliest = databaseHelper.getEarliestBudgetPeriod(userEmail);
+                List<BudgetHistoryEntry> page = new ArrayList<>();
+                int end = nextPageEnd[0];
+
+                // Skip windows without budgets so every tap shows something
+                while (page.isEmpty() && earliest != 0 && earliest <= toPeriod(end)) {
+                    page = databaseHelper.getBudgetHistory(
+                            userEmail, end % 12 + 1, end / 12, HISTORY_PAGE_MONTHS);
+                    end -= HISTORY_PAGE_MONTHS;
+                }
 
-        for (String category : categories) {
-            Budget budget = databaseHelper.getBudget(
-                    userEmail, category, currentMonth, currentYear);
+                int newPageEnd = end;
+                boolean hasOlder = earliest != 0 && earliest <= toPeriod(newPageEnd);
+                List<BudgetHistoryEntry> result = page;
+
+                AppExecutors.getInstance().mainThread().execute(() -> {
+                    if (!isAdded()) return;
+                    nextPageEnd[0] = newPageEnd;
+                    historyAdapter.appendPage(result);
+                    emptyText.setVisibility(historyAdapter.getItemCount() == 0 ? View.VISIBLE : View.GONE);
+                    loadOlderButton.setVisibility(hasOlder ? View.VISIBLE : View.GONE);
+                    loadOlderButton.setEnabled(true);
+                });
+            });
+        };
 
-            if (budget != null) {
-                budgetList.add(budget);
-                double spent = databaseHelper.getSpentInCategory(
-                        userEmail, category, currentMonth, currentYear);
-                spentAmounts.put(category, spent);
-            }
-        }
+        loadOlderButton.setOnClickListener(v -> loadPage.run());
+        loadPage.run();
 
-        sortBudgets();
+        new AlertDialog.Builder(getContext())
+                .setTitle("Budget History")
+                .setView(dialogView)
+                .setPositiveButton("Close", null)
+                .show();
+    }
+
+    /**
+     * Months since year 0 to a year * 100 + month period
+     */
+    private static int toPeriod(int monthIndex) {
+        return (monthIndex / 12) * 100 + monthIndex % 12 + 1;
     }
 
     private void showAddBudgetDialog() {
@@ -309,9 +322,9 @@ public class BudgetsFragment extends Fragment {
                 return;
             }
 
-            Calendar calendar = Calendar.getInstance();
-            int month = calendar.get(Calendar.MONTH) + 1;
-            int year = calendar.get(Calendar.YEAR);
+            int period = PeriodResolver.getInstance().yearMonthOf(System.currentTimeMillis());
+            int month = period % 100;
+            int year = period / 100;
 
             Budget existingBudget =
                     databaseHelper.getBudget(userEmail, category, month, year);
@@ -372,7 +385,7 @@ public class BudgetsFragment extends Fragment {
                     Integer.parseInt(thresholdInput.getText().toString());
 
             boolean updated = databaseHelper.updateBudget(
-                    budget.getId(), limit, threshold);
+                    userEmail, budget.getId(), limit, threshold);
 
             if (updated) {
                 Toast.makeText(getContext(),
@@ -396,7 +409,7 @@ public class BudgetsFragment extends Fragment {
                 .setMessage("Are you sure you want to delete this budget?")
                 .setPositiveButton("Delete", (dialog, which) -> {
                     boolean deleted =
-                            databaseHelper.deleteBudget(budget.getId());
+                            databaseHelper.deleteBudget(userEmail, budget.getId());
 
                     if (deleted) {
                         Toast.makeText(getContext(),
@@ -0,0 +1,589 @@
+package com.finance.manager;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * CategorySuggester - Singleton suggesting a category while a transaction is typed
+ * Learns from the user's own history with a naive Bayes model over the
+ * description's words and a power-of-two amount bucket. The model is a
+ * token -> per-category count index held in memory and kept current in
+ * O(tokens) per write through TransactionObserver, so history is scanned
+ * at most once, on diskIO, when no saved index matches the ledger.
+ *
+ * Saved index, one file per ledger, integers as SnapshotFormat varints:
+ * <pre>
+ * file  := magic "FMCI" | version u8 | changeLogHead varint | modelCount varint | model*
+ * model := type string | categoryCount varint | (category string | transactions varint)*
+ *          | tokenCount varint | (token string | countCount varint | (categoryIndex varint | count varint)*)*
+ * </pre>
+ * The file is only used while the ledger's change log head still matches,
+ * and is deleted when the ledger is reloaded in bulk (sync, restore), which
+ * leaves the head alone
+ */
+public class CategorySuggester implements TransactionObserver {
+
+    private static final String TAG = "CategorySuggester";
+
+    static final byte[] MAGIC = {'F', 'M', 'C', 'I'};
+    static final int VERSION = 1;
+
+    private static final String INDEX_DIRECTORY = "category-index";
+    private static final String STAGING_SUFFIX = ".tmp";
+
+    // Words taken from one description; later words rarely change the answer
+    private static final int MAX_TOKENS = 16;
+
+    // Amount buckets can't be typed as words, so they never collide with one
+    private static final char AMOUNT_PREFIX = '#';
+
+    // Share of the posterior the best category needs before it is suggested
+    private static final double MIN_CONFIDENCE = 0.5;
+
+    // Volatile ensures visibility of changes across threads
+    private static volatile CategorySuggester instance;
+
+    private final Context appContext;
+    private final DatabaseHelper databaseHelper;
+
+    // Guarded by this
+    private final Map<String, Index> indexes = new HashMap<>();
+    private final Set<String> loading = new HashSet<>();
+    // Users written to while their index was loading; the load is redone
+    private final Set<String> raced = new HashSet<>();
+    private final Set<String> saveScheduled = new HashSet<>();
+
+    /**
+     * Private constructor to prevent direct instantiation
+     * Always use getInstance() method
+     */
+    private CategorySuggester(Context context) {
+        appContext = context;
+        databaseHelper = DatabaseHelper.getInstance(context);
+        databaseHelper.addTransactionObserver(this);
+    }
+
+    /**
+     * Double-checked locking singleton pattern
+     * Thread-safe and efficient
+     *
+     * @param context Application context
+     * @return Singleton instance of CategorySuggester
+     */
+    public static CategorySuggester getInstance(Context context) {
+        if (instance == null) { // First check (no locking)
+            synchronized (CategorySuggester.class) {
+                if (instance == null) { // Second check (with locking)
+                    instance = new CategorySuggester(context.getApplicationContext());
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Prevent cloning of singleton instance
+     */
+    @Override
+    protected Object clone() throws CloneNotSupportedException {
+        throw new CloneNotSupportedException("Cannot clone singleton instance");
+    }
+
+    // ==================== QUERIES ====================
+
+    /**
+     * Load a user's index on diskIO, unless it is loaded or loading already
+     */
+    public void prepare(String userEmail) {
+        synchronized (this) {
+            if (indexes.containsKey(userEmail) || !loading.add(userEmail)) {
+                return;
+            }
+        }
+        AppExecutors.getInstance().diskIO().execute(() -> load(userEmail));
+    }
+
+    /**
+     * Most likely category for a transaction being entered
+     * Only reads the in-memory index, so it is safe on the main thread;
+     * until the index is loaded it returns null and loads it in the background
+     *
+     * @param type "expense" or "income"
+     * @param amount Amount typed so far, or 0
+     * @return Category name, or null without a confident suggestion
+     */
+    public String suggest(String userEmail, String type, String description, double amount) {
+        long start = Metrics.start();
+        List<String> tokens = tokenize(description, amount);
+        Index index;
+        String category = null;
+        synchronized (this) {
+            index = indexes.get(userEmail);
+            if (index != null) {
+                Model model = index.models.get(type);
+                category = model != null ? model.best(tokens) : null;
+            }
+        }
+        if (index == null) {
+            prepare(userEmail);
+        }
+        Metrics.record("suggest.category", start, category != null ? 1 : 0);
+        return category;
+    }
+
+    // ==================== TRANSACTION OBSERVER ====================
+
+    @Override
+    public synchronized void onTransactionAdded(Transaction transaction) {
+        apply(transaction, 1);
+    }
+
+    @Override
+    public synchronized void onTransactionUpdated(Transaction before, Transaction after) {
+        apply(before, -1);
+        apply(after, 1);
+    }
+
+    @Override
+    public synchronized void onTransactionDeleted(Transaction transaction) {
+        apply(transaction, -1);
+    }
+
+    @Override
+    public synchronized void onTransactionsReloaded(String userEmail) {
+        // Sync and restores write without moving the change log head, so the
+        // head can't tell a saved file is stale; delete the user's
+        if (userEmail == null) {
+            indexes.clear();
+            raced.addAll(loading);
+        } else {
+            indexes.remove(userEmail);
+            if (loading.contains(userEmail)) {
+                raced.add(userEmail);
+            }
+        }
+        deleteSavedIndexes(userEmail);
+    }
+
+    /**
+     * Forget the in-memory indexes but keep the saved files, so the next
+     * load reads them back. Package-private for DataBenchmark
+     */
+    synchronized void unload() {
+        indexes.clear();
+        raced.addAll(loading);
+    }
+
+    private void apply(Transaction transaction, int delta) {
+        String userEmail = transaction.getUserEmail();
+        Index index = indexes.get(userEmail);
+        if (index == null) {
+            if (loading.contains(userEmail)) {
+                raced.add(userEmail);
+            }
+            return;
+        }
+        index.add(transaction, delta);
+        if (saveScheduled.add(userEmail)) {
+            AppExecutors.getInstance().diskIO().execute(() -> save(userEmail));
+        }
+    }
+
+    // ==================== LOADING ====================
+
+    /**
+     * Read the saved index, or scan the user's history if it is missing or
+     * stale. Runs on diskIO without holding the lock, so suggestions and
+     * writes never wait for it. Package-private for DataBenchmark
+     */
+    void load(String userEmail) {
+        long start = Metrics.start();
+        long head = databaseHelper.getChangeLog(userEmail).getHead();
+        Index index = read(userEmail, head);
+        boolean built = index == null;
+        if (built) {
+            Index scanned = new Index();
+            databaseHelper.forEachTransaction(userEmail, transaction -> scanned.add(transaction, 1));
+            index = scanned;
+        }
+
+        boolean again;
+        synchronized (this) {
+            loading.remove(userEmail);
+            again = raced.remove(userEmail);
+            if (!again) {
+                indexes.put(userEmail, index);
+            }
+        }
+        Metrics.record(built ? "suggest.buildIndex" : "suggest.readIndex", start, index.size());
+
+        if (again) {
+            // A write landed mid-scan; it may or may not be counted, so start over
+            prepare(userEmail);
+        } else if (built) {
+            save(userEmail);
+        }
+    }
+
+    private Index read(String userEmail, long head) {
+        File file = indexFile(userEmail);
+        if (!file.exists()) {
+            return null;
+        }
+        try {
+            SnapshotFormat.Bytes bytes = new SnapshotFormat.Bytes(0);
+            bytes.data = Files.readAllBytes(file.toPath());
+            bytes.length = bytes.data.length;
+            return Index.decode(bytes, head);
+        } catch (IOException e) {
+            Log.w(TAG, "Discarding unreadable category index", e);
+            return null;
+        }
+    }
+
+    /**
+     * Write the index through a staging file, so a crash leaves the old one
+     * A write committed just before the head is read may not be counted
+     * yet, but its observer call schedules another save that includes it
+     */
+    private void save(String userEmail) {
+        long start = Metrics.start();
+        long head = databaseHelper.getChangeLog(userEmail).getHead();
+        SnapshotFormat.Bytes bytes;
+        Index saved;
+        synchronized (this) {
+            saveScheduled.remove(userEmail);
+            Index index = indexes.get(userEmail);
+            if (index == null) {
+                return;
+            }
+            bytes = index.encode(head);
+            saved = index;
+        }
+
+        File file = indexFile(userEmail);
+        File staging = new File(file.getPath() + STAGING_SUFFIX);
+        File directory = file.getParentFile();
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            Log.w(TAG, "Could not create " + directory);
+            return;
+        }
+        try (OutputStream out = new FileOutputStream(staging)) {
+            out.write(bytes.data, 0, bytes.length);
+        } catch (IOException e) {
+            Log.w(TAG, "Could not save category index", e);
+            staging.delete();
+            return;
+        }
+        synchronized (this) {
+            // A reload while writing made this index stale
+            if (indexes.get(userEmail) != saved || !staging.renameTo(file)) {
+                staging.delete();
+                return;
+            }
+        }
+        Metrics.record("suggest.saveIndex", start, bytes.length);
+    }
+
+    /**
+     * @param userEmail User whose file to delete, or null for every user's
+     */
+    private void deleteSavedIndexes(String userEmail) {
+        File[] files = userEmail != null
+                ? new File[] { indexFile(userEmail) }
+                : new File(appContext.getNoBackupFilesDir(), INDEX_DIRECTORY).listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (!file.exists()) {
+                continue;
+            }
+            if (!file.delete()) {
+                Log.w(TAG, "Could not delete " + file);
+            }
+        }
+    }
+
+    /**
+     * Derived data, so it stays out of backups and is rebuilt after a restore
+     */
+    private File indexFile(String userEmail) {
+        return new File(new File(appContext.getNoBackupFilesDir(), INDEX_DIRECTORY),
+                DatabaseHelper.ledgerName(userEmail));
+    }
+
+    // ==================== MODEL ====================
+
+    /**
+     * Lowercased words of at least two characters with a letter in them,
+     * without repeats, plus the amount's power-of-two bucket
+     */
+    static List<String> tokenize(String description, double amount) {
+        List<String> tokens = new ArrayList<>();
+        if (description != null) {
+            String text = description.toLowerCase(Locale.ROOT);
+            int length = text.length();
+            int i = 0;
+            while (i < length && tokens.size() < MAX_TOKENS) {
+                while (i < length && !Character.isLetterOrDigit(text.charAt(i))) {
+                    i++;
+                }
+                int wordStart = i;
+                boolean hasLetter = false;
+                while (i < length && Character.isLetterOrDigit(text.charAt(i))) {
+                    hasLetter |= Character.isLetter(text.charAt(i));
+                    i++;
+                }
+                if (hasLetter && i - wordStart >= 2) {
+                    String token = text.substring(wordStart, i);
+                    if (!tokens.contains(token)) {
+                        tokens.add(token);
+                    }
+                }
+            }
+        }
+        if (amount > 0) {
+            tokens.add(AMOUNT_PREFIX + String.valueOf(Math.getExponent(amount)));
+        }
+        return tokens;
+    }
+
+    /**
+     * One user's models, by transaction type
+     */
+    private static final class Index {
+        final Map<String, Model> models = new HashMap<>();
+
+        void add(Transaction transaction, int delta) {
+            Model model = models.get(transaction.getType());
+            if (model == null) {
+                if (delta < 0) {
+                    return;
+                }
+                model = new Model();
+                models.put(transaction.getType(), model);
+            }
+            model.add(tokenize(transaction.getDescription(), transaction.getAmount()), transaction.getCategory(), delta);
+        }
+
+        int size() {
+            int size = 0;
+            for (Model model : models.values()) {
+                size += model.tokens.size();
+            }
+            return size;
+        }
+
+        SnapshotFormat.Bytes encode(long head) {
+            SnapshotFormat.Bytes bytes = new SnapshotFormat.Bytes(4096);
+            for (byte b : MAGIC) {
+                bytes.writeByte(b);
+            }
+            bytes.writeByte(VERSION);
+            bytes.writeVarint(head);
+            bytes.writeVarint(models.size());
+            for (Map.Entry<String, Model> entry : models.entrySet()) {
+                bytes.writeString(entry.getKey());
+                entry.getValue().encode(bytes);
+            }
+            return bytes;
+        }
+
+        /**
+         * @return The saved index, or null if it was saved at another head
+         */
+        static Index decode(SnapshotFormat.Bytes bytes, long head) throws IOException {
+            for (byte b : MAGIC) {
+                if (bytes.position >= bytes.length || bytes.data[bytes.position++] != b) {
+                    throw new IOException("Not a category index");
+                }
+            }
+            if (bytes.position >= bytes.length || bytes.data[bytes.position++] != VERSION) {
+                return null;
+            }
+            if (bytes.readVarint() != head) {
+                return null;
+            }
+            Index index = new Index();
+            int modelCount = bytes.readInt();
+            for (int i = 0; i < modelCount; i++) {
+                String type = bytes.readString();
+                index.models.put(type, Model.decode(bytes));
+            }
+            return index;
+        }
+    }
+
+    /**
+     * Naive Bayes counts for one transaction type
+     * Categories are numbered in order of first appearance; each token
+     * keeps one count per category number
+     */
+    private static final class Model {
+        final List<String> categories = new ArrayList<>();
+        final Map<String, Integer> categoryIndexes = new HashMap<>();
+        final Map<String, int[]> tokens = new HashMap<>();
+        // Per category: transactions, and tokens over all of them
+        int[] transactionCounts = new int[8];
+        int[] tokenCounts = new int[8];
+
+        void add(List<String> words, String category, int delta) {
+            Integer known = categoryIndexes.get(category);
+            if (known == null && delta < 0) {
+                return;
+            }
+            int index = known != null ? known : addCategory(category);
+            transactionCounts[index] = Math.max(0, transactionCounts[index] + delta);
+
+            for (String word : words) {
+                int[] counts = tokens.get(word);
+                if (counts == null || counts.length <= index) {
+                    if (delta < 0) {
+                        continue;
+                    }
+                    counts = counts == null ? new int[categories.size()] : Arrays.copyOf(counts, categories.size());
+                    tokens.put(word, counts);
+                }
+                if (counts[index] + delta < 0) {
+                    continue;
+                }
+                counts[index] += delta;
+                tokenCounts[index] += delta;
+                if (delta < 0 && counts[index] == 0 && isEmpty(counts)) {
+                    tokens.remove(word);
+                }
+            }
+        }
+
+        private int addCategory(String category) {
+            int index = categories.size();
+            categories.add(category);
+            categoryIndexes.put(category, index);
+            if (index == transactionCounts.length) {
+                transactionCounts = Arrays.copyOf(transactionCounts, index * 2);
+                tokenCounts = Arrays.copyOf(tokenCounts, index * 2);
+            }
+            return index;
+        }
+
+        /**
+         * Category with the highest posterior, with Laplace smoothing
+         * Words never seen before are skipped, and amount alone is not
+         * enough to suggest anything
+         */
+        String best(List<String> words) {
+            int categoryCount = categories.size();
+            double[] scores = new double[categoryCount];
+            int vocabulary = tokens.size() + 1;
+            for (int i = 0; i < categoryCount; i++) {
+                scores[i] = transactionCounts[i] > 0 ? Math.log(transactionCounts[i]) : Double.NEGATIVE_INFINITY;
+            }
+
+            boolean matchedWord = false;
+            for (String word : words) {
+                int[] counts = tokens.get(word);
+                if (counts == null) {
+                    continue;
+                }
+                matchedWord |= word.charAt(0) != AMOUNT_PREFIX;
+                for (int i = 0; i < categoryCount; i++) {
+                    int count = i < counts.length ? counts[i] : 0;
+                    scores[i] += Math.log((count + 1.0) / (tokenCounts[i] + vocabulary));
+                }
+            }
+            if (!matchedWord) {
+                return null;
+            }
+
+            int best = 0;
+            for (int i = 1; i < categoryCount; i++) {
+                if (scores[i] > scores[best]) {
+                    best = i;
+                }
+            }
+            if (scores[best] == Double.NEGATIVE_INFINITY) {
+                return null;
+            }
+            double total = 0;
+            for (double score : scores) {
+                total += Math.exp(score - scores[best]);
+            }
+            return 1 / total >= MIN_CONFIDENCE ? categories.get(best) : null;
+        }
+
+        void encode(SnapshotFormat.Bytes bytes) {
+            bytes.writeVarint(categories.size());
+            for (int i = 0; i < categories.size(); i++) {
+                bytes.writeString(categories.get(i));
+                bytes.writeVarint(transactionCounts[i]);
+            }
+            bytes.writeVarint(tokens.size());
+            for (Map.Entry<String, int[]> entry : tokens.entrySet()) {
+                int[] counts = entry.getValue();
+                int nonZero = 0;
+                for (int count : counts) {
+                    if (count > 0) {
+                        nonZero++;
+                    }
+                }
+                bytes.writeString(entry.getKey());
+                bytes.writeVarint(nonZero);
+                for (int i = 0; i < counts.length; i++) {
+                    if (counts[i] > 0) {
+                        bytes.writeVarint(i);
+                        bytes.writeVarint(counts[i]);
+                    }
+                }
+            }
+        }
+
+        static Model decode(SnapshotFormat.Bytes bytes) throws IOException {
+            Model model = new Model();
+            int categoryCount = bytes.readInt();
+            for (int i = 0; i < categoryCount; i++) {
+                int index = model.addCategory(bytes.readString());
+                model.transactionCounts[index] = bytes.readInt();
+            }
+            int tokenCount = bytes.readInt();
+            for (int i = 0; i < tokenCount; i++) {
+                String word = bytes.readString();
+                int[] counts = new int[categoryCount];
+                int nonZero = bytes.readInt();
+                for (int j = 0; j < nonZero; j++) {
+                    int index = bytes.readInt();
+                    if (index >= categoryCount) {
+                        throw new IOException("Category index out of range: " + index);
+                    }
+                    counts[index] = bytes.readInt();
+                    model.tokenCounts[index] += counts[index];
+                }
+                model.tokens.put(word, counts);
+            }
+            return model;
+        }
+
+        private static boolean isEmpty(int[] counts) {
+            for (int count : counts) {
+                if (count != 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
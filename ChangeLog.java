@@ -0,0 +1,261 @@
+package com.finance.manager;
+
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * ChangeLog - Append-only record of the writes to one database file
+ * DatabaseHelper appends an entry in the same transaction as every insert,
+ * update and delete of transactions, budgets and categories (in each
+ * user's ledger) and of user profiles (in the user directory).
+ *
+ * Sequence numbers come from AUTOINCREMENT, so they only grow, even after
+ * pruning. Consumers register by name, read "changes since N" as a range
+ * scan on the primary key and acknowledge what they have processed.
+ * Entries every registered consumer has acknowledged are deleted.
+ * Obtain one through DatabaseHelper.getChangeLog() or getProfileChangeLog()
+ */
+public class ChangeLog {
+
+    public static final String ENTITY_TRANSACTION = "transaction";
+    public static final String ENTITY_BUDGET = "budget";
+    public static final String ENTITY_CATEGORY = "category";
+    public static final String ENTITY_USER = "user";
+
+    public static final String OP_INSERT = "insert";
+    public static final String OP_UPDATE = "update";
+    public static final String OP_DELETE = "delete";
+
+    // Change Log Table
+    private static final String TABLE_CHANGE_LOG = "change_log";
+    private static final String COL_SEQUENCE = "seq";
+    private static final String COL_USER_EMAIL = "userEmail";
+    private static final String COL_ENTITY = "entity";
+    private static final String COL_ENTITY_ID = "entityId";
+    private static final String COL_OPERATION = "operation";
+    private static final String COL_CHANGED_AT = "changedAt";
+
+    // Change Consumers Table - how far each reader has got
+    private static final String TABLE_CONSUMERS = "change_consumers";
+    private static final String COL_CONSUMER_NAME = "name";
+    private static final String COL_ACKNOWLEDGED = "acknowledged";
+
+    private static final String SQL_APPEND = "INSERT INTO " + TABLE_CHANGE_LOG + " (" +
+            COL_USER_EMAIL + ", " + COL_ENTITY + ", " + COL_ENTITY_ID + ", " + COL_OPERATION + ", " +
+            COL_CHANGED_AT + ") VALUES (?, ?, ?, ?, ?)";
+    private static final String SQL_REGISTER = "INSERT OR IGNORE INTO " + TABLE_CONSUMERS + " (" +
+            COL_CONSUMER_NAME + ", " + COL_ACKNOWLEDGED + ") VALUES (?, ?)";
+    private static final String SQL_ACKNOWLEDGE = "UPDATE " + TABLE_CONSUMERS +
+            " SET " + COL_ACKNOWLEDGED + " = MAX(" + COL_ACKNOWLEDGED + ", ?) WHERE " + COL_CONSUMER_NAME + "=?";
+    // With no consumers registered nobody needs the entries, so everything goes
+    private static final String SQL_PRUNE = "DELETE FROM " + TABLE_CHANGE_LOG + " WHERE " + COL_SEQUENCE + " <= " +
+            "COALESCE((SELECT MIN(" + COL_ACKNOWLEDGED + ") FROM " + TABLE_CONSUMERS + "), " +
+            "(SELECT MAX(" + COL_SEQUENCE + ") FROM " + TABLE_CHANGE_LOG + "))";
+
+    private final Supplier<SQLiteDatabase> database;
+
+    ChangeLog(Supplier<SQLiteDatabase> database) {
+        this.database = database;
+    }
+
+    // ==================== SCHEMA ====================
+
+    static void createTables(SQLiteDatabase db) {
+        String createChangeLogTable = "CREATE TABLE " + TABLE_CHANGE_LOG + " (" +
+                COL_SEQUENCE + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                COL_USER_EMAIL + " TEXT NOT NULL, " +
+                COL_ENTITY + " TEXT NOT NULL, " +
+                COL_ENTITY_ID + " INTEGER NOT NULL, " +
+                COL_OPERATION + " TEXT NOT NULL, " +
+                COL_CHANGED_AT + " INTEGER NOT NULL)";
+        db.execSQL(createChangeLogTable);
+
+        String createConsumersTable = "CREATE TABLE " + TABLE_CONSUMERS + " (" +
+                COL_CONSUMER_NAME + " TEXT PRIMARY KEY, " +
+                COL_ACKNOWLEDGED + " INTEGER NOT NULL)";
+        db.execSQL(createConsumersTable);
+    }
+
+    // ==================== WRITES ====================
+
+    /**
+     * Append one entry inside the writer's transaction
+     */
+    static void append(UnitOfWork unit, String userEmail, String entity, long entityId, String operation) {
+        unit.insert(SQL_APPEND, userEmail, entity, entityId, operation, System.currentTimeMillis());
+    }
+
+    /**
+     * Append one entry per row matching a WHERE clause, in a single statement
+     * Run it before a set-based UPDATE or DELETE, inside the same transaction
+     *
+     * @param table Table holding the entity, with id and userEmail columns
+     * @param where Condition selecting the rows about to change
+     * @return Number of entries appended
+     */
+    static int appendForRows(UnitOfWork unit, String entity, String operation, String table,
+                             String where, Object... whereArgs) {
+        Object[] args = new Object[whereArgs.length + 3];
+        args[0] = entity;
+        args[1] = operation;
+        args[2] = System.currentTimeMillis();
+        System.arraycopy(whereArgs, 0, args, 3, whereArgs.length);
+
+        return unit.update("INSERT INTO " + TABLE_CHANGE_LOG + " (" +
+                COL_USER_EMAIL + ", " + COL_ENTITY + ", " + COL_ENTITY_ID + ", " + COL_OPERATION + ", " +
+                COL_CHANGED_AT + ") SELECT " + COL_USER_EMAIL + ", ?, id, ?, ? FROM " + table +
+                " WHERE " + where, args);
+    }
+
+    /**
+     * Whether a row was written after a sequence number, read inside the
+     * caller's transaction. Entries after any consumer's acknowledgement are
+     * never pruned, so this is exact for sequences a consumer has acknowledged
+     */
+    static boolean hasChangesAfter(SQLiteDatabase db, String entity, long entityId, long sequence) {
+        return DatabaseUtils.queryNumEntries(db, TABLE_CHANGE_LOG,
+                COL_ENTITY + "=? AND " + COL_ENTITY_ID + "=? AND " + COL_SEQUENCE + ">?",
+                new String[]{entity, String.valueOf(entityId), String.valueOf(sequence)}) > 0;
+    }
+
+    // ==================== CONSUMERS ====================
+
+    /**
+     * Entries after a sequence number, oldest first
+     *
+     * @param sequence Last sequence already processed; 0 for everything kept
+     * @param limit Maximum number of entries, to page through long backlogs
+     */
+    public List<ChangeLogEntry> getChangesSince(long sequence, int limit) {
+        long start = Metrics.start();
+        SQLiteDatabase db = database.get();
+        // Range scan on the rowid
+        Cursor cursor = db.query(TABLE_CHANGE_LOG, null, COL_SEQUENCE + ">?",
+                new String[]{String.valueOf(sequence)}, null, null, COL_SEQUENCE + " ASC", String.valueOf(limit));
+
+        List<ChangeLogEntry> entries = new ArrayList<>();
+        while (cursor.moveToNext()) {
+            entries.add(new ChangeLogEntry(
+                    cursor.getLong(cursor.getColumnIndexOrThrow(COL_SEQUENCE)),
+                    cursor.getString(cursor.getColumnIndexOrThrow(COL_USER_EMAIL)),
+                    cursor.getString(cursor.getColumnIndexOrThrow(COL_ENTITY)),
+                    cursor.getLong(cursor.getColumnIndexOrThrow(COL_ENTITY_ID)),
+                    cursor.getString(cursor.getColumnIndexOrThrow(COL_OPERATION)),
+                    cursor.getLong(cursor.getColumnIndexOrThrow(COL_CHANGED_AT))));
+        }
+        cursor.close();
+        Metrics.record("changeLog.read", start, entries.size());
+        return entries;
+    }
+
+    /**
+     * Sequence number of the newest entry ever appended, pruned or not
+     */
+    public long getHead() {
+        SQLiteDatabase db = database.get();
+        Cursor cursor = db.rawQuery("SELECT seq FROM sqlite_sequence WHERE name=?", new String[]{TABLE_CHANGE_LOG});
+        long head = cursor.moveToFirst() ? cursor.getLong(0) : 0;
+        cursor.close();
+        return head;
+    }
+
+    /**
+     * Register a consumer at the current head, unless it already is
+     * Changes before registration are not kept for it; read the current
+     * state first, then follow the log from the returned sequence
+     *
+     * @return Sequence the consumer has acknowledged up to
+     */
+    public long register(String consumer) {
+        SQLiteDatabase db = database.get();
+        db.beginTransactionNonExclusive();
+        try {
+            db.execSQL(SQL_REGISTER, new Object[]{consumer, getHead()});
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        return getAcknowledged(consumer);
+    }
+
+    /**
+     * @return Sequence the consumer has acknowledged up to, or -1 if it isn't registered
+     */
+    public long getAcknowledged(String consumer) {
+        SQLiteDatabase db = database.get();
+        Cursor cursor = db.query(TABLE_CONSUMERS, new String[]{COL_ACKNOWLEDGED}, COL_CONSUMER_NAME + "=?",
+                new String[]{consumer}, null, null, null);
+        long acknowledged = cursor.moveToFirst() ? cursor.getLong(0) : -1;
+        cursor.close();
+        return acknowledged;
+    }
+
+    /**
+     * Record that a consumer has processed every entry up to a sequence
+     * Entries all consumers have processed are pruned. Acknowledgements
+     * never move back, so a retried older acknowledgement is harmless
+     *
+     * @return true if the consumer is registered
+     */
+    public boolean acknowledge(String consumer, long sequence) {
+        long start = Metrics.start();
+        SQLiteDatabase db = database.get();
+        int rows;
+        db.beginTransactionNonExclusive();
+        try {
+            rows = DatabaseUtils.longForQuery(db, "SELECT COUNT(*) FROM " + TABLE_CONSUMERS +
+                    " WHERE " + COL_CONSUMER_NAME + "=?", new String[]{consumer}) > 0 ? 1 : 0;
+            if (rows > 0) {
+                db.execSQL(SQL_ACKNOWLEDGE, new Object[]{sequence, consumer});
+                db.execSQL(SQL_PRUNE);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        Metrics.record("changeLog.acknowledge", start, rows);
+        return rows > 0;
+    }
+
+    /**
+     * Stop keeping entries for a consumer
+     */
+    public void unregister(String consumer) {
+        SQLiteDatabase db = database.get();
+        db.beginTransactionNonExclusive();
+        try {
+            db.delete(TABLE_CONSUMERS, COL_CONSUMER_NAME + "=?", new String[]{consumer});
+            db.execSQL(SQL_PRUNE);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Delete entries every registered consumer has acknowledged
+     * Acknowledging prunes already; this catches up logs nobody reads
+     *
+     * @return Number of entries deleted
+     */
+    public int prune() {
+        long start = Metrics.start();
+        SQLiteDatabase db = database.get();
+        int rows;
+        db.beginTransactionNonExclusive();
+        try {
+            db.execSQL(SQL_PRUNE);
+            rows = (int) DatabaseUtils.longForQuery(db, "SELECT changes()", null);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        Metrics.record("changeLog.prune", start, rows);
+        return rows;
+    }
+}
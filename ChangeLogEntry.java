@@ -0,0 +1,45 @@
+package com.finance.manager;
+
+/**
+ * One row of a ChangeLog: which entity was inserted, updated or deleted,
+ * and in what order. Read the entity itself for its current values
+ */
+public class ChangeLogEntry {
+    private final long sequence;
+    private final String userEmail;
+    private final String entity;
+    private final long entityId;
+    private final String operation;
+    private final long changedAt;
+
+    public ChangeLogEntry(long sequence, String userEmail, String entity, long entityId,
+                          String operation, long changedAt) {
+        this.sequence = sequence;
+        this.userEmail = userEmail;
+        this.entity = entity;
+        this.entityId = entityId;
+        this.operation = operation;
+        this.changedAt = changedAt;
+    }
+
+    public long getSequence() { return sequence; }
+
+    public String getUserEmail() { return userEmail; }
+
+    /**
+     * One of the ChangeLog.ENTITY_* constants
+     */
+    public String getEntity() { return entity; }
+
+    /**
+     * Row id of the entity; 0 for users, who are identified by email
+     */
+    public long getEntityId() { return entityId; }
+
+    /**
+     * One of the ChangeLog.OP_* constants
+     */
+    public String getOperation() { return operation; }
+
+    public long getChangedAt() { return changedAt; }
+}
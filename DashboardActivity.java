@@ -22,6 +22,7 @@ public class DashboardActivity extends AppCompatActivity
 
     private String userEmail;
     private DatabaseHelper databaseHelper;
+    private PreferenceManager preferenceManager;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -30,16 +31,46 @@ public class DashboardActivity extends AppCompatActivity
 
         userEmail = getIntent().getStringExtra("userEmail");
         databaseHelper = DatabaseHelper.getInstance(this);
+        preferenceManager = PreferenceManager.getInstance(this);
 
         initializeViews();
         setupNavigationDrawer();
         updateNavHeader();
 
-        // Load Home fragment by default
-        if (savedInstanceState == null) {
-            loadFragment(new HomeFragment(), "Home");
-            navigationView.setCheckedItem(R.id.nav_home);
+        // Screens query the ledger on the main thread, so none is shown until
+        // openUser() has opened it (splitting legacy files on upgrade) and caught it up
+        if (databaseHelper.isUserOpen(userEmail)) {
+            if (savedInstanceState == null) {
+                showHome();
+            }
+        } else {
+            Fragment restored = getSupportFragmentManager().findFragmentById(R.id.fragment_container);
+            if (restored != null) {
+                // Restored after the process was killed; its queries would run before openUser()
+                getSupportFragmentManager().beginTransaction().remove(restored).commitNow();
+            }
+            int archiveHorizonMonths = preferenceManager.getArchiveHorizonMonths();
+            AppExecutors.getInstance().diskIO().execute(() -> {
+                databaseHelper.openUser(userEmail, archiveHorizonMonths);
+                AppExecutors.getInstance().mainThread().execute(() -> {
+                    if (!isFinishing() && !isDestroyed()) {
+                        showHome();
+                    }
+                });
+            });
         }
+        CategorySuggester.getInstance(this).prepare(userEmail);
+        DescriptionCompleter.getInstance(this).prepare(userEmail);
+        SpendingForecaster.getInstance(this).prepare(userEmail);
+        AnomalyDetector.getInstance(this).prepare(userEmail);
+        revalidateUser();
+
+        StartupTracer.reportFirstFrame(this);
+    }
+
+    private void showHome() {
+        loadFragment(new HomeFragment(), "Home");
+        navigationView.setCheckedItem(R.id.nav_home);
     }
 
     private void initializeViews() {
@@ -69,22 +100,61 @@ public class DashboardActivity extends AppCompatActivity
         navigationView.setNavigationItemSelectedListener(this);
     }
 
+    /**
+     * Render the nav header from the cached session profile when available
+     * so the first frame needs no database lookup
+     */
     private void updateNavHeader() {
-        User user = databaseHelper.getUserInfo(userEmail);
-        if (user != null) {
-            TextView nameText = navigationView.getHeaderView(0).findViewById(R.id.userNameText);
-            TextView emailText = navigationView.getHeaderView(0).findViewById(R.id.userEmailText);
-            TextView initialsText = navigationView.getHeaderView(0).findViewById(R.id.userInitialsText);
-
-            nameText.setText(user.getFullName());
-            emailText.setText(user.getEmail());
-
-            // Set user initials
-            String initials = getUserInitials(user.getFirstName(), user.getLastName());
-            initialsText.setText(initials);
+        User cachedUser = preferenceManager.getSessionUser();
+        if (cachedUser != null && cachedUser.getEmail().equals(userEmail)) {
+            bindNavHeader(cachedUser);
         }
     }
 
+    private void bindNavHeader(User user) {
+        TextView nameText = navigationView.getHeaderView(0).findViewById(R.id.userNameText);
+        TextView emailText = navigationView.getHeaderView(0).findViewById(R.id.userEmailText);
+        TextView initialsText = navigationView.getHeaderView(0).findViewById(R.id.userInitialsText);
+
+        nameText.setText(user.getFullName());
+        emailText.setText(user.getEmail());
+
+        // Set user initials
+        String initials = getUserInitials(user.getFirstName(), user.getLastName());
+        initialsText.setText(initials);
+    }
+
+    /**
+     * Load the profile from the database in background
+     * For remembered sessions this also checks the token is still valid
+     * and refreshes the cached profile
+     */
+    private void revalidateUser() {
+        String token = preferenceManager.getSessionToken();
+
+        AppExecutors.getInstance().diskIO().execute(() -> {
+            boolean sessionValid = token == null || userEmail.equals(databaseHelper.getSessionUser(token));
+            User user = sessionValid ? databaseHelper.getUserInfo(userEmail) : null;
+
+            if (token != null && user != null) {
+                preferenceManager.updateSessionUser(user);
+            }
+
+            runOnUiThread(() -> {
+                if (isFinishing()) return;
+
+                if (user != null) {
+                    bindNavHeader(user);
+                } else if (token != null) {
+                    // Session revoked or user gone - back to login
+                    preferenceManager.clearSession();
+                    AppExecutors.getInstance().diskIO().execute(() -> databaseHelper.closeUser(userEmail));
+                    openLogin();
+                }
+            });
+        });
+    }
+
     /**
      * Get user initials from first and last name
      */
@@ -132,6 +202,11 @@ public class DashboardActivity extends AppCompatActivity
             return true;
         }
 
+        if (fragment != null && !databaseHelper.isUserOpen(userEmail)) {
+            // Home opens by itself once the ledger is ready
+            drawerLayout.closeDrawer(GravityCompat.START);
+            return false;
+        }
         if (fragment != null) {
             loadFragment(fragment, title);
         }
@@ -165,15 +240,27 @@ public class DashboardActivity extends AppCompatActivity
                 .setTitle("Logout")
                 .setMessage("Are you sure you want to logout?")
                 .setPositiveButton("Yes", (dialog, which) -> {
-                    Intent intent = new Intent(DashboardActivity.this, MainActivity.class);
-                    intent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TASK);
-                    startActivity(intent);
-                    finish();
+                    String token = preferenceManager.getSessionToken();
+                    preferenceManager.clearSession();
+                    AppExecutors.getInstance().diskIO().execute(() -> {
+                        if (token != null) {
+                            databaseHelper.deleteSession(token);
+                        }
+                        databaseHelper.closeUser(userEmail);
+                    });
+                    openLogin();
                 })
                 .setNegativeButton("Cancel", null)
                 .show();
     }
 
+    private void openLogin() {
+        Intent intent = new Intent(DashboardActivity.this, MainActivity.class);
+        intent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TASK);
+        startActivity(intent);
+        finish();
+    }
+
     @Override
     public void onBackPressed() {
         if (drawerLayout.isDrawerOpen(GravityCompat.START)) {
@@ -0,0 +1,509 @@
+package com.finance.manager;
+
+import android.content.Context;
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * DataBenchmark - Runs every DatabaseHelper query and write path, the
+ * TransactionOps computations and the export formats against synthetic datasets
+ * Results are logged one JSON object per line (tag "DataBenchmark") and
+ * written as a JSON array to the app's external files directory, so runs
+ * can be diffed across schema or query changes
+ */
+public final class DataBenchmark {
+
+    private static final String TAG = "DataBenchmark";
+
+    private static final int WARMUP_ITERATIONS = 2;
+    private static final int ITERATIONS = 10;
+
+    // Password checks are deliberately slow; a few samples are enough
+    private static final int LOGIN_ITERATIONS = 3;
+
+    // Full-ledger exports and restores write the whole dataset each time
+    private static final int EXPORT_ITERATIONS = 3;
+
+    // Rows picked for the bulk edit benchmarks
+    private static final int BULK_SELECTION = 200;
+
+    /**
+     * Receives progress lines while the benchmark runs
+     */
+    public interface Progress {
+        void onProgress(String line);
+    }
+
+    private interface Operation {
+        int run();
+    }
+
+    private final Context context;
+    private final DatabaseHelper databaseHelper;
+    private final JSONArray results = new JSONArray();
+
+    public DataBenchmark(Context context) {
+        this.context = context.getApplicationContext();
+        this.databaseHelper = DatabaseHelper.getInstance(context);
+    }
+
+    /**
+     * Run the suite at each scale, generating missing datasets first
+     * Takes minutes at large scales - call from a background thread
+     *
+     * @param scales Transaction counts, e.g. SyntheticDataGenerator.SCALE_10K
+     * @param regenerate Re-create datasets even if they already exist
+     * @return Results file, or null if it could not be written
+     */
+    public File run(int[] scales, boolean regenerate, Progress progress) {
+        for (int rows : scales) {
+            String email = SyntheticDataGenerator.userEmail(rows);
+
+            if (regenerate || !databaseHelper.isEmailExists(email)) {
+                progress.onProgress("Generating " + rows + " rows...");
+                long start = System.nanoTime();
+                boolean generated = SyntheticDataGenerator.generate(databaseHelper, rows,
+                        SyntheticDataGenerator.DEFAULT_SEED, SyntheticDataGenerator.DEFAULT_YEARS,
+                        startOfToday());
+                if (!generated) {
+                    progress.onProgress("Failed to generate " + rows + " rows");
+                    continue;
+                }
+                addResult(rows, "generate", 1, new long[]{System.nanoTime() - start}, rows);
+            }
+
+            progress.onProgress("Benchmarking " + rows + " rows...");
+            runQueries(rows, email);
+            runWrites(rows, email);
+            runComputations(rows, email);
+            runExports(rows, email);
+            runSync(rows, email);
+
+            // Each dataset is its own ledger file; don't keep them all open
+            databaseHelper.closeUser(email);
+        }
+        return writeResults();
+    }
+
+    // ==================== SUITES ====================
+
+    private void runQueries(int rows, String email) {
+        Calendar calendar = Calendar.getInstance();
+        int month = calendar.get(Calendar.MONTH) + 1;
+        int year = calendar.get(Calendar.YEAR);
+        long now = System.currentTimeMillis();
+        calendar.add(Calendar.MONTH, -1);
+        long monthAgo = calendar.getTimeInMillis();
+        calendar.add(Calendar.MONTH, -11);
+        long yearAgo = calendar.getTimeInMillis();
+
+        measure(rows, "db.getAllTransactions", () -> databaseHelper.getAllTransactions(email, "expense").size());
+        measure(rows, "db.getTransactionsByPeriod", () ->
+                databaseHelper.getTransactionsByPeriod(email, "expense", monthAgo, now).size());
+        measure(rows, "db.getTotalAmount", () -> {
+            databaseHelper.getTotalAmount(email, "expense", yearAgo, now);
+            return 1;
+        });
+        measure(rows, "db.getCategories", () -> databaseHelper.getCategories(email, "expense").size());
+        measure(rows, "db.getBudget", () -> databaseHelper.getBudget(email, "Food", month, year) != null ? 1 : 0);
+        measure(rows, "db.getBudgetsWithSpent", () ->
+                databaseHelper.getBudgetsWithSpent(email, month, year, new HashMap<>()).size());
+        measure(rows, "db.getBudgetHistory", () -> databaseHelper.getBudgetHistory(email, month, year, 12).size());
+        measure(rows, "db.getEarliestBudgetPeriod", () -> {
+            databaseHelper.getEarliestBudgetPeriod(email);
+            return 1;
+        });
+        measure(rows, "db.getSpentInCategory", () -> {
+            databaseHelper.getSpentInCategory(email, "Food", month, year);
+            return 1;
+        });
+        measure(rows, "db.getUserInfo", () -> databaseHelper.getUserInfo(email) != null ? 1 : 0);
+        measure(rows, "db.isEmailExists", () -> databaseHelper.isEmailExists(email) ? 1 : 0);
+        measure(rows, "db.getRecurringRules", () -> databaseHelper.getRecurringRules(email).size());
+        measure(rows, "db.generateDueRecurringTransactions", () ->
+                Math.max(0, databaseHelper.generateDueRecurringTransactions(email, now)));
+        measure(rows, "db.checkUserLogin", LOGIN_ITERATIONS, () -> databaseHelper.checkUserLogin(email, "benchmark") ? 1 : 0);
+    }
+
+    private void runWrites(int rows, String email) {
+        long now = System.currentTimeMillis();
+
+        // Each write is undone by the next, so the dataset is unchanged afterwards
+        measure(rows, "db.addTransaction+update+delete", () -> {
+            long id = databaseHelper.addTransaction(email, 12.5, now, "Food", "Benchmark", "expense");
+            databaseHelper.updateTransaction(email, (int) id, 13.5, now, "Food", "Benchmark");
+            databaseHelper.deleteTransaction(email, (int) id);
+            return 3;
+        });
+        measure(rows, "db.addBudget+update+delete", () -> {
+            long id = databaseHelper.addBudget(email, "Benchmark", 100, 50, 1, 9999);
+            databaseHelper.updateBudget(email, (int) id, 200, 60);
+            databaseHelper.deleteBudget(email, (int) id);
+            return 3;
+        });
+        measure(rows, "db.addCategory+delete", () -> {
+            databaseHelper.addCategory(email, "Benchmark", "expense");
+            databaseHelper.deleteCategory(email, "Benchmark", "expense");
+            return 2;
+        });
+        measure(rows, "db.createSession+delete", () -> {
+            String token = databaseHelper.createSession(email, now + 60_000);
+            databaseHelper.deleteSession(token);
+            return 2;
+        });
+        measure(rows, "db.addRecurringRule+delete", () -> {
+            RecurringRule rule = new RecurringRule(email, 10, "Bills", "Benchmark", "expense",
+                    RecurringRule.FREQUENCY_MONTHLY, Long.MAX_VALUE / 2);
+            long id = databaseHelper.addRecurringRule(rule);
+            databaseHelper.deleteRecurringRule(email, (int) id);
+            return 2;
+        });
+        measure(rows, "db.updateUserProfile", () -> databaseHelper.updateUserProfile(email, "Synthetic", "User " + rows) ? 1 : 0);
+
+        // A screenful of multi-selected rows, one write per row against one set-based write
+        List<Transaction> all = databaseHelper.getAllTransactions(email, "expense");
+        List<Transaction> selection = new ArrayList<>(all.subList(0, Math.min(BULK_SELECTION, all.size())));
+        measure(rows, "db.deleteTransaction+restore x" + selection.size(), () -> {
+            for (Transaction transaction : selection) {
+                databaseHelper.deleteTransaction(email, transaction.getId());
+            }
+            for (Transaction transaction : selection) {
+                databaseHelper.restoreTransaction(email, transaction.getId());
+            }
+            return selection.size() * 2;
+        });
+        measure(rows, "db.deleteTransactions+restore", () ->
+                databaseHelper.deleteTransactions(email, selection) + databaseHelper.restoreTransactions(email, selection));
+    }
+
+    private void runComputations(int rows, String email) {
+        List<Transaction> expenses = databaseHelper.getAllTransactions(email, "expense");
+        List<Transaction> scratch = new ArrayList<>(expenses.size());
+
+        measure(rows, "ops.filter", () -> {
+            scratch.clear();
+            TransactionOps.filter(expenses, "groc", "All", scratch);
+            return scratch.size();
+        });
+        measure(rows, "ops.sort", () -> {
+            scratch.clear();
+            scratch.addAll(expenses);
+            TransactionOps.sort(scratch, TransactionOps.SORT_HIGHEST_AMOUNT);
+            return scratch.size();
+        });
+        measure(rows, "ops.sum", () -> {
+            TransactionOps.sum(expenses);
+            return expenses.size();
+        });
+        measure(rows, "ops.sumByCategory", () -> TransactionOps.sumByCategory(expenses).size());
+        measure(rows, "ops.formatCurrency", () -> {
+            for (Transaction transaction : expenses) {
+                TransactionOps.formatCurrency(transaction.getAmount());
+            }
+            return expenses.size();
+        });
+
+        // The first warmup scans history and saves the index; the rest read the file
+        CategorySuggester suggester = CategorySuggester.getInstance(context);
+        measure(rows, "suggest.loadIndex", EXPORT_ITERATIONS, () -> {
+            suggester.unload();
+            suggester.load(email);
+            return 1;
+        });
+        measure(rows, "suggest.category", () -> {
+            suggester.suggest(email, "expense", "Coffee with", 4.5);
+            return 1;
+        });
+
+        DescriptionCompleter completer = DescriptionCompleter.getInstance(context);
+        measure(rows, "complete.buildTrie", EXPORT_ITERATIONS, () -> {
+            completer.onTransactionsReloaded(email);
+            completer.build(email);
+            return rows;
+        });
+        measure(rows, "complete.description", () ->
+                completer.complete(email, "expense", "c", DescriptionCompleter.MAX_COMPLETIONS).size());
+
+        SpendingForecaster forecaster = SpendingForecaster.getInstance(context);
+        String category = expenses.isEmpty() ? "Food" : expenses.get(0).getCategory();
+        measure(rows, "forecast.seed", EXPORT_ITERATIONS, () -> {
+            forecaster.onTransactionsReloaded(email);
+            forecaster.seed(email);
+            return 1;
+        });
+        measure(rows, "forecast.project", () -> {
+            forecaster.getProjectedTotal(email, category, 0);
+            return 1;
+        });
+
+        // The first warmup backfills from history and saves; the rest read the file
+        AnomalyDetector detector = AnomalyDetector.getInstance(context);
+        measure(rows, "anomaly.loadStats", EXPORT_ITERATIONS, () -> {
+            detector.unload();
+            detector.load(email);
+            return 1;
+        });
+        measure(rows, "anomaly.check", () -> {
+            detector.check(email, category, 250);
+            return 1;
+        });
+    }
+
+    /**
+     * Binary snapshots against a raw database file copy and a CSV export
+     * Output sizes are recorded alongside the timings
+     */
+    private void runExports(int rows, String email) {
+        File directory = context.getCacheDir();
+        File raw = new File(directory, "benchmark.snapshot");
+        File deflated = new File(directory, "benchmark-deflate.snapshot");
+        File csv = new File(directory, "benchmark.csv");
+        String restoreEmail = "restore-" + email;
+
+        measure(rows, "export.snapshot", EXPORT_ITERATIONS, () -> exportSnapshot(email, raw, false));
+        measure(rows, "export.snapshotDeflate", EXPORT_ITERATIONS, () -> exportSnapshot(email, deflated, true));
+        measure(rows, "export.csv", EXPORT_ITERATIONS, () -> exportCsv(email, csv));
+        measure(rows, "export.fileCopy", EXPORT_ITERATIONS, () -> {
+            File backup = DatabaseBackup.backup(context);
+            if (backup == null) {
+                throw new IllegalStateException("Backup failed");
+            }
+            long bytes = directorySize(backup);
+            deleteRecursively(backup);
+            addSize(rows, "export.fileCopy", bytes);
+            return 1;
+        });
+        addSize(rows, "export.snapshot", raw.length());
+        addSize(rows, "export.snapshotDeflate", deflated.length());
+        addSize(rows, "export.csv", csv.length());
+
+        measure(rows, "restore.snapshotDeflate", EXPORT_ITERATIONS, () -> {
+            try (InputStream in = new BufferedInputStream(new FileInputStream(deflated))) {
+                if (!SnapshotReader.restore(databaseHelper, restoreEmail, in)) {
+                    throw new IllegalStateException("Restore rolled back");
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return rows;
+        });
+        databaseHelper.deleteUserData(restoreEmail);
+
+        raw.delete();
+        deflated.delete();
+        csv.delete();
+    }
+
+    /**
+     * Two ledgers syncing through MockSyncServer: the dataset uploads, a
+     * second user downloads it, then a few new rows travel across.
+     * Each sync runs once; its round trips and bytes are recorded with the timing
+     */
+    private void runSync(int rows, String email) {
+        String replicaEmail = "sync-" + email;
+        MockSyncServer server = new MockSyncServer();
+        SyncEngine origin = new SyncEngine(databaseHelper, server, email, "benchmark");
+        SyncEngine replica = new SyncEngine(databaseHelper, server, replicaEmail, "benchmark");
+
+        databaseHelper.deleteUserData(replicaEmail);
+        if (!databaseHelper.addUser(replicaEmail, "Sync", "Replica", "benchmark")) {
+            Log.e(TAG, "Could not create the sync replica at scale " + rows);
+            return;
+        }
+
+        List<Long> added = new ArrayList<>();
+        try {
+            measureSync(rows, "sync.initialUpload", server, origin);
+            measureSync(rows, "sync.initialDownload", server, replica);
+
+            long now = System.currentTimeMillis();
+            for (int i = 0; i < 10; i++) {
+                added.add(databaseHelper.addTransaction(email, 10 + i, now, "Food", "Sync " + i, "expense"));
+            }
+            measureSync(rows, "sync.deltaPush", server, origin);
+            measureSync(rows, "sync.deltaPull", server, replica);
+            measureSync(rows, "sync.idle", server, origin);
+        } catch (IOException e) {
+            Log.e(TAG, "Sync failed at scale " + rows, e);
+        } finally {
+            // Leave the dataset as it was
+            for (long id : added) {
+                databaseHelper.deleteTransaction(email, (int) id);
+            }
+            origin.disconnect();
+            databaseHelper.deleteUserData(replicaEmail);
+        }
+    }
+
+    private void measureSync(int rows, String name, MockSyncServer server, SyncEngine engine) throws IOException {
+        server.resetCounters();
+        long start = System.nanoTime();
+        SyncEngine.Result result = engine.sync();
+        addResult(rows, name, 1, new long[]{System.nanoTime() - start}, result.pushed + result.pulled);
+        try {
+            JSONObject cost = new JSONObject()
+                    .put("scale", rows)
+                    .put("operation", name + ".transfer")
+                    .put("roundTrips", server.getRoundTrips())
+                    .put("bytesUp", server.getBytesReceived())
+                    .put("bytesDown", server.getBytesSent());
+            results.put(cost);
+            Log.i(TAG, cost.toString());
+        } catch (JSONException e) {
+            Log.e(TAG, "Failed to record " + name, e);
+        }
+    }
+
+    private int exportSnapshot(String email, File file, boolean compress) {
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file))) {
+            return SnapshotWriter.export(databaseHelper, email, out, compress);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private int exportCsv(String email, File file) {
+        try (Writer writer = new BufferedWriter(new FileWriter(file))) {
+            writer.write("date,amount,category,type,description\n");
+            return databaseHelper.forEachTransaction(email, transaction -> {
+                try {
+                    writer.write(transaction.getDate() + "," + transaction.getAmount() + "," +
+                            transaction.getCategory() + "," + transaction.getType() + ",\"" +
+                            String.valueOf(transaction.getDescription()).replace("\"", "\"\"") + "\"\n");
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static long directorySize(File directory) {
+        long size = 0;
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                size += file.length();
+            }
+        }
+        return size;
+    }
+
+    private static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+
+    // ==================== MEASUREMENT ====================
+
+    private void measure(int scale, String name, Operation operation) {
+        measure(scale, name, ITERATIONS, operation);
+    }
+
+    private void measure(int scale, String name, int iterations, Operation operation) {
+        try {
+            for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+                operation.run();
+            }
+
+            long[] samples = new long[iterations];
+            int rows = 0;
+            for (int i = 0; i < iterations; i++) {
+                long start = System.nanoTime();
+                rows = operation.run();
+                samples[i] = System.nanoTime() - start;
+            }
+            addResult(scale, name, iterations, samples, rows);
+        } catch (RuntimeException e) {
+            Log.e(TAG, name + " failed at scale " + scale, e);
+        }
+    }
+
+    private void addResult(int scale, String name, int iterations, long[] samples, int rows) {
+        Arrays.sort(samples);
+        try {
+            JSONObject result = new JSONObject()
+                    .put("scale", scale)
+                    .put("operation", name)
+                    .put("iterations", iterations)
+                    .put("rows", rows)
+                    .put("minMs", samples[0] / 1e6)
+                    .put("p50Ms", samples[samples.length / 2] / 1e6)
+                    .put("p95Ms", samples[Math.min(samples.length - 1, (int) Math.ceil(samples.length * 0.95) - 1)] / 1e6)
+                    .put("maxMs", samples[samples.length - 1] / 1e6);
+            results.put(result);
+            Log.i(TAG, result.toString());
+        } catch (JSONException e) {
+            Log.e(TAG, "Failed to record " + name, e);
+        }
+    }
+
+    private void addSize(int scale, String name, long bytes) {
+        try {
+            JSONObject result = new JSONObject()
+                    .put("scale", scale)
+                    .put("operation", name + ".bytes")
+                    .put("bytes", bytes);
+            results.put(result);
+            Log.i(TAG, result.toString());
+        } catch (JSONException e) {
+            Log.e(TAG, "Failed to record " + name, e);
+        }
+    }
+
+    private File writeResults() {
+        File directory = context.getExternalFilesDir(null);
+        if (directory == null) {
+            directory = context.getFilesDir();
+        }
+
+        String timestamp = new SimpleDateFormat("yyyyMMdd-HHmmss", Locale.US).format(new Date());
+        File file = new File(directory, "benchmark-" + timestamp + ".json");
+        try (FileWriter writer = new FileWriter(file)) {
+            writer.write(results.toString(2));
+            return file;
+        } catch (IOException | JSONException e) {
+            Log.e(TAG, "Failed to write benchmark results", e);
+            return null;
+        }
+    }
+
+    private static long startOfToday() {
+        Calendar calendar = Calendar.getInstance();
+        calendar.set(Calendar.HOUR_OF_DAY, 0);
+        calendar.set(Calendar.MINUTE, 0);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        return calendar.getTimeInMillis();
+    }
+}
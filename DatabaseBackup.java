@@ -0,0 +1,221 @@
+package com.finance.manager;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * DatabaseBackup - Local file-level backups of the database files
+ * Backups copy the files with FileChannel.transferTo (kernel-side copy, no
+ * per-row reads) while DatabaseHelper holds writes off, so a backup of a
+ * few hundred MB takes seconds. Each backup is a directory under
+ * files/backups named by its timestamp
+ */
+public final class DatabaseBackup {
+
+    private static final String TAG = "DatabaseBackup";
+
+    private static final String BACKUP_DIRECTORY = "backups";
+    private static final String STAGING_SUFFIX = ".tmp";
+    private static final int MAX_BACKUPS = 5;
+
+    private DatabaseBackup() {
+        // Static utility
+    }
+
+    /**
+     * Copy the database files to a new backup
+     * Call from a background thread
+     *
+     * @return Backup directory, or null if the backup failed
+     */
+    public static File backup(Context context) {
+        long start = Metrics.start();
+        DatabaseHelper databaseHelper = DatabaseHelper.getInstance(context);
+        File root = new File(context.getFilesDir(), BACKUP_DIRECTORY);
+        String name = new SimpleDateFormat("yyyyMMdd-HHmmss", Locale.US).format(new Date());
+        File staging = new File(root, name + STAGING_SUFFIX);
+        File target = new File(root, name);
+
+        // Written under a temporary name, so a half-written backup is never listed
+        deleteRecursively(staging);
+        boolean[] copied = new boolean[1];
+        databaseHelper.runWithWritesBlocked(() -> {
+            try {
+                copyFiles(databaseHelper.getDatabaseFiles(), staging);
+                copied[0] = true;
+            } catch (IOException e) {
+                Log.e(TAG, "Backup failed", e);
+            }
+        });
+
+        if (!copied[0] || !staging.renameTo(target)) {
+            deleteRecursively(staging);
+            Metrics.record("backup.create", start, 0);
+            return null;
+        }
+
+        PreferenceManager.getInstance(context).saveLastBackupTime(System.currentTimeMillis());
+        pruneOldBackups(root);
+        Metrics.record("backup.create", start, 1);
+        return target;
+    }
+
+    /**
+     * Completed backups, newest first
+     */
+    public static List<File> listBackups(Context context) {
+        File[] directories = new File(context.getFilesDir(), BACKUP_DIRECTORY).listFiles(
+                file -> file.isDirectory() && !file.getName().endsWith(STAGING_SUFFIX));
+        if (directories == null) {
+            return new ArrayList<>();
+        }
+
+        // Timestamp names sort chronologically
+        Arrays.sort(directories, (a, b) -> b.getName().compareTo(a.getName()));
+        return new ArrayList<>(Arrays.asList(directories));
+    }
+
+    /**
+     * Replace the current data with a backup
+     * The backup is copied next to the live files and integrity-checked there
+     * first; the live files are only touched once the copy is known good.
+     * Call from a background thread
+     *
+     * @param backup Directory returned by backup() or listBackups()
+     * @return true if the backup was verified and swapped in
+     */
+    public static boolean restore(Context context, File backup) {
+        long start = Metrics.start();
+        DatabaseHelper databaseHelper = DatabaseHelper.getInstance(context);
+        File databaseDirectory = context.getDatabasePath(databaseHelper.getDatabaseName()).getParentFile();
+        File staging = new File(databaseDirectory, "restore" + STAGING_SUFFIX);
+
+        deleteRecursively(staging);
+        boolean restored = false;
+        try {
+            File[] files = backup.listFiles();
+            if (files == null) {
+                throw new IOException("Not a backup: " + backup);
+            }
+            copyFiles(Arrays.asList(files), staging);
+
+            // The user directory must be there; each ledger and archive file is checked too
+            File main = new File(staging, databaseHelper.getDatabaseName());
+            boolean verified = verify(main, DatabaseHelper.getMaxSchemaVersion(main.getName()));
+            File[] databases = staging.listFiles(file -> file.getName().endsWith(".db") && !file.equals(main));
+            for (int i = 0; verified && databases != null && i < databases.length; i++) {
+                verified = verify(databases[i], DatabaseHelper.getMaxSchemaVersion(databases[i].getName()));
+            }
+            if (verified) {
+                restored = databaseHelper.replaceDatabaseFiles(staging);
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Restore failed", e);
+        } finally {
+            deleteRecursively(staging);
+        }
+        Metrics.record("backup.restore", start, restored ? 1 : 0);
+        return restored;
+    }
+
+    /**
+     * Open a staged file, replaying its WAL, and run a full integrity check
+     * Files from a newer app version are rejected; the schema can't be downgraded
+     */
+    private static boolean verify(File file, int maxVersion) {
+        if (!file.exists()) {
+            Log.e(TAG, "Missing " + file.getName());
+            return false;
+        }
+
+        SQLiteDatabase db = null;
+        try {
+            db = SQLiteDatabase.openDatabase(file.getPath(), null, SQLiteDatabase.OPEN_READWRITE);
+            if (db.getVersion() > maxVersion) {
+                Log.e(TAG, file.getName() + " has schema version " + db.getVersion());
+                return false;
+            }
+
+            Cursor cursor = db.rawQuery("PRAGMA integrity_check", null);
+            String result = cursor.moveToFirst() ? cursor.getString(0) : null;
+            cursor.close();
+            if (!"ok".equalsIgnoreCase(result)) {
+                Log.e(TAG, file.getName() + " failed integrity_check: " + result);
+                return false;
+            }
+            return true;
+        } catch (SQLiteException e) {
+            Log.e(TAG, "Cannot open " + file.getName(), e);
+            return false;
+        } finally {
+            // Closing checkpoints the replayed WAL into the file
+            if (db != null) {
+                db.close();
+            }
+        }
+    }
+
+    // ==================== FILES ====================
+
+    private static void copyFiles(List<File> files, File directory) throws IOException {
+        if (!directory.mkdirs() && !directory.isDirectory()) {
+            throw new IOException("Cannot create " + directory);
+        }
+        for (File file : files) {
+            copyFile(file, new File(directory, file.getName()));
+        }
+    }
+
+    private static void copyFile(File source, File target) throws IOException {
+        try (FileInputStream in = new FileInputStream(source);
+             FileOutputStream out = new FileOutputStream(target)) {
+            FileChannel from = in.getChannel();
+            FileChannel to = out.getChannel();
+
+            // transferTo may copy less than asked for
+            long size = from.size();
+            long position = 0;
+            while (position < size) {
+                position += from.transferTo(position, size - position, to);
+            }
+            to.force(true);
+        }
+    }
+
+    private static void pruneOldBackups(File root) {
+        File[] directories = root.listFiles(file -> file.isDirectory() && !file.getName().endsWith(STAGING_SUFFIX));
+        if (directories == null || directories.length <= MAX_BACKUPS) {
+            return;
+        }
+
+        Arrays.sort(directories, (a, b) -> b.getName().compareTo(a.getName()));
+        for (int i = MAX_BACKUPS; i < directories.length; i++) {
+            deleteRecursively(directories[i]);
+        }
+    }
+
+    private static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+}
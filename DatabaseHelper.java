@@ -3,25 +3,59 @@ package com.finance.manager;
 import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.util.Log;
 
+import java.io.File;
+import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 /**
  * DatabaseHelper - Singleton pattern implementation
  * Thread-safe singleton with proper synchronization
+ *
+ * FinanceManager.db is the user directory (credentials and sessions).
+ * Each user's transactions, budgets, categories and recurring rules live
+ * in their own ledger file, opened on first use after login and closed on logout
  */
 public class DatabaseHelper extends SQLiteOpenHelper {
 
+    private static final String TAG = "DatabaseHelper";
+
     // Volatile ensures visibility of changes across threads
     private static volatile DatabaseHelper instance;
 
     private static final String DATABASE_NAME = "FinanceManager.db";
-    private static final int DATABASE_VERSION = 1;
+    private static final int DATABASE_VERSION = 7;
+
+    // Per-user ledger files: FinanceManager-<key>.db and FinanceManager-<key>-archive.db
+    private static final String LEDGER_PREFIX = "FinanceManager-";
+    private static final String LEDGER_SUFFIX = ".db";
+    private static final String ARCHIVE_SUFFIX = "-archive.db";
+
+    // Names replaceDatabaseFiles() gives incoming and outgoing files mid-swap
+    private static final String INCOMING_SUFFIX = ".restoring";
+    private static final String REPLACED_SUFFIX = ".replaced";
+    private static final int LEDGER_VERSION = 4;
 
     // Users Table
     private static final String TABLE_USERS = "users";
@@ -39,6 +73,13 @@ public class DatabaseHelper extends SQLiteOpenHelper {
     private static final String COL_CATEGORY = "category";
     private static final String COL_DESCRIPTION = "description";
     private static final String COL_TYPE = "type";
+    private static final String COL_RECURRING_RULE_ID = "recurringRuleId";
+    private static final String COL_EPOCH_DAY = "epochDay";
+    private static final String COL_YEAR_MONTH = "yearMonth";
+    private static final String COL_DELETED_AT = "deletedAt";
+
+    // Deleted rows stay as tombstones until purged; every read filters them out
+    private static final String NOT_DELETED = COL_DELETED_AT + " IS NULL";
 
     // Categories Table
     private static final String TABLE_CATEGORIES = "categories";
@@ -54,12 +95,154 @@ public class DatabaseHelper extends SQLiteOpenHelper {
     private static final String COL_MONTH = "month";
     private static final String COL_YEAR = "year";
 
+    // Sessions Table
+    private static final String TABLE_SESSIONS = "sessions";
+    private static final String COL_SESSION_TOKEN = "token";
+    private static final String COL_SESSION_EXPIRES_AT = "expiresAt";
+
+    // Recurring Rules Table
+    private static final String TABLE_RECURRING_RULES = "recurring_rules";
+    private static final String COL_RULE_ID = "id";
+    private static final String COL_FREQUENCY = "frequency";
+    private static final String COL_START_DATE = "startDate";
+    private static final String COL_END_DATE = "endDate";
+    private static final String COL_NEXT_INDEX = "nextIndex";
+    private static final String COL_NEXT_DUE_DATE = "nextDueDate";
+
+    // Archive Rollups Table - monthly totals of rows moved to the archive file
+    private static final String TABLE_ARCHIVE_ROLLUPS = "archive_rollups";
+    private static final String COL_TOTAL = "total";
+    private static final String COL_COUNT = "count";
+
+    // Metadata Table - single values that must commit together with data writes
+    private static final String TABLE_METADATA = "metadata";
+    private static final String COL_META_KEY = "name";
+    private static final String COL_META_VALUE = "value";
+    private static final String META_ARCHIVED_BEFORE = "archivedBefore";
+    private static final String META_SPLIT_FROM_LEGACY = "splitFromLegacy";
+    private static final String META_SYNC_DEVICE_ID = "syncDeviceId";
+    private static final String META_SYNC_WATERMARK = "syncWatermark";
+    private static final String META_SYNC_UPLOADED = "syncUploaded";
+
+    // Sync Rows Table - cross-device id and last synced version of each local row
+    private static final String TABLE_SYNC_ROWS = "sync_rows";
+    private static final String COL_SYNC_ENTITY = "entity";
+    private static final String COL_LOCAL_ID = "localId";
+    private static final String COL_SYNC_ID = "syncId";
+    private static final String COL_SYNC_VERSION = "version";
+    private static final String COL_SYNC_DEVICE_ID = "deviceId";
+
+    // Tables that moved from FinanceManager.db into the ledger files in version 6
+    private static final String[] LEDGER_TABLES = {TABLE_TRANSACTIONS, TABLE_CATEGORIES, TABLE_BUDGETS,
+            TABLE_RECURRING_RULES, TABLE_ARCHIVE_ROLLUPS, TABLE_METADATA};
+
+    // Safety cap so a corrupt rule can't stall a launch; the rest catches up next run
+    private static final int MAX_OCCURRENCES_PER_RUN = 5000;
+
+    // Tombstones hard-deleted per purge transaction
+    private static final int PURGE_BATCH_SIZE = 500;
+
+    // Rows picked for a bulk edit, with their new dates for a date shift
+    // A temp table lives on the writing connection only and is never on disk
+    private static final String TABLE_SELECTION = "temp.bulk_selection";
+    private static final String IN_SELECTION = COL_TRANS_ID + " IN (SELECT " + COL_TRANS_ID + " FROM " + TABLE_SELECTION + ")";
+
+    // Compiled by UnitOfWork for batched writes
+    private static final String SQL_INSERT_USER = "INSERT INTO " + TABLE_USERS + " (" +
+            COL_EMAIL + ", " + COL_FIRST_NAME + ", " + COL_LAST_NAME + ", " + COL_PASSWORD +
+            ") VALUES (?, ?, ?, ?)";
+    private static final String SQL_INSERT_CATEGORY = "INSERT INTO " + TABLE_CATEGORIES + " (" +
+            COL_USER_EMAIL + ", " + COL_CAT_NAME + ", " + COL_CAT_TYPE + ") VALUES (?, ?, ?)";
+    private static final String SQL_UPDATE_PASSWORD = "UPDATE " + TABLE_USERS +
+            " SET " + COL_PASSWORD + "=? WHERE " + COL_EMAIL + "=?";
+    private static final String SQL_DELETE_USER_SESSIONS = "DELETE FROM " + TABLE_SESSIONS +
+            " WHERE " + COL_USER_EMAIL + "=?";
+    private static final String SQL_DELETE_SESSION = "DELETE FROM " + TABLE_SESSIONS +
+            " WHERE " + COL_SESSION_TOKEN + "=?";
+    private static final String SQL_DELETE_EXPIRED_SESSIONS = "DELETE FROM " + TABLE_SESSIONS +
+            " WHERE " + COL_SESSION_EXPIRES_AT + "<=?";
+    private static final String SQL_INSERT_RECURRING_OCCURRENCE = "INSERT OR IGNORE INTO " + TABLE_TRANSACTIONS + " (" +
+            COL_USER_EMAIL + ", " + COL_AMOUNT + ", " + COL_DATE + ", " + COL_CATEGORY + ", " +
+            COL_DESCRIPTION + ", " + COL_TYPE + ", " + COL_RECURRING_RULE_ID + ", " +
+            COL_EPOCH_DAY + ", " + COL_YEAR_MONTH + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String SQL_INSERT_TRANSACTION = "INSERT INTO " + TABLE_TRANSACTIONS + " (" +
+            COL_USER_EMAIL + ", " + COL_AMOUNT + ", " + COL_DATE + ", " + COL_CATEGORY + ", " +
+            COL_DESCRIPTION + ", " + COL_TYPE + ", " + COL_EPOCH_DAY + ", " + COL_YEAR_MONTH +
+            ") VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String SQL_SOFT_DELETE_TRANSACTION = "UPDATE " + TABLE_TRANSACTIONS +
+            " SET " + COL_DELETED_AT + "=? WHERE " + COL_TRANS_ID + "=? AND " + NOT_DELETED;
+    private static final String SQL_UNDELETE_TRANSACTION = "UPDATE " + TABLE_TRANSACTIONS +
+            " SET " + COL_DELETED_AT + "=NULL WHERE " + COL_TRANS_ID + "=? AND " + COL_DELETED_AT + " IS NOT NULL";
+    private static final String SQL_PURGE_DELETED_TRANSACTIONS = "DELETE FROM " + TABLE_TRANSACTIONS +
+            " WHERE " + COL_TRANS_ID + " IN (SELECT " + COL_TRANS_ID + " FROM " + TABLE_TRANSACTIONS +
+            " WHERE " + COL_DELETED_AT + "<? LIMIT ?)";
+    private static final String SQL_CREATE_SELECTION = "CREATE TEMP TABLE IF NOT EXISTS bulk_selection (" +
+            COL_TRANS_ID + " INTEGER PRIMARY KEY, " + COL_DATE + " INTEGER, " +
+            COL_EPOCH_DAY + " INTEGER, " + COL_YEAR_MONTH + " INTEGER)";
+    private static final String SQL_SELECT_ROW = "INSERT OR REPLACE INTO " + TABLE_SELECTION + " (" +
+            COL_TRANS_ID + ", " + COL_DATE + ", " + COL_EPOCH_DAY + ", " + COL_YEAR_MONTH + ") VALUES (?, ?, ?, ?)";
+    private static final String SQL_CLEAR_SELECTION = "DELETE FROM " + TABLE_SELECTION;
+    private static final String SQL_SOFT_DELETE_SELECTION = "UPDATE " + TABLE_TRANSACTIONS +
+            " SET " + COL_DELETED_AT + "=? WHERE " + IN_SELECTION + " AND " + NOT_DELETED;
+    private static final String SQL_UNDELETE_SELECTION = "UPDATE " + TABLE_TRANSACTIONS +
+            " SET " + COL_DELETED_AT + "=NULL WHERE " + IN_SELECTION + " AND " + COL_DELETED_AT + " IS NOT NULL";
+    private static final String SQL_RECATEGORIZE_SELECTION = "UPDATE " + TABLE_TRANSACTIONS +
+            " SET " + COL_CATEGORY + "=? WHERE " + IN_SELECTION + " AND " + NOT_DELETED + " AND " + COL_CATEGORY + "<>?";
+    private static final String SQL_SHIFT_SELECTION = "UPDATE " + TABLE_TRANSACTIONS + " SET " +
+            COL_DATE + "=(SELECT s." + COL_DATE + " FROM " + TABLE_SELECTION + " s WHERE s." + COL_TRANS_ID + "=" + TABLE_TRANSACTIONS + "." + COL_TRANS_ID + "), " +
+            COL_EPOCH_DAY + "=(SELECT s." + COL_EPOCH_DAY + " FROM " + TABLE_SELECTION + " s WHERE s." + COL_TRANS_ID + "=" + TABLE_TRANSACTIONS + "." + COL_TRANS_ID + "), " +
+            COL_YEAR_MONTH + "=(SELECT s." + COL_YEAR_MONTH + " FROM " + TABLE_SELECTION + " s WHERE s." + COL_TRANS_ID + "=" + TABLE_TRANSACTIONS + "." + COL_TRANS_ID + ")" +
+            " WHERE " + IN_SELECTION + " AND " + NOT_DELETED;
+    private static final String SQL_INSERT_BUDGET = "INSERT INTO " + TABLE_BUDGETS + " (" +
+            COL_USER_EMAIL + ", " + COL_CATEGORY + ", " + COL_LIMIT_AMOUNT + ", " + COL_ALERT_THRESHOLD + ", " +
+            COL_MONTH + ", " + COL_YEAR + ") VALUES (?, ?, ?, ?, ?, ?)";
+    private static final String SQL_ADD_TO_ROLLUP = "UPDATE " + TABLE_ARCHIVE_ROLLUPS +
+            " SET " + COL_TOTAL + " = " + COL_TOTAL + " + ?, " + COL_COUNT + " = " + COL_COUNT + " + ?" +
+            " WHERE " + COL_USER_EMAIL + "=? AND " + COL_TYPE + "=? AND " + COL_YEAR_MONTH + "=? AND " + COL_CATEGORY + "=?";
+    private static final String SQL_INSERT_ROLLUP = "INSERT INTO " + TABLE_ARCHIVE_ROLLUPS + " (" +
+            COL_USER_EMAIL + ", " + COL_TYPE + ", " + COL_YEAR_MONTH + ", " + COL_CATEGORY + ", " +
+            COL_TOTAL + ", " + COL_COUNT + ") VALUES (?, ?, ?, ?, ?, ?)";
+    private static final String SQL_DELETE_EMPTY_ROLLUPS = "DELETE FROM " + TABLE_ARCHIVE_ROLLUPS +
+            " WHERE " + COL_COUNT + "<=0";
+    private static final String SQL_DELETE_TRANSACTIONS_BEFORE = "DELETE FROM " + TABLE_TRANSACTIONS +
+            " WHERE " + COL_DATE + "<? AND " + NOT_DELETED;
+    private static final String SQL_PUT_METADATA = "INSERT OR REPLACE INTO " + TABLE_METADATA + " (" +
+            COL_META_KEY + ", " + COL_META_VALUE + ") VALUES (?, ?)";
+    private static final String SQL_ADD_METADATA = "INSERT OR IGNORE INTO " + TABLE_METADATA + " (" +
+            COL_META_KEY + ", " + COL_META_VALUE + ") VALUES (?, ?)";
+    private static final String SQL_PUT_SYNC_ROW = "INSERT OR REPLACE INTO " + TABLE_SYNC_ROWS + " (" +
+            COL_SYNC_ENTITY + ", " + COL_LOCAL_ID + ", " + COL_SYNC_ID + ", " + COL_SYNC_VERSION + ", " +
+            COL_SYNC_DEVICE_ID + ") VALUES (?, ?, ?, ?, ?)";
+    private static final String SQL_DELETE_SYNC_ROW = "DELETE FROM " + TABLE_SYNC_ROWS +
+            " WHERE " + COL_SYNC_ID + "=?";
+    private static final String SQL_ADVANCE_RECURRING_RULE = "UPDATE " + TABLE_RECURRING_RULES +
+            " SET " + COL_NEXT_INDEX + "=?, " + COL_NEXT_DUE_DATE + "=? WHERE " + COL_RULE_ID + "=?";
+
+    private final PasswordHasher passwordHasher;
+    private final SecureRandom secureRandom = new SecureRandom();
+    private final List<TransactionObserver> transactionObservers = new CopyOnWriteArrayList<>();
+    private final Context appContext;
+
+    // Ledgers of users seen since launch; guarded by itself
+    private final Map<String, Ledger> ledgers = new HashMap<>();
+    // Users whose openUser() has finished and who haven't been closed; guarded by ledgers
+    private final Set<String> openedUsers = new HashSet<>();
+
+    // Set once FinanceManager.db is known to hold no pre-version-6 ledger tables
+    private volatile boolean legacySplitChecked;
+    private final Object legacySplitLock = new Object();
+
     /**
      * Private constructor to prevent direct instantiation
      * Always use getInstance() method
      */
     private DatabaseHelper(Context context) {
         super(context.getApplicationContext(), DATABASE_NAME, null, DATABASE_VERSION);
+        appContext = context.getApplicationContext();
+        passwordHasher = PasswordHasher.getInstance(context);
+
+        // WAL lets UI-thread reads proceed while background work writes
+        setWriteAheadLoggingEnabled(true);
     }
 
     /**
@@ -98,6 +281,16 @@ public class DatabaseHelper extends SQLiteOpenHelper {
                 COL_PASSWORD + " TEXT NOT NULL)";
         db.execSQL(createUsersTable);
 
+        createSessionsTable(db);
+        ChangeLog.createTables(db);
+    }
+
+    /**
+     * Schema of a ledger file: the version 1 data tables brought up to
+     * date by the same steps that migrated FinanceManager.db before the split,
+     * plus the change log and sync state
+     */
+    private static void createLedgerTables(SQLiteDatabase db) {
         // Create Transactions Table
         String createTransactionsTable = "CREATE TABLE " + TABLE_TRANSACTIONS + " (" +
                 COL_TRANS_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
@@ -106,8 +299,7 @@ public class DatabaseHelper extends SQLiteOpenHelper {
                 COL_DATE + " INTEGER NOT NULL, " +
                 COL_CATEGORY + " TEXT NOT NULL, " +
                 COL_DESCRIPTION + " TEXT, " +
-                COL_TYPE + " TEXT NOT NULL, " +
-                "FOREIGN KEY(" + COL_USER_EMAIL + ") REFERENCES " + TABLE_USERS + "(" + COL_EMAIL + "))";
+                COL_TYPE + " TEXT NOT NULL)";
         db.execSQL(createTransactionsTable);
 
         // Create Categories Table
@@ -115,8 +307,7 @@ public class DatabaseHelper extends SQLiteOpenHelper {
                 COL_CAT_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
                 COL_USER_EMAIL + " TEXT NOT NULL, " +
                 COL_CAT_NAME + " TEXT NOT NULL, " +
-                COL_CAT_TYPE + " TEXT NOT NULL, " +
-                "FOREIGN KEY(" + COL_USER_EMAIL + ") REFERENCES " + TABLE_USERS + "(" + COL_EMAIL + "))";
+                COL_CAT_TYPE + " TEXT NOT NULL)";
         db.execSQL(createCategoriesTable);
 
         // Create Budgets Table
@@ -127,18 +318,241 @@ public class DatabaseHelper extends SQLiteOpenHelper {
                 COL_LIMIT_AMOUNT + " REAL NOT NULL, " +
                 COL_ALERT_THRESHOLD + " INTEGER DEFAULT 50, " +
                 COL_MONTH + " INTEGER NOT NULL, " +
-                COL_YEAR + " INTEGER NOT NULL, " +
-                "FOREIGN KEY(" + COL_USER_EMAIL + ") REFERENCES " + TABLE_USERS + "(" + COL_EMAIL + "))";
+                COL_YEAR + " INTEGER NOT NULL)";
         db.execSQL(createBudgetsTable);
+
+        createRecurringRulesTable(db);
+        addCalendarColumns(db);
+        createArchiveTables(db);
+        ChangeLog.createTables(db);
+        createSyncTables(db);
+        addTombstones(db);
+    }
+
+    private static void addTombstones(SQLiteDatabase db) {
+        db.execSQL("ALTER TABLE " + TABLE_TRANSACTIONS + " ADD COLUMN " + COL_DELETED_AT + " INTEGER");
+
+        // Screen queries only ever read live rows, so their indexes leave tombstones out
+        db.execSQL("DROP INDEX IF EXISTS idx_transactions_user_type_day");
+        db.execSQL("DROP INDEX IF EXISTS idx_transactions_user_type_month");
+        db.execSQL("CREATE INDEX idx_transactions_user_type_day ON " + TABLE_TRANSACTIONS +
+                "(" + COL_USER_EMAIL + ", " + COL_TYPE + ", " + COL_EPOCH_DAY + ") WHERE " + NOT_DELETED);
+        db.execSQL("CREATE INDEX idx_transactions_user_type_month ON " + TABLE_TRANSACTIONS +
+                "(" + COL_USER_EMAIL + ", " + COL_TYPE + ", " + COL_YEAR_MONTH + ") WHERE " + NOT_DELETED);
+
+        // The purge finds expired tombstones without scanning live rows
+        db.execSQL("CREATE INDEX idx_transactions_deleted ON " + TABLE_TRANSACTIONS +
+                "(" + COL_DELETED_AT + ") WHERE " + COL_DELETED_AT + " IS NOT NULL");
+    }
+
+    private static void createSyncTables(SQLiteDatabase db) {
+        String createSyncRowsTable = "CREATE TABLE " + TABLE_SYNC_ROWS + " (" +
+                COL_SYNC_ENTITY + " TEXT NOT NULL, " +
+                COL_LOCAL_ID + " INTEGER NOT NULL, " +
+                COL_SYNC_ID + " TEXT NOT NULL UNIQUE, " +
+                COL_SYNC_VERSION + " INTEGER NOT NULL, " +
+                COL_SYNC_DEVICE_ID + " INTEGER NOT NULL, " +
+                "PRIMARY KEY (" + COL_SYNC_ENTITY + ", " + COL_LOCAL_ID + "))";
+        db.execSQL(createSyncRowsTable);
+    }
+
+    private void createSessionsTable(SQLiteDatabase db) {
+        String createSessionsTable = "CREATE TABLE " + TABLE_SESSIONS + " (" +
+                COL_SESSION_TOKEN + " TEXT PRIMARY KEY, " +
+                COL_USER_EMAIL + " TEXT NOT NULL, " +
+                COL_SESSION_EXPIRES_AT + " INTEGER NOT NULL, " +
+                "FOREIGN KEY(" + COL_USER_EMAIL + ") REFERENCES " + TABLE_USERS + "(" + COL_EMAIL + "))";
+        db.execSQL(createSessionsTable);
+    }
+
+    private static void createRecurringRulesTable(SQLiteDatabase db) {
+        String createRecurringRulesTable = "CREATE TABLE " + TABLE_RECURRING_RULES + " (" +
+                COL_RULE_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                COL_USER_EMAIL + " TEXT NOT NULL, " +
+                COL_AMOUNT + " REAL NOT NULL, " +
+                COL_CATEGORY + " TEXT NOT NULL, " +
+                COL_DESCRIPTION + " TEXT, " +
+                COL_TYPE + " TEXT NOT NULL, " +
+                COL_FREQUENCY + " TEXT NOT NULL, " +
+                COL_START_DATE + " INTEGER NOT NULL, " +
+                COL_END_DATE + " INTEGER DEFAULT 0, " +
+                COL_NEXT_INDEX + " INTEGER NOT NULL DEFAULT 0, " +
+                COL_NEXT_DUE_DATE + " INTEGER NOT NULL)";
+        db.execSQL(createRecurringRulesTable);
+
+        // Launch-time generation only looks at rules that are due
+        db.execSQL("CREATE INDEX idx_recurring_next_due ON " + TABLE_RECURRING_RULES +
+                "(" + COL_NEXT_DUE_DATE + ")");
+
+        // Generated rows link back to their rule; one row per (rule, date) keeps generation idempotent
+        db.execSQL("ALTER TABLE " + TABLE_TRANSACTIONS + " ADD COLUMN " + COL_RECURRING_RULE_ID + " INTEGER");
+        db.execSQL("CREATE UNIQUE INDEX idx_transactions_recurring ON " + TABLE_TRANSACTIONS +
+                "(" + COL_RECURRING_RULE_ID + ", " + COL_DATE + ") WHERE " + COL_RECURRING_RULE_ID + " IS NOT NULL");
     }
 
+    private static void addCalendarColumns(SQLiteDatabase db) {
+        // Local-calendar day and month of each row, so grouping needs no strftime per row
+        db.execSQL("ALTER TABLE " + TABLE_TRANSACTIONS + " ADD COLUMN " + COL_EPOCH_DAY + " INTEGER");
+        db.execSQL("ALTER TABLE " + TABLE_TRANSACTIONS + " ADD COLUMN " + COL_YEAR_MONTH + " INTEGER");
+
+        // Backfill in the device zone, as the write paths do
+        String localTime = COL_DATE + " / 1000, 'unixepoch', 'localtime'";
+        db.execSQL("UPDATE " + TABLE_TRANSACTIONS + " SET " +
+                COL_EPOCH_DAY + " = CAST(strftime('%s', " + localTime + ") AS INTEGER) / 86400, " +
+                COL_YEAR_MONTH + " = CAST(strftime('%Y%m', " + localTime + ") AS INTEGER)");
+
+        db.execSQL("CREATE INDEX idx_transactions_user_type_day ON " + TABLE_TRANSACTIONS +
+                "(" + COL_USER_EMAIL + ", " + COL_TYPE + ", " + COL_EPOCH_DAY + ")");
+        db.execSQL("CREATE INDEX idx_transactions_user_type_month ON " + TABLE_TRANSACTIONS +
+                "(" + COL_USER_EMAIL + ", " + COL_TYPE + ", " + COL_YEAR_MONTH + ")");
+    }
+
+    private static void createArchiveTables(SQLiteDatabase db) {
+        String createRollupsTable = "CREATE TABLE " + TABLE_ARCHIVE_ROLLUPS + " (" +
+                COL_USER_EMAIL + " TEXT NOT NULL, " +
+                COL_TYPE + " TEXT NOT NULL, " +
+                COL_YEAR_MONTH + " INTEGER NOT NULL, " +
+                COL_CATEGORY + " TEXT NOT NULL, " +
+                COL_TOTAL + " REAL NOT NULL, " +
+                COL_COUNT + " INTEGER NOT NULL, " +
+                "PRIMARY KEY (" + COL_USER_EMAIL + ", " + COL_TYPE + ", " + COL_YEAR_MONTH + ", " + COL_CATEGORY + "))";
+        db.execSQL(createRollupsTable);
+
+        String createMetadataTable = "CREATE TABLE " + TABLE_METADATA + " (" +
+                COL_META_KEY + " TEXT PRIMARY KEY, " +
+                COL_META_VALUE + " INTEGER NOT NULL)";
+        db.execSQL(createMetadataTable);
+
+        // The archiver selects and deletes by date
+        db.execSQL("CREATE INDEX idx_transactions_date ON " + TABLE_TRANSACTIONS + "(" + COL_DATE + ")");
+    }
+
+    /**
+     * Incremental migrations - each step upgrades one version
+     * and keeps existing user data
+     */
     @Override
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
-        db.execSQL("DROP TABLE IF EXISTS " + TABLE_BUDGETS);
-        db.execSQL("DROP TABLE IF EXISTS " + TABLE_CATEGORIES);
-        db.execSQL("DROP TABLE IF EXISTS " + TABLE_TRANSACTIONS);
-        db.execSQL("DROP TABLE IF EXISTS " + TABLE_USERS);
-        onCreate(db);
+        if (oldVersion < 2) {
+            createSessionsTable(db);
+        }
+        if (oldVersion < 3) {
+            createRecurringRulesTable(db);
+        }
+        if (oldVersion < 4) {
+            addCalendarColumns(db);
+        }
+        if (oldVersion < 5) {
+            createArchiveTables(db);
+        }
+        // Version 6 moves the ledger tables into per-user files. That spans
+        // several files, so it runs after open in splitLegacyLedgers()
+        if (oldVersion < 7) {
+            ChangeLog.createTables(db);
+        }
+    }
+
+    @Override
+    public void onOpen(SQLiteDatabase db) {
+        super.onOpen(db);
+        // Opening (and creating/migrating) belongs to the startup warm-up on diskIO
+        StartupTracer.warnIfMainThread("FinanceManager.db opened");
+    }
+
+    /**
+     * Open the user directory, split a pre-version-6 database into ledger
+     * files if needed, and prime the statements the login screen runs
+     * Call from FinanceApp on a background thread
+     */
+    public void warmUp() {
+        StartupTracer.trace("db.open", () -> getWritableDatabase());
+        StartupTracer.trace("db.splitLedgers", this::splitLegacyLedgersIfNeeded);
+        StartupTracer.trace("changeLog.prune", () -> getProfileChangeLog().prune());
+        StartupTracer.trace("db.statements", () -> {
+            isEmailExists("");
+            getUserInfo("");
+        });
+    }
+
+    // ==================== UNIT OF WORK ====================
+
+    /**
+     * Run several writes to a user's ledger as one SQLite transaction
+     * Either every operation commits or none does, and the journal is
+     * synced once instead of once per statement
+     *
+     * @param userEmail Owner of the ledger
+     * @param work Operations to run, using the unit's compiled statements
+     * @return true if the transaction committed
+     */
+    public boolean runInTransaction(String userEmail, UnitOfWork.Work work) {
+        return runInTransaction(ledger(userEmail).getWritableDatabase(), work);
+    }
+
+    private boolean runInTransaction(SQLiteDatabase db, UnitOfWork.Work work) {
+        UnitOfWork unit = new UnitOfWork(db);
+
+        db.beginTransactionNonExclusive();
+        try {
+            work.run(unit);
+            db.setTransactionSuccessful();
+            return true;
+        } catch (SQLException e) {
+            Log.e(TAG, "Transaction rolled back", e);
+            return false;
+        } finally {
+            db.endTransaction();
+            unit.close();
+        }
+    }
+
+    // ==================== CHANGE LOG ====================
+
+    /**
+     * Change log of a user's ledger: their transactions, budgets and categories
+     * Archiving, restoring from the archive and the version 6 split move rows
+     * without changing them, so they are not logged
+     */
+    public ChangeLog getChangeLog(String userEmail) {
+        return new ChangeLog(() -> ledger(userEmail).getWritableDatabase());
+    }
+
+    /**
+     * Change log of the user directory: profile inserts, updates and deletes
+     * Password and session changes are not logged
+     */
+    public ChangeLog getProfileChangeLog() {
+        return new ChangeLog(this::getWritableDatabase);
+    }
+
+    // ==================== OBSERVERS ====================
+
+    /**
+     * Register an in-memory index to be notified of transaction and budget writes
+     *
+     * @param observer Observer to add
+     */
+    public void addTransactionObserver(TransactionObserver observer) {
+        transactionObservers.add(observer);
+    }
+
+    public void removeTransactionObserver(TransactionObserver observer) {
+        transactionObservers.remove(observer);
+    }
+
+    private void notifyBudgetsChanged() {
+        for (TransactionObserver observer : transactionObservers) {
+            observer.onBudgetsChanged();
+        }
+    }
+
+    /**
+     * @param userEmail User whose ledger changed, or null for every user
+     */
+    private void notifyTransactionsReloaded(String userEmail) {
+        for (TransactionObserver observer : transactionObservers) {
+            observer.onTransactionsReloaded(userEmail);
+        }
     }
 
     /**
@@ -152,79 +566,376 @@ public class DatabaseHelper extends SQLiteOpenHelper {
                 db.close();
             }
         }
+        synchronized (ledgers) {
+            for (Ledger ledger : ledgers.values()) {
+                ledger.closeFiles();
+            }
+            ledgers.clear();
+            openedUsers.clear();
+        }
     }
 
-    // ==================== USER OPERATIONS ====================
+    // ==================== LEDGERS ====================
+
+    /**
+     * Open a user's ledger after login and bring it up to date
+     * Recurring occurrences that came due are generated and months past the
+     * archive horizon are moved out before the first screen queries totals
+     * Call from a background thread
+     *
+     * @param archiveHorizonMonths Months kept in the ledger, or 0 to never archive
+     */
+    public void openUser(String email, int archiveHorizonMonths) {
+        StartupTracer.trace("ledger.open", () -> ledger(email).getWritableDatabase());
+
+        // Catch up salary, rent, subscriptions... before the dashboard queries totals
+        StartupTracer.trace("recurring.generate",
+                () -> generateDueRecurringTransactions(email, System.currentTimeMillis()));
+
+        // Move months past the horizon to the archive file; a no-op on most logins
+        if (archiveHorizonMonths > 0) {
+            long cutoff = PeriodResolver.getInstance()
+                    .rollingMonths(archiveHorizonMonths - 1, System.currentTimeMillis()).start;
+            StartupTracer.trace("archive.run", () -> archiveTransactionsBefore(email, cutoff));
+        }
+
+        // Consumers acknowledge as they go; this catches up a log nobody is reading
+        StartupTracer.trace("changeLog.prune", () -> getChangeLog(email).prune());
+
+        synchronized (ledgers) {
+            openedUsers.add(email);
+        }
+    }
+
+    /**
+     * Whether openUser() has finished for a user since launch
+     * Until then the first query could open, split or migrate the ledger
+     * on the calling thread, and would see totals from before the catch-up
+     */
+    public boolean isUserOpen(String email) {
+        synchronized (ledgers) {
+            return openedUsers.contains(email);
+        }
+    }
+
+    /**
+     * Close a user's ledger on logout
+     * A later query for the user simply opens it again
+     */
+    public void closeUser(String email) {
+        Ledger ledger;
+        synchronized (ledgers) {
+            ledger = ledgers.remove(email);
+            openedUsers.remove(email);
+        }
+        if (ledger != null) {
+            ledger.closeFiles();
+        }
+    }
+
+    /**
+     * Run an action on the user directory, then on every user's ledger
+     * Ledgers of users who aren't logged in are opened just for the action.
+     * For maintenance; call from a background thread
+     *
+     * @param action Return false to skip the remaining files
+     */
+    public void forEachDatabase(Predicate<SQLiteDatabase> action) {
+        if (!action.test(this.getWritableDatabase())) {
+            return;
+        }
+        forEachLedger(ledger -> action.test(ledger.getWritableDatabase()));
+    }
 
     /**
-     * Hash password using SHA-256
+     * Run an action on every user's ledger, opening closed ones just for it
      *
-     * @param password Plain text password
-     * @return Hashed password
+     * @param action Return false to skip the remaining ledgers
+     */
+    private void forEachLedger(Predicate<Ledger> action) {
+        List<String> wereOpen;
+        synchronized (ledgers) {
+            wereOpen = new ArrayList<>(ledgers.keySet());
+        }
+        for (String email : getUserEmails()) {
+            boolean carryOn;
+            try {
+                carryOn = action.test(ledger(email));
+            } finally {
+                if (!wereOpen.contains(email)) {
+                    closeUser(email);
+                }
+            }
+            if (!carryOn) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Get a user's ledger, opening its file on first use
      */
-    private String hashPassword(String password) {
+    private Ledger ledger(String userEmail) {
+        splitLegacyLedgersIfNeeded();
+        synchronized (ledgers) {
+            Ledger ledger = ledgers.get(userEmail);
+            if (ledger == null) {
+                ledger = new Ledger(appContext, userEmail);
+                ledgers.put(userEmail, ledger);
+            }
+            return ledger;
+        }
+    }
+
+    /**
+     * File name of a user's ledger
+     * A digest of the email, so names are file-system safe and don't reveal who is on the device
+     */
+    static String ledgerName(String userEmail) {
         try {
-            MessageDigest digest = MessageDigest.getInstance("SHA-256");
-            byte[] hash = digest.digest(password.getBytes());
-            StringBuilder hexString = new StringBuilder();
-            for (byte b : hash) {
-                String hex = Integer.toHexString(0xff & b);
-                if (hex.length() == 1) hexString.append('0');
-                hexString.append(hex);
-            }
-            return hexString.toString();
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(userEmail.getBytes(StandardCharsets.UTF_8));
+            StringBuilder key = new StringBuilder(LEDGER_PREFIX);
+            for (int i = 0; i < 8; i++) {
+                key.append(String.format("%02x", digest[i]));
+            }
+            return key.append(LEDGER_SUFFIX).toString();
         } catch (NoSuchAlgorithmException e) {
-            e.printStackTrace();
-            return password;
+            throw new IllegalStateException("SHA-256 unavailable", e);
         }
     }
 
-    public boolean addUser(String email, String firstName, String lastName, String password) {
+    private static String archiveName(String ledgerName) {
+        return ledgerName.substring(0, ledgerName.length() - LEDGER_SUFFIX.length()) + ARCHIVE_SUFFIX;
+    }
+
+    /**
+     * Delete a user's ledger and archive files, closing them first if open
+     */
+    private void deleteLedgerFiles(String userEmail) {
+        closeUser(userEmail);
+        String name = ledgerName(userEmail);
+        SQLiteDatabase.deleteDatabase(appContext.getDatabasePath(name));
+        SQLiteDatabase.deleteDatabase(appContext.getDatabasePath(archiveName(name)));
+    }
+
+    private List<String> getUserEmails() {
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = db.query(TABLE_USERS, new String[]{COL_EMAIL}, null, null, null, null, null);
+        List<String> emails = new ArrayList<>();
+        while (cursor.moveToNext()) {
+            emails.add(cursor.getString(0));
+        }
+        cursor.close();
+        return emails;
+    }
+
+    private void splitLegacyLedgersIfNeeded() {
+        if (legacySplitChecked) {
+            return;
+        }
+        synchronized (legacySplitLock) {
+            if (!legacySplitChecked) {
+                splitLegacyLedgers();
+                legacySplitChecked = true;
+            }
+        }
+    }
+
+    /**
+     * Version 6 migration: copy each user's rows out of FinanceManager.db
+     * into their own ledger file, then drop the shared tables
+     * Every ledger commits with a marker before anything is dropped, so an
+     * interrupted split resumes with the users not yet copied. Ids are kept,
+     * and each ledger continues AUTOINCREMENT from the shared counters so an
+     * archived id is never handed out again
+     */
+    private void splitLegacyLedgers() {
         SQLiteDatabase db = this.getWritableDatabase();
-        ContentValues values = new ContentValues();
-        values.put(COL_EMAIL, email);
-        values.put(COL_FIRST_NAME, firstName);
-        values.put(COL_LAST_NAME, lastName);
-        values.put(COL_PASSWORD, hashPassword(password));
+        if (DatabaseUtils.queryNumEntries(db, "sqlite_master", "type='table' AND name=?",
+                new String[]{TABLE_TRANSACTIONS}) == 0) {
+            return;
+        }
+
+        long start = Metrics.start();
+        ArchiveDatabase legacyArchive = appContext.getDatabasePath(ArchiveDatabase.LEGACY_DATABASE_NAME).exists()
+                ? new ArchiveDatabase(appContext, ArchiveDatabase.LEGACY_DATABASE_NAME) : null;
+        List<String> emails = getUserEmails();
+        for (String email : emails) {
+            Ledger ledger = new Ledger(appContext, email);
+            try {
+                copyLegacyLedger(db, legacyArchive, email, ledger);
+            } finally {
+                ledger.closeFiles();
+            }
+        }
+        if (legacyArchive != null) {
+            legacyArchive.close();
+        }
+
+        runInTransaction(db, unit -> {
+            for (String table : LEDGER_TABLES) {
+                unit.getDatabase().execSQL("DROP TABLE IF EXISTS " + table);
+            }
+        });
+        SQLiteDatabase.deleteDatabase(appContext.getDatabasePath(ArchiveDatabase.LEGACY_DATABASE_NAME));
+
+        // Give the dropped pages back; the directory is tiny from here on
+        db.execSQL("VACUUM");
+        Log.i(TAG, "Split FinanceManager.db into " + emails.size() + " ledger files");
+        Metrics.record("db.splitLegacyLedgers", start, emails.size());
+    }
+
+    private void copyLegacyLedger(SQLiteDatabase legacy, ArchiveDatabase legacyArchive, String email, Ledger ledger) {
+        SQLiteDatabase target = ledger.getWritableDatabase();
+        if (ledger.getMetadata(META_SPLIT_FROM_LEGACY) > 0) {
+            return;
+        }
+
+        String[] args = new String[]{email};
+        long archivedBefore = readMetadata(legacy, META_ARCHIVED_BEFORE);
+
+        // Archived rows first; the copy replaces by id, so a rerun overwrites them
+        if (legacyArchive != null && archivedBefore > 0) {
+            Cursor rows = legacyArchive.getRows(email);
+            try {
+                if (ledger.getArchive().copyRows(rows) < 0) {
+                    throw new SQLException("Archive split failed for a user");
+                }
+            } finally {
+                rows.close();
+            }
+        }
+
+        boolean committed = runInTransaction(target, unit -> {
+            ContentValues values = new ContentValues();
+            for (String table : LEDGER_TABLES) {
+                if (table.equals(TABLE_METADATA)) {
+                    continue;
+                }
+                Cursor rows = legacy.query(table, null, COL_USER_EMAIL + "=?", args, null, null, null);
+                try {
+                    while (rows.moveToNext()) {
+                        values.clear();
+                        DatabaseUtils.cursorRowToContentValues(rows, values);
+                        target.insertOrThrow(table, null, values);
+                    }
+                } finally {
+                    rows.close();
+                }
+            }
 
-        long result = db.insert(TABLE_USERS, null, values);
+            Cursor sequences = legacy.rawQuery("SELECT name, seq FROM sqlite_sequence", null);
+            try {
+                while (sequences.moveToNext()) {
+                    target.delete("sqlite_sequence", "name=?", new String[]{sequences.getString(0)});
+                    values.clear();
+                    values.put("name", sequences.getString(0));
+                    values.put("seq", sequences.getLong(1));
+                    target.insertOrThrow("sqlite_sequence", null, values);
+                }
+            } finally {
+                sequences.close();
+            }
 
-        if (result != -1) {
-            addDefaultCategoriesForUser(email);
+            if (archivedBefore > 0) {
+                unit.insert(SQL_PUT_METADATA, META_ARCHIVED_BEFORE, archivedBefore);
+            }
+            unit.insert(SQL_PUT_METADATA, META_SPLIT_FROM_LEGACY, 1);
+        });
+        if (!committed) {
+            throw new SQLException("Ledger split failed for a user");
         }
+    }
+
+    // ==================== USER OPERATIONS ====================
 
-        return result != -1;
+    /**
+     * Add a new user
+     * Password hashing is deliberately slow - call from a background thread
+     */
+    public boolean addUser(String email, String firstName, String lastName, String password) {
+        long start = Metrics.start();
+        // Hash before opening the transaction so the write lock is held only for the inserts
+        String passwordHash = passwordHasher.hash(password);
+
+        boolean success = runInTransaction(this.getWritableDatabase(), unit -> {
+            unit.insert(SQL_INSERT_USER, email, firstName, lastName, passwordHash);
+            ChangeLog.append(unit, email, ChangeLog.ENTITY_USER, 0, ChangeLog.OP_INSERT);
+        });
+        if (success) {
+            // A fresh ledger: files left by an interrupted delete must not resurface
+            deleteLedgerFiles(email);
+            success = runInTransaction(email, unit -> addDefaultCategoriesForUser(unit, email));
+            if (!success) {
+                runInTransaction(this.getWritableDatabase(), unit -> {
+                    unit.getDatabase().delete(TABLE_USERS, COL_EMAIL + "=?", new String[]{email});
+                    ChangeLog.append(unit, email, ChangeLog.ENTITY_USER, 0, ChangeLog.OP_DELETE);
+                });
+            }
+        }
+        Metrics.record("db.addUser", start, success ? 14 : 0);
+        return success;
     }
 
-    private void addDefaultCategoriesForUser(String email) {
+    private void addDefaultCategoriesForUser(UnitOfWork unit, String email) {
         String[] expenseCategories = {"Food", "Transportation", "Bills", "Entertainment", "Shopping", "Health", "Other"};
         String[] incomeCategories = {"Salary", "Scholarship", "Freelance", "Investment", "Gift", "Other"};
 
         for (String category : expenseCategories) {
-            addCategory(email, category, "expense");
+            long id = unit.insert(SQL_INSERT_CATEGORY, email, category, "expense");
+            ChangeLog.append(unit, email, ChangeLog.ENTITY_CATEGORY, id, ChangeLog.OP_INSERT);
         }
 
         for (String category : incomeCategories) {
-            addCategory(email, category, "income");
+            long id = unit.insert(SQL_INSERT_CATEGORY, email, category, "income");
+            ChangeLog.append(unit, email, ChangeLog.ENTITY_CATEGORY, id, ChangeLog.OP_INSERT);
         }
     }
 
+    /**
+     * Check login credentials
+     * Legacy or under-calibrated hashes are upgraded after a successful check
+     * Password hashing is deliberately slow - call from a background thread
+     */
     public boolean checkUserLogin(String email, String password) {
+        long start = Metrics.start();
         SQLiteDatabase db = this.getReadableDatabase();
-        String hashedPassword = hashPassword(password);
 
         Cursor cursor = db.query(TABLE_USERS,
-                new String[]{COL_EMAIL},
-                COL_EMAIL + "=? AND " + COL_PASSWORD + "=?",
-                new String[]{email, hashedPassword},
+                new String[]{COL_PASSWORD},
+                COL_EMAIL + "=?",
+                new String[]{email},
                 null, null, null);
 
-        boolean exists = cursor.getCount() > 0;
+        String storedHash = null;
+        if (cursor.moveToFirst()) {
+            storedHash = cursor.getString(0);
+        }
         cursor.close();
-        return exists;
+
+        if (storedHash == null || !passwordHasher.verify(password, storedHash)) {
+            Metrics.record("db.checkUserLogin", start, 0);
+            return false;
+        }
+
+        if (passwordHasher.needsRehash(storedHash)) {
+            updatePasswordHash(email, passwordHasher.hash(password));
+        }
+        Metrics.record("db.checkUserLogin", start, 1);
+        return true;
+    }
+
+    private boolean updatePasswordHash(String email, String passwordHash) {
+        SQLiteDatabase db = this.getWritableDatabase();
+        ContentValues values = new ContentValues();
+        values.put(COL_PASSWORD, passwordHash);
+
+        int rows = db.update(TABLE_USERS, values, COL_EMAIL + "=?", new String[]{email});
+        return rows > 0;
     }
 
     public boolean isEmailExists(String email) {
+        long start = Metrics.start();
         SQLiteDatabase db = this.getReadableDatabase();
         Cursor cursor = db.query(TABLE_USERS,
                 new String[]{COL_EMAIL},
@@ -234,10 +945,12 @@ public class DatabaseHelper extends SQLiteOpenHelper {
 
         boolean exists = cursor.getCount() > 0;
         cursor.close();
+        Metrics.record("db.isEmailExists", start, exists ? 1 : 0);
         return exists;
     }
 
     public User getUserInfo(String email) {
+        long start = Metrics.start();
         SQLiteDatabase db = this.getReadableDatabase();
         Cursor cursor = db.query(TABLE_USERS,
                 null,
@@ -253,152 +966,1351 @@ public class DatabaseHelper extends SQLiteOpenHelper {
             user.setLastName(cursor.getString(cursor.getColumnIndexOrThrow(COL_LAST_NAME)));
         }
         cursor.close();
+        Metrics.record("db.getUserInfo", start, user != null ? 1 : 0);
         return user;
     }
 
     public boolean updateUserProfile(String email, String firstName, String lastName) {
-        SQLiteDatabase db = this.getWritableDatabase();
+        long start = Metrics.start();
         ContentValues values = new ContentValues();
         values.put(COL_FIRST_NAME, firstName);
         values.put(COL_LAST_NAME, lastName);
 
-        int rows = db.update(TABLE_USERS, values, COL_EMAIL + "=?", new String[]{email});
+        int[] updated = new int[1];
+        boolean committed = runInTransaction(this.getWritableDatabase(), unit -> {
+            updated[0] = unit.getDatabase().update(TABLE_USERS, values, COL_EMAIL + "=?", new String[]{email});
+            if (updated[0] > 0) {
+                ChangeLog.append(unit, email, ChangeLog.ENTITY_USER, 0, ChangeLog.OP_UPDATE);
+            }
+        });
+        int rows = committed ? updated[0] : 0;
+        Metrics.record("db.updateUserProfile", start, rows);
         return rows > 0;
     }
 
     public boolean updateUserPassword(String email, String oldPassword, String newPassword) {
+        long start = Metrics.start();
         if (!checkUserLogin(email, oldPassword)) {
+            Metrics.record("db.updateUserPassword", start, 0);
             return false;
         }
 
+        // New hash and session revocation commit together
+        String passwordHash = passwordHasher.hash(newPassword);
+        int[] rows = new int[1];
+        boolean committed = runInTransaction(this.getWritableDatabase(), unit -> {
+            rows[0] = unit.update(SQL_UPDATE_PASSWORD, passwordHash, email);
+            unit.update(SQL_DELETE_USER_SESSIONS, email);
+        });
+        Metrics.record("db.updateUserPassword", start, rows[0]);
+        return committed && rows[0] > 0;
+    }
+
+    // ==================== SESSION OPERATIONS ====================
+
+    /**
+     * Create a remembered-login session for the user
+     *
+     * @param email User email
+     * @param expiresAt Expiry timestamp in milliseconds
+     * @return Random session token, or null if the insert failed
+     */
+    public String createSession(String email, long expiresAt) {
+        long start = Metrics.start();
+        byte[] bytes = new byte[32];
+        secureRandom.nextBytes(bytes);
+        StringBuilder token = new StringBuilder();
+        for (byte b : bytes) {
+            String hex = Integer.toHexString(0xff & b);
+            if (hex.length() == 1) token.append('0');
+            token.append(hex);
+        }
+
         SQLiteDatabase db = this.getWritableDatabase();
         ContentValues values = new ContentValues();
-        values.put(COL_PASSWORD, hashPassword(newPassword));
+        values.put(COL_SESSION_TOKEN, token.toString());
+        values.put(COL_USER_EMAIL, email);
+        values.put(COL_SESSION_EXPIRES_AT, expiresAt);
 
-        int rows = db.update(TABLE_USERS, values, COL_EMAIL + "=?", new String[]{email});
-        return rows > 0;
+        long result = db.insert(TABLE_SESSIONS, null, values);
+        Metrics.record("db.createSession", start, result != -1 ? 1 : 0);
+        return result != -1 ? token.toString() : null;
+    }
+
+    /**
+     * Look up the user owning a non-expired session
+     *
+     * @param token Session token
+     * @return User email, or null if the session is unknown or expired
+     */
+    public String getSessionUser(String token) {
+        long start = Metrics.start();
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = db.query(TABLE_SESSIONS,
+                new String[]{COL_USER_EMAIL},
+                COL_SESSION_TOKEN + "=? AND " + COL_SESSION_EXPIRES_AT + ">?",
+                new String[]{token, String.valueOf(System.currentTimeMillis())},
+                null, null, null);
+
+        String email = null;
+        if (cursor.moveToFirst()) {
+            email = cursor.getString(0);
+        }
+        cursor.close();
+        Metrics.record("db.getSessionUser", start, email != null ? 1 : 0);
+        return email;
+    }
+
+    public boolean deleteSession(String token) {
+        long start = Metrics.start();
+        int[] rows = new int[1];
+        boolean committed = runInTransaction(this.getWritableDatabase(), unit -> {
+            rows[0] = unit.update(SQL_DELETE_SESSION, token);
+
+            // Drop any other expired sessions while we are here
+            unit.update(SQL_DELETE_EXPIRED_SESSIONS, System.currentTimeMillis());
+        });
+        Metrics.record("db.deleteSession", start, rows[0]);
+        return committed && rows[0] > 0;
     }
 
     // ==================== TRANSACTION OPERATIONS ====================
 
     public long addTransaction(String userEmail, double amount, long date, String category, String description, String type) {
-        SQLiteDatabase db = this.getWritableDatabase();
-        ContentValues values = new ContentValues();
-        values.put(COL_USER_EMAIL, userEmail);
-        values.put(COL_AMOUNT, amount);
-        values.put(COL_DATE, date);
-        values.put(COL_CATEGORY, category);
-        values.put(COL_DESCRIPTION, description);
-        values.put(COL_TYPE, type);
+        long start = Metrics.start();
+        PeriodResolver resolver = PeriodResolver.getInstance();
+        long[] inserted = {-1};
+        boolean committed = runInTransaction(userEmail, unit -> {
+            inserted[0] = unit.insert(SQL_INSERT_TRANSACTION, userEmail, amount, date, category, description, type,
+                    resolver.epochDayOf(date), resolver.yearMonthOf(date));
+            ChangeLog.append(unit, userEmail, ChangeLog.ENTITY_TRANSACTION, inserted[0], ChangeLog.OP_INSERT);
+        });
+        long id = committed ? inserted[0] : -1;
+
+        if (id != -1 && !transactionObservers.isEmpty()) {
+            Transaction transaction = new Transaction(userEmail, amount, date, category, description, type);
+            transaction.setId((int) id);
+            for (TransactionObserver observer : transactionObservers) {
+                observer.onTransactionAdded(transaction);
+            }
+        }
+        Metrics.record("db.addTransaction", start, id != -1 ? 1 : 0);
+        return id;
+    }
 
-        return db.insert(TABLE_TRANSACTIONS, null, values);
+    public Transaction getTransaction(String userEmail, int id) {
+        long start = Metrics.start();
+        SQLiteDatabase db = ledger(userEmail).getReadableDatabase();
+        Cursor cursor = db.query(TABLE_TRANSACTIONS, null,
+                COL_TRANS_ID + "=? AND " + NOT_DELETED,
+                new String[]{String.valueOf(id)},
+                null, null, null);
+
+        Transaction transaction = null;
+        if (cursor.moveToFirst()) {
+            transaction = readTransaction(cursor);
+        }
+        cursor.close();
+        Metrics.record("db.getTransaction", start, transaction != null ? 1 : 0);
+        return transaction;
     }
 
     public List<Transaction> getAllTransactions(String userEmail, String type) {
+        long start = Metrics.start();
         List<Transaction> transactions = new ArrayList<>();
-        SQLiteDatabase db = this.getReadableDatabase();
+        Ledger ledger = ledger(userEmail);
+        SQLiteDatabase db = ledger.getReadableDatabase();
 
         String query = "SELECT * FROM " + TABLE_TRANSACTIONS +
-                " WHERE " + COL_USER_EMAIL + "=? AND " + COL_TYPE + "=?" +
+                " WHERE " + COL_USER_EMAIL + "=? AND " + COL_TYPE + "=? AND " + NOT_DELETED +
                 " ORDER BY " + COL_DATE + " DESC";
 
         Cursor cursor = db.rawQuery(query, new String[]{userEmail, type});
 
         if (cursor.moveToFirst()) {
             do {
-                Transaction transaction = new Transaction();
-                transaction.setId(cursor.getInt(cursor.getColumnIndexOrThrow(COL_TRANS_ID)));
-                transaction.setUserEmail(cursor.getString(cursor.getColumnIndexOrThrow(COL_USER_EMAIL)));
-                transaction.setAmount(cursor.getDouble(cursor.getColumnIndexOrThrow(COL_AMOUNT)));
-                transaction.setDate(cursor.getLong(cursor.getColumnIndexOrThrow(COL_DATE)));
-                transaction.setCategory(cursor.getString(cursor.getColumnIndexOrThrow(COL_CATEGORY)));
-                transaction.setDescription(cursor.getString(cursor.getColumnIndexOrThrow(COL_DESCRIPTION)));
-                transaction.setType(cursor.getString(cursor.getColumnIndexOrThrow(COL_TYPE)));
-                transactions.add(transaction);
+                transactions.add(readTransaction(cursor));
             } while (cursor.moveToNext());
         }
         cursor.close();
+
+        // Older history lives in the archive file
+        long cutoff = ledger.getArchivedBefore();
+        if (cutoff > 0) {
+            transactions = mergeNewestFirst(transactions,
+                    ledger.getArchive().getTransactions(userEmail, type, Long.MIN_VALUE, cutoff));
+        }
+        Metrics.record("db.getAllTransactions", start, transactions.size());
         return transactions;
     }
 
+    /**
+     * Get transactions dated in [startDate, endDate)
+     * Use PeriodResolver for the range so periods meet without gaps
+     *
+     * @param endDate Exclusive end in milliseconds
+     */
     public List<Transaction> getTransactionsByPeriod(String userEmail, String type, long startDate, long endDate) {
+        long start = Metrics.start();
         List<Transaction> transactions = new ArrayList<>();
-        SQLiteDatabase db = this.getReadableDatabase();
+        Ledger ledger = ledger(userEmail);
+        SQLiteDatabase db = ledger.getReadableDatabase();
 
         String query = "SELECT * FROM " + TABLE_TRANSACTIONS +
-                " WHERE " + COL_USER_EMAIL + "=? AND " + COL_TYPE + "=?" +
-                " AND " + COL_DATE + " BETWEEN ? AND ?" +
+                " WHERE " + COL_USER_EMAIL + "=? AND " + COL_TYPE + "=? AND " + NOT_DELETED +
+                " AND " + COL_DATE + ">=? AND " + COL_DATE + "<?" +
                 " ORDER BY " + COL_DATE + " DESC";
 
         Cursor cursor = db.rawQuery(query, new String[]{userEmail, type, String.valueOf(startDate), String.valueOf(endDate)});
 
         if (cursor.moveToFirst()) {
             do {
-                Transaction transaction = new Transaction();
-                transaction.setId(cursor.getInt(cursor.getColumnIndexOrThrow(COL_TRANS_ID)));
-                transaction.setUserEmail(cursor.getString(cursor.getColumnIndexOrThrow(COL_USER_EMAIL)));
-                transaction.setAmount(cursor.getDouble(cursor.getColumnIndexOrThrow(COL_AMOUNT)));
-                transaction.setDate(cursor.getLong(cursor.getColumnIndexOrThrow(COL_DATE)));
-                transaction.setCategory(cursor.getString(cursor.getColumnIndexOrThrow(COL_CATEGORY)));
-                transaction.setDescription(cursor.getString(cursor.getColumnIndexOrThrow(COL_DESCRIPTION)));
-                transaction.setType(cursor.getString(cursor.getColumnIndexOrThrow(COL_TYPE)));
-                transactions.add(transaction);
+                transactions.add(readTransaction(cursor));
             } while (cursor.moveToNext());
         }
         cursor.close();
+
+        long cutoff = ledger.getArchivedBefore();
+        if (startDate < cutoff) {
+            transactions = mergeNewestFirst(transactions,
+                    ledger.getArchive().getTransactions(userEmail, type, startDate, Math.min(endDate, cutoff)));
+        }
+        Metrics.record("db.getTransactionsByPeriod", start, transactions.size());
         return transactions;
     }
 
-    public boolean updateTransaction(int id, double amount, long date, String category, String description) {
-        SQLiteDatabase db = this.getWritableDatabase();
+    /**
+     * Denormalized local day and month of a transaction date
+     * Must be set on every write that sets the date
+     */
+    private void putCalendarColumns(ContentValues values, long date) {
+        PeriodResolver resolver = PeriodResolver.getInstance();
+        values.put(COL_EPOCH_DAY, resolver.epochDayOf(date));
+        values.put(COL_YEAR_MONTH, resolver.yearMonthOf(date));
+    }
+
+    private Transaction readTransaction(Cursor cursor) {
+        Transaction transaction = new Transaction();
+        transaction.setId(cursor.getInt(cursor.getColumnIndexOrThrow(COL_TRANS_ID)));
+        transaction.setUserEmail(cursor.getString(cursor.getColumnIndexOrThrow(COL_USER_EMAIL)));
+        transaction.setAmount(cursor.getDouble(cursor.getColumnIndexOrThrow(COL_AMOUNT)));
+        transaction.setDate(cursor.getLong(cursor.getColumnIndexOrThrow(COL_DATE)));
+        transaction.setCategory(cursor.getString(cursor.getColumnIndexOrThrow(COL_CATEGORY)));
+        transaction.setDescription(cursor.getString(cursor.getColumnIndexOrThrow(COL_DESCRIPTION)));
+        transaction.setType(cursor.getString(cursor.getColumnIndexOrThrow(COL_TYPE)));
+        return transaction;
+    }
+
+    public boolean updateTransaction(String userEmail, int id, double amount, long date, String category, String description) {
+        long start = Metrics.start();
+        Ledger ledger = ledger(userEmail);
+        restoreIfArchived(ledger, id);
+
+        // Observers need the old values to move amounts between buckets
+        Transaction before = transactionObservers.isEmpty() ? null : getTransaction(userEmail, id);
+
+        ContentValues values = new ContentValues();
+        values.put(COL_AMOUNT, amount);
+        values.put(COL_DATE, date);
+        values.put(COL_CATEGORY, category);
+        values.put(COL_DESCRIPTION, description);
+        putCalendarColumns(values, date);
+
+        int[] updated = new int[1];
+        boolean committed = runInTransaction(ledger.getWritableDatabase(), unit -> {
+            updated[0] = unit.getDatabase().update(TABLE_TRANSACTIONS, values,
+                    COL_TRANS_ID + "=? AND " + NOT_DELETED, new String[]{String.valueOf(id)});
+            if (updated[0] > 0) {
+                ChangeLog.append(unit, userEmail, ChangeLog.ENTITY_TRANSACTION, id, ChangeLog.OP_UPDATE);
+            }
+        });
+        int rows = committed ? updated[0] : 0;
+
+        if (rows > 0 && before != null) {
+            Transaction after = new Transaction(before.getUserEmail(), amount, date, category, description, before.getType());
+            after.setId(id);
+            for (TransactionObserver observer : transactionObservers) {
+                observer.onTransactionUpdated(before, after);
+            }
+        }
+        Metrics.record("db.updateTransaction", start, rows);
+        return rows > 0;
+    }
+
+    /**
+     * Delete a transaction, leaving a tombstone that restoreTransaction()
+     * can bring back with the same id until DatabaseMaintenance purges it
+     */
+    public boolean deleteTransaction(String userEmail, int id) {
+        long start = Metrics.start();
+        Ledger ledger = ledger(userEmail);
+        restoreIfArchived(ledger, id);
+        Transaction before = transactionObservers.isEmpty() ? null : getTransaction(userEmail, id);
+
+        int[] deleted = new int[1];
+        boolean committed = runInTransaction(ledger.getWritableDatabase(), unit -> {
+            deleted[0] = unit.update(SQL_SOFT_DELETE_TRANSACTION, System.currentTimeMillis(), id);
+            if (deleted[0] > 0) {
+                ChangeLog.append(unit, userEmail, ChangeLog.ENTITY_TRANSACTION, id, ChangeLog.OP_DELETE);
+            }
+        });
+        int rows = committed ? deleted[0] : 0;
+
+        if (rows > 0 && before != null) {
+            for (TransactionObserver observer : transactionObservers) {
+                observer.onTransactionDeleted(before);
+            }
+        }
+        Metrics.record("db.deleteTransaction", start, rows);
+        return rows > 0;
+    }
+
+    /**
+     * Undo deleteTransaction(): the tombstone becomes a live row again
+     * One UPDATE, and the row keeps its id, so nothing referring to it breaks
+     *
+     * @return false if the transaction isn't deleted, or was already purged
+     */
+    public boolean restoreTransaction(String userEmail, int id) {
+        long start = Metrics.start();
+        int[] restored = new int[1];
+        boolean committed = runInTransaction(userEmail, unit -> {
+            restored[0] = unit.update(SQL_UNDELETE_TRANSACTION, id);
+            if (restored[0] > 0) {
+                ChangeLog.append(unit, userEmail, ChangeLog.ENTITY_TRANSACTION, id, ChangeLog.OP_INSERT);
+            }
+        });
+        int rows = committed ? restored[0] : 0;
+
+        if (rows > 0 && !transactionObservers.isEmpty()) {
+            Transaction transaction = getTransaction(userEmail, id);
+            if (transaction != null) {
+                for (TransactionObserver observer : transactionObservers) {
+                    observer.onTransactionAdded(transaction);
+                }
+            }
+        }
+        Metrics.record("db.restoreTransaction", start, rows);
+        return rows > 0;
+    }
+
+    /**
+     * Hard-delete tombstones older than a cutoff in every user's ledger
+     * Each batch is its own short write transaction, so foreground writes
+     * never wait long behind the purge. Consumers saw the delete when it
+     * was logged, so purging is not logged again
+     *
+     * @param deletedBefore Purge rows deleted before this time in milliseconds
+     * @param cancelled Checked between batches; return true to stop early
+     * @return Number of rows purged
+     */
+    public int purgeDeletedTransactions(long deletedBefore, BooleanSupplier cancelled) {
+        long start = Metrics.start();
+        int[] purged = new int[1];
+        forEachLedger(ledger -> {
+            SQLiteDatabase db = ledger.getWritableDatabase();
+            int[] batch = new int[1];
+            do {
+                boolean committed = runInTransaction(db,
+                        unit -> batch[0] = unit.update(SQL_PURGE_DELETED_TRANSACTIONS, deletedBefore, PURGE_BATCH_SIZE));
+                if (!committed) {
+                    break;
+                }
+                purged[0] += batch[0];
+            } while (batch[0] == PURGE_BATCH_SIZE && !cancelled.getAsBoolean());
+            return !cancelled.getAsBoolean();
+        });
+        Metrics.record("db.purgeDeletedTransactions", start, purged[0]);
+        return purged[0];
+    }
+
+    /**
+     * Sum of amounts dated in [startDate, endDate)
+     * Use PeriodResolver for the range so periods meet without gaps
+     *
+     * @param endDate Exclusive end in milliseconds
+     */
+    public double getTotalAmount(String userEmail, String type, long startDate, long endDate) {
+        long start = Metrics.start();
+        Ledger ledger = ledger(userEmail);
+        SQLiteDatabase db = ledger.getReadableDatabase();
+        String query = "SELECT SUM(" + COL_AMOUNT + ") FROM " + TABLE_TRANSACTIONS +
+                " WHERE " + COL_USER_EMAIL + "=? AND " + COL_TYPE + "=? AND " + NOT_DELETED +
+                " AND " + COL_DATE + ">=? AND " + COL_DATE + "<?";
+
+        Cursor cursor = db.rawQuery(query, new String[]{userEmail, type, String.valueOf(startDate), String.valueOf(endDate)});
+
+        double total = 0;
+        if (cursor.moveToFirst()) {
+            total = cursor.getDouble(0);
+        }
+        cursor.close();
+
+        long cutoff = ledger.getArchivedBefore();
+        if (startDate < cutoff) {
+            total += ledger.getArchive().getTotalAmount(userEmail, type, startDate, Math.min(endDate, cutoff));
+        }
+        Metrics.record("db.getTotalAmount", start, 1);
+        return total;
+    }
+
+    // ==================== BULK OPERATIONS ====================
+
+    /**
+     * Insert many transactions in one transaction
+     * Observers get a single onTransactionsReloaded(userEmail) instead of one callback per row
+     *
+     * @param transactions Rows to insert (ids are ignored)
+     * @return true if all rows were committed
+     */
+    public boolean importTransactions(String userEmail, List<Transaction> transactions) {
+        long start = Metrics.start();
+        PeriodResolver resolver = PeriodResolver.getInstance();
+        boolean committed = runInTransaction(userEmail, unit -> {
+            for (Transaction transaction : transactions) {
+                long date = transaction.getDate();
+                long id = unit.insert(SQL_INSERT_TRANSACTION, transaction.getUserEmail(), transaction.getAmount(),
+                        date, transaction.getCategory(), transaction.getDescription(),
+                        transaction.getType(), resolver.epochDayOf(date), resolver.yearMonthOf(date));
+                ChangeLog.append(unit, userEmail, ChangeLog.ENTITY_TRANSACTION, id, ChangeLog.OP_INSERT);
+            }
+        });
+        if (committed) {
+            notifyTransactionsReloaded(userEmail);
+        }
+        Metrics.record("db.importTransactions", start, committed ? transactions.size() : 0);
+        return committed;
+    }
+
+    /**
+     * Insert many budgets in one transaction
+     *
+     * @param budgets Rows to insert (ids are ignored)
+     * @return true if all rows were committed
+     */
+    public boolean importBudgets(String userEmail, List<Budget> budgets) {
+        long start = Metrics.start();
+        boolean committed = runInTransaction(userEmail, unit -> {
+            for (Budget budget : budgets) {
+                long id = unit.insert(SQL_INSERT_BUDGET, budget.getUserEmail(), budget.getCategory(),
+                        budget.getLimitAmount(), budget.getAlertThreshold(), budget.getMonth(), budget.getYear());
+                ChangeLog.append(unit, userEmail, ChangeLog.ENTITY_BUDGET, id, ChangeLog.OP_INSERT);
+            }
+        });
+        if (committed) {
+            notifyBudgetsChanged();
+        }
+        Metrics.record("db.importBudgets", start, committed ? budgets.size() : 0);
+        return committed;
+    }
+
+    /**
+     * Insert many categories in one transaction
+     *
+     * @param categories Rows to insert (ids are ignored)
+     * @return true if all rows were committed
+     */
+    public boolean importCategories(String userEmail, List<Category> categories) {
+        long start = Metrics.start();
+        boolean committed = runInTransaction(userEmail, unit -> {
+            for (Category category : categories) {
+                long id = unit.insert(SQL_INSERT_CATEGORY, category.getUserEmail(), category.getCategoryName(),
+                        category.getType());
+                ChangeLog.append(unit, userEmail, ChangeLog.ENTITY_CATEGORY, id, ChangeLog.OP_INSERT);
+            }
+        });
+        Metrics.record("db.importCategories", start, committed ? categories.size() : 0);
+        return committed;
+    }
+
+    /**
+     * Delete many transactions with one UPDATE, leaving tombstones that
+     * restoreTransactions() can bring back
+     * Observers get one onTransactionDeleted() per row, as for single deletes
+     *
+     * @param selection Transactions to delete, as listed on screen
+     * @return Number of rows deleted, or -1 if nothing was committed
+     */
+    public int deleteTransactions(String userEmail, List<Transaction> selection) {
+        long start = Metrics.start();
+        Ledger ledger = ledger(userEmail);
+        restoreIfArchived(ledger, selection);
+        long now = System.currentTimeMillis();
+
+        int[] deleted = new int[1];
+        List<Map<Integer, Transaction>> changes = new ArrayList<>(2);
+        boolean committed = runInTransaction(ledger.getWritableDatabase(), unit -> {
+            fillSelection(unit, selection, 0);
+            readSelection(unit, changes);
+            ChangeLog.appendForRows(unit, ChangeLog.ENTITY_TRANSACTION, ChangeLog.OP_DELETE,
+                    TABLE_TRANSACTIONS, IN_SELECTION + " AND " + NOT_DELETED);
+            deleted[0] = unit.update(SQL_SOFT_DELETE_SELECTION, now);
+            readSelection(unit, changes);
+            unit.update(SQL_CLEAR_SELECTION);
+        });
+        return finishBulkWrite("db.deleteTransactions", start, committed, deleted[0], changes);
+    }
+
+    /**
+     * Undo deleteTransactions(); rows already purged stay deleted
+     *
+     * @return Number of rows restored, or -1 if nothing was committed
+     */
+    public int restoreTransactions(String userEmail, List<Transaction> selection) {
+        long start = Metrics.start();
+        int[] restored = new int[1];
+        List<Map<Integer, Transaction>> changes = new ArrayList<>(2);
+        boolean committed = runInTransaction(userEmail, unit -> {
+            fillSelection(unit, selection, 0);
+            readSelection(unit, changes);
+            ChangeLog.appendForRows(unit, ChangeLog.ENTITY_TRANSACTION, ChangeLog.OP_INSERT,
+                    TABLE_TRANSACTIONS, IN_SELECTION + " AND " + COL_DELETED_AT + " IS NOT NULL");
+            restored[0] = unit.update(SQL_UNDELETE_SELECTION);
+            readSelection(unit, changes);
+            unit.update(SQL_CLEAR_SELECTION);
+        });
+        return finishBulkWrite("db.restoreTransactions", start, committed, restored[0], changes);
+    }
+
+    /**
+     * Move many transactions to another category with one UPDATE
+     *
+     * @return Number of rows changed, or -1 if nothing was committed
+     */
+    public int recategorizeTransactions(String userEmail, List<Transaction> selection, String category) {
+        long start = Metrics.start();
+        Ledger ledger = ledger(userEmail);
+        restoreIfArchived(ledger, selection);
+
+        int[] updated = new int[1];
+        List<Map<Integer, Transaction>> changes = new ArrayList<>(2);
+        boolean committed = runInTransaction(ledger.getWritableDatabase(), unit -> {
+            fillSelection(unit, selection, 0);
+            readSelection(unit, changes);
+            ChangeLog.appendForRows(unit, ChangeLog.ENTITY_TRANSACTION, ChangeLog.OP_UPDATE, TABLE_TRANSACTIONS,
+                    IN_SELECTION + " AND " + NOT_DELETED + " AND " + COL_CATEGORY + "<>?", category);
+            updated[0] = unit.update(SQL_RECATEGORIZE_SELECTION, category, category);
+            readSelection(unit, changes);
+            unit.update(SQL_CLEAR_SELECTION);
+        });
+        return finishBulkWrite("db.recategorizeTransactions", start, committed, updated[0], changes);
+    }
+
+    /**
+     * Move many transactions by whole calendar days with one UPDATE
+     * New dates are computed from the selection's dates in the device's
+     * time zone, so the local time of day and the calendar columns stay right
+     * across daylight saving changes
+     *
+     * @param days Days to move by; negative moves back
+     * @return Number of rows changed, or -1 if nothing was committed
+     */
+    public int shiftTransactionDates(String userEmail, List<Transaction> selection, int days) {
+        long start = Metrics.start();
+        Ledger ledger = ledger(userEmail);
+        restoreIfArchived(ledger, selection);
+
+        int[] updated = new int[1];
+        List<Map<Integer, Transaction>> changes = new ArrayList<>(2);
+        boolean committed = runInTransaction(ledger.getWritableDatabase(), unit -> {
+            fillSelection(unit, selection, days);
+            readSelection(unit, changes);
+            ChangeLog.appendForRows(unit, ChangeLog.ENTITY_TRANSACTION, ChangeLog.OP_UPDATE,
+                    TABLE_TRANSACTIONS, IN_SELECTION + " AND " + NOT_DELETED);
+            updated[0] = unit.update(SQL_SHIFT_SELECTION);
+            readSelection(unit, changes);
+            unit.update(SQL_CLEAR_SELECTION);
+        });
+        return finishBulkWrite("db.shiftTransactionDates", start, committed, updated[0], changes);
+    }
+
+    /**
+     * Load a selection into the temp table the bulk statements join against
+     * Inside the bulk write's transaction, so a rollback leaves it empty
+     *
+     * @param days Calendar days to shift the stored dates by; 0 to keep them
+     */
+    private static void fillSelection(UnitOfWork unit, List<Transaction> selection, int days) {
+        unit.getDatabase().execSQL(SQL_CREATE_SELECTION);
+        unit.update(SQL_CLEAR_SELECTION);
+        PeriodResolver resolver = PeriodResolver.getInstance();
+        for (Transaction transaction : selection) {
+            long date = resolver.plusDays(transaction.getDate(), days);
+            unit.insert(SQL_SELECT_ROW, transaction.getId(), date, resolver.epochDayOf(date), resolver.yearMonthOf(date));
+        }
+    }
+
+    /**
+     * Snapshot the selection's live rows by id, for the observer callbacks
+     * Called before and after the bulk statement; skipped without observers
+     *
+     * @param snapshots Receives the snapshot; before comes first, then after
+     */
+    private void readSelection(UnitOfWork unit, List<Map<Integer, Transaction>> snapshots) {
+        if (transactionObservers.isEmpty()) {
+            return;
+        }
+        Map<Integer, Transaction> rows = new HashMap<>();
+        Cursor cursor = unit.getDatabase().query(TABLE_TRANSACTIONS, null, IN_SELECTION + " AND " + NOT_DELETED,
+                null, null, null, null);
+        try {
+            while (cursor.moveToNext()) {
+                Transaction transaction = readTransaction(cursor);
+                rows.put(transaction.getId(), transaction);
+            }
+        } finally {
+            cursor.close();
+        }
+        snapshots.add(rows);
+    }
+
+    /**
+     * Tell observers about each row a bulk write changed, as the single-row
+     * writes do, so in-memory indexes stay incremental
+     *
+     * @param changes Live rows of the selection before and after the write
+     */
+    private int finishBulkWrite(String metric, long start, boolean committed, int rows,
+                                List<Map<Integer, Transaction>> changes) {
+        if (committed && rows > 0 && changes.size() == 2) {
+            Map<Integer, Transaction> before = changes.get(0);
+            Map<Integer, Transaction> after = changes.get(1);
+            for (Transaction old : before.values()) {
+                Transaction current = after.get(old.getId());
+                if (current == null) {
+                    for (TransactionObserver observer : transactionObservers) {
+                        observer.onTransactionDeleted(old);
+                    }
+                } else if (!sameValues(old, current)) {
+                    for (TransactionObserver observer : transactionObservers) {
+                        observer.onTransactionUpdated(old, current);
+                    }
+                }
+            }
+            for (Transaction current : after.values()) {
+                if (!before.containsKey(current.getId())) {
+                    for (TransactionObserver observer : transactionObservers) {
+                        observer.onTransactionAdded(current);
+                    }
+                }
+            }
+        }
+        Metrics.record(metric, start, committed ? rows : 0);
+        return committed ? rows : -1;
+    }
+
+    private static boolean sameValues(Transaction a, Transaction b) {
+        return a.getAmount() == b.getAmount() && a.getDate() == b.getDate()
+                && Objects.equals(a.getCategory(), b.getCategory())
+                && Objects.equals(a.getDescription(), b.getDescription());
+    }
+
+    /**
+     * Replace a user's transactions, budgets and categories in one transaction
+     * The loader deletes nothing itself; it streams the new rows in through
+     * importTransactions(), importBudgets() and importCategories(), which join
+     * this transaction. If the loader throws, the old ledger stays untouched
+     *
+     * @param loader Inserts the new ledger
+     * @return true if the new ledger was committed
+     */
+    public boolean replaceLedger(String userEmail, UnitOfWork.Work loader) {
+        long start = Metrics.start();
+        Ledger ledger = ledger(userEmail);
+        long archivedBefore = ledger.getArchivedBefore();
+        boolean committed = runInTransaction(ledger.getWritableDatabase(), unit -> {
+            SQLiteDatabase db = unit.getDatabase();
+            String[] args = new String[]{userEmail};
+            String byUser = COL_USER_EMAIL + "=?";
+            ChangeLog.appendForRows(unit, ChangeLog.ENTITY_TRANSACTION, ChangeLog.OP_DELETE,
+                    TABLE_TRANSACTIONS, byUser + " AND " + NOT_DELETED, userEmail);
+            ChangeLog.appendForRows(unit, ChangeLog.ENTITY_BUDGET, ChangeLog.OP_DELETE,
+                    TABLE_BUDGETS, byUser, userEmail);
+            ChangeLog.appendForRows(unit, ChangeLog.ENTITY_CATEGORY, ChangeLog.OP_DELETE,
+                    TABLE_CATEGORIES, byUser, userEmail);
+            if (archivedBefore > 0) {
+                appendArchivedDeletes(unit, ledger, userEmail);
+            }
+            db.delete(TABLE_TRANSACTIONS, COL_USER_EMAIL + "=?", args);
+            db.delete(TABLE_BUDGETS, COL_USER_EMAIL + "=?", args);
+            db.delete(TABLE_CATEGORIES, COL_USER_EMAIL + "=?", args);
+            db.delete(TABLE_ARCHIVE_ROLLUPS, COL_USER_EMAIL + "=?", args);
+            // Commits with the new rows, so the old archive is ignored even if deleting it fails
+            db.delete(TABLE_METADATA, COL_META_KEY + "=?", new String[]{META_ARCHIVED_BEFORE});
+            loader.run(unit);
+        });
+        if (committed) {
+            // Archived rows were replaced too; the next archive run moves old rows out again
+            ledger.archivedBefore = 0;
+            if (archivedBefore > 0) {
+                ledger.getArchive().deleteUser(userEmail);
+            }
+            notifyTransactionsReloaded(userEmail);
+            notifyBudgetsChanged();
+        }
+        Metrics.record("db.replaceLedger", start, committed ? 1 : 0);
+        return committed;
+    }
+
+    /**
+     * Log the deletion of a user's archived transactions
+     * They live in another file, so they can't join the set-based append
+     */
+    private static void appendArchivedDeletes(UnitOfWork unit, Ledger ledger, String userEmail) {
+        Cursor rows = ledger.getArchive().getRows(userEmail);
+        try {
+            int idColumn = rows.getColumnIndexOrThrow(COL_TRANS_ID);
+            while (rows.moveToNext()) {
+                ChangeLog.append(unit, userEmail, ChangeLog.ENTITY_TRANSACTION, rows.getLong(idColumn),
+                        ChangeLog.OP_DELETE);
+            }
+        } finally {
+            rows.close();
+        }
+    }
+
+    /**
+     * Visit every transaction of a user without loading them all at once
+     * Archived rows come first, then the rest, each oldest first
+     *
+     * @return Number of transactions visited
+     */
+    public int forEachTransaction(String userEmail, Consumer<Transaction> visitor) {
+        long start = Metrics.start();
+        Ledger ledger = ledger(userEmail);
+        int count = ledger.getArchivedBefore() > 0 ? ledger.getArchive().forEachTransaction(userEmail, visitor) : 0;
+
+        SQLiteDatabase db = ledger.getReadableDatabase();
+        Cursor cursor = db.query(TABLE_TRANSACTIONS, null, COL_USER_EMAIL + "=? AND " + NOT_DELETED,
+                new String[]{userEmail}, null, null, COL_DATE + " ASC");
+        try {
+            while (cursor.moveToNext()) {
+                visitor.accept(readTransaction(cursor));
+                count++;
+            }
+        } finally {
+            cursor.close();
+        }
+        Metrics.record("db.forEachTransaction", start, count);
+        return count;
+    }
+
+    /**
+     * Every budget of a user, oldest month first
+     */
+    public List<Budget> getAllBudgets(String userEmail) {
+        long start = Metrics.start();
+        SQLiteDatabase db = ledger(userEmail).getReadableDatabase();
+        Cursor cursor = db.query(TABLE_BUDGETS, null, COL_USER_EMAIL + "=?", new String[]{userEmail},
+                null, null, COL_YEAR + " ASC, " + COL_MONTH + " ASC");
+
+        List<Budget> budgets = new ArrayList<>();
+        while (cursor.moveToNext()) {
+            budgets.add(readBudget(cursor));
+        }
+        cursor.close();
+        Metrics.record("db.getAllBudgets", start, budgets.size());
+        return budgets;
+    }
+
+    /**
+     * Every category of a user, income and expense
+     */
+    public List<Category> getAllCategories(String userEmail) {
+        long start = Metrics.start();
+        SQLiteDatabase db = ledger(userEmail).getReadableDatabase();
+        Cursor cursor = db.query(TABLE_CATEGORIES, null, COL_USER_EMAIL + "=?", new String[]{userEmail},
+                null, null, COL_CAT_ID + " ASC");
+
+        List<Category> categories = new ArrayList<>();
+        while (cursor.moveToNext()) {
+            Category category = new Category(userEmail,
+                    cursor.getString(cursor.getColumnIndexOrThrow(COL_CAT_NAME)),
+                    cursor.getString(cursor.getColumnIndexOrThrow(COL_CAT_TYPE)));
+            category.setId(cursor.getInt(cursor.getColumnIndexOrThrow(COL_CAT_ID)));
+            categories.add(category);
+        }
+        cursor.close();
+        Metrics.record("db.getAllCategories", start, categories.size());
+        return categories;
+    }
+
+    /**
+     * Delete a user and everything they own
+     * Their ledger files go first: if the directory delete is then
+     * interrupted, the account survives with an empty ledger rather than
+     * leaving data behind without an owner
+     *
+     * @param email User email
+     * @return true if the user existed and was deleted
+     */
+    public boolean deleteUserData(String email) {
+        long start = Metrics.start();
+        deleteLedgerFiles(email);
+
+        int[] rows = new int[1];
+        boolean committed = runInTransaction(this.getWritableDatabase(), unit -> {
+            SQLiteDatabase db = unit.getDatabase();
+            String[] args = new String[]{email};
+            db.delete(TABLE_SESSIONS, COL_USER_EMAIL + "=?", args);
+            rows[0] = db.delete(TABLE_USERS, COL_EMAIL + "=?", args);
+            if (rows[0] > 0) {
+                ChangeLog.append(unit, email, ChangeLog.ENTITY_USER, 0, ChangeLog.OP_DELETE);
+            }
+        });
+        notifyTransactionsReloaded(email);
+        notifyBudgetsChanged();
+        Metrics.record("db.deleteUserData", start, rows[0]);
+        return committed && rows[0] > 0;
+    }
+
+    // ==================== ARCHIVE ====================
+
+    /**
+     * Transactions dated before this cutoff live in the user's archive file,
+     * with their monthly totals kept in archive_rollups
+     *
+     * @return Cutoff in milliseconds, or 0 if nothing was archived yet
+     */
+    public long getArchivedBefore(String userEmail) {
+        return ledger(userEmail).getArchivedBefore();
+    }
+
+    /**
+     * Move every transaction of a user dated before a cutoff into their archive file
+     * Rows are copied to the archive while the ledger's write transaction
+     * is held, then rolled up and deleted there in that same transaction.
+     * A crash between the two commits leaves copies the next run overwrites.
+     * Rows restored for editing or backdated since the last run are moved again
+     * Call from a background thread
+     *
+     * @param cutoff Start of a month in milliseconds; never moves the cutoff back
+     * @return Number of rows moved, or -1 if the move was rolled back
+     */
+    public int archiveTransactionsBefore(String userEmail, long cutoff) {
+        long start = Metrics.start();
+        Ledger ledger = ledger(userEmail);
+        long effective = Math.max(cutoff, ledger.getArchivedBefore());
+        String[] args = new String[]{String.valueOf(effective)};
+
+        // Nothing to move on most logins - one range probe on the date index
+        if (DatabaseUtils.queryNumEntries(ledger.getReadableDatabase(), TABLE_TRANSACTIONS,
+                COL_DATE + "<? AND " + NOT_DELETED, args) == 0) {
+            Metrics.record("db.archiveTransactionsBefore", start, 0);
+            return 0;
+        }
+
+        int[] moved = new int[1];
+        boolean committed;
+        synchronized (ledger.archiveLock) {
+            if (ledger.getArchivedBefore() <= 0) {
+                // Nothing is archived yet; rows left by a replaced ledger must not resurface
+                ledger.getArchive().deleteUser(userEmail);
+            }
+            committed = runInTransaction(ledger.getWritableDatabase(), unit -> {
+                SQLiteDatabase db = unit.getDatabase();
+                // Tombstones stay behind, still undoable, until the batched purge
+                Cursor rows = db.query(TABLE_TRANSACTIONS, null, COL_DATE + "<? AND " + NOT_DELETED,
+                        args, null, null, null);
+                try {
+                    moved[0] = ledger.getArchive().copyRows(rows);
+                } finally {
+                    rows.close();
+                }
+                if (moved[0] < 0) {
+                    throw new SQLException("Archive copy failed");
+                }
+
+                Cursor totals = db.rawQuery("SELECT " + COL_USER_EMAIL + ", " + COL_TYPE + ", " + COL_YEAR_MONTH + ", " +
+                        COL_CATEGORY + ", SUM(" + COL_AMOUNT + "), COUNT(*) FROM " + TABLE_TRANSACTIONS +
+                        " WHERE " + COL_DATE + "<? AND " + NOT_DELETED +
+                        " GROUP BY " + COL_USER_EMAIL + ", " + COL_TYPE + ", " + COL_YEAR_MONTH + ", " + COL_CATEGORY, args);
+                try {
+                    while (totals.moveToNext()) {
+                        addToRollup(unit, totals.getString(0), totals.getString(1), totals.getInt(2),
+                                totals.getString(3), totals.getDouble(4), totals.getInt(5));
+                    }
+                } finally {
+                    totals.close();
+                }
+
+                unit.update(SQL_DELETE_TRANSACTIONS_BEFORE, effective);
+                unit.insert(SQL_PUT_METADATA, META_ARCHIVED_BEFORE, effective);
+            });
+            if (committed) {
+                ledger.archivedBefore = effective;
+            }
+        }
+        Metrics.record("db.archiveTransactionsBefore", start, committed ? moved[0] : 0);
+        return committed ? moved[0] : -1;
+    }
+
+    /**
+     * Move an archived transaction back into its ledger so it can be
+     * edited or deleted like any other; a later archive run moves it out again
+     */
+    private void restoreIfArchived(Ledger ledger, int id) {
+        if (ledger.getArchivedBefore() == 0) {
+            return;
+        }
+        String[] args = new String[]{String.valueOf(id)};
+        if (DatabaseUtils.queryNumEntries(ledger.getReadableDatabase(), TABLE_TRANSACTIONS, COL_TRANS_ID + "=?", args) > 0) {
+            return;
+        }
+
+        long start = Metrics.start();
+        synchronized (ledger.archiveLock) {
+            ContentValues row = ledger.getArchive().getRow(id);
+            if (row == null) {
+                return;
+            }
+
+            boolean committed = runInTransaction(ledger.getWritableDatabase(), unit -> {
+                unit.getDatabase().insertOrThrow(TABLE_TRANSACTIONS, null, row);
+                addToRollup(unit, row.getAsString(COL_USER_EMAIL), row.getAsString(COL_TYPE),
+                        row.getAsInteger(COL_YEAR_MONTH), row.getAsString(COL_CATEGORY),
+                        -row.getAsDouble(COL_AMOUNT), -1);
+                unit.update(SQL_DELETE_EMPTY_ROLLUPS);
+            });
+            // Until this delete the row is in both files; the next archive run reconciles that
+            if (committed) {
+                ledger.getArchive().delete(id);
+            }
+            Metrics.record("db.restoreArchivedTransaction", start, committed ? 1 : 0);
+        }
+    }
+
+    private void addToRollup(UnitOfWork unit, String userEmail, String type, int yearMonth,
+                             String category, double amount, int count) {
+        if (unit.update(SQL_ADD_TO_ROLLUP, amount, count, userEmail, type, yearMonth, category) == 0) {
+            unit.insert(SQL_INSERT_ROLLUP, userEmail, type, yearMonth, category, amount, count);
+        }
+    }
+
+    /**
+     * restoreIfArchived() for the rows of a selection old enough to be archived
+     */
+    private void restoreIfArchived(Ledger ledger, List<Transaction> selection) {
+        long cutoff = ledger.getArchivedBefore();
+        for (Transaction transaction : selection) {
+            if (transaction.getDate() < cutoff) {
+                restoreIfArchived(ledger, transaction.getId());
+            }
+        }
+    }
+
+    /**
+     * Whether a month (year * 100 + month) is older than the archive cutoff
+     */
+    private static boolean isArchivedPeriod(Ledger ledger, int period) {
+        long cutoff = ledger.getArchivedBefore();
+        return cutoff > 0 && period < PeriodResolver.getInstance().yearMonthOf(cutoff);
+    }
+
+    /**
+     * Merge two newest-first lists into one newest-first list
+     */
+    private static List<Transaction> mergeNewestFirst(List<Transaction> recent, List<Transaction> archived) {
+        if (archived.isEmpty()) {
+            return recent;
+        }
+
+        List<Transaction> merged = new ArrayList<>(recent.size() + archived.size());
+        int i = 0;
+        int j = 0;
+        while (i < recent.size() && j < archived.size()) {
+            merged.add(recent.get(i).getDate() >= archived.get(j).getDate() ? recent.get(i++) : archived.get(j++));
+        }
+        merged.addAll(recent.subList(i, recent.size()));
+        merged.addAll(archived.subList(j, archived.size()));
+        return merged;
+    }
+
+    // ==================== BACKUP ====================
+
+    /**
+     * Files that together hold all data: the user directory, each user's
+     * ledger and archive file if it exists, and their write-ahead logs if not empty
+     */
+    public List<File> getDatabaseFiles() {
+        List<String> names = new ArrayList<>();
+        names.add(DATABASE_NAME);
+        for (String email : getUserEmails()) {
+            String name = ledgerName(email);
+            names.add(name);
+            names.add(archiveName(name));
+        }
+
+        List<File> files = new ArrayList<>();
+        for (String name : names) {
+            File file = appContext.getDatabasePath(name);
+            File wal = new File(file.getPath() + "-wal");
+            if (file.exists()) {
+                files.add(file);
+            }
+            if (wal.length() > 0) {
+                files.add(wal);
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Run an action while no write can reach the database files
+     * Each file is checkpointed, then a write transaction is held open on it
+     * until the action returns: the directory first, then every ledger and
+     * its archive. Ledgers of users who aren't logged in are opened just for
+     * the action. Reads carry on from their WAL snapshots; writers wait
+     */
+    public void runWithWritesBlocked(Runnable action) {
+        List<String> wereOpen;
+        synchronized (ledgers) {
+            wereOpen = new ArrayList<>(ledgers.keySet());
+        }
+
+        List<SQLiteDatabase> held = new ArrayList<>();
+        List<String> emails = getUserEmails();
+        try {
+            holdWrites(this.getWritableDatabase(), held);
+            for (String email : emails) {
+                Ledger ledger = ledger(email);
+                holdWrites(ledger.getWritableDatabase(), held);
+                if (ledger.getArchivedBefore() > 0) {
+                    holdWrites(ledger.getArchive().getWritableDatabase(), held);
+                }
+            }
+            action.run();
+        } finally {
+            for (int i = held.size() - 1; i >= 0; i--) {
+                held.get(i).endTransaction();
+            }
+            for (String email : emails) {
+                if (!wereOpen.contains(email)) {
+                    closeUser(email);
+                }
+            }
+        }
+    }
+
+    private static void holdWrites(SQLiteDatabase db, List<SQLiteDatabase> held) {
+        checkpoint(db);
+        db.beginTransactionNonExclusive();
+        held.add(db);
+    }
+
+    /**
+     * Swap in verified database files, as staged by DatabaseBackup.restore()
+     * Holds the helpers' locks so no connection can open mid-swap. Every
+     * file is first moved next to the live ones under a temporary name, then
+     * the live files are set aside and the new ones renamed into place; the
+     * old files are only deleted once all of that worked, and put back if
+     * any step failed. Ledgers missing from the backup belong to users
+     * created since and are deleted. Older schemas are migrated on reopen,
+     * including a split of a pre-ledger backup; observers are told everything changed
+     *
+     * @param directory Directory holding FinanceManager.db and the ledger files
+     * @return true if the files were swapped
+     */
+    public boolean replaceDatabaseFiles(File directory) {
+        long start = Metrics.start();
+        boolean swapped;
+
+        synchronized (ledgers) {
+            synchronized (this) {
+                close();
+                for (Ledger ledger : ledgers.values()) {
+                    ledger.closeFiles();
+                }
+                ledgers.clear();
+                openedUsers.clear();
+                legacySplitChecked = false;
+
+                File target = appContext.getDatabasePath(DATABASE_NAME);
+                File databaseDirectory = target.getParentFile();
+
+                List<File> staged = new ArrayList<>();
+                staged.add(new File(directory, DATABASE_NAME));
+                File[] stagedLedgers = directory.listFiles(file -> isLedgerFile(file.getName()));
+                if (stagedLedgers != null) {
+                    staged.addAll(Arrays.asList(stagedLedgers));
+                }
+                List<File> live = new ArrayList<>();
+                if (target.exists()) {
+                    live.add(target);
+                }
+                File[] liveLedgers = databaseDirectory.listFiles(file -> isLedgerFile(file.getName()));
+                if (liveLedgers != null) {
+                    live.addAll(Arrays.asList(liveLedgers));
+                }
+                swapped = swapFiles(staged, live, databaseDirectory);
+            }
+        }
+
+        if (swapped) {
+            getWritableDatabase();
+            splitLegacyLedgersIfNeeded();
+            notifyTransactionsReloaded(null);
+            notifyBudgetsChanged();
+        }
+        Metrics.record("db.replaceDatabaseFiles", start, swapped ? 1 : 0);
+        return swapped;
+    }
+
+    /**
+     * Newest schema version this build can open for a database file
+     * Restores reject files from a newer app version; schemas can't be downgraded
+     */
+    static int getMaxSchemaVersion(String fileName) {
+        if (fileName.equals(DATABASE_NAME)) {
+            return DATABASE_VERSION;
+        }
+        return fileName.endsWith(ARCHIVE_SUFFIX) ? ArchiveDatabase.DATABASE_VERSION : LEDGER_VERSION;
+    }
+
+    private static boolean isLedgerFile(String fileName) {
+        return fileName.startsWith(LEDGER_PREFIX) && fileName.endsWith(LEDGER_SUFFIX);
+    }
+
+    /**
+     * Replace the live files with the staged ones, all or nothing
+     *
+     * @param staged Files to put in place, named as they should be
+     * @param live Files in use now; deleted once every staged file is in place
+     * @return false if anything failed, with the live files back where they were
+     */
+    private static boolean swapFiles(List<File> staged, List<File> live, File databaseDirectory) {
+        // Next to the live files first, so the swap itself only renames within one directory
+        List<File> incoming = new ArrayList<>();
+        for (File file : staged) {
+            File moved = new File(databaseDirectory, file.getName() + INCOMING_SUFFIX);
+            if (!file.renameTo(moved)) {
+                Log.e(TAG, "Could not move " + file + " into " + databaseDirectory);
+                deleteFiles(incoming);
+                return false;
+            }
+            incoming.add(moved);
+        }
+
+        List<File> replaced = new ArrayList<>();
+        for (File file : live) {
+            File aside = new File(file.getPath() + REPLACED_SUFFIX);
+            if (!file.renameTo(aside)) {
+                Log.e(TAG, "Could not set aside " + file);
+                putBack(replaced);
+                deleteFiles(incoming);
+                return false;
+            }
+            replaced.add(aside);
+        }
+
+        List<File> placed = new ArrayList<>();
+        for (File file : incoming) {
+            File target = new File(withoutSuffix(file, INCOMING_SUFFIX));
+            // Closing checkpointed the old WAL; leftovers would be replayed onto the new file
+            new File(target.getPath() + "-wal").delete();
+            new File(target.getPath() + "-shm").delete();
+            if (!file.renameTo(target)) {
+                Log.e(TAG, "Could not rename " + file + " to " + target);
+                deleteFiles(placed);
+                deleteFiles(incoming);
+                putBack(replaced);
+                return false;
+            }
+            placed.add(target);
+        }
+
+        for (File file : replaced) {
+            file.delete();
+        }
+        return true;
+    }
+
+    /**
+     * Rename files set aside by swapFiles() back to their own names
+     */
+    private static void putBack(List<File> replaced) {
+        for (File file : replaced) {
+            File original = new File(withoutSuffix(file, REPLACED_SUFFIX));
+            if (!file.renameTo(original)) {
+                Log.e(TAG, "Could not put back " + original + "; it is kept as " + file);
+            }
+        }
+    }
+
+    private static String withoutSuffix(File file, String suffix) {
+        String path = file.getPath();
+        return path.substring(0, path.length() - suffix.length());
+    }
+
+    private static void deleteFiles(List<File> files) {
+        for (File file : files) {
+            file.delete();
+        }
+    }
+
+    private static void checkpoint(SQLiteDatabase db) {
+        Cursor cursor = db.rawQuery("PRAGMA wal_checkpoint(TRUNCATE)", null);
+        cursor.moveToFirst();
+        cursor.close();
+    }
+
+    // ==================== RECURRING OPERATIONS ====================
+
+    public long addRecurringRule(RecurringRule rule) {
+        long start = Metrics.start();
+        SQLiteDatabase db = ledger(rule.getUserEmail()).getWritableDatabase();
         ContentValues values = new ContentValues();
-        values.put(COL_AMOUNT, amount);
-        values.put(COL_DATE, date);
-        values.put(COL_CATEGORY, category);
-        values.put(COL_DESCRIPTION, description);
+        values.put(COL_USER_EMAIL, rule.getUserEmail());
+        values.put(COL_AMOUNT, rule.getAmount());
+        values.put(COL_CATEGORY, rule.getCategory());
+        values.put(COL_DESCRIPTION, rule.getDescription());
+        values.put(COL_TYPE, rule.getType());
+        values.put(COL_FREQUENCY, rule.getFrequency());
+        values.put(COL_START_DATE, rule.getStartDate());
+        values.put(COL_END_DATE, rule.getEndDate());
+        values.put(COL_NEXT_INDEX, 0);
+        values.put(COL_NEXT_DUE_DATE, rule.getStartDate());
+
+        long id = db.insert(TABLE_RECURRING_RULES, null, values);
+        Metrics.record("db.addRecurringRule", start, id != -1 ? 1 : 0);
+        return id;
+    }
 
-        int rows = db.update(TABLE_TRANSACTIONS, values, COL_TRANS_ID + "=?", new String[]{String.valueOf(id)});
-        return rows > 0;
+    public List<RecurringRule> getRecurringRules(String userEmail) {
+        long start = Metrics.start();
+        SQLiteDatabase db = ledger(userEmail).getReadableDatabase();
+        Cursor cursor = db.query(TABLE_RECURRING_RULES, null,
+                COL_USER_EMAIL + "=?",
+                new String[]{userEmail},
+                null, null, COL_NEXT_DUE_DATE + " ASC");
+
+        List<RecurringRule> rules = readRecurringRules(cursor);
+        cursor.close();
+        Metrics.record("db.getRecurringRules", start, rules.size());
+        return rules;
     }
 
-    public boolean deleteTransaction(int id) {
-        SQLiteDatabase db = this.getWritableDatabase();
-        int rows = db.delete(TABLE_TRANSACTIONS, COL_TRANS_ID + "=?", new String[]{String.valueOf(id)});
+    /**
+     * Stop a rule from generating further transactions
+     * Rows it already generated are kept
+     */
+    public boolean deleteRecurringRule(String userEmail, int ruleId) {
+        long start = Metrics.start();
+        SQLiteDatabase db = ledger(userEmail).getWritableDatabase();
+        int rows = db.delete(TABLE_RECURRING_RULES, COL_RULE_ID + "=?", new String[]{String.valueOf(ruleId)});
+        Metrics.record("db.deleteRecurringRule", start, rows);
         return rows > 0;
     }
 
-    public double getTotalAmount(String userEmail, String type, long startDate, long endDate) {
-        SQLiteDatabase db = this.getReadableDatabase();
-        String query = "SELECT SUM(" + COL_AMOUNT + ") FROM " + TABLE_TRANSACTIONS +
-                " WHERE " + COL_USER_EMAIL + "=? AND " + COL_TYPE + "=?" +
-                " AND " + COL_DATE + " BETWEEN ? AND ?";
+    /**
+     * Materialize every occurrence of a user's rules that has come due
+     * Only rules with nextDueDate <= now are read, so the cost depends on the
+     * number of due occurrences, not on history length. Catch-up after a long
+     * absence is a single transaction. Re-running is harmless: each rule's
+     * cursor advances in the same transaction as its inserts, and
+     * INSERT OR IGNORE on the (rule, date) index drops any duplicate.
+     *
+     * @param now Generate occurrences dated up to this time
+     * @return Number of transactions inserted, or -1 if rolled back
+     */
+    public int generateDueRecurringTransactions(String userEmail, long now) {
+        long start = Metrics.start();
+        SQLiteDatabase db = ledger(userEmail).getWritableDatabase();
+        Cursor cursor = db.query(TABLE_RECURRING_RULES, null,
+                COL_NEXT_DUE_DATE + "<=?",
+                new String[]{String.valueOf(now)},
+                null, null, null);
+        List<RecurringRule> dueRules = readRecurringRules(cursor);
+        cursor.close();
 
-        Cursor cursor = db.rawQuery(query, new String[]{userEmail, type, String.valueOf(startDate), String.valueOf(endDate)});
+        if (dueRules.isEmpty()) {
+            Metrics.record("db.generateDueRecurringTransactions", start, 0);
+            return 0;
+        }
 
-        double total = 0;
+        List<Transaction> inserted = new ArrayList<>();
+        PeriodResolver resolver = PeriodResolver.getInstance();
+        boolean committed = runInTransaction(db, unit -> {
+            for (RecurringRule rule : dueRules) {
+                int index = rule.getNextIndex();
+                long date = rule.getNextDueDate();
+                int generated = 0;
+
+                while (date <= now && !rule.hasEnded(date) && generated < MAX_OCCURRENCES_PER_RUN) {
+                    long rowId = unit.insert(SQL_INSERT_RECURRING_OCCURRENCE,
+                            rule.getUserEmail(), rule.getAmount(), date, rule.getCategory(),
+                            rule.getDescription(), rule.getType(), rule.getId(),
+                            resolver.epochDayOf(date), resolver.yearMonthOf(date));
+                    if (rowId != -1) {
+                        ChangeLog.append(unit, userEmail, ChangeLog.ENTITY_TRANSACTION, rowId, ChangeLog.OP_INSERT);
+                        Transaction transaction = new Transaction(rule.getUserEmail(), rule.getAmount(), date,
+                                rule.getCategory(), rule.getDescription(), rule.getType());
+                        transaction.setId((int) rowId);
+                        inserted.add(transaction);
+                    }
+                    generated++;
+                    index++;
+                    date = rule.getOccurrenceDate(index);
+                }
+
+                // Ended rules park at Long.MAX_VALUE so they are never read again
+                long nextDueDate = rule.hasEnded(date) ? Long.MAX_VALUE : date;
+                unit.update(SQL_ADVANCE_RECURRING_RULE, index, nextDueDate, rule.getId());
+            }
+        });
+        if (!committed) {
+            Metrics.record("db.generateDueRecurringTransactions", start, 0);
+            return -1;
+        }
+
+        // Notify only after commit so observers never see rolled-back rows
+        for (Transaction transaction : inserted) {
+            for (TransactionObserver observer : transactionObservers) {
+                observer.onTransactionAdded(transaction);
+            }
+        }
+        Metrics.record("db.generateDueRecurringTransactions", start, inserted.size());
+        return inserted.size();
+    }
+
+    private List<RecurringRule> readRecurringRules(Cursor cursor) {
+        List<RecurringRule> rules = new ArrayList<>();
         if (cursor.moveToFirst()) {
-            total = cursor.getDouble(0);
+            do {
+                RecurringRule rule = new RecurringRule();
+                rule.setId(cursor.getInt(cursor.getColumnIndexOrThrow(COL_RULE_ID)));
+                rule.setUserEmail(cursor.getString(cursor.getColumnIndexOrThrow(COL_USER_EMAIL)));
+                rule.setAmount(cursor.getDouble(cursor.getColumnIndexOrThrow(COL_AMOUNT)));
+                rule.setCategory(cursor.getString(cursor.getColumnIndexOrThrow(COL_CATEGORY)));
+                rule.setDescription(cursor.getString(cursor.getColumnIndexOrThrow(COL_DESCRIPTION)));
+                rule.setType(cursor.getString(cursor.getColumnIndexOrThrow(COL_TYPE)));
+                rule.setFrequency(cursor.getString(cursor.getColumnIndexOrThrow(COL_FREQUENCY)));
+                rule.setStartDate(cursor.getLong(cursor.getColumnIndexOrThrow(COL_START_DATE)));
+                rule.setEndDate(cursor.getLong(cursor.getColumnIndexOrThrow(COL_END_DATE)));
+                rule.setNextIndex(cursor.getInt(cursor.getColumnIndexOrThrow(COL_NEXT_INDEX)));
+                rule.setNextDueDate(cursor.getLong(cursor.getColumnIndexOrThrow(COL_NEXT_DUE_DATE)));
+                rules.add(rule);
+            } while (cursor.moveToNext());
         }
-        cursor.close();
-        return total;
+        return rules;
     }
 
     // ==================== CATEGORY OPERATIONS ====================
 
     public boolean addCategory(String userEmail, String categoryName, String type) {
-        SQLiteDatabase db = this.getWritableDatabase();
-        ContentValues values = new ContentValues();
-        values.put(COL_USER_EMAIL, userEmail);
-        values.put(COL_CAT_NAME, categoryName);
-        values.put(COL_CAT_TYPE, type);
-
-        long result = db.insert(TABLE_CATEGORIES, null, values);
-        return result != -1;
+        long start = Metrics.start();
+        boolean committed = runInTransaction(userEmail, unit -> {
+            long id = unit.insert(SQL_INSERT_CATEGORY, userEmail, categoryName, type);
+            ChangeLog.append(unit, userEmail, ChangeLog.ENTITY_CATEGORY, id, ChangeLog.OP_INSERT);
+        });
+        Metrics.record("db.addCategory", start, committed ? 1 : 0);
+        return committed;
     }
 
     public List<String> getCategories(String userEmail, String type) {
+        long start = Metrics.start();
         List<String> categories = new ArrayList<>();
-        SQLiteDatabase db = this.getReadableDatabase();
+        SQLiteDatabase db = ledger(userEmail).getReadableDatabase();
 
         Cursor cursor = db.query(TABLE_CATEGORIES,
                 new String[]{COL_CAT_NAME},
@@ -412,34 +2324,45 @@ public class DatabaseHelper extends SQLiteOpenHelper {
             } while (cursor.moveToNext());
         }
         cursor.close();
+        Metrics.record("db.getCategories", start, categories.size());
         return categories;
     }
 
     public boolean deleteCategory(String userEmail, String categoryName, String type) {
-        SQLiteDatabase db = this.getWritableDatabase();
-        int rows = db.delete(TABLE_CATEGORIES,
-                COL_USER_EMAIL + "=? AND " + COL_CAT_NAME + "=? AND " + COL_CAT_TYPE + "=?",
-                new String[]{userEmail, categoryName, type});
+        long start = Metrics.start();
+        String where = COL_USER_EMAIL + "=? AND " + COL_CAT_NAME + "=? AND " + COL_CAT_TYPE + "=?";
+        int[] deleted = new int[1];
+        boolean committed = runInTransaction(userEmail, unit -> {
+            ChangeLog.appendForRows(unit, ChangeLog.ENTITY_CATEGORY, ChangeLog.OP_DELETE,
+                    TABLE_CATEGORIES, where, userEmail, categoryName, type);
+            deleted[0] = unit.getDatabase().delete(TABLE_CATEGORIES, where,
+                    new String[]{userEmail, categoryName, type});
+        });
+        int rows = committed ? deleted[0] : 0;
+        Metrics.record("db.deleteCategory", start, rows);
         return rows > 0;
     }
 
     // ==================== BUDGET OPERATIONS ====================
 
     public long addBudget(String userEmail, String category, double limitAmount, int alertThreshold, int month, int year) {
-        SQLiteDatabase db = this.getWritableDatabase();
-        ContentValues values = new ContentValues();
-        values.put(COL_USER_EMAIL, userEmail);
-        values.put(COL_CATEGORY, category);
-        values.put(COL_LIMIT_AMOUNT, limitAmount);
-        values.put(COL_ALERT_THRESHOLD, alertThreshold);
-        values.put(COL_MONTH, month);
-        values.put(COL_YEAR, year);
-
-        return db.insert(TABLE_BUDGETS, null, values);
+        long start = Metrics.start();
+        long[] inserted = {-1};
+        boolean committed = runInTransaction(userEmail, unit -> {
+            inserted[0] = unit.insert(SQL_INSERT_BUDGET, userEmail, category, limitAmount, alertThreshold, month, year);
+            ChangeLog.append(unit, userEmail, ChangeLog.ENTITY_BUDGET, inserted[0], ChangeLog.OP_INSERT);
+        });
+        long id = committed ? inserted[0] : -1;
+        if (id != -1) {
+            notifyBudgetsChanged();
+        }
+        Metrics.record("db.addBudget", start, id != -1 ? 1 : 0);
+        return id;
     }
 
     public Budget getBudget(String userEmail, String category, int month, int year) {
-        SQLiteDatabase db = this.getReadableDatabase();
+        long start = Metrics.start();
+        SQLiteDatabase db = ledger(userEmail).getReadableDatabase();
 
         Cursor cursor = db.query(TABLE_BUDGETS, null,
                 COL_USER_EMAIL + "=? AND " + COL_CATEGORY + "=? AND " + COL_MONTH + "=? AND " + COL_YEAR + "=?",
@@ -448,69 +2371,712 @@ public class DatabaseHelper extends SQLiteOpenHelper {
 
         Budget budget = null;
         if (cursor.moveToFirst()) {
-            budget = new Budget();
-            budget.setId(cursor.getInt(cursor.getColumnIndexOrThrow(COL_BUDGET_ID)));
-            budget.setUserEmail(cursor.getString(cursor.getColumnIndexOrThrow(COL_USER_EMAIL)));
-            budget.setCategory(cursor.getString(cursor.getColumnIndexOrThrow(COL_CATEGORY)));
-            budget.setLimitAmount(cursor.getDouble(cursor.getColumnIndexOrThrow(COL_LIMIT_AMOUNT)));
-            budget.setAlertThreshold(cursor.getInt(cursor.getColumnIndexOrThrow(COL_ALERT_THRESHOLD)));
-            budget.setMonth(cursor.getInt(cursor.getColumnIndexOrThrow(COL_MONTH)));
-            budget.setYear(cursor.getInt(cursor.getColumnIndexOrThrow(COL_YEAR)));
+            budget = readBudget(cursor);
         }
         cursor.close();
+        Metrics.record("db.getBudget", start, budget != null ? 1 : 0);
         return budget;
     }
 
-    public double getSpentInCategory(String userEmail, String category, int month, int year) {
-        SQLiteDatabase db = this.getReadableDatabase();
+    /**
+     * Get every budget of a month together with what was spent in its category
+     * One query: budgets LEFT JOIN the month's expenses grouped by category
+     *
+     * @param spentAmounts Filled with category -> amount spent
+     * @return Budgets for the month
+     */
+    public List<Budget> getBudgetsWithSpent(String userEmail, int month, int year, java.util.Map<String, Double> spentAmounts) {
+        long start = Metrics.start();
+        Ledger ledger = ledger(userEmail);
+        SQLiteDatabase db = ledger.getReadableDatabase();
+
+        int period = year * 100 + month;
+        boolean withRollups = isArchivedPeriod(ledger, period);
+
+        String query = "SELECT b.*, COALESCE(s.spent, 0) AS spent FROM " + TABLE_BUDGETS + " b" +
+                " LEFT JOIN (" + expenseTotalsQuery(withRollups) + ") s ON s." + COL_CATEGORY + " = b." + COL_CATEGORY +
+                " WHERE b." + COL_USER_EMAIL + "=? AND b." + COL_MONTH + "=? AND b." + COL_YEAR + "=?";
+
+        List<String> args = expenseTotalsArgs(userEmail, period, period, withRollups);
+        args.add(userEmail);
+        args.add(String.valueOf(month));
+        args.add(String.valueOf(year));
+        Cursor cursor = db.rawQuery(query, args.toArray(new String[0]));
+
+        List<Budget> budgets = new ArrayList<>();
+        int spentIndex = cursor.getColumnIndexOrThrow("spent");
+        if (cursor.moveToFirst()) {
+            do {
+                Budget budget = readBudget(cursor);
+                budgets.add(budget);
+                spentAmounts.put(budget.getCategory(), cursor.getDouble(spentIndex));
+            } while (cursor.moveToNext());
+        }
+        cursor.close();
+        Metrics.record("db.getBudgetsWithSpent", start, budgets.size());
+        return budgets;
+    }
+
+    /**
+     * Expense totals per category and local day, from a day onward
+     * One range scan on (userEmail, type, epochDay); days before the
+     * archive horizon are not included
+     *
+     * @param fromEpochDay First day, as days since 1970-01-01
+     * @return category -> epochDay -> amount spent
+     */
+    public Map<String, Map<Long, Double>> getDailyExpenseTotals(String userEmail, long fromEpochDay) {
+        long start = Metrics.start();
+        SQLiteDatabase db = ledger(userEmail).getReadableDatabase();
+        Cursor cursor = db.rawQuery("SELECT " + COL_CATEGORY + ", " + COL_EPOCH_DAY + ", SUM(" + COL_AMOUNT + ")" +
+                " FROM " + TABLE_TRANSACTIONS +
+                " WHERE " + COL_USER_EMAIL + "=? AND " + COL_TYPE + "='expense' AND " + NOT_DELETED +
+                " AND " + COL_EPOCH_DAY + ">=?" +
+                " GROUP BY " + COL_CATEGORY + ", " + COL_EPOCH_DAY,
+                new String[]{userEmail, String.valueOf(fromEpochDay)});
+
+        Map<String, Map<Long, Double>> totals = new HashMap<>();
+        int count = 0;
+        try {
+            while (cursor.moveToNext()) {
+                totals.computeIfAbsent(cursor.getString(0), category -> new HashMap<>())
+                        .put(cursor.getLong(1), cursor.getDouble(2));
+                count++;
+            }
+        } finally {
+            cursor.close();
+        }
+        Metrics.record("db.getDailyExpenseTotals", start, count);
+        return totals;
+    }
+
+    /**
+     * Budget vs. actual for every budgeted category over a window of months
+     * One query: budgets joined with expense totals grouped by (month, category),
+     * newest month first. Page through long histories by moving the window back
+     *
+     * @param toMonth Newest month of the window (1-12)
+     * @param toYear Year of the newest month
+     * @param monthCount Number of months in the window
+     * @return Entries ordered by month descending, then category
+     */
+    public List<BudgetHistoryEntry> getBudgetHistory(String userEmail, int toMonth, int toYear, int monthCount) {
+        long start = Metrics.start();
+        Ledger ledger = ledger(userEmail);
+        SQLiteDatabase db = ledger.getReadableDatabase();
+
+        int fromIndex = toYear * 12 + (toMonth - 1) - (monthCount - 1);
+        int fromMonth = fromIndex % 12 + 1;
+        int fromYear = fromIndex / 12;
+        int fromPeriod = fromYear * 100 + fromMonth;
+        int toPeriod = toYear * 100 + toMonth;
+        boolean withRollups = isArchivedPeriod(ledger, fromPeriod);
+
+        // Range scan on (userEmail, type, yearMonth)
+        String query = "SELECT b.*, COALESCE(s.spent, 0) AS spent FROM " + TABLE_BUDGETS + " b" +
+                " LEFT JOIN (" + expenseTotalsQuery(withRollups) + ") s" +
+                " ON s." + COL_YEAR_MONTH + " = b." + COL_YEAR + " * 100 + b." + COL_MONTH +
+                " AND s." + COL_CATEGORY + " = b." + COL_CATEGORY +
+                " WHERE b." + COL_USER_EMAIL + "=?" +
+                " AND b." + COL_YEAR + " * 100 + b." + COL_MONTH + " BETWEEN ? AND ?" +
+                " ORDER BY b." + COL_YEAR + " DESC, b." + COL_MONTH + " DESC, b." + COL_CATEGORY + " COLLATE NOCASE";
+
+        List<String> args = expenseTotalsArgs(userEmail, fromPeriod, toPeriod, withRollups);
+        args.add(userEmail);
+        args.add(String.valueOf(fromPeriod));
+        args.add(String.valueOf(toPeriod));
+        Cursor cursor = db.rawQuery(query, args.toArray(new String[0]));
+
+        List<BudgetHistoryEntry> entries = new ArrayList<>();
+        int spentIndex = cursor.getColumnIndexOrThrow("spent");
+        if (cursor.moveToFirst()) {
+            do {
+                entries.add(new BudgetHistoryEntry(readBudget(cursor), cursor.getDouble(spentIndex)));
+            } while (cursor.moveToNext());
+        }
+        cursor.close();
+        Metrics.record("db.getBudgetHistory", start, entries.size());
+        return entries;
+    }
+
+    /**
+     * Oldest month the user has a budget for, as year * 100 + month
+     *
+     * @return Period like 202401, or 0 if the user has no budgets
+     */
+    public int getEarliestBudgetPeriod(String userEmail) {
+        long start = Metrics.start();
+        SQLiteDatabase db = ledger(userEmail).getReadableDatabase();
+        Cursor cursor = db.rawQuery("SELECT MIN(" + COL_YEAR + " * 100 + " + COL_MONTH + ") FROM " + TABLE_BUDGETS +
+                " WHERE " + COL_USER_EMAIL + "=?", new String[]{userEmail});
+
+        int period = 0;
+        if (cursor.moveToFirst() && !cursor.isNull(0)) {
+            period = cursor.getInt(0);
+        }
+        cursor.close();
+        Metrics.record("db.getEarliestBudgetPeriod", start, 1);
+        return period;
+    }
+
+    /**
+     * Subquery of expense totals per (yearMonth, category) over a range of months
+     * Archived months add their rollups, so budget queries never open the archive file
+     * Bind with expenseTotalsArgs()
+     */
+    private static String expenseTotalsQuery(boolean withRollups) {
+        String recent = "SELECT " + COL_YEAR_MONTH + ", " + COL_CATEGORY + ", " + COL_AMOUNT + " AS spent" +
+                " FROM " + TABLE_TRANSACTIONS +
+                " WHERE " + COL_USER_EMAIL + "=? AND " + COL_TYPE + "='expense' AND " + NOT_DELETED +
+                " AND " + COL_YEAR_MONTH + " BETWEEN ? AND ?";
+        if (withRollups) {
+            recent += " UNION ALL SELECT " + COL_YEAR_MONTH + ", " + COL_CATEGORY + ", " + COL_TOTAL +
+                    " FROM " + TABLE_ARCHIVE_ROLLUPS +
+                    " WHERE " + COL_USER_EMAIL + "=? AND " + COL_TYPE + "='expense'" +
+                    " AND " + COL_YEAR_MONTH + " BETWEEN ? AND ?";
+        }
+        return "SELECT " + COL_YEAR_MONTH + ", " + COL_CATEGORY + ", SUM(spent) AS spent FROM (" + recent + ")" +
+                " GROUP BY " + COL_YEAR_MONTH + ", " + COL_CATEGORY;
+    }
+
+    private static List<String> expenseTotalsArgs(String userEmail, int fromPeriod, int toPeriod, boolean withRollups) {
+        List<String> args = new ArrayList<>();
+        for (int i = withRollups ? 2 : 1; i > 0; i--) {
+            args.add(userEmail);
+            args.add(String.valueOf(fromPeriod));
+            args.add(String.valueOf(toPeriod));
+        }
+        return args;
+    }
 
-        java.util.Calendar calendar = java.util.Calendar.getInstance();
-        calendar.set(year, month - 1, 1, 0, 0, 0);
-        long startDate = calendar.getTimeInMillis();
+    private Budget readBudget(Cursor cursor) {
+        Budget budget = new Budget();
+        budget.setId(cursor.getInt(cursor.getColumnIndexOrThrow(COL_BUDGET_ID)));
+        budget.setUserEmail(cursor.getString(cursor.getColumnIndexOrThrow(COL_USER_EMAIL)));
+        budget.setCategory(cursor.getString(cursor.getColumnIndexOrThrow(COL_CATEGORY)));
+        budget.setLimitAmount(cursor.getDouble(cursor.getColumnIndexOrThrow(COL_LIMIT_AMOUNT)));
+        budget.setAlertThreshold(cursor.getInt(cursor.getColumnIndexOrThrow(COL_ALERT_THRESHOLD)));
+        budget.setMonth(cursor.getInt(cursor.getColumnIndexOrThrow(COL_MONTH)));
+        budget.setYear(cursor.getInt(cursor.getColumnIndexOrThrow(COL_YEAR)));
+        return budget;
+    }
 
-        calendar.set(year, month - 1, calendar.getActualMaximum(java.util.Calendar.DAY_OF_MONTH), 23, 59, 59);
-        long endDate = calendar.getTimeInMillis();
+    public double getSpentInCategory(String userEmail, String category, int month, int year) {
+        long start = Metrics.start();
+        Ledger ledger = ledger(userEmail);
+        SQLiteDatabase db = ledger.getReadableDatabase();
 
         String query = "SELECT SUM(" + COL_AMOUNT + ") FROM " + TABLE_TRANSACTIONS +
-                " WHERE " + COL_USER_EMAIL + "=? AND " + COL_CATEGORY + "=? AND " + COL_TYPE + "='expense'" +
-                " AND " + COL_DATE + " BETWEEN ? AND ?";
+                " WHERE " + COL_USER_EMAIL + "=? AND " + COL_TYPE + "='expense' AND " + NOT_DELETED +
+                " AND " + COL_YEAR_MONTH + "=? AND " + COL_CATEGORY + "=?";
 
-        Cursor cursor = db.rawQuery(query, new String[]{userEmail, category, String.valueOf(startDate), String.valueOf(endDate)});
+        String period = String.valueOf(year * 100 + month);
+        Cursor cursor = db.rawQuery(query, new String[]{userEmail, period, category});
 
         double spent = 0;
         if (cursor.moveToFirst()) {
             spent = cursor.getDouble(0);
         }
         cursor.close();
+
+        if (isArchivedPeriod(ledger, year * 100 + month)) {
+            cursor = db.rawQuery("SELECT " + COL_TOTAL + " FROM " + TABLE_ARCHIVE_ROLLUPS +
+                    " WHERE " + COL_USER_EMAIL + "=? AND " + COL_TYPE + "='expense'" +
+                    " AND " + COL_YEAR_MONTH + "=? AND " + COL_CATEGORY + "=?", new String[]{userEmail, period, category});
+            if (cursor.moveToFirst()) {
+                spent += cursor.getDouble(0);
+            }
+            cursor.close();
+        }
+        Metrics.record("db.getSpentInCategory", start, 1);
         return spent;
     }
 
-    public boolean updateBudget(int budgetId, double limitAmount, int alertThreshold) {
-        SQLiteDatabase db = this.getWritableDatabase();
-
+    public boolean updateBudget(String userEmail, int budgetId, double limitAmount, int alertThreshold) {
+        long start = Metrics.start();
         ContentValues values = new ContentValues();
         values.put(COL_LIMIT_AMOUNT, limitAmount);
         values.put(COL_ALERT_THRESHOLD, alertThreshold);
 
-        int rows = db.update(
-                TABLE_BUDGETS,
-                values,
-                COL_BUDGET_ID + "=?",
-                new String[]{String.valueOf(budgetId)}
-        );
+        int[] updated = new int[1];
+        boolean committed = runInTransaction(userEmail, unit -> {
+            updated[0] = unit.getDatabase().update(
+                    TABLE_BUDGETS,
+                    values,
+                    COL_BUDGET_ID + "=?",
+                    new String[]{String.valueOf(budgetId)}
+            );
+            if (updated[0] > 0) {
+                ChangeLog.append(unit, userEmail, ChangeLog.ENTITY_BUDGET, budgetId, ChangeLog.OP_UPDATE);
+            }
+        });
+        int rows = committed ? updated[0] : 0;
 
+        if (rows > 0) {
+            notifyBudgetsChanged();
+        }
+        Metrics.record("db.updateBudget", start, rows);
         return rows > 0;
     }
-    public boolean deleteBudget(int budgetId) {
-        SQLiteDatabase db = this.getWritableDatabase();
-
-        int rows = db.delete(
-                TABLE_BUDGETS,
-                COL_BUDGET_ID + "=?",
-                new String[]{String.valueOf(budgetId)}
-        );
+    public boolean deleteBudget(String userEmail, int budgetId) {
+        long start = Metrics.start();
+        int[] deleted = new int[1];
+        boolean committed = runInTransaction(userEmail, unit -> {
+            deleted[0] = unit.getDatabase().delete(
+                    TABLE_BUDGETS,
+                    COL_BUDGET_ID + "=?",
+                    new String[]{String.valueOf(budgetId)}
+            );
+            if (deleted[0] > 0) {
+                ChangeLog.append(unit, userEmail, ChangeLog.ENTITY_BUDGET, budgetId, ChangeLog.OP_DELETE);
+            }
+        });
+        int rows = committed ? deleted[0] : 0;
 
+        if (rows > 0) {
+            notifyBudgetsChanged();
+        }
+        Metrics.record("db.deleteBudget", start, rows);
         return rows > 0;
     }
 
-}
\ No newline at end of file
+    // ==================== SYNC ====================
+
+    /**
+     * Random id of this install for a user's ledger, created on first use
+     * Breaks last-writer-wins ties and lets the server skip a device's own changes
+     */
+    public long getSyncDeviceId(String userEmail) {
+        Ledger ledger = ledger(userEmail);
+        long deviceId = ledger.getMetadata(META_SYNC_DEVICE_ID);
+        if (deviceId == 0) {
+            long created = (secureRandom.nextLong() & Long.MAX_VALUE) | 1;
+            runInTransaction(ledger.getWritableDatabase(),
+                    unit -> unit.insert(SQL_ADD_METADATA, META_SYNC_DEVICE_ID, created));
+            deviceId = ledger.getMetadata(META_SYNC_DEVICE_ID);
+        }
+        return deviceId;
+    }
+
+    /**
+     * Server sequence the ledger has pulled up to; 0 before the first sync
+     */
+    public long getSyncWatermark(String userEmail) {
+        return ledger(userEmail).getMetadata(META_SYNC_WATERMARK);
+    }
+
+    /**
+     * Rows that have no sync id yet, as log entries stamped now
+     * The first upload pushes these; it resumes where it stopped because
+     * rows get their sync id as they are pushed
+     *
+     * @return Rows to upload, or an empty list once markSyncUploaded() was called
+     */
+    public List<ChangeLogEntry> getUnsyncedRows(String userEmail) {
+        long start = Metrics.start();
+        Ledger ledger = ledger(userEmail);
+        List<ChangeLogEntry> entries = new ArrayList<>();
+        if (ledger.getMetadata(META_SYNC_UPLOADED) > 0) {
+            return entries;
+        }
+
+        long now = System.currentTimeMillis();
+        SQLiteDatabase db = ledger.getReadableDatabase();
+        // Categories first, so rows referring to them arrive after them
+        String[] entities = {ChangeLog.ENTITY_CATEGORY, ChangeLog.ENTITY_BUDGET, ChangeLog.ENTITY_TRANSACTION};
+        for (String entity : entities) {
+            String live = entity.equals(ChangeLog.ENTITY_TRANSACTION) ? NOT_DELETED + " AND " : "";
+            Cursor cursor = db.rawQuery("SELECT id FROM " + syncTable(entity) + " WHERE " + live +
+                    "id NOT IN (SELECT " + COL_LOCAL_ID + " FROM " + TABLE_SYNC_ROWS +
+                    " WHERE " + COL_SYNC_ENTITY + "=?) ORDER BY id",
+                    new String[]{entity});
+            while (cursor.moveToNext()) {
+                entries.add(new ChangeLogEntry(0, userEmail, entity, cursor.getLong(0), ChangeLog.OP_INSERT, now));
+            }
+            cursor.close();
+        }
+
+        if (ledger.getArchivedBefore() > 0) {
+            Cursor rows = ledger.getArchive().getRows(userEmail);
+            try {
+                int idColumn = rows.getColumnIndexOrThrow(COL_TRANS_ID);
+                while (rows.moveToNext()) {
+                    long id = rows.getLong(idColumn);
+                    if (readSyncId(db, ChangeLog.ENTITY_TRANSACTION, id) == null) {
+                        entries.add(new ChangeLogEntry(0, userEmail, ChangeLog.ENTITY_TRANSACTION, id,
+                                ChangeLog.OP_INSERT, now));
+                    }
+                }
+            } finally {
+                rows.close();
+            }
+        }
+        Metrics.record("db.getUnsyncedRows", start, entries.size());
+        return entries;
+    }
+
+    /**
+     * Record that the first upload finished; from here on the change log drives pushes
+     */
+    public boolean markSyncUploaded(String userEmail) {
+        return runInTransaction(userEmail, unit -> unit.insert(SQL_PUT_METADATA, META_SYNC_UPLOADED, 1));
+    }
+
+    /**
+     * Turn change log entries into the rows to push
+     * Only the latest entry per row counts, and the row is read as it is now,
+     * so an insert followed by edits goes out once. Rows seen for the first
+     * time get a sync id; rows created and deleted before any push are skipped
+     *
+     * @param entries Change log entries of the user's ledger, oldest first
+     * @return Changes to push, or null if the sync ids could not be stored
+     */
+    public List<SyncChange> readSyncChanges(String userEmail, List<ChangeLogEntry> entries) {
+        long start = Metrics.start();
+        Ledger ledger = ledger(userEmail);
+        long deviceId = getSyncDeviceId(userEmail);
+
+        Map<String, ChangeLogEntry> latest = new LinkedHashMap<>();
+        for (ChangeLogEntry entry : entries) {
+            if (entry.getEntity().equals(ChangeLog.ENTITY_USER)) {
+                continue;
+            }
+            String key = entry.getEntity() + ":" + entry.getEntityId();
+            latest.remove(key);
+            latest.put(key, entry);
+        }
+
+        List<SyncChange> changes = new ArrayList<>(latest.size());
+        boolean committed = runInTransaction(ledger.getWritableDatabase(), unit -> {
+            for (ChangeLogEntry entry : latest.values()) {
+                Object row = readSyncRow(ledger, entry.getEntity(), entry.getEntityId());
+                String syncId = readSyncId(unit.getDatabase(), entry.getEntity(), entry.getEntityId());
+                if (syncId == null) {
+                    if (row == null) {
+                        continue;
+                    }
+                    syncId = newSyncId(entry.getEntity(), row);
+                }
+                unit.insert(SQL_PUT_SYNC_ROW, entry.getEntity(), entry.getEntityId(), syncId,
+                        entry.getChangedAt(), deviceId);
+                changes.add(new SyncChange(entry.getEntity(), syncId, entry.getChangedAt(), deviceId, row));
+            }
+        });
+        Metrics.record("db.readSyncChanges", start, committed ? changes.size() : 0);
+        return committed ? changes : null;
+    }
+
+    /**
+     * Apply what the server sent back, in one transaction with the new watermark
+     * A remote version is skipped if the local one is newer, or if the row was
+     * written locally after the pushed entries; that write goes out next sync.
+     * Applied rows are not appended to the change log, so they aren't pushed back
+     *
+     * @param pushed Changes sent in the same exchange
+     * @param remote Changes received
+     * @param pushedThrough Sequence of the last change log entry pushed
+     * @param watermark Server sequence to resume pulling from
+     * @return Number of remote changes applied, or -1 if rolled back
+     */
+    public int applySyncChanges(String userEmail, List<SyncChange> pushed, List<SyncChange> remote,
+                                long pushedThrough, long watermark) {
+        long start = Metrics.start();
+        Ledger ledger = ledger(userEmail);
+
+        // Archived rows move back first, as they do for local edits
+        if (ledger.getArchivedBefore() > 0) {
+            for (SyncChange change : remote) {
+                if (change.getEntity().equals(ChangeLog.ENTITY_TRANSACTION)) {
+                    long localId = readLocalId(ledger.getReadableDatabase(), change.getSyncId());
+                    if (localId > 0) {
+                        restoreIfArchived(ledger, (int) localId);
+                    }
+                }
+            }
+        }
+
+        int[] applied = new int[1];
+        boolean committed = runInTransaction(ledger.getWritableDatabase(), unit -> {
+            // A pushed delete is done with its sync id, whether it won or not
+            for (SyncChange change : pushed) {
+                if (change.isDeleted()) {
+                    unit.update(SQL_DELETE_SYNC_ROW, change.getSyncId());
+                }
+            }
+            for (SyncChange change : remote) {
+                if (applySyncChange(unit, userEmail, change, pushedThrough)) {
+                    applied[0]++;
+                }
+            }
+            unit.insert(SQL_PUT_METADATA, META_SYNC_WATERMARK, watermark);
+        });
+        if (committed && applied[0] > 0) {
+            notifyTransactionsReloaded(userEmail);
+            notifyBudgetsChanged();
+        }
+        Metrics.record("db.applySyncChanges", start, committed ? applied[0] : 0);
+        return committed ? applied[0] : -1;
+    }
+
+    /**
+     * Forget sync ids and the watermark, e.g. when leaving a sync account
+     * The next sync starts over with a full upload
+     */
+    public boolean clearSyncState(String userEmail) {
+        return runInTransaction(userEmail, unit -> {
+            SQLiteDatabase db = unit.getDatabase();
+            db.delete(TABLE_SYNC_ROWS, null, null);
+            db.delete(TABLE_METADATA, COL_META_KEY + "=? OR " + COL_META_KEY + "=?",
+                    new String[]{META_SYNC_WATERMARK, META_SYNC_UPLOADED});
+        });
+    }
+
+    private boolean applySyncChange(UnitOfWork unit, String userEmail, SyncChange change, long pushedThrough) {
+        SQLiteDatabase db = unit.getDatabase();
+        String entity = change.getEntity();
+        String table = syncTable(entity);
+
+        long localId = 0;
+        Cursor cursor = db.query(TABLE_SYNC_ROWS, new String[]{COL_LOCAL_ID, COL_SYNC_VERSION, COL_SYNC_DEVICE_ID},
+                COL_SYNC_ID + "=?", new String[]{change.getSyncId()}, null, null, null);
+        try {
+            if (cursor.moveToFirst()) {
+                localId = cursor.getLong(0);
+                if (!change.isNewerThan(cursor.getLong(1), cursor.getLong(2))
+                        || ChangeLog.hasChangesAfter(db, entity, localId, pushedThrough)) {
+                    return false;
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+
+        if (change.isDeleted()) {
+            if (localId > 0) {
+                db.delete(table, "id=?", new String[]{String.valueOf(localId)});
+                unit.update(SQL_DELETE_SYNC_ROW, change.getSyncId());
+            }
+            return localId > 0;
+        }
+
+        ContentValues values = new ContentValues();
+        switch (entity) {
+            case ChangeLog.ENTITY_TRANSACTION:
+                Transaction transaction = change.getTransaction();
+                values.put(COL_AMOUNT, transaction.getAmount());
+                values.put(COL_DATE, transaction.getDate());
+                values.put(COL_CATEGORY, transaction.getCategory());
+                values.put(COL_DESCRIPTION, transaction.getDescription());
+                values.put(COL_TYPE, transaction.getType());
+                values.putNull(COL_DELETED_AT);
+                putCalendarColumns(values, transaction.getDate());
+                break;
+            case ChangeLog.ENTITY_BUDGET:
+                Budget budget = change.getBudget();
+                values.put(COL_CATEGORY, budget.getCategory());
+                values.put(COL_LIMIT_AMOUNT, budget.getLimitAmount());
+                values.put(COL_ALERT_THRESHOLD, budget.getAlertThreshold());
+                values.put(COL_MONTH, budget.getMonth());
+                values.put(COL_YEAR, budget.getYear());
+                break;
+            default:
+                // Name and type are a category's identity; adopt a matching local one
+                Category category = change.getCategory();
+                if (localId == 0) {
+                    localId = DatabaseUtils.longForQuery(db, "SELECT IFNULL(MIN(" + COL_CAT_ID + "), 0) FROM " +
+                            TABLE_CATEGORIES + " WHERE " + COL_CAT_NAME + "=? AND " + COL_CAT_TYPE + "=?",
+                            new String[]{category.getCategoryName(), category.getType()});
+                }
+                values.put(COL_CAT_NAME, category.getCategoryName());
+                values.put(COL_CAT_TYPE, category.getType());
+                break;
+        }
+
+        if (localId == 0 || db.update(table, values, "id=?", new String[]{String.valueOf(localId)}) == 0) {
+            values.put(COL_USER_EMAIL, userEmail);
+            localId = db.insertOrThrow(table, null, values);
+        }
+        unit.insert(SQL_PUT_SYNC_ROW, entity, localId, change.getSyncId(), change.getVersion(), change.getDeviceId());
+        return true;
+    }
+
+    /**
+     * Current values of a logged row, or null if it was deleted
+     */
+    private Object readSyncRow(Ledger ledger, String entity, long id) {
+        SQLiteDatabase db = ledger.getReadableDatabase();
+        String[] args = new String[]{String.valueOf(id)};
+        Object row = null;
+        Cursor cursor = db.query(syncTable(entity), null, liveRow(entity), args, null, null, null);
+        if (cursor.moveToFirst()) {
+            switch (entity) {
+                case ChangeLog.ENTITY_TRANSACTION:
+                    row = readTransaction(cursor);
+                    break;
+                case ChangeLog.ENTITY_BUDGET:
+                    row = readBudget(cursor);
+                    break;
+                default:
+                    row = new Category(cursor.getString(cursor.getColumnIndexOrThrow(COL_USER_EMAIL)),
+                            cursor.getString(cursor.getColumnIndexOrThrow(COL_CAT_NAME)),
+                            cursor.getString(cursor.getColumnIndexOrThrow(COL_CAT_TYPE)));
+                    break;
+            }
+        }
+        cursor.close();
+
+        // Archived since it was logged; it still exists
+        if (row == null && entity.equals(ChangeLog.ENTITY_TRANSACTION) && ledger.getArchivedBefore() > 0) {
+            ContentValues archived = ledger.getArchive().getRow((int) id);
+            if (archived != null) {
+                row = new Transaction(archived.getAsString(COL_USER_EMAIL), archived.getAsDouble(COL_AMOUNT),
+                        archived.getAsLong(COL_DATE), archived.getAsString(COL_CATEGORY),
+                        archived.getAsString(COL_DESCRIPTION), archived.getAsString(COL_TYPE));
+            }
+        }
+        return row;
+    }
+
+    private static String readSyncId(SQLiteDatabase db, String entity, long localId) {
+        Cursor cursor = db.query(TABLE_SYNC_ROWS, new String[]{COL_SYNC_ID},
+                COL_SYNC_ENTITY + "=? AND " + COL_LOCAL_ID + "=?",
+                new String[]{entity, String.valueOf(localId)}, null, null, null);
+        String syncId = cursor.moveToFirst() ? cursor.getString(0) : null;
+        cursor.close();
+        return syncId;
+    }
+
+    private static long readLocalId(SQLiteDatabase db, String syncId) {
+        Cursor cursor = db.query(TABLE_SYNC_ROWS, new String[]{COL_LOCAL_ID}, COL_SYNC_ID + "=?",
+                new String[]{syncId}, null, null, null);
+        long localId = cursor.moveToFirst() ? cursor.getLong(0) : 0;
+        cursor.close();
+        return localId;
+    }
+
+    /**
+     * Categories are keyed by name and type, so the defaults every device
+     * creates at sign-up meet as one row; everything else gets a random id
+     */
+    private static String newSyncId(String entity, Object row) {
+        if (entity.equals(ChangeLog.ENTITY_CATEGORY)) {
+            Category category = (Category) row;
+            return "category:" + category.getType() + ":" + category.getCategoryName();
+        }
+        return UUID.randomUUID().toString();
+    }
+
+    /**
+     * Condition on id that skips transaction tombstones
+     */
+    private static String liveRow(String entity) {
+        return entity.equals(ChangeLog.ENTITY_TRANSACTION) ? "id=? AND " + NOT_DELETED : "id=?";
+    }
+
+    private static String syncTable(String entity) {
+        switch (entity) {
+            case ChangeLog.ENTITY_TRANSACTION:
+                return TABLE_TRANSACTIONS;
+            case ChangeLog.ENTITY_BUDGET:
+                return TABLE_BUDGETS;
+            case ChangeLog.ENTITY_CATEGORY:
+                return TABLE_CATEGORIES;
+            default:
+                throw new IllegalArgumentException("Entity is not synced: " + entity);
+        }
+    }
+
+    private static long readMetadata(SQLiteDatabase db, String key) {
+        Cursor cursor = db.rawQuery("SELECT " + COL_META_VALUE + " FROM " + TABLE_METADATA +
+                " WHERE " + COL_META_KEY + "=?", new String[]{key});
+        long value = cursor.moveToFirst() ? cursor.getLong(0) : 0;
+        cursor.close();
+        return value;
+    }
+
+    // ==================== LEDGER FILE ====================
+
+    /**
+     * One user's ledger file, and their archive file once something was archived
+     * Rows keep their userEmail column, so queries and the archive read the
+     * same way they did in the shared database
+     */
+    private static final class Ledger extends SQLiteOpenHelper {
+
+        private final Context context;
+        private final String archiveName;
+
+        // Opened on first use; most sessions never read past the archive cutoff
+        private volatile ArchiveDatabase archive;
+        volatile long archivedBefore = -1;
+
+        // Archiving and restoring both span two files and must not interleave
+        final Object archiveLock = new Object();
+
+        Ledger(Context context, String userEmail) {
+            super(context, ledgerName(userEmail), null, LEDGER_VERSION);
+            this.context = context;
+            this.archiveName = archiveName(getDatabaseName());
+            setWriteAheadLoggingEnabled(true);
+        }
+
+        @Override
+        public void onCreate(SQLiteDatabase db) {
+            createLedgerTables(db);
+        }
+
+        @Override
+        public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+            if (oldVersion < 2) {
+                ChangeLog.createTables(db);
+            }
+            if (oldVersion < 3) {
+                createSyncTables(db);
+            }
+            if (oldVersion < 4) {
+                addTombstones(db);
+            }
+        }
+
+        @Override
+        public void onOpen(SQLiteDatabase db) {
+            super.onOpen(db);
+            StartupTracer.warnIfMainThread("Ledger opened");
+        }
+
+        long getMetadata(String key) {
+            return readMetadata(getReadableDatabase(), key);
+        }
+
+        long getArchivedBefore() {
+            long cutoff = archivedBefore;
+            if (cutoff < 0) {
+                cutoff = getMetadata(META_ARCHIVED_BEFORE);
+                archivedBefore = cutoff;
+            }
+            return cutoff;
+        }
+
+        ArchiveDatabase getArchive() {
+            if (archive == null) {
+                synchronized (archiveLock) {
+                    if (archive == null) {
+                        archive = new ArchiveDatabase(context, archiveName);
+                    }
+                }
+            }
+            return archive;
+        }
+
+        void closeFiles() {
+            close();
+            synchronized (archiveLock) {
+                if (archive != null) {
+                    archive.close();
+                    archive = null;
+                }
+                archivedBefore = -1;
+            }
+        }
+    }
+}
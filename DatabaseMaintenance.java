@@ -0,0 +1,193 @@
+package com.finance.manager;
+
+import android.app.job.JobInfo;
+import android.app.job.JobScheduler;
+import android.content.ComponentName;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * DatabaseMaintenance - Keeps the database files small and their query plans current
+ * Runs from DatabaseMaintenanceService while the device is idle and charging.
+ * Every step is short or read-only and the job checks for cancellation
+ * between steps, so foreground queries (which read from WAL snapshots
+ * anyway) never wait behind it for long
+ */
+public final class DatabaseMaintenance {
+
+    private static final String TAG = "DatabaseMaintenance";
+
+    private static final int JOB_ID = 1001;
+    private static final long JOB_INTERVAL_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    // Full ANALYZE scans every index; in between, PRAGMA optimize refreshes what changed
+    private static final long ANALYZE_INTERVAL_MILLIS = TimeUnit.DAYS.toMillis(7);
+
+    // Deleted transactions stay undoable well past the Snackbar, then are purged
+    private static final long TOMBSTONE_TTL_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    // Pages freed per incremental_vacuum step; each step is one short write transaction
+    private static final int VACUUM_STEP_PAGES = 256;
+
+    // auto_vacuum values reported by PRAGMA auto_vacuum
+    private static final int AUTO_VACUUM_INCREMENTAL = 2;
+
+    private DatabaseMaintenance() {
+        // Static utility
+    }
+
+    /**
+     * Schedule the daily idle-time job unless it is already pending
+     * Rescheduling would restart the job's period, so launches don't do it
+     */
+    public static void schedule(Context context) {
+        JobScheduler scheduler = context.getSystemService(JobScheduler.class);
+        if (scheduler == null || scheduler.getPendingJob(JOB_ID) != null) {
+            return;
+        }
+
+        JobInfo job = new JobInfo.Builder(JOB_ID, new ComponentName(context, DatabaseMaintenanceService.class))
+                .setRequiresDeviceIdle(true)
+                .setRequiresCharging(true)
+                .setPeriodic(JOB_INTERVAL_MILLIS)
+                .setPersisted(false)
+                .build();
+        scheduler.schedule(job);
+    }
+
+    /**
+     * Run every maintenance step on the calling (background) thread,
+     * for the user directory and then each user's ledger
+     *
+     * @param cancelled Checked between steps; return true to stop early
+     * @return true if every integrity check passed
+     */
+    public static boolean run(Context context, BooleanSupplier cancelled) {
+        long runStart = Metrics.start();
+        DatabaseHelper databaseHelper = DatabaseHelper.getInstance(context);
+        PreferenceManager preferenceManager = PreferenceManager.getInstance(context);
+        long now = System.currentTimeMillis();
+        boolean analyze = now - preferenceManager.getLastAnalyzeTime() >= ANALYZE_INTERVAL_MILLIS;
+
+        // Before the per-file steps, so the vacuum returns the purged pages
+        if (!cancelled.getAsBoolean()) {
+            databaseHelper.purgeDeletedTransactions(now - TOMBSTONE_TTL_MILLIS, cancelled);
+        }
+
+        long[] sizes = new long[2];
+        boolean[] healthy = {true};
+        databaseHelper.forEachDatabase(db -> {
+            File file = new File(db.getPath());
+            sizes[0] += fileSize(file);
+            healthy[0] &= maintain(db, analyze, cancelled);
+            sizes[1] += fileSize(file);
+            return !cancelled.getAsBoolean();
+        });
+
+        if (analyze && !cancelled.getAsBoolean()) {
+            preferenceManager.saveLastAnalyzeTime(now);
+        }
+        Metrics.setValue("maintenance.sizeBefore", sizes[0]);
+        Metrics.setValue("maintenance.sizeAfter", sizes[1]);
+        Metrics.record("maintenance.run", runStart, 1);
+        Log.i(TAG, "Maintenance " + (cancelled.getAsBoolean() ? "stopped early" : "done")
+                + ": " + sizes[0] / 1024 + "KB -> " + sizes[1] / 1024 + "KB");
+        return healthy[0];
+    }
+
+    /**
+     * Maintain one database file
+     *
+     * @return false if the integrity check failed
+     */
+    private static boolean maintain(SQLiteDatabase db, boolean analyze, BooleanSupplier cancelled) {
+        // Read-only; a failure here means nothing else should touch the file
+        long start = Metrics.start();
+        String quickCheck = queryString(db, "PRAGMA quick_check");
+        boolean healthy = "ok".equalsIgnoreCase(quickCheck);
+        Metrics.record("maintenance.quickCheck", start, healthy ? 1 : 0);
+        if (!healthy) {
+            Log.e(TAG, "quick_check failed on " + new File(db.getPath()).getName() + ": " + quickCheck);
+            return false;
+        }
+
+        if (!cancelled.getAsBoolean()) {
+            start = Metrics.start();
+            if (analyze) {
+                db.execSQL("ANALYZE");
+                Metrics.record("maintenance.analyze", start, 1);
+            } else {
+                queryString(db, "PRAGMA optimize");
+                Metrics.record("maintenance.optimize", start, 1);
+            }
+        }
+
+        if (!cancelled.getAsBoolean()) {
+            vacuum(db, cancelled);
+        }
+
+        if (!cancelled.getAsBoolean()) {
+            // PASSIVE copies what it can without waiting on readers or writers
+            start = Metrics.start();
+            queryString(db, "PRAGMA wal_checkpoint(PASSIVE)");
+            Metrics.record("maintenance.checkpoint", start, 1);
+        }
+        return true;
+    }
+
+    /**
+     * Return free pages to the file system a few at a time
+     * Databases created before auto_vacuum was enabled are converted once with a full VACUUM
+     */
+    private static void vacuum(SQLiteDatabase db, BooleanSupplier cancelled) {
+        long start = Metrics.start();
+        if (queryLong(db, "PRAGMA auto_vacuum") != AUTO_VACUUM_INCREMENTAL) {
+            db.execSQL("PRAGMA auto_vacuum = INCREMENTAL");
+            db.execSQL("VACUUM");
+            Metrics.record("maintenance.convertAutoVacuum", start, 1);
+            return;
+        }
+
+        int steps = 0;
+        while (queryLong(db, "PRAGMA freelist_count") > 0 && !cancelled.getAsBoolean()) {
+            queryString(db, "PRAGMA incremental_vacuum(" + VACUUM_STEP_PAGES + ")");
+            steps++;
+        }
+        Metrics.record("maintenance.incrementalVacuum", start, steps);
+    }
+
+    /**
+     * Run a PRAGMA through rawQuery, which steps it to completion
+     * whether or not it returns a row
+     *
+     * @return First column of the first row, or null
+     */
+    private static String queryString(SQLiteDatabase db, String pragma) {
+        Cursor cursor = db.rawQuery(pragma, null);
+        try {
+            return cursor.moveToFirst() ? cursor.getString(0) : null;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static long queryLong(SQLiteDatabase db, String pragma) {
+        Cursor cursor = db.rawQuery(pragma, null);
+        try {
+            return cursor.moveToFirst() ? cursor.getLong(0) : 0;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static long fileSize(File file) {
+        File wal = new File(file.getPath() + "-wal");
+        return file.length() + wal.length();
+    }
+}
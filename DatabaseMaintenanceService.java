@@ -0,0 +1,33 @@
+package com.finance.manager;
+
+import android.app.job.JobParameters;
+import android.app.job.JobService;
+
+/**
+ * DatabaseMaintenanceService - JobScheduler entry point for DatabaseMaintenance
+ * Work runs on its own low-priority thread, not diskIO, so screen loads
+ * queued on diskIO never wait behind maintenance
+ */
+public class DatabaseMaintenanceService extends JobService {
+
+    private volatile boolean stopped;
+
+    @Override
+    public boolean onStartJob(JobParameters params) {
+        stopped = false;
+        Thread worker = new Thread(() -> {
+            DatabaseMaintenance.run(this, () -> stopped);
+            jobFinished(params, false);
+        }, "finance-maintenance");
+        worker.setPriority(Thread.MIN_PRIORITY);
+        worker.start();
+        return true;
+    }
+
+    @Override
+    public boolean onStopJob(JobParameters params) {
+        // The device left idle; finish the current step and retry later
+        stopped = true;
+        return true;
+    }
+}
@@ -0,0 +1,63 @@
+package com.finance.manager;
+
+import android.content.Context;
+import android.widget.ArrayAdapter;
+import android.widget.Filter;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * DescriptionAdapter - Dropdown for the description field of the add dialogs
+ * Completions come from DescriptionCompleter instead of ArrayAdapter's own
+ * filtering, so a keystroke walks a trie rather than scanning a list
+ */
+public class DescriptionAdapter extends ArrayAdapter<String> {
+
+    private final DescriptionCompleter completer;
+    private final String userEmail;
+    private final String type;
+
+    private final Filter filter = new Filter() {
+        @Override
+        protected FilterResults performFiltering(CharSequence constraint) {
+            List<String> completions = constraint != null
+                    ? completer.complete(userEmail, type, constraint.toString(), DescriptionCompleter.MAX_COMPLETIONS)
+                    : new ArrayList<>();
+            FilterResults results = new FilterResults();
+            results.values = completions;
+            results.count = completions.size();
+            return results;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        protected void publishResults(CharSequence constraint, FilterResults results) {
+            clear();
+            if (results.values != null) {
+                addAll((List<String>) results.values);
+            }
+            notifyDataSetChanged();
+        }
+    };
+
+    /**
+     * @param type "expense" or "income"
+     */
+    public DescriptionAdapter(Context context, String userEmail, String type) {
+        super(context, android.R.layout.simple_dropdown_item_1line, new ArrayList<>());
+        this.completer = DescriptionCompleter.getInstance(context);
+        this.userEmail = userEmail;
+        this.type = type;
+        // One notification per result set, not one for clear() and one for addAll()
+        setNotifyOnChange(false);
+    }
+
+    @NonNull
+    @Override
+    public Filter getFilter() {
+        return filter;
+    }
+}
@@ -0,0 +1,393 @@
+package com.finance.manager;
+
+import android.content.Context;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * DescriptionCompleter - Singleton completing descriptions from the user's history
+ * Past descriptions live in one prefix trie per user and transaction type.
+ * Each node caches the best few descriptions below it, so a completion is
+ * a walk down the typed prefix and a copy of that list.
+ *
+ * Ranking blends frequency and recency: every transaction adds
+ * 2^((date - EPOCH) / HALF_LIFE) to its description's weight. Weights only
+ * grow with time, so their order never goes stale, and removing a
+ * transaction subtracts exactly what it added. The trie is built once per
+ * launch on diskIO and then kept current through TransactionObserver
+ */
+public class DescriptionCompleter implements TransactionObserver {
+
+    // Completions offered at most
+    public static final int MAX_COMPLETIONS = 5;
+
+    // Longer descriptions are one-offs and not worth indexing
+    private static final int MAX_LENGTH = 64;
+
+    // A use this long ago counts half as much as one today
+    private static final double HALF_LIFE_MILLIS = 30L * 24 * 60 * 60 * 1000;
+
+    // 2020-01-01 UTC; weights are relative to it
+    private static final long EPOCH_MILLIS = 1577836800000L;
+
+    // 2^1000 still fits a double, which covers about 80 years either side of EPOCH
+    private static final double MAX_HALF_LIVES = 1000;
+
+    private static final char[] NO_LABELS = new char[0];
+    private static final Node[] NO_CHILDREN = new Node[0];
+    private static final Entry[] NO_ENTRIES = new Entry[0];
+
+    // Volatile ensures visibility of changes across threads
+    private static volatile DescriptionCompleter instance;
+
+    private final DatabaseHelper databaseHelper;
+
+    // Guarded by this
+    private final Map<String, Map<String, Node>> tries = new HashMap<>();
+    private final Set<String> loading = new HashSet<>();
+    // Users written to while their tries were being built; the build is redone
+    private final Set<String> raced = new HashSet<>();
+
+    /**
+     * Private constructor to prevent direct instantiation
+     * Always use getInstance() method
+     */
+    private DescriptionCompleter(Context context) {
+        databaseHelper = DatabaseHelper.getInstance(context);
+        databaseHelper.addTransactionObserver(this);
+    }
+
+    /**
+     * Double-checked locking singleton pattern
+     * Thread-safe and efficient
+     *
+     * @param context Application context
+     * @return Singleton instance of DescriptionCompleter
+     */
+    public static DescriptionCompleter getInstance(Context context) {
+        if (instance == null) { // First check (no locking)
+            synchronized (DescriptionCompleter.class) {
+                if (instance == null) { // Second check (with locking)
+                    instance = new DescriptionCompleter(context.getApplicationContext());
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Prevent cloning of singleton instance
+     */
+    @Override
+    protected Object clone() throws CloneNotSupportedException {
+        throw new CloneNotSupportedException("Cannot clone singleton instance");
+    }
+
+    // ==================== QUERIES ====================
+
+    /**
+     * Build a user's tries on diskIO, unless they are built or building already
+     */
+    public void prepare(String userEmail) {
+        synchronized (this) {
+            if (tries.containsKey(userEmail) || !loading.add(userEmail)) {
+                return;
+            }
+        }
+        AppExecutors.getInstance().diskIO().execute(() -> build(userEmail));
+    }
+
+    /**
+     * Best past descriptions starting with a prefix, ignoring case
+     * Only reads memory; until the user's tries are built it returns
+     * nothing and builds them in the background
+     *
+     * @param type "expense" or "income"
+     * @param limit At most MAX_COMPLETIONS
+     * @return Descriptions as last written, best first, never the prefix itself
+     */
+    public List<String> complete(String userEmail, String type, String prefix, int limit) {
+        long start = Metrics.start();
+        String key = key(prefix);
+        List<String> completions = new ArrayList<>(limit);
+        Map<String, Node> userTries;
+        synchronized (this) {
+            userTries = tries.get(userEmail);
+            Node node = userTries != null && !key.isEmpty() ? userTries.get(type) : null;
+            for (int i = 0; node != null && i < key.length(); i++) {
+                node = node.child(key.charAt(i));
+            }
+            if (node != null) {
+                for (Entry entry : node.top) {
+                    if (completions.size() == limit) {
+                        break;
+                    }
+                    if (!entry.key.equals(key)) {
+                        completions.add(entry.text);
+                    }
+                }
+            }
+        }
+        if (userTries == null) {
+            prepare(userEmail);
+        }
+        Metrics.record("complete.description", start, completions.size());
+        return completions;
+    }
+
+    // ==================== TRANSACTION OBSERVER ====================
+
+    @Override
+    public synchronized void onTransactionAdded(Transaction transaction) {
+        apply(transaction, 1);
+    }
+
+    @Override
+    public synchronized void onTransactionUpdated(Transaction before, Transaction after) {
+        apply(before, -1);
+        apply(after, 1);
+    }
+
+    @Override
+    public synchronized void onTransactionDeleted(Transaction transaction) {
+        apply(transaction, -1);
+    }
+
+    @Override
+    public synchronized void onTransactionsReloaded(String userEmail) {
+        if (userEmail == null) {
+            tries.clear();
+            raced.addAll(loading);
+        } else {
+            tries.remove(userEmail);
+            if (loading.contains(userEmail)) {
+                raced.add(userEmail);
+            }
+        }
+    }
+
+    private void apply(Transaction transaction, int sign) {
+        String userEmail = transaction.getUserEmail();
+        Map<String, Node> userTries = tries.get(userEmail);
+        if (userTries == null) {
+            if (loading.contains(userEmail)) {
+                raced.add(userEmail);
+            }
+            return;
+        }
+        add(userTries, transaction, sign, true);
+    }
+
+    // ==================== BUILDING ====================
+
+    /**
+     * Scan the user's history into new tries without holding the lock,
+     * then rank every node once. Package-private for DataBenchmark
+     */
+    void build(String userEmail) {
+        long start = Metrics.start();
+        Map<String, Node> built = new HashMap<>();
+        int count = databaseHelper.forEachTransaction(userEmail, transaction -> add(built, transaction, 1, false));
+        for (Node root : built.values()) {
+            root.rankAll();
+        }
+
+        boolean again;
+        synchronized (this) {
+            loading.remove(userEmail);
+            again = raced.remove(userEmail);
+            if (!again) {
+                tries.put(userEmail, built);
+            }
+        }
+        Metrics.record("complete.buildTrie", start, count);
+
+        if (again) {
+            // A write landed mid-scan; it may or may not be counted, so start over
+            prepare(userEmail);
+        }
+    }
+
+    /**
+     * Add or remove one transaction's use of its description
+     *
+     * @param rank Re-rank the nodes along the path; off while building, which ranks everything at the end
+     */
+    private static void add(Map<String, Node> userTries, Transaction transaction, int sign, boolean rank) {
+        String text = transaction.getDescription() != null ? transaction.getDescription().trim() : "";
+        String key = key(text);
+        if (key.isEmpty() || key.length() > MAX_LENGTH) {
+            return;
+        }
+        Node root = userTries.get(transaction.getType());
+        if (root == null) {
+            if (sign < 0) {
+                return;
+            }
+            root = new Node();
+            userTries.put(transaction.getType(), root);
+        }
+
+        Node[] path = new Node[key.length() + 1];
+        path[0] = root;
+        for (int i = 0; i < key.length(); i++) {
+            Node next = path[i].child(key.charAt(i));
+            if (next == null) {
+                if (sign < 0) {
+                    return;
+                }
+                next = path[i].addChild(key.charAt(i));
+            }
+            path[i + 1] = next;
+        }
+
+        Node last = path[key.length()];
+        if (last.entry == null) {
+            if (sign < 0) {
+                return;
+            }
+            last.entry = new Entry(key, text);
+        }
+        Entry entry = last.entry;
+        entry.count += sign;
+        entry.weight += sign * weight(transaction.getDate());
+        if (sign > 0) {
+            // Show the most recent spelling
+            entry.text = text;
+        }
+        if (entry.count <= 0) {
+            last.entry = null;
+        }
+        if (!rank) {
+            return;
+        }
+
+        for (int i = key.length(); i >= 0; i--) {
+            Node node = path[i];
+            if (i > 0 && node.entry == null && node.labels.length == 0) {
+                path[i - 1].removeChild(key.charAt(i - 1));
+            } else {
+                node.rank();
+            }
+        }
+    }
+
+    private static String key(String text) {
+        return text.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static double weight(long date) {
+        // Infinity could never be subtracted again
+        double halfLives = (date - EPOCH_MILLIS) / HALF_LIFE_MILLIS;
+        return Math.pow(2, Math.max(-MAX_HALF_LIVES, Math.min(MAX_HALF_LIVES, halfLives)));
+    }
+
+    // ==================== TRIE ====================
+
+    /**
+     * A description and how much it has been used
+     */
+    private static final class Entry {
+        final String key;
+        String text;
+        int count;
+        double weight;
+
+        Entry(String key, String text) {
+            this.key = key;
+            this.text = text;
+        }
+    }
+
+    /**
+     * Trie node with children in sorted parallel arrays, which keeps the
+     * thousands of nodes of a long history far smaller than maps would
+     */
+    private static final class Node {
+        char[] labels = NO_LABELS;
+        Node[] children = NO_CHILDREN;
+        Entry entry;
+        // Best entries in this subtree, best first, at most MAX_COMPLETIONS
+        Entry[] top = NO_ENTRIES;
+
+        Node child(char label) {
+            int index = Arrays.binarySearch(labels, label);
+            return index >= 0 ? children[index] : null;
+        }
+
+        Node addChild(char label) {
+            int index = -Arrays.binarySearch(labels, label) - 1;
+            char[] newLabels = new char[labels.length + 1];
+            Node[] newChildren = new Node[children.length + 1];
+            System.arraycopy(labels, 0, newLabels, 0, index);
+            System.arraycopy(children, 0, newChildren, 0, index);
+            System.arraycopy(labels, index, newLabels, index + 1, labels.length - index);
+            System.arraycopy(children, index, newChildren, index + 1, children.length - index);
+            Node child = new Node();
+            newLabels[index] = label;
+            newChildren[index] = child;
+            labels = newLabels;
+            children = newChildren;
+            return child;
+        }
+
+        void removeChild(char label) {
+            int index = Arrays.binarySearch(labels, label);
+            if (index < 0) {
+                return;
+            }
+            char[] newLabels = new char[labels.length - 1];
+            Node[] newChildren = new Node[children.length - 1];
+            System.arraycopy(labels, 0, newLabels, 0, index);
+            System.arraycopy(children, 0, newChildren, 0, index);
+            System.arraycopy(labels, index + 1, newLabels, index, newLabels.length - index);
+            System.arraycopy(children, index + 1, newChildren, index, newChildren.length - index);
+            labels = newLabels;
+            children = newChildren;
+        }
+
+        /**
+         * Recompute top from this node's entry and the children's tops
+         * Children must be ranked already
+         */
+        void rank() {
+            Entry[] best = new Entry[MAX_COMPLETIONS];
+            int size = 0;
+            if (entry != null) {
+                best[size++] = entry;
+            }
+            for (Node child : children) {
+                for (Entry candidate : child.top) {
+                    if (size == MAX_COMPLETIONS && candidate.weight <= best[size - 1].weight) {
+                        // Tops are sorted, so nothing later in this child beats it either
+                        break;
+                    }
+                    int position = size < MAX_COMPLETIONS ? size++ : size - 1;
+                    while (position > 0 && best[position - 1].weight < candidate.weight) {
+                        best[position] = best[position - 1];
+                        position--;
+                    }
+                    best[position] = candidate;
+                }
+            }
+            top = size == MAX_COMPLETIONS ? best : Arrays.copyOf(best, size);
+        }
+
+        /**
+         * rank() every node below and including this one, children first
+         */
+        void rankAll() {
+            for (Node child : children) {
+                child.rankAll();
+            }
+            rank();
+        }
+    }
+}
@@ -2,10 +2,16 @@ package com.finance.manager;
 
 import android.app.DatePickerDialog;
 import android.os.Bundle;
+import android.text.Editable;
+import android.text.InputType;
+import android.text.TextWatcher;
 import android.view.LayoutInflater;
+import android.view.Menu;
+import android.view.MenuItem;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.ArrayAdapter;
+import android.widget.AutoCompleteTextView;
 import android.widget.Button;
 import android.widget.EditText;
 import android.widget.LinearLayout;
@@ -15,6 +21,8 @@ import android.widget.Toast;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.appcompat.app.AlertDialog;
+import androidx.appcompat.app.AppCompatActivity;
+import androidx.appcompat.view.ActionMode;
 import androidx.appcompat.widget.SearchView;
 import androidx.cardview.widget.CardView;
 import androidx.fragment.app.Fragment;
@@ -24,16 +32,27 @@ import androidx.recyclerview.widget.RecyclerView;
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
 import com.google.android.material.chip.Chip;
 import com.google.android.material.chip.ChipGroup;
+import com.google.android.material.snackbar.Snackbar;
 import java.text.NumberFormat;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Calendar;
-import java.util.Collections;
-import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Set;
 
-public class ExpensesFragment extends Fragment implements TransactionAdapter.OnTransactionClickListener {
+public class ExpensesFragment extends Fragment implements TransactionAdapter.OnTransactionClickListener,
+        BudgetTracker.Listener {
+
+    private static final String[] REPEAT_OPTIONS = {"Does not repeat", "Daily", "Weekly", "Monthly", "Yearly"};
+    private static final String[] REPEAT_FREQUENCIES = {null, RecurringRule.FREQUENCY_DAILY,
+            RecurringRule.FREQUENCY_WEEKLY, RecurringRule.FREQUENCY_MONTHLY, RecurringRule.FREQUENCY_YEARLY};
+
+    // Multi-select actions
+    private static final int MENU_DELETE = 1;
+    private static final int MENU_RECATEGORIZE = 2;
+    private static final int MENU_SHIFT_DATES = 3;
 
     private RecyclerView expensesRecyclerView;
     private FloatingActionButton addExpenseFab;
@@ -45,8 +64,12 @@ public class ExpensesFragment extends Fragment implements TransactionAdapter.OnT
     private Button emptyStateAddButton;
     private Spinner sortSpinner;
     private TransactionAdapter adapter;
+    private ActionMode actionMode;
 
     private DatabaseHelper databaseHelper;
+    private CategorySuggester categorySuggester;
+    private AnomalyDetector anomalyDetector;
+    private BudgetTracker budgetTracker;
     private String userEmail;
     private List<Transaction> expensesList;
     private List<Transaction> filteredList;
@@ -64,8 +87,10 @@ public class ExpensesFragment extends Fragment implements TransactionAdapter.OnT
         }
 
         databaseHelper = DatabaseHelper.getInstance(requireContext());
-
-
+        categorySuggester = CategorySuggester.getInstance(requireContext());
+        anomalyDetector = AnomalyDetector.getInstance(requireContext());
+        budgetTracker = BudgetTracker.getInstance(requireContext());
+        budgetTracker.addListener(this);
 
         initializeViews(view);
         setupRecyclerView();
@@ -164,40 +189,7 @@ public class ExpensesFragment extends Fragment implements TransactionAdapter.OnT
     }
 
     private void sortTransactions() {
-        switch (selectedSortOption) {
-            case 0: // Newest First
-                Collections.sort(filteredList, new Comparator<Transaction>() {
-                    @Override
-                    public int compare(Transaction t1, Transaction t2) {
-                        return Long.compare(t2.getDate(), t1.getDate());
-                    }
-                });
-                break;
-            case 1: // Oldest First
-                Collections.sort(filteredList, new Comparator<Transaction>() {
-                    @Override
-                    public int compare(Transaction t1, Transaction t2) {
-                        return Long.compare(t1.getDate(), t2.getDate());
-                    }
-                });
-                break;
-            case 2: // Highest Amount
-                Collections.sort(filteredList, new Comparator<Transaction>() {
-                    @Override
-                    public int compare(Transaction t1, Transaction t2) {
-                        return Double.compare(t2.getAmount(), t1.getAmount());
-                    }
-                });
-                break;
-            case 3: // Lowest Amount
-                Collections.sort(filteredList, new Comparator<Transaction>() {
-                    @Override
-                    public int compare(Transaction t1, Transaction t2) {
-                        return Double.compare(t1.getAmount(), t2.getAmount());
-                    }
-                });
-                break;
-        }
+        TransactionOps.sort(filteredList, selectedSortOption);
         adapter.updateTransactions(filteredList);
     }
 
@@ -208,28 +200,19 @@ public class ExpensesFragment extends Fragment implements TransactionAdapter.OnT
                 return false;
             }
 
+            @Override
+            public int getSwipeDirs(@NonNull RecyclerView recyclerView, @NonNull RecyclerView.ViewHolder viewHolder) {
+                // Rows are picked, not swiped, in multi-select
+                return adapter.isSelectionMode() ? 0 : super.getSwipeDirs(recyclerView, viewHolder);
+            }
+
             @Override
             public void onSwiped(@NonNull RecyclerView.ViewHolder viewHolder, int direction) {
                 int position = viewHolder.getAdapterPosition();
                 Transaction transaction = filteredList.get(position);
-
-                new AlertDialog.Builder(getContext())
-                        .setTitle("Delete Expense")
-                        .setMessage("Are you sure you want to delete this expense?")
-                        .setPositiveButton("Delete", (dialog, which) -> {
-                            boolean success = databaseHelper.deleteTransaction(transaction.getId());
-                            if (success) {
-                                Toast.makeText(getContext(), "Expense deleted", Toast.LENGTH_SHORT).show();
-                                loadExpenses();
-                            } else {
-                                adapter.notifyItemChanged(position);
-                            }
-                        })
-                        .setNegativeButton("Cancel", (dialog, which) -> {
-                            adapter.notifyItemChanged(position);
-                        })
-                        .setOnCancelListener(dialog -> adapter.notifyItemChanged(position))
-                        .show();
+                if (!deleteWithUndo(transaction)) {
+                    adapter.notifyItemChanged(position);
+                }
             }
         };
 
@@ -238,62 +221,36 @@ public class ExpensesFragment extends Fragment implements TransactionAdapter.OnT
     }
 
     private void loadExpenses() {
+        Metrics.Screen screen = Metrics.beginScreen("ExpensesFragment.loadExpenses");
         expensesList = databaseHelper.getAllTransactions(userEmail, "expense");
         filterTransactions(searchView.getQuery().toString(), selectedCategory);
         updateSummary();
         updateEmptyState();
         checkBudgetStatus();
+        Metrics.endScreen(screen);
     }
 
     private void filterTransactions(String query, String category) {
         filteredList.clear();
-
-        for (Transaction transaction : expensesList) {
-            boolean matchesQuery = query.isEmpty() ||
-                    transaction.getCategory().toLowerCase().contains(query.toLowerCase()) ||
-                    transaction.getDescription().toLowerCase().contains(query.toLowerCase()) ||
-                    transaction.getFormattedAmount().contains(query);
-
-            boolean matchesCategory = category.equals("All") ||
-                    transaction.getCategory().equals(category);
-
-            if (matchesQuery && matchesCategory) {
-                filteredList.add(transaction);
-            }
-        }
+        TransactionOps.filter(expensesList, query, category, filteredList);
 
         sortTransactions();
         updateEmptyState();
     }
 
     private void updateSummary() {
-        double total = 0;
-        for (Transaction transaction : expensesList) {
-            total += transaction.getAmount();
-        }
-
-        NumberFormat formatter = NumberFormat.getCurrencyInstance(new Locale("en", "US"));
-        totalExpensesText.setText(formatter.format(total));
+        double total = TransactionOps.sum(expensesList);
+        totalExpensesText.setText(TransactionOps.formatCurrency(total));
         transactionCountText.setText(expensesList.size() + " transactions");
     }
 
     private void checkBudgetStatus() {
-        Calendar calendar = Calendar.getInstance();
-        int currentMonth = calendar.get(Calendar.MONTH) + 1;
-        int currentYear = calendar.get(Calendar.YEAR);
+        int period = PeriodResolver.getInstance().yearMonthOf(System.currentTimeMillis());
+        int currentMonth = period % 100;
+        int currentYear = period / 100;
 
-        int overBudgetCount = 0;
-        List<String> categories = databaseHelper.getCategories(userEmail, "expense");
-
-        for (String category : categories) {
-            Budget budget = databaseHelper.getBudget(userEmail, category, currentMonth, currentYear);
-            if (budget != null) {
-                double spent = databaseHelper.getSpentInCategory(userEmail, category, currentMonth, currentYear);
-                if (spent >= budget.getLimitAmount()) {
-                    overBudgetCount++;
-                }
-            }
-        }
+        // Kept current by BudgetTracker - no per-category queries here
+        int overBudgetCount = budgetTracker.getExceededCount(userEmail, currentMonth, currentYear);
 
         if (overBudgetCount > 0) {
             budgetWarningText.setVisibility(View.VISIBLE);
@@ -322,7 +279,9 @@ public class ExpensesFragment extends Fragment implements TransactionAdapter.OnT
         EditText amountInput = dialogView.findViewById(R.id.amountInput);
         EditText dateInput = dialogView.findViewById(R.id.dateInput);
         Spinner categorySpinner = dialogView.findViewById(R.id.categorySpinner);
-        EditText descriptionInput = dialogView.findViewById(R.id.descriptionInput);
+        AutoCompleteTextView descriptionInput = dialogView.findViewById(R.id.descriptionInput);
+        descriptionInput.setAdapter(new DescriptionAdapter(getContext(), userEmail, "expense"));
+        Spinner repeatSpinner = dialogView.findViewById(R.id.repeatSpinner);
 
         List<String> categories = databaseHelper.getCategories(userEmail, "expense");
         ArrayAdapter<String> categoryAdapter = new ArrayAdapter<>(getContext(),
@@ -330,6 +289,11 @@ public class ExpensesFragment extends Fragment implements TransactionAdapter.OnT
         categoryAdapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
         categorySpinner.setAdapter(categoryAdapter);
 
+        ArrayAdapter<String> repeatAdapter = new ArrayAdapter<>(getContext(),
+                android.R.layout.simple_spinner_item, REPEAT_OPTIONS);
+        repeatAdapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
+        repeatSpinner.setAdapter(repeatAdapter);
+
         Calendar calendar = Calendar.getInstance();
         SimpleDateFormat dateFormat = new SimpleDateFormat("MMM dd, yyyy", Locale.getDefault());
 
@@ -342,10 +306,16 @@ public class ExpensesFragment extends Fragment implements TransactionAdapter.OnT
             if (categoryPosition >= 0) categorySpinner.setSelection(categoryPosition);
 
             descriptionInput.setText(transaction.getDescription());
+
+            // Editing changes a single row, not its rule
+            repeatSpinner.setVisibility(View.GONE);
         } else {
             dateInput.setText(dateFormat.format(calendar.getTime()));
         }
 
+        // Added after the fields are filled, so an edit is only re-suggested once its text changes
+        suggestCategoryWhileTyping(amountInput, descriptionInput, categorySpinner, categories);
+
         dateInput.setOnClickListener(v -> {
             DatePickerDialog datePickerDialog = new DatePickerDialog(getContext(),
                     (view, year, month, dayOfMonth) -> {
@@ -372,21 +342,44 @@ public class ExpensesFragment extends Fragment implements TransactionAdapter.OnT
             double amount = Double.parseDouble(amountStr);
             long date = calendar.getTimeInMillis();
 
+            String frequency = REPEAT_FREQUENCIES[repeatSpinner.getSelectedItemPosition()];
+
             boolean success;
-            if (transaction == null) {
+            AnomalyDetector.Anomaly anomaly = null;
+            if (transaction == null && frequency != null) {
+                // The rule generates this and every later occurrence once due
+                RecurringRule rule = new RecurringRule(userEmail, amount, category,
+                        description, "expense", frequency, date);
+                success = databaseHelper.addRecurringRule(rule) != -1
+                        && databaseHelper.generateDueRecurringTransactions(userEmail, System.currentTimeMillis()) != -1;
+            } else if (transaction == null) {
+                // Checked first, so the expense isn't compared with itself
+                anomaly = anomalyDetector.check(userEmail, category, amount);
                 success = databaseHelper.addTransaction(userEmail, amount, date,
                         category, description, "expense") != -1;
             } else {
-                success = databaseHelper.updateTransaction(transaction.getId(),
+                if (amount != transaction.getAmount() || !category.equals(transaction.getCategory())) {
+                    // Compared without the row being edited
+                    anomaly = anomalyDetector.check(userEmail, category, amount, transaction);
+                }
+                success = databaseHelper.updateTransaction(userEmail, transaction.getId(),
                         amount, date, category, description);
             }
 
             if (success) {
-                Toast.makeText(getContext(),
-                        transaction == null ? "Expense added" : "Expense updated",
-                        Toast.LENGTH_SHORT).show();
+                if (anomaly != null) {
+                    NumberFormat formatter = NumberFormat.getCurrencyInstance(new Locale("en", "US"));
+                    Toast.makeText(getContext(),
+                            "⚠️ Unusual expense! " + formatter.format(anomaly.amount) +
+                                    " is far above your usual " + formatter.format(anomaly.mean) +
+                                    " for " + anomaly.category,
+                            Toast.LENGTH_LONG).show();
+                } else {
+                    Toast.makeText(getContext(),
+                            transaction == null ? "Expense added" : "Expense updated",
+                            Toast.LENGTH_SHORT).show();
+                }
 
-                checkBudgetAlert(category, date);
                 loadExpenses();
                 setupFilterChips();
             } else {
@@ -398,36 +391,84 @@ public class ExpensesFragment extends Fragment implements TransactionAdapter.OnT
         builder.create().show();
     }
 
-    private void checkBudgetAlert(String category, long transactionDate) {
-        Calendar calendar = Calendar.getInstance();
-        calendar.setTimeInMillis(transactionDate);
-        int month = calendar.get(Calendar.MONTH) + 1;
-        int year = calendar.get(Calendar.YEAR);
-
-        Budget budget = databaseHelper.getBudget(userEmail, category, month, year);
-
-        if (budget != null) {
-            double totalSpent = databaseHelper.getSpentInCategory(userEmail, category, month, year);
-            double limitAmount = budget.getLimitAmount();
-            double percentage = (totalSpent / limitAmount) * 100;
-
-            NumberFormat formatter = NumberFormat.getCurrencyInstance(new Locale("en", "US"));
-
-            if (totalSpent > limitAmount) {
-                double overAmount = totalSpent - limitAmount;
-                Toast.makeText(getContext(),
-                        "⚠️ Budget Exceeded! You're " + formatter.format(overAmount) +
-                                " over your " + category + " budget",
-                        Toast.LENGTH_LONG).show();
-
-            } else if (percentage >= budget.getAlertThreshold()) {
-                double remaining = limitAmount - totalSpent;
-                Toast.makeText(getContext(),
-                        "⚠️ Budget Alert! You have " + formatter.format(remaining) +
-                                " remaining in your " + category + " budget (" +
-                                String.format("%.0f%%", percentage) + " used)",
-                        Toast.LENGTH_LONG).show();
+    /**
+     * Called by BudgetTracker once each time a budget crosses its alert threshold or 100%
+     */
+    @Override
+    public void onThresholdCrossed(Budget budget, double totalSpent, int level) {
+        if (!isAdded() || !budget.getUserEmail().equals(userEmail)) {
+            return;
+        }
+
+        double limitAmount = budget.getLimitAmount();
+        double percentage = budget.getPercentageSpent(totalSpent);
+        String category = budget.getCategory();
+
+        NumberFormat formatter = NumberFormat.getCurrencyInstance(new Locale("en", "US"));
+
+        if (level == BudgetTracker.LEVEL_EXCEEDED) {
+            double overAmount = totalSpent - limitAmount;
+            Toast.makeText(getContext(),
+                    "⚠️ Budget Exceeded! You're " + formatter.format(overAmount) +
+                            " over your " + category + " budget",
+                    Toast.LENGTH_LONG).show();
+
+        } else if (level == BudgetTracker.LEVEL_ALERT) {
+            double remaining = limitAmount - totalSpent;
+            Toast.makeText(getContext(),
+                    "⚠️ Budget Alert! You have " + formatter.format(remaining) +
+                            " remaining in your " + category + " budget (" +
+                            String.format("%.0f%%", percentage) + " used)",
+                    Toast.LENGTH_LONG).show();
+        }
+    }
+
+    /**
+     * Pick the category as the amount and description are typed, until
+     * the user picks one themselves
+     */
+    private void suggestCategoryWhileTyping(EditText amountInput, EditText descriptionInput,
+                                            Spinner categorySpinner, List<String> categories) {
+        int[] suggested = {categorySpinner.getSelectedItemPosition()};
+        TextWatcher watcher = new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
             }
+
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
+            }
+
+            @Override
+            public void afterTextChanged(Editable s) {
+                if (categorySpinner.getSelectedItemPosition() != suggested[0]) {
+                    return;
+                }
+                double amount;
+                try {
+                    amount = Double.parseDouble(amountInput.getText().toString().trim());
+                } catch (NumberFormatException e) {
+                    amount = 0;
+                }
+                String category = categorySuggester.suggest(userEmail, "expense",
+                        descriptionInput.getText().toString(), amount);
+                int position = category != null ? categories.indexOf(category) : -1;
+                if (position >= 0) {
+                    categorySpinner.setSelection(position);
+                    suggested[0] = position;
+                }
+            }
+        };
+        amountInput.addTextChangedListener(watcher);
+        descriptionInput.addTextChangedListener(watcher);
+    }
+
+    @Override
+    public void onDestroyView() {
+        super.onDestroyView();
+        budgetTracker.removeListener(this);
+        if (actionMode != null) {
+            actionMode.finish();
         }
     }
 
@@ -438,17 +479,181 @@ public class ExpensesFragment extends Fragment implements TransactionAdapter.OnT
 
     @Override
     public void onDeleteClick(Transaction transaction) {
-        new AlertDialog.Builder(getContext())
-                .setTitle("Delete Expense")
-                .setMessage("Are you sure you want to delete this expense?")
-                .setPositiveButton("Delete", (dialog, which) -> {
-                    boolean success = databaseHelper.deleteTransaction(transaction.getId());
-                    if (success) {
-                        Toast.makeText(getContext(), "Expense deleted", Toast.LENGTH_SHORT).show();
+        deleteWithUndo(transaction);
+    }
+
+    /**
+     * Delete at once and offer Undo instead of asking first
+     * The row is only tombstoned, so Undo restores it with the same id
+     */
+    private boolean deleteWithUndo(Transaction transaction) {
+        if (!databaseHelper.deleteTransaction(userEmail, transaction.getId())) {
+            return false;
+        }
+        loadExpenses();
+        Snackbar.make(expensesRecyclerView, "Expense deleted", Snackbar.LENGTH_LONG)
+                .setAction("Undo", v -> {
+                    if (databaseHelper.restoreTransaction(userEmail, transaction.getId()) && isAdded()) {
                         loadExpenses();
                     }
                 })
+                .show();
+        return true;
+    }
+    // ==================== MULTI-SELECT ====================
+
+    @Override
+    public void onLongClick(Transaction transaction) {
+        actionMode = ((AppCompatActivity) requireActivity()).startSupportActionMode(selectionCallback);
+        adapter.startSelection(transaction);
+    }
+
+    @Override
+    public void onSelectionChanged(int selectedCount) {
+        if (actionMode == null) {
+            return;
+        }
+        if (selectedCount == 0) {
+            actionMode.finish();
+        } else {
+            actionMode.setTitle(selectedCount + " selected");
+        }
+    }
+
+    private final ActionMode.Callback selectionCallback = new ActionMode.Callback() {
+        @Override
+        public boolean onCreateActionMode(ActionMode mode, Menu menu) {
+            menu.add(Menu.NONE, MENU_RECATEGORIZE, Menu.NONE, "Change category");
+            menu.add(Menu.NONE, MENU_SHIFT_DATES, Menu.NONE, "Move dates");
+            menu.add(Menu.NONE, MENU_DELETE, Menu.NONE, "Delete");
+            return true;
+        }
+
+        @Override
+        public boolean onPrepareActionMode(ActionMode mode, Menu menu) {
+            return false;
+        }
+
+        @Override
+        public boolean onActionItemClicked(ActionMode mode, MenuItem item) {
+            List<Transaction> selection = adapter.getSelected();
+            switch (item.getItemId()) {
+                case MENU_DELETE:
+                    deleteSelected(selection);
+                    return true;
+                case MENU_RECATEGORIZE:
+                    showRecategorizeDialog(selection);
+                    return true;
+                case MENU_SHIFT_DATES:
+                    showShiftDatesDialog(selection);
+                    return true;
+                default:
+                    return false;
+            }
+        }
+
+        @Override
+        public void onDestroyActionMode(ActionMode mode) {
+            actionMode = null;
+            adapter.endSelection();
+        }
+    };
+
+    private void deleteSelected(List<Transaction> selection) {
+        int deleted = databaseHelper.deleteTransactions(userEmail, selection);
+        if (deleted < 0) {
+            Toast.makeText(getContext(), "Failed to delete expenses", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        actionMode.finish();
+
+        // Drop the rows in place instead of reloading the list
+        Set<Integer> ids = new HashSet<>();
+        for (Transaction transaction : selection) {
+            ids.add(transaction.getId());
+        }
+        expensesList.removeIf(transaction -> ids.contains(transaction.getId()));
+        for (int i = filteredList.size() - 1; i >= 0; i--) {
+            if (ids.contains(filteredList.get(i).getId())) {
+                filteredList.remove(i);
+                adapter.notifyItemRemoved(i);
+            }
+        }
+        updateSummary();
+        updateEmptyState();
+        checkBudgetStatus();
+
+        Snackbar.make(expensesRecyclerView, deleted + " expenses deleted", Snackbar.LENGTH_LONG)
+                .setAction("Undo", v -> {
+                    if (databaseHelper.restoreTransactions(userEmail, selection) > 0 && isAdded()) {
+                        loadExpenses();
+                    }
+                })
+                .show();
+    }
+
+    private void showRecategorizeDialog(List<Transaction> selection) {
+        List<String> categories = databaseHelper.getCategories(userEmail, "expense");
+        new AlertDialog.Builder(getContext())
+                .setTitle("Change category")
+                .setItems(categories.toArray(new String[0]), (dialog, which) -> {
+                    String category = categories.get(which);
+                    if (databaseHelper.recategorizeTransactions(userEmail, selection, category) < 0) {
+                        Toast.makeText(getContext(), "Failed to change category", Toast.LENGTH_SHORT).show();
+                        return;
+                    }
+                    for (Transaction transaction : selection) {
+                        transaction.setCategory(category);
+                    }
+                    finishBulkEdit();
+                })
+                .setNegativeButton("Cancel", null)
+                .show();
+    }
+
+    private void showShiftDatesDialog(List<Transaction> selection) {
+        EditText daysInput = new EditText(getContext());
+        daysInput.setInputType(InputType.TYPE_CLASS_NUMBER | InputType.TYPE_NUMBER_FLAG_SIGNED);
+        daysInput.setHint("Days, e.g. 7 or -7");
+
+        new AlertDialog.Builder(getContext())
+                .setTitle("Move dates")
+                .setView(daysInput)
+                .setPositiveButton("Move", (dialog, which) -> {
+                    int days;
+                    try {
+                        days = Integer.parseInt(daysInput.getText().toString().trim());
+                    } catch (NumberFormatException e) {
+                        Toast.makeText(getContext(), "Please enter a number of days", Toast.LENGTH_SHORT).show();
+                        return;
+                    }
+                    if (days == 0) {
+                        return;
+                    }
+                    if (databaseHelper.shiftTransactionDates(userEmail, selection, days) < 0) {
+                        Toast.makeText(getContext(), "Failed to move dates", Toast.LENGTH_SHORT).show();
+                        return;
+                    }
+                    PeriodResolver resolver = PeriodResolver.getInstance();
+                    for (Transaction transaction : selection) {
+                        transaction.setDate(resolver.plusDays(transaction.getDate(), days));
+                    }
+                    finishBulkEdit();
+                })
                 .setNegativeButton("Cancel", null)
                 .show();
     }
+
+    /**
+     * The selected rows were edited in memory to match the database;
+     * refilter and resort them without reloading the list
+     */
+    private void finishBulkEdit() {
+        if (actionMode != null) {
+            actionMode.finish();
+        }
+        filterTransactions(searchView.getQuery().toString(), selectedCategory);
+        updateSummary();
+        checkBudgetStatus();
+    }
 }
\ No newline at end of file
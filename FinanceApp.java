@@ -8,8 +8,40 @@ public class FinanceApp extends Application {
     public void onCreate() {
         super.onCreate();
 
-        // Apply saved theme when app starts
-        PreferenceManager preferenceManager = PreferenceManager.getInstance(this);
-        preferenceManager.getTheme();
+        StartupTracer.trace("FinanceApp.onCreate", () -> {
+            // Apply saved theme when app starts (must happen before the first activity)
+            StartupTracer.trace("prefs.theme", () -> {
+                PreferenceManager preferenceManager = PreferenceManager.getInstance(this);
+                preferenceManager.getTheme();
+                Metrics.setEnabled(preferenceManager.isMetricsEnabled());
+            });
+
+            // Everything else runs on diskIO so the first frame never waits on SQLite
+            DatabaseHelper databaseHelper = DatabaseHelper.getInstance(this);
+
+            // In-memory indexes register as observers before any write can happen
+            BudgetTracker.getInstance(this);
+            CategorySuggester.getInstance(this);
+            DescriptionCompleter.getInstance(this);
+            SpendingForecaster.getInstance(this);
+            AnomalyDetector.getInstance(this);
+            PasswordHasher passwordHasher = PasswordHasher.getInstance(this);
+            AppExecutors.getInstance().diskIO().execute(() -> {
+                // Per-user ledgers are opened (and caught up) by DashboardActivity after login
+                StartupTracer.trace("db.warmUp", databaseHelper::warmUp);
+
+                // ANALYZE, vacuum and checkpoint later, while the device is idle
+                StartupTracer.trace("maintenance.schedule", () -> DatabaseMaintenance.schedule(this));
+            });
+
+            // Calibrate password hashing cost once per install. Its timed hashes
+            // get their own thread rather than holding up openUser() and the
+            // index loads queued on diskIO
+            Thread calibration = new Thread(
+                    () -> StartupTracer.trace("password.calibrate", passwordHasher::calibrateIfNeeded),
+                    "finance-password-calibrate");
+            calibration.setPriority(Thread.NORM_PRIORITY - 1);
+            calibration.start();
+        });
     }
 }
\ No newline at end of file
@@ -29,8 +29,6 @@ import com.github.mikephil.charting.utils.ColorTemplate;
 
 import java.text.NumberFormat;
 import java.util.ArrayList;
-import java.util.Calendar;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -124,74 +122,13 @@ public class HomeFragment extends Fragment {
     }
 
     private void loadDashboardData(int periodPosition) {
-        Calendar calendar = Calendar.getInstance();
-        long startDate, endDate;
-
-        // Calculate date range based on selected period
-        switch (periodPosition) {
-            case 0: // This Month
-                calendar.set(Calendar.DAY_OF_MONTH, 1);
-                calendar.set(Calendar.HOUR_OF_DAY, 0);
-                calendar.set(Calendar.MINUTE, 0);
-                calendar.set(Calendar.SECOND, 0);
-                startDate = calendar.getTimeInMillis();
-
-                calendar.set(Calendar.DAY_OF_MONTH, calendar.getActualMaximum(Calendar.DAY_OF_MONTH));
-                calendar.set(Calendar.HOUR_OF_DAY, 23);
-                calendar.set(Calendar.MINUTE, 59);
-                calendar.set(Calendar.SECOND, 59);
-                endDate = calendar.getTimeInMillis();
-                break;
-
-            case 1: // Last Month
-                calendar.add(Calendar.MONTH, -1);
-                calendar.set(Calendar.DAY_OF_MONTH, 1);
-                calendar.set(Calendar.HOUR_OF_DAY, 0);
-                calendar.set(Calendar.MINUTE, 0);
-                calendar.set(Calendar.SECOND, 0);
-                startDate = calendar.getTimeInMillis();
-
-                calendar.set(Calendar.DAY_OF_MONTH, calendar.getActualMaximum(Calendar.DAY_OF_MONTH));
-                calendar.set(Calendar.HOUR_OF_DAY, 23);
-                calendar.set(Calendar.MINUTE, 59);
-                calendar.set(Calendar.SECOND, 59);
-                endDate = calendar.getTimeInMillis();
-                break;
-
-            case 2: // Last 3 Months
-                calendar.add(Calendar.MONTH, -3);
-                calendar.set(Calendar.DAY_OF_MONTH, 1);
-                calendar.set(Calendar.HOUR_OF_DAY, 0);
-                calendar.set(Calendar.MINUTE, 0);
-                calendar.set(Calendar.SECOND, 0);
-                startDate = calendar.getTimeInMillis();
-                endDate = System.currentTimeMillis();
-                break;
-
-            case 3: // Last 6 Months
-                calendar.add(Calendar.MONTH, -6);
-                calendar.set(Calendar.DAY_OF_MONTH, 1);
-                calendar.set(Calendar.HOUR_OF_DAY, 0);
-                calendar.set(Calendar.MINUTE, 0);
-                calendar.set(Calendar.SECOND, 0);
-                startDate = calendar.getTimeInMillis();
-                endDate = System.currentTimeMillis();
-                break;
-
-            case 4: // This Year
-                calendar.set(Calendar.MONTH, Calendar.JANUARY);
-                calendar.set(Calendar.DAY_OF_MONTH, 1);
-                calendar.set(Calendar.HOUR_OF_DAY, 0);
-                calendar.set(Calendar.MINUTE, 0);
-                calendar.set(Calendar.SECOND, 0);
-                startDate = calendar.getTimeInMillis();
-                endDate = System.currentTimeMillis();
-                break;
-
-            default:
-                startDate = 0;
-                endDate = System.currentTimeMillis();
-        }
+        Metrics.Screen screen = Metrics.beginScreen("HomeFragment.loadDashboardData");
+
+        // Half-open [startDate, endDate) for the selected period
+        PeriodResolver.Range range = PeriodResolver.getInstance()
+                .forPeriod(periodPosition, System.currentTimeMillis());
+        long startDate = range.start;
+        long endDate = range.end;
 
         // Load financial data
         double totalIncome = databaseHelper.getTotalAmount(userEmail, "income", startDate, endDate);
@@ -214,6 +151,7 @@ public class HomeFragment extends Fragment {
         // Load charts
         setupPieChart(totalIncome, totalExpenses);
         setupCategoryBarChart(startDate, endDate);
+        Metrics.endScreen(screen);
     }
 
     private void setupPieChart(double income, double expenses) {
@@ -251,12 +189,7 @@ public class HomeFragment extends Fragment {
         List<Transaction> expenses = databaseHelper.getTransactionsByPeriod(userEmail, "expense", startDate, endDate);
 
         // Group expenses by category
-        Map<String, Float> categoryTotals = new HashMap<>();
-        for (Transaction transaction : expenses) {
-            String category = transaction.getCategory();
-            float amount = (float) transaction.getAmount();
-            categoryTotals.put(category, categoryTotals.getOrDefault(category, 0f) + amount);
-        }
+        Map<String, Double> categoryTotals = TransactionOps.sumByCategory(expenses);
 
         if (categoryTotals.isEmpty()) {
             categoryBarChart.clear();
@@ -269,8 +202,8 @@ public class HomeFragment extends Fragment {
         List<String> labels = new ArrayList<>();
         int index = 0;
 
-        for (Map.Entry<String, Float> entry : categoryTotals.entrySet()) {
-            entries.add(new BarEntry(index, entry.getValue()));
+        for (Map.Entry<String, Double> entry : categoryTotals.entrySet()) {
+            entries.add(new BarEntry(index, entry.getValue().floatValue()));
             labels.add(entry.getKey());
             index++;
         }
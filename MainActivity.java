@@ -8,8 +8,7 @@ import android.widget.Toast;
 import androidx.appcompat.app.AppCompatActivity;
 import com.google.android.material.textfield.TextInputEditText;
 import com.google.android.material.textfield.TextInputLayout;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.Executor;
 
 /**
  * MainActivity - Login screen
@@ -25,19 +24,26 @@ public class MainActivity extends AppCompatActivity {
     // Singleton instances
     private DatabaseHelper databaseHelper;
     private PreferenceManager preferenceManager;
-    private ExecutorService executorService;
+    private Executor executorService;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
-        setContentView(R.layout.activity_main);
 
         // Initialize singletons using getInstance()
         databaseHelper = DatabaseHelper.getInstance(this);
         preferenceManager = PreferenceManager.getInstance(this);
 
-        // Initialize executor service for background operations
-        executorService = Executors.newSingleThreadExecutor();
+        // Remembered session: skip login entirely, DashboardActivity revalidates in background
+        if (preferenceManager.hasValidSession()) {
+            openDashboard(preferenceManager.getSessionUser().getEmail());
+            return;
+        }
+
+        setContentView(R.layout.activity_main);
+
+        // Shared executor for background operations (hashing, database)
+        executorService = AppExecutors.getInstance().diskIO();
 
         initializeViews();
         checkRememberedUser();
@@ -99,17 +105,29 @@ public class MainActivity extends AppCompatActivity {
         // Disable button to prevent multiple clicks
         signInButton.setEnabled(false);
 
+        boolean remember = rememberMeCheckbox.isChecked();
+
         // Perform login check in background thread
         executorService.execute(() -> {
             // Database operation in background
             boolean loginSuccess = databaseHelper.checkUserLogin(email, password);
 
+            // Remembered logins get a session so the next launch skips this screen
+            if (loginSuccess && remember) {
+                long expiresAt = System.currentTimeMillis() + PreferenceManager.SESSION_DURATION_MILLIS;
+                String token = databaseHelper.createSession(email, expiresAt);
+                User user = databaseHelper.getUserInfo(email);
+                if (token != null && user != null) {
+                    preferenceManager.saveSession(token, expiresAt, user);
+                }
+            }
+
             // Update UI on main thread
             runOnUiThread(() -> {
                 signInButton.setEnabled(true);
 
                 if (loginSuccess) {
-                    handleSuccessfulLogin(email);
+                    handleSuccessfulLogin(email, remember);
                 } else {
                     handleFailedLogin();
                 }
@@ -146,12 +164,21 @@ public class MainActivity extends AppCompatActivity {
      * Handle successful login
      *
      * @param email User email
+     * @param remember Whether remember me was checked
      */
-    private void handleSuccessfulLogin(String email) {
+    private void handleSuccessfulLogin(String email, boolean remember) {
         // Save remember me preference
-        preferenceManager.saveRememberMe(email, rememberMeCheckbox.isChecked());
+        preferenceManager.saveRememberMe(email, remember);
+
+        openDashboard(email);
+    }
 
-        // Navigate to Dashboard
+    /**
+     * Navigate to Dashboard and close the login screen
+     *
+     * @param email User email
+     */
+    private void openDashboard(String email) {
         Intent intent = new Intent(MainActivity.this, DashboardActivity.class);
         intent.putExtra("userEmail", email);
         startActivity(intent);
@@ -166,14 +193,4 @@ public class MainActivity extends AppCompatActivity {
                 "Invalid email or password",
                 Toast.LENGTH_SHORT).show();
     }
-
-    @Override
-    protected void onDestroy() {
-        super.onDestroy();
-
-        // Shutdown executor service
-        if (executorService != null && !executorService.isShutdown()) {
-            executorService.shutdown();
-        }
-    }
 }
\ No newline at end of file
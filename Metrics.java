@@ -0,0 +1,272 @@
+package com.finance.manager;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Metrics - In-process registry of operation latencies
+ * Each operation keeps a log2 latency histogram (microseconds), row counts
+ * and how many calls ran on the main thread. Screen loads additionally
+ * count the database operations issued while they were open.
+ * When disabled, start() is a single volatile read and record() returns at once
+ */
+public final class Metrics {
+
+    private static final String TAG = "Metrics";
+
+    // Bucket i holds latencies in [2^(i-1), 2^i) microseconds; last bucket is open-ended
+    private static final int BUCKET_COUNT = 25;
+
+    private static volatile boolean enabled = false;
+
+    private static final ConcurrentHashMap<String, Stat> stats = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<String, Long> values = new ConcurrentHashMap<>();
+    private static final ThreadLocal<Screen> currentScreen = new ThreadLocal<>();
+
+    private Metrics() {
+        // Static utility
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled(boolean enabled) {
+        Metrics.enabled = enabled;
+    }
+
+    public static void reset() {
+        stats.clear();
+        values.clear();
+    }
+
+    // ==================== RECORDING ====================
+
+    /**
+     * Start timing an operation
+     *
+     * @return Start timestamp, or 0 when metrics are disabled
+     */
+    public static long start() {
+        return enabled ? SystemClock.elapsedRealtimeNanos() : 0;
+    }
+
+    /**
+     * Record one call of an operation started with start()
+     *
+     * @param operation Operation name, e.g. "db.getAllTransactions"
+     * @param start Value returned by start()
+     * @param rows Rows read or written by the call
+     */
+    public static void record(String operation, long start, int rows) {
+        if (start == 0) {
+            return;
+        }
+
+        long elapsed = SystemClock.elapsedRealtimeNanos() - start;
+        getStat(operation).add(elapsed, rows, StartupTracer.isMainThread());
+
+        Screen screen = currentScreen.get();
+        if (screen != null) {
+            screen.queries++;
+        }
+    }
+
+    /**
+     * Record the latest value of a quantity, e.g. a file size
+     *
+     * @param name Value name, e.g. "maintenance.sizeBefore"
+     */
+    public static void setValue(String name, long value) {
+        if (enabled) {
+            values.put(name, value);
+        }
+    }
+
+    /**
+     * Start timing a screen load on the current thread
+     * Operations recorded on this thread until endScreen() are counted against it
+     *
+     * @param name Screen load name, e.g. "HomeFragment.loadDashboardData"
+     * @return Token for endScreen(), or null when metrics are disabled
+     */
+    public static Screen beginScreen(String name) {
+        if (!enabled) {
+            return null;
+        }
+
+        Screen screen = new Screen(name, SystemClock.elapsedRealtimeNanos(), currentScreen.get());
+        currentScreen.set(screen);
+        return screen;
+    }
+
+    public static void endScreen(Screen screen) {
+        if (screen == null) {
+            return;
+        }
+
+        long elapsed = SystemClock.elapsedRealtimeNanos() - screen.start;
+        getStat("screen." + screen.name).add(elapsed, screen.queries, StartupTracer.isMainThread());
+        currentScreen.set(screen.parent);
+    }
+
+    private static Stat getStat(String operation) {
+        Stat stat = stats.get(operation);
+        return stat != null ? stat : stats.computeIfAbsent(operation, name -> new Stat());
+    }
+
+    // ==================== REPORTING ====================
+
+    /**
+     * Human-readable report of every operation, slowest total first
+     * For screen loads, "rows" is the number of queries issued per load
+     */
+    public static String report() {
+        Map<String, Stat> snapshots = new HashMap<>();
+        for (Map.Entry<String, Stat> entry : stats.entrySet()) {
+            snapshots.put(entry.getKey(), entry.getValue().snapshot());
+        }
+        List<String> names = new ArrayList<>(snapshots.keySet());
+        Collections.sort(names, (a, b) -> Long.compare(snapshots.get(b).totalNanos, snapshots.get(a).totalNanos));
+
+        StringBuilder report = new StringBuilder();
+        report.append(enabled ? "Metrics: on" : "Metrics: off").append('\n');
+        for (String name : names) {
+            Stat stat = snapshots.get(name);
+            report.append('\n').append(name).append('\n')
+                    .append(String.format(Locale.US,
+                            "  n=%d  avg=%.2fms  p50<%s  p95<%s  max=%.2fms%n",
+                            stat.count, stat.totalNanos / 1e6 / stat.count,
+                            formatMicros(stat.percentileMicros(50)),
+                            formatMicros(stat.percentileMicros(95)),
+                            stat.maxNanos / 1e6))
+                    .append(String.format(Locale.US,
+                            "  %s/call=%.1f  main=%d  background=%d%n",
+                            name.startsWith("screen.") ? "queries" : "rows",
+                            (double) stat.rows / stat.count,
+                            stat.mainThreadCount, stat.count - stat.mainThreadCount));
+        }
+        if (names.isEmpty()) {
+            report.append("\nNo operations recorded\n");
+        }
+
+        List<String> valueNames = new ArrayList<>(values.keySet());
+        Collections.sort(valueNames);
+        if (!valueNames.isEmpty()) {
+            report.append("\nValues\n");
+        }
+        for (String name : valueNames) {
+            report.append("  ").append(name).append('=').append(values.get(name)).append('\n');
+        }
+        return report.toString();
+    }
+
+    /**
+     * Write the current report to the app's external files directory
+     * (pull with adb, no permission needed)
+     *
+     * @return Written file, or null if writing failed
+     */
+    public static File dumpToFile(Context context) {
+        File directory = context.getExternalFilesDir(null);
+        if (directory == null) {
+            directory = context.getFilesDir();
+        }
+
+        String timestamp = new SimpleDateFormat("yyyyMMdd-HHmmss", Locale.US).format(new Date());
+        File file = new File(directory, "metrics-" + timestamp + ".txt");
+        try (FileWriter writer = new FileWriter(file)) {
+            writer.write(report());
+            return file;
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to write metrics dump", e);
+            return null;
+        }
+    }
+
+    private static String formatMicros(long micros) {
+        if (micros == Long.MAX_VALUE) return "inf";
+        return micros >= 1000
+                ? String.format(Locale.US, "%.1fms", micros / 1000.0)
+                : micros + "us";
+    }
+
+    // ==================== STATE ====================
+
+    /**
+     * Token for an open screen load
+     */
+    public static final class Screen {
+        final String name;
+        final long start;
+        final Screen parent;
+        int queries;
+
+        Screen(String name, long start, Screen parent) {
+            this.name = name;
+            this.start = start;
+            this.parent = parent;
+        }
+    }
+
+    private static final class Stat {
+        long count;
+        long totalNanos;
+        long maxNanos;
+        long rows;
+        long mainThreadCount;
+        final long[] buckets = new long[BUCKET_COUNT];
+
+        synchronized void add(long nanos, int rowCount, boolean mainThread) {
+            count++;
+            totalNanos += nanos;
+            maxNanos = Math.max(maxNanos, nanos);
+            rows += rowCount;
+            if (mainThread) mainThreadCount++;
+
+            long micros = nanos / 1000;
+            int bucket = 64 - Long.numberOfLeadingZeros(micros);
+            buckets[Math.min(bucket, BUCKET_COUNT - 1)]++;
+        }
+
+        synchronized Stat snapshot() {
+            Stat copy = new Stat();
+            copy.count = count;
+            copy.totalNanos = totalNanos;
+            copy.maxNanos = maxNanos;
+            copy.rows = rows;
+            copy.mainThreadCount = mainThreadCount;
+            System.arraycopy(buckets, 0, copy.buckets, 0, BUCKET_COUNT);
+            return copy;
+        }
+
+        /**
+         * Upper bound of the bucket holding the given percentile
+         */
+        long percentileMicros(int percentile) {
+            long target = (count * percentile + 99) / 100;
+            long seen = 0;
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                seen += buckets[i];
+                if (seen >= target) {
+                    return i == BUCKET_COUNT - 1 ? Long.MAX_VALUE : 1L << i;
+                }
+            }
+            return Long.MAX_VALUE;
+        }
+    }
+}
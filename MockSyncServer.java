@@ -0,0 +1,127 @@
+package com.finance.manager;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * MockSyncServer - In-process stand-in for a sync backend
+ * Keeps the latest version of every row per account, resolves pushes
+ * last-writer-wins and serves pulls from a server sequence. Counts round
+ * trips and bytes in each direction, so SyncEngine's cost per sync can be
+ * measured without a network
+ */
+public class MockSyncServer implements SyncServer {
+
+    /**
+     * Winning version of one row, and when the server accepted it
+     */
+    private static final class Stored {
+        final SyncChange change;
+        final long sequence;
+
+        Stored(SyncChange change, long sequence) {
+            this.change = change;
+            this.sequence = sequence;
+        }
+    }
+
+    /**
+     * Rows of one account; the log only keeps each row's latest version
+     */
+    private static final class Account {
+        final Map<String, Stored> rows = new HashMap<>();
+        final TreeMap<Long, Stored> log = new TreeMap<>();
+        long sequence;
+    }
+
+    private final Map<String, Account> accounts = new HashMap<>();
+
+    private long roundTrips;
+    private long bytesReceived;
+    private long bytesSent;
+
+    @Override
+    public synchronized byte[] exchange(byte[] message) throws IOException {
+        roundTrips++;
+        bytesReceived += message.length;
+
+        SyncProtocol.Request request = SyncProtocol.decodeRequest(message);
+        Account account = accounts.get(request.account);
+        if (account == null) {
+            account = new Account();
+            accounts.put(request.account, account);
+        }
+
+        // Push: losers get the winning version back, whatever the watermark
+        List<SyncChange> changes = new ArrayList<>();
+        for (SyncChange change : request.changes) {
+            Stored current = account.rows.get(change.getSyncId());
+            if (current != null && !change.isNewerThan(current.change.getVersion(), current.change.getDeviceId())) {
+                if (current.change.getDeviceId() != request.deviceId || current.change.getVersion() != change.getVersion()) {
+                    changes.add(current.change);
+                }
+                continue;
+            }
+            if (current != null) {
+                account.log.remove(current.sequence);
+            }
+            Stored stored = new Stored(change, ++account.sequence);
+            account.rows.put(change.getSyncId(), stored);
+            account.log.put(stored.sequence, stored);
+        }
+
+        // Pull: everything after the watermark that this device didn't write
+        long watermark = request.watermark;
+        int pulled = 0;
+        Iterator<Stored> pending = account.log.tailMap(request.watermark, false).values().iterator();
+        while (pending.hasNext() && pulled < request.limit) {
+            Stored stored = pending.next();
+            watermark = stored.sequence;
+            if (stored.change.getDeviceId() != request.deviceId) {
+                changes.add(stored.change);
+                pulled++;
+            }
+        }
+
+        byte[] response = SyncProtocol.encode(new SyncProtocol.Response(watermark, pending.hasNext(), changes));
+        bytesSent += response.length;
+        return response;
+    }
+
+    public synchronized long getRoundTrips() {
+        return roundTrips;
+    }
+
+    /**
+     * Request bytes received from clients
+     */
+    public synchronized long getBytesReceived() {
+        return bytesReceived;
+    }
+
+    /**
+     * Response bytes sent to clients
+     */
+    public synchronized long getBytesSent() {
+        return bytesSent;
+    }
+
+    /**
+     * Number of live and deleted rows kept for an account
+     */
+    public synchronized int getRowCount(String account) {
+        Account stored = accounts.get(account);
+        return stored != null ? stored.rows.size() : 0;
+    }
+
+    public synchronized void resetCounters() {
+        roundTrips = 0;
+        bytesReceived = 0;
+        bytesSent = 0;
+    }
+}
@@ -0,0 +1,294 @@
+package com.finance.manager;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.Base64;
+import android.util.Log;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.security.spec.InvalidKeySpecException;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+/**
+ * PasswordHasher - Singleton for salted PBKDF2 password hashing
+ * The iteration count is calibrated once per device to a target latency
+ * and stored through PreferenceManager. Never call hash() or verify()
+ * from the UI thread - use AppExecutors.diskIO()
+ *
+ * Stored format: pbkdf2_sha256$iterations$salt$hash (Base64 salt and hash)
+ * Legacy format: unsalted SHA-256 hex digest (64 chars)
+ */
+public class PasswordHasher {
+
+    private static final String TAG = "PasswordHasher";
+
+    // Volatile ensures visibility of changes across threads
+    private static volatile PasswordHasher instance;
+
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final String PREFIX = "pbkdf2_sha256";
+    private static final String SEPARATOR = "$";
+
+    private static final int SALT_BYTES = 16;
+    private static final int KEY_BITS = 256;
+
+    // Calibration bounds
+    private static final long TARGET_MILLIS = 250;
+    private static final int PROBE_ITERATIONS = 10000;
+    private static final int MIN_ITERATIONS = 10000;
+    private static final int MAX_ITERATIONS = 1000000;
+
+    private final PreferenceManager preferenceManager;
+    private final SecureRandom secureRandom = new SecureRandom();
+
+    /**
+     * Private constructor to prevent direct instantiation
+     * Always use getInstance() method
+     */
+    private PasswordHasher(Context context) {
+        preferenceManager = PreferenceManager.getInstance(context.getApplicationContext());
+    }
+
+    /**
+     * Double-checked locking singleton pattern
+     * Thread-safe and efficient
+     *
+     * @param context Application context
+     * @return Singleton instance of PasswordHasher
+     */
+    public static PasswordHasher getInstance(Context context) {
+        if (instance == null) { // First check (no locking)
+            synchronized (PasswordHasher.class) {
+                if (instance == null) { // Second check (with locking)
+                    instance = new PasswordHasher(context.getApplicationContext());
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Prevent cloning of singleton instance
+     */
+    @Override
+    protected Object clone() throws CloneNotSupportedException {
+        throw new CloneNotSupportedException("Cannot clone singleton instance");
+    }
+
+    // ==================== HASHING ====================
+
+    /**
+     * Hash password with a fresh salt and the calibrated iteration count
+     *
+     * @param password Plain text password
+     * @return Encoded hash in the pbkdf2_sha256 format
+     */
+    public String hash(String password) {
+        int iterations = getIterations();
+        byte[] salt = new byte[SALT_BYTES];
+        secureRandom.nextBytes(salt);
+
+        byte[] derived = pbkdf2(password, salt, iterations);
+        return PREFIX + SEPARATOR + iterations + SEPARATOR
+                + Base64.encodeToString(salt, Base64.NO_WRAP) + SEPARATOR
+                + Base64.encodeToString(derived, Base64.NO_WRAP);
+    }
+
+    /**
+     * Verify password against a stored hash (PBKDF2 or legacy SHA-256)
+     *
+     * @param password Plain text password
+     * @param stored Stored hash from the users table
+     * @return true if the password matches
+     */
+    public boolean verify(String password, String stored) {
+        if (password == null || stored == null) {
+            return false;
+        }
+
+        if (isLegacy(stored)) {
+            return MessageDigest.isEqual(
+                    legacyHash(password).getBytes(), stored.getBytes());
+        }
+
+        String[] parts = stored.split("\\" + SEPARATOR);
+        if (parts.length != 4 || !PREFIX.equals(parts[0])) {
+            return false;
+        }
+
+        try {
+            int iterations = Integer.parseInt(parts[1]);
+            byte[] salt = Base64.decode(parts[2], Base64.NO_WRAP);
+            byte[] expected = Base64.decode(parts[3], Base64.NO_WRAP);
+            byte[] actual = pbkdf2(password, salt, iterations);
+            return MessageDigest.isEqual(expected, actual);
+        } catch (IllegalArgumentException e) {
+            Log.w(TAG, "Malformed password hash", e);
+            return false;
+        }
+    }
+
+    /**
+     * Check if a stored hash should be replaced after a successful login
+     * True for legacy hashes and for hashes weaker than the current calibration
+     *
+     * @param stored Stored hash from the users table
+     * @return true if the hash should be upgraded
+     */
+    public boolean needsRehash(String stored) {
+        if (stored == null || isLegacy(stored)) {
+            return true;
+        }
+
+        String[] parts = stored.split("\\" + SEPARATOR);
+        if (parts.length != 4 || !PREFIX.equals(parts[0])) {
+            return true;
+        }
+
+        try {
+            return Integer.parseInt(parts[1]) < getIterations();
+        } catch (NumberFormatException e) {
+            return true;
+        }
+    }
+
+    private boolean isLegacy(String stored) {
+        return !stored.startsWith(PREFIX + SEPARATOR);
+    }
+
+    private byte[] pbkdf2(String password, byte[] salt, int iterations) {
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, KEY_BITS);
+        try {
+            SecretKeyFactory factory = SecretKeyFactory.getInstance(ALGORITHM);
+            return factory.generateSecret(spec).getEncoded();
+        } catch (NoSuchAlgorithmException | InvalidKeySpecException e) {
+            throw new IllegalStateException("PBKDF2 unavailable", e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+
+    /**
+     * Unsalted SHA-256 used by accounts created before PBKDF2
+     * Kept only to verify and upgrade those hashes
+     */
+    private String legacyHash(String password) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest(password.getBytes());
+            StringBuilder hexString = new StringBuilder();
+            for (byte b : hash) {
+                String hex = Integer.toHexString(0xff & b);
+                if (hex.length() == 1) hexString.append('0');
+                hexString.append(hex);
+            }
+            return hexString.toString();
+        } catch (NoSuchAlgorithmException e) {
+            e.printStackTrace();
+            return password;
+        }
+    }
+
+    // ==================== CALIBRATION ====================
+
+    /**
+     * Get the iteration count used for new hashes
+     *
+     * @return Calibrated iterations, or the minimum if not calibrated yet
+     */
+    public int getIterations() {
+        int iterations = preferenceManager.getPasswordIterations();
+        return iterations > 0 ? iterations : MIN_ITERATIONS;
+    }
+
+    /**
+     * Run calibration once per install
+     * Call from a background thread (FinanceApp runs it on its own thread)
+     */
+    public void calibrateIfNeeded() {
+        if (preferenceManager.getPasswordIterations() > 0) {
+            return;
+        }
+
+        CalibrationResult result = calibrate(TARGET_MILLIS);
+        preferenceManager.savePasswordIterations(result.iterations);
+        Log.i(TAG, result.toString());
+    }
+
+    /**
+     * Benchmark PBKDF2 on this device and pick an iteration count
+     * that takes roughly targetMillis per hash
+     *
+     * @param targetMillis Desired hashing latency
+     * @return Calibration result with the measured samples
+     */
+    public CalibrationResult calibrate(long targetMillis) {
+        byte[] salt = new byte[SALT_BYTES];
+        secureRandom.nextBytes(salt);
+        List<long[]> samples = new ArrayList<>();
+
+        // Warm-up so JIT and provider lookup don't skew the probe
+        pbkdf2("calibration", salt, PROBE_ITERATIONS / 10);
+
+        int probe = PROBE_ITERATIONS;
+        long elapsed = timeHash(salt, probe);
+        samples.add(new long[]{probe, elapsed});
+
+        // Grow the probe until it is long enough to measure reliably
+        while (elapsed < targetMillis / 4 && probe < MAX_ITERATIONS) {
+            probe *= 2;
+            elapsed = timeHash(salt, probe);
+            samples.add(new long[]{probe, elapsed});
+        }
+
+        long scaled = elapsed > 0 ? (long) probe * targetMillis / elapsed : MAX_ITERATIONS;
+        int iterations = (int) Math.max(MIN_ITERATIONS, Math.min(MAX_ITERATIONS, scaled));
+
+        long verifyMillis = timeHash(salt, iterations);
+        samples.add(new long[]{iterations, verifyMillis});
+
+        return new CalibrationResult(iterations, targetMillis, verifyMillis, samples);
+    }
+
+    private long timeHash(byte[] salt, int iterations) {
+        long start = SystemClock.elapsedRealtime();
+        pbkdf2("calibration", salt, iterations);
+        return SystemClock.elapsedRealtime() - start;
+    }
+
+    /**
+     * Outcome of a calibration run, printable as a small benchmark table
+     */
+    public static class CalibrationResult {
+        public final int iterations;
+        public final long targetMillis;
+        public final long measuredMillis;
+        public final List<long[]> samples;
+
+        CalibrationResult(int iterations, long targetMillis, long measuredMillis, List<long[]> samples) {
+            this.iterations = iterations;
+            this.targetMillis = targetMillis;
+            this.measuredMillis = measuredMillis;
+            this.samples = samples;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder();
+            builder.append("PBKDF2 calibration: target=").append(targetMillis)
+                    .append("ms chosen=").append(iterations)
+                    .append(" measured=").append(measuredMillis).append("ms");
+            for (long[] sample : samples) {
+                builder.append("\n  iterations=").append(sample[0])
+                        .append(" time=").append(sample[1]).append("ms");
+            }
+            return builder.toString();
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package com.finance.manager;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * PeriodResolver - Turns calendar periods into half-open [start, end) epoch-millis ranges
+ * One instance per time zone; month boundaries are computed once and memoized,
+ * so range queries don't allocate calendars on every call. Half-open ranges
+ * leave no gap between a period's last millisecond and the next period
+ */
+public final class PeriodResolver {
+
+    // Positions of the "Default Period" / dashboard period spinners
+    public static final int PERIOD_THIS_MONTH = 0;
+    public static final int PERIOD_LAST_MONTH = 1;
+    public static final int PERIOD_LAST_3_MONTHS = 2;
+    public static final int PERIOD_LAST_6_MONTHS = 3;
+    public static final int PERIOD_THIS_YEAR = 4;
+
+    private static final Map<ZoneId, PeriodResolver> resolvers = new ConcurrentHashMap<>();
+
+    private final ZoneId zone;
+
+    // Months since year 0 -> range
+    private final Map<Integer, Range> months = new ConcurrentHashMap<>();
+
+    // Most recent month lookup; nearly every lookup falls in the same month
+    private volatile MonthHit lastMonth;
+
+    private PeriodResolver(ZoneId zone) {
+        this.zone = zone;
+    }
+
+    /**
+     * Resolver for the device's current time zone
+     * A new zone (travel, settings change) gets its own memoized boundaries
+     */
+    public static PeriodResolver getInstance() {
+        return forZone(ZoneId.systemDefault());
+    }
+
+    public static PeriodResolver forZone(ZoneId zone) {
+        PeriodResolver resolver = resolvers.get(zone);
+        return resolver != null ? resolver : resolvers.computeIfAbsent(zone, PeriodResolver::new);
+    }
+
+    // ==================== PERIODS ====================
+
+    /**
+     * Calendar month
+     *
+     * @param year Year, e.g. 2024
+     * @param month Month 1-12
+     */
+    public Range month(int year, int month) {
+        int index = year * 12 + month - 1;
+        Range range = months.get(index);
+        if (range == null) {
+            YearMonth yearMonth = YearMonth.of(year, month);
+            range = new Range(startOf(yearMonth.atDay(1)), startOf(yearMonth.plusMonths(1).atDay(1)));
+            months.put(index, range);
+        }
+        return range;
+    }
+
+    /**
+     * Month containing a timestamp
+     */
+    public Range monthOf(long millis) {
+        MonthHit cached = lastMonth;
+        if (cached != null && cached.range.contains(millis)) {
+            return cached.range;
+        }
+
+        int period = yearMonthOf(millis);
+        return month(period / 100, period % 100);
+    }
+
+    /**
+     * Month containing a timestamp as year * 100 + month, e.g. 202403
+     */
+    public int yearMonthOf(long millis) {
+        MonthHit cached = lastMonth;
+        if (cached != null && cached.range.contains(millis)) {
+            return cached.period;
+        }
+
+        ZonedDateTime dateTime = Instant.ofEpochMilli(millis).atZone(zone);
+        int year = dateTime.getYear();
+        int month = dateTime.getMonthValue();
+
+        lastMonth = new MonthHit(month(year, month), year * 100 + month);
+        return year * 100 + month;
+    }
+
+    /**
+     * Local calendar day of a timestamp as days since 1970-01-01
+     */
+    public long epochDayOf(long millis) {
+        return Instant.ofEpochMilli(millis).atZone(zone).toLocalDate().toEpochDay();
+    }
+
+    /**
+     * Move a timestamp by whole calendar days, keeping its local time of day
+     * across daylight saving changes
+     */
+    public long plusDays(long millis, int days) {
+        return Instant.ofEpochMilli(millis).atZone(zone).plusDays(days).toInstant().toEpochMilli();
+    }
+
+    /**
+     * Calendar quarter
+     *
+     * @param quarter Quarter 1-4
+     */
+    public Range quarter(int year, int quarter) {
+        int firstMonth = (quarter - 1) * 3 + 1;
+        return new Range(month(year, firstMonth).start, month(year, firstMonth + 2).end);
+    }
+
+    public Range year(int year) {
+        return new Range(month(year, 1).start, month(year, 12).end);
+    }
+
+    /**
+     * From the first day of the month n months back up to the end of today
+     *
+     * @param monthsBack 0 for this month so far
+     */
+    public Range rollingMonths(int monthsBack, long now) {
+        YearMonth first = YearMonth.from(Instant.ofEpochMilli(now).atZone(zone)).minusMonths(monthsBack);
+        return new Range(month(first.getYear(), first.getMonthValue()).start, endOfDay(now));
+    }
+
+    /**
+     * Whole days from one date to another, both included
+     */
+    public Range custom(LocalDate from, LocalDate toInclusive) {
+        return new Range(startOf(from), startOf(toInclusive.plusDays(1)));
+    }
+
+    /**
+     * Range for a period spinner position (PERIOD_*)
+     * Periods that include today end at midnight tonight, so transactions
+     * dated later today are still counted
+     */
+    public Range forPeriod(int period, long now) {
+        int current = yearMonthOf(now);
+        int year = current / 100;
+        int month = current % 100;
+
+        switch (period) {
+            case PERIOD_THIS_MONTH:
+                return month(year, month);
+            case PERIOD_LAST_MONTH:
+                return month(month == 1 ? year - 1 : year, month == 1 ? 12 : month - 1);
+            case PERIOD_LAST_3_MONTHS:
+                return rollingMonths(3, now);
+            case PERIOD_LAST_6_MONTHS:
+                return rollingMonths(6, now);
+            case PERIOD_THIS_YEAR:
+                return new Range(month(year, 1).start, endOfDay(now));
+            default:
+                return new Range(0, endOfDay(now));
+        }
+    }
+
+    private long startOf(LocalDate date) {
+        return date.atStartOfDay(zone).toInstant().toEpochMilli();
+    }
+
+    private long endOfDay(long millis) {
+        return startOf(Instant.ofEpochMilli(millis).atZone(zone).toLocalDate().plusDays(1));
+    }
+
+    /**
+     * Half-open range of epoch milliseconds: start included, end excluded
+     */
+    public static final class Range {
+        public final long start;
+        public final long end;
+
+        public Range(long start, long end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        public boolean contains(long millis) {
+            return millis >= start && millis < end;
+        }
+    }
+
+    private static final class MonthHit {
+        final Range range;
+        final int period;
+
+        MonthHit(Range range, int period) {
+            this.range = range;
+            this.period = period;
+        }
+    }
+}
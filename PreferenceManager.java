@@ -26,6 +26,15 @@ public class PreferenceManager {
     private static final String KEY_LAST_BACKUP = "lastBackup";
     private static final String KEY_NOTIFICATION_ENABLED = "notificationEnabled";
     private static final String KEY_BIOMETRIC_ENABLED = "biometricEnabled";
+    private static final String KEY_PASSWORD_ITERATIONS = "passwordIterations";
+    private static final String KEY_SESSION_TOKEN = "sessionToken";
+    private static final String KEY_SESSION_EXPIRES_AT = "sessionExpiresAt";
+    private static final String KEY_SESSION_EMAIL = "sessionEmail";
+    private static final String KEY_SESSION_FIRST_NAME = "sessionFirstName";
+    private static final String KEY_SESSION_LAST_NAME = "sessionLastName";
+    private static final String KEY_METRICS_ENABLED = "metricsEnabled";
+    private static final String KEY_ARCHIVE_HORIZON_MONTHS = "archiveHorizonMonths";
+    private static final String KEY_LAST_ANALYZE = "lastAnalyze";
 
     // Default values
     private static final String DEFAULT_THEME = "light";
@@ -34,6 +43,10 @@ public class PreferenceManager {
     private static final boolean DEFAULT_FIRST_LAUNCH = true;
     private static final boolean DEFAULT_NOTIFICATION_ENABLED = true;
     private static final boolean DEFAULT_BIOMETRIC_ENABLED = false;
+    private static final int DEFAULT_ARCHIVE_HORIZON_MONTHS = 24;
+
+    // Remembered sessions last 30 days
+    public static final long SESSION_DURATION_MILLIS = 30L * 24 * 60 * 60 * 1000;
 
     /**
      * Private constructor to prevent direct instantiation
@@ -125,6 +138,94 @@ public class PreferenceManager {
         editor.apply();
     }
 
+    // ==================== SESSION PREFERENCES ====================
+
+    /**
+     * Save a remembered-login session with the cached user profile
+     * The profile lets the dashboard render without a database lookup
+     *
+     * @param token Session token from DatabaseHelper.createSession()
+     * @param expiresAt Expiry timestamp in milliseconds
+     * @param user Profile to cache
+     */
+    public void saveSession(String token, long expiresAt, User user) {
+        sharedPreferences.edit()
+                .putString(KEY_SESSION_TOKEN, token)
+                .putLong(KEY_SESSION_EXPIRES_AT, expiresAt)
+                .putString(KEY_SESSION_EMAIL, user.getEmail())
+                .putString(KEY_SESSION_FIRST_NAME, user.getFirstName())
+                .putString(KEY_SESSION_LAST_NAME, user.getLastName())
+                .apply();
+    }
+
+    /**
+     * Refresh the cached profile without touching the token
+     *
+     * @param user Latest profile from the database
+     */
+    public void updateSessionUser(User user) {
+        if (getSessionToken() == null) {
+            return;
+        }
+
+        sharedPreferences.edit()
+                .putString(KEY_SESSION_FIRST_NAME, user.getFirstName())
+                .putString(KEY_SESSION_LAST_NAME, user.getLastName())
+                .apply();
+    }
+
+    /**
+     * Check if there is a non-expired session with a cached profile
+     * Reads SharedPreferences only - safe for the cold-start path
+     *
+     * @return true if the user can skip the login screen
+     */
+    public boolean hasValidSession() {
+        return getSessionToken() != null
+                && sharedPreferences.getLong(KEY_SESSION_EXPIRES_AT, 0) > System.currentTimeMillis()
+                && sharedPreferences.contains(KEY_SESSION_EMAIL);
+    }
+
+    /**
+     * Get session token
+     *
+     * @return Session token or null if no session
+     */
+    public String getSessionToken() {
+        return sharedPreferences.getString(KEY_SESSION_TOKEN, null);
+    }
+
+    /**
+     * Get the cached user profile of the current session
+     *
+     * @return Cached user or null if no session
+     */
+    public User getSessionUser() {
+        String email = sharedPreferences.getString(KEY_SESSION_EMAIL, null);
+        if (email == null) {
+            return null;
+        }
+
+        User user = new User();
+        user.setEmail(email);
+        user.setFirstName(sharedPreferences.getString(KEY_SESSION_FIRST_NAME, ""));
+        user.setLastName(sharedPreferences.getString(KEY_SESSION_LAST_NAME, ""));
+        return user;
+    }
+
+    /**
+     * Clear session data
+     */
+    public void clearSession() {
+        sharedPreferences.edit()
+                .remove(KEY_SESSION_TOKEN)
+                .remove(KEY_SESSION_EXPIRES_AT)
+                .remove(KEY_SESSION_EMAIL)
+                .remove(KEY_SESSION_FIRST_NAME)
+                .remove(KEY_SESSION_LAST_NAME)
+                .apply();
+    }
+
     // ==================== THEME PREFERENCES ====================
 
     /**
@@ -221,6 +322,51 @@ public class PreferenceManager {
         return sharedPreferences.getLong(KEY_LAST_BACKUP, 0);
     }
 
+    // ==================== ARCHIVE PREFERENCES ====================
+
+    /**
+     * Set how many months of transactions stay in the main database
+     * Older months are moved to the archive file on the next launch
+     *
+     * @param months Months kept, counting the current one; 0 disables archiving
+     */
+    public void saveArchiveHorizonMonths(int months) {
+        sharedPreferences.edit()
+                .putInt(KEY_ARCHIVE_HORIZON_MONTHS, months)
+                .apply();
+    }
+
+    /**
+     * Get how many months of transactions stay in the main database
+     *
+     * @return Months kept, or 0 if archiving is disabled
+     */
+    public int getArchiveHorizonMonths() {
+        return sharedPreferences.getInt(KEY_ARCHIVE_HORIZON_MONTHS, DEFAULT_ARCHIVE_HORIZON_MONTHS);
+    }
+
+    // ==================== MAINTENANCE PREFERENCES ====================
+
+    /**
+     * Save when the database statistics were last fully rebuilt
+     *
+     * @param timestamp ANALYZE time in milliseconds
+     */
+    public void saveLastAnalyzeTime(long timestamp) {
+        sharedPreferences.edit()
+                .putLong(KEY_LAST_ANALYZE, timestamp)
+                .apply();
+    }
+
+    /**
+     * Get when the database statistics were last fully rebuilt
+     *
+     * @return ANALYZE time or 0 if never run
+     */
+    public long getLastAnalyzeTime() {
+        return sharedPreferences.getLong(KEY_LAST_ANALYZE, 0);
+    }
+
     // ==================== NOTIFICATION PREFERENCES ====================
 
     /**
@@ -265,6 +411,50 @@ public class PreferenceManager {
         return sharedPreferences.getBoolean(KEY_BIOMETRIC_ENABLED, DEFAULT_BIOMETRIC_ENABLED);
     }
 
+    // ==================== PASSWORD HASHING PREFERENCES ====================
+
+    /**
+     * Save calibrated PBKDF2 iteration count
+     *
+     * @param iterations Iterations chosen by PasswordHasher calibration
+     */
+    public void savePasswordIterations(int iterations) {
+        sharedPreferences.edit()
+                .putInt(KEY_PASSWORD_ITERATIONS, iterations)
+                .apply();
+    }
+
+    /**
+     * Get calibrated PBKDF2 iteration count
+     *
+     * @return Iterations or 0 if not calibrated yet
+     */
+    public int getPasswordIterations() {
+        return sharedPreferences.getInt(KEY_PASSWORD_ITERATIONS, 0);
+    }
+
+    // ==================== DEBUG PREFERENCES ====================
+
+    /**
+     * Set whether operation metrics are recorded
+     *
+     * @param enabled true to record metrics
+     */
+    public void setMetricsEnabled(boolean enabled) {
+        sharedPreferences.edit()
+                .putBoolean(KEY_METRICS_ENABLED, enabled)
+                .apply();
+    }
+
+    /**
+     * Check if operation metrics are recorded
+     *
+     * @return true if metrics are enabled
+     */
+    public boolean isMetricsEnabled() {
+        return sharedPreferences.getBoolean(KEY_METRICS_ENABLED, false);
+    }
+
     // ==================== GENERIC PREFERENCE METHODS ====================
 
     /**
@@ -401,6 +591,11 @@ public class PreferenceManager {
         editor.remove(KEY_EMAIL);
         editor.remove(KEY_REMEMBER);
         editor.remove(KEY_LAST_BACKUP);
+        editor.remove(KEY_SESSION_TOKEN);
+        editor.remove(KEY_SESSION_EXPIRES_AT);
+        editor.remove(KEY_SESSION_EMAIL);
+        editor.remove(KEY_SESSION_FIRST_NAME);
+        editor.remove(KEY_SESSION_LAST_NAME);
         // Keep theme and other app settings
         editor.apply();
     }
@@ -21,6 +21,7 @@ public class ProfileFragment extends Fragment {
     private Button updateProfileButton, changePasswordButton;
     
     private DatabaseHelper databaseHelper;
+    private PreferenceManager preferenceManager;
     private String userEmail;
     private User currentUser;
     
@@ -35,6 +36,7 @@ public class ProfileFragment extends Fragment {
         }
 
         databaseHelper = DatabaseHelper.getInstance(requireContext());
+        preferenceManager = PreferenceManager.getInstance(requireContext());
 
 
         initializeViews(view);
@@ -94,6 +96,9 @@ public class ProfileFragment extends Fragment {
         if (success) {
             Toast.makeText(getContext(), "Profile updated successfully", Toast.LENGTH_SHORT).show();
             loadUserProfile();
+            if (currentUser != null) {
+                preferenceManager.updateSessionUser(currentUser);
+            }
         } else {
             Toast.makeText(getContext(), "Failed to update profile", Toast.LENGTH_SHORT).show();
         }
@@ -146,14 +151,30 @@ public class ProfileFragment extends Fragment {
                 return;
             }
             
-            // Update password
-            boolean success = databaseHelper.updateUserPassword(userEmail, oldPassword, newPassword);
-            
-            if (success) {
-                Toast.makeText(getContext(), "Password changed successfully", Toast.LENGTH_SHORT).show();
-            } else {
-                Toast.makeText(getContext(), "Current password is incorrect", Toast.LENGTH_SHORT).show();
-            }
+            // Update password in background thread (password hashing is slow)
+            AppExecutors.getInstance().diskIO().execute(() -> {
+                boolean success = databaseHelper.updateUserPassword(userEmail, oldPassword, newPassword);
+
+                // Changing the password revokes all sessions - keep this device signed in
+                if (success && preferenceManager.getSessionToken() != null) {
+                    long expiresAt = System.currentTimeMillis() + PreferenceManager.SESSION_DURATION_MILLIS;
+                    String token = databaseHelper.createSession(userEmail, expiresAt);
+                    User user = databaseHelper.getUserInfo(userEmail);
+                    if (token != null && user != null) {
+                        preferenceManager.saveSession(token, expiresAt, user);
+                    }
+                }
+
+                AppExecutors.getInstance().mainThread().execute(() -> {
+                    if (!isAdded()) return;
+
+                    if (success) {
+                        Toast.makeText(getContext(), "Password changed successfully", Toast.LENGTH_SHORT).show();
+                    } else {
+                        Toast.makeText(getContext(), "Current password is incorrect", Toast.LENGTH_SHORT).show();
+                    }
+                });
+            });
         });
         
         builder.setNegativeButton("Cancel", null);
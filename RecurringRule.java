@@ -0,0 +1,105 @@
+package com.finance.manager;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+
+public class RecurringRule {
+    public static final String FREQUENCY_DAILY = "daily";
+    public static final String FREQUENCY_WEEKLY = "weekly";
+    public static final String FREQUENCY_MONTHLY = "monthly";
+    public static final String FREQUENCY_YEARLY = "yearly";
+
+    private int id;
+    private String userEmail;
+    private double amount;
+    private String category;
+    private String description;
+    private String type; // "income" or "expense"
+    private String frequency;
+    private long startDate;
+    private long endDate; // 0 = no end
+    private int nextIndex;
+    private long nextDueDate;
+
+    public RecurringRule() {}
+
+    public RecurringRule(String userEmail, double amount, String category, String description,
+                         String type, String frequency, long startDate) {
+        this.userEmail = userEmail;
+        this.amount = amount;
+        this.category = category;
+        this.description = description;
+        this.type = type;
+        this.frequency = frequency;
+        this.startDate = startDate;
+        this.nextDueDate = startDate;
+    }
+
+    public int getId() { return id; }
+    public void setId(int id) { this.id = id; }
+
+    public String getUserEmail() { return userEmail; }
+    public void setUserEmail(String userEmail) { this.userEmail = userEmail; }
+
+    public double getAmount() { return amount; }
+    public void setAmount(double amount) { this.amount = amount; }
+
+    public String getCategory() { return category; }
+    public void setCategory(String category) { this.category = category; }
+
+    public String getDescription() { return description; }
+    public void setDescription(String description) { this.description = description; }
+
+    public String getType() { return type; }
+    public void setType(String type) { this.type = type; }
+
+    public String getFrequency() { return frequency; }
+    public void setFrequency(String frequency) { this.frequency = frequency; }
+
+    public long getStartDate() { return startDate; }
+    public void setStartDate(long startDate) { this.startDate = startDate; }
+
+    public long getEndDate() { return endDate; }
+    public void setEndDate(long endDate) { this.endDate = endDate; }
+
+    public int getNextIndex() { return nextIndex; }
+    public void setNextIndex(int nextIndex) { this.nextIndex = nextIndex; }
+
+    public long getNextDueDate() { return nextDueDate; }
+    public void setNextDueDate(long nextDueDate) { this.nextDueDate = nextDueDate; }
+
+    /**
+     * Date of the n-th occurrence, always computed from the start date
+     * so month-end rules don't drift (Jan 31, Feb 28, Mar 31, ...)
+     */
+    public long getOccurrenceDate(int index) {
+        ZonedDateTime start = Instant.ofEpochMilli(startDate).atZone(ZoneId.systemDefault());
+
+        ZonedDateTime occurrence;
+        switch (frequency) {
+            case FREQUENCY_DAILY:
+                occurrence = start.plusDays(index);
+                break;
+            case FREQUENCY_WEEKLY:
+                occurrence = start.plusWeeks(index);
+                break;
+            case FREQUENCY_YEARLY:
+                occurrence = start.plusYears(index);
+                break;
+            case FREQUENCY_MONTHLY:
+            default:
+                occurrence = start.plusMonths(index);
+                break;
+        }
+        return occurrence.toInstant().toEpochMilli();
+    }
+
+    public boolean hasEnded(long date) {
+        return endDate > 0 && date > endDate;
+    }
+
+    public String getFrequencyLabel() {
+        return frequency.substring(0, 1).toUpperCase() + frequency.substring(1);
+    }
+}
@@ -20,7 +20,9 @@ public class SettingsFragment extends Fragment {
     private RadioGroup themeRadioGroup;
     private RadioButton lightModeRadio, darkModeRadio;
     private Spinner defaultPeriodSpinner;
-    private Button manageCategoriesButton;
+    private Button manageCategoriesButton, manageRecurringButton;
+    private Button backupButton, restoreButton;
+    private android.widget.TextView lastBackupText;
 
     private PreferenceManager preferenceManager;
     private DatabaseHelper databaseHelper;
@@ -65,6 +67,15 @@ public class SettingsFragment extends Fragment {
         });
 
         manageCategoriesButton.setOnClickListener(v -> showManageCategoriesDialog());
+        manageRecurringButton.setOnClickListener(v -> showRecurringRulesDialog());
+        backupButton.setOnClickListener(v -> runBackup());
+        restoreButton.setOnClickListener(v -> showRestoreDialog());
+
+        // Hidden debug screen
+        view.findViewById(R.id.themeTitle).setOnLongClickListener(v -> {
+            showMetricsDialog();
+            return true;
+        });
 
         return view;
     }
@@ -75,6 +86,10 @@ public class SettingsFragment extends Fragment {
         darkModeRadio = view.findViewById(R.id.darkModeRadio);
         defaultPeriodSpinner = view.findViewById(R.id.defaultPeriodSpinner);
         manageCategoriesButton = view.findViewById(R.id.manageCategoriesButton);
+        manageRecurringButton = view.findViewById(R.id.manageRecurringButton);
+        backupButton = view.findViewById(R.id.backupButton);
+        restoreButton = view.findViewById(R.id.restoreButton);
+        lastBackupText = view.findViewById(R.id.lastBackupText);
 
         // Setup period spinner
         String[] periods = {"This Month", "Last Month", "Last 3 Months", "Last 6 Months", "This Year"};
@@ -96,6 +111,15 @@ public class SettingsFragment extends Fragment {
         // Load default period using Singleton
         int defaultPeriod = preferenceManager.getDefaultPeriod();
         defaultPeriodSpinner.setSelection(defaultPeriod);
+
+        showLastBackupTime();
+    }
+
+    private void showLastBackupTime() {
+        long lastBackup = preferenceManager.getLastBackupTime();
+        lastBackupText.setText(lastBackup == 0 ? "Never backed up" : "Last backup: " +
+                new java.text.SimpleDateFormat("MMM dd, yyyy HH:mm", java.util.Locale.getDefault())
+                        .format(new java.util.Date(lastBackup)));
     }
 
     private void showManageCategoriesDialog() {
@@ -169,4 +193,166 @@ public class SettingsFragment extends Fragment {
                 .setNegativeButton("Cancel", null)
                 .show();
     }
-}
\ No newline at end of file
+
+    private void showRecurringRulesDialog() {
+        java.util.List<RecurringRule> rules = databaseHelper.getRecurringRules(userEmail);
+
+        if (rules.isEmpty()) {
+            Toast.makeText(getContext(), "No recurring transactions", Toast.LENGTH_SHORT).show();
+            return;
+        }
+
+        java.text.NumberFormat formatter =
+                java.text.NumberFormat.getCurrencyInstance(new java.util.Locale("en", "US"));
+        String[] labels = new String[rules.size()];
+        for (int i = 0; i < rules.size(); i++) {
+            RecurringRule rule = rules.get(i);
+            labels[i] = rule.getFrequencyLabel() + " " + rule.getCategory() + " - " +
+                    formatter.format(rule.getAmount());
+        }
+
+        new androidx.appcompat.app.AlertDialog.Builder(getContext())
+                .setTitle("Tap to stop repeating")
+                .setItems(labels, (dialog, which) -> {
+                    boolean success = databaseHelper.deleteRecurringRule(userEmail, rules.get(which).getId());
+                    if (success) {
+                        Toast.makeText(getContext(), "Recurring transaction stopped", Toast.LENGTH_SHORT).show();
+                    } else {
+                        Toast.makeText(getContext(), "Failed to stop recurring transaction", Toast.LENGTH_SHORT).show();
+                    }
+                })
+                .setNegativeButton("Cancel", null)
+                .show();
+    }
+
+    private void runBackup() {
+        backupButton.setEnabled(false);
+        android.content.Context context = requireContext().getApplicationContext();
+        AppExecutors.getInstance().diskIO().execute(() -> {
+            java.io.File backup = DatabaseBackup.backup(context);
+
+            AppExecutors.getInstance().mainThread().execute(() -> {
+                if (!isAdded()) return;
+                backupButton.setEnabled(true);
+                if (backup != null) {
+                    showLastBackupTime();
+                    Toast.makeText(getContext(), "Backup saved", Toast.LENGTH_SHORT).show();
+                } else {
+                    Toast.makeText(getContext(), "Backup failed", Toast.LENGTH_SHORT).show();
+                }
+            });
+        });
+    }
+
+    private void showRestoreDialog() {
+        java.util.List<java.io.File> backups = DatabaseBackup.listBackups(requireContext());
+
+        if (backups.isEmpty()) {
+            Toast.makeText(getContext(), "No backups yet", Toast.LENGTH_SHORT).show();
+            return;
+        }
+
+        String[] labels = new String[backups.size()];
+        java.text.SimpleDateFormat dateFormat =
+                new java.text.SimpleDateFormat("MMM dd, yyyy HH:mm", java.util.Locale.getDefault());
+        for (int i = 0; i < backups.size(); i++) {
+            labels[i] = dateFormat.format(new java.util.Date(backups.get(i).lastModified()));
+        }
+
+        new androidx.appcompat.app.AlertDialog.Builder(getContext())
+                .setTitle("Restore backup")
+                .setItems(labels, (dialog, which) -> new androidx.appcompat.app.AlertDialog.Builder(getContext())
+                        .setTitle("Replace all data?")
+                        .setMessage("Everything since " + labels[which] + " will be lost.")
+                        .setPositiveButton("Restore", (confirm, button) -> restoreBackup(backups.get(which)))
+                        .setNegativeButton("Cancel", null)
+                        .show())
+                .setNegativeButton("Cancel", null)
+                .show();
+    }
+
+    private void restoreBackup(java.io.File backup) {
+        restoreButton.setEnabled(false);
+        android.content.Context context = requireContext().getApplicationContext();
+        AppExecutors.getInstance().diskIO().execute(() -> {
+            boolean restored = DatabaseBackup.restore(context, backup);
+
+            AppExecutors.getInstance().mainThread().execute(() -> {
+                if (!isAdded()) return;
+                restoreButton.setEnabled(true);
+                if (restored) {
+                    Toast.makeText(getContext(), "Backup restored", Toast.LENGTH_SHORT).show();
+                    // Every screen holds data from the old file
+                    requireActivity().recreate();
+                } else {
+                    Toast.makeText(getContext(), "Backup is damaged or from a newer version", Toast.LENGTH_LONG).show();
+                }
+            });
+        });
+    }
+
+    private void showMetricsDialog() {
+        View dialogView = getLayoutInflater().inflate(R.layout.dialog_metrics, null);
+        androidx.appcompat.widget.SwitchCompat enabledSwitch = dialogView.findViewById(R.id.metricsEnabledSwitch);
+        android.widget.TextView reportText = dialogView.findViewById(R.id.metricsReportText);
+
+        enabledSwitch.setChecked(Metrics.isEnabled());
+        reportText.setText(Metrics.report());
+
+        enabledSwitch.setOnCheckedChangeListener((buttonView, isChecked) -> {
+            Metrics.setEnabled(isChecked);
+            preferenceManager.setMetricsEnabled(isChecked);
+            reportText.setText(Metrics.report());
+        });
+
+        dialogView.findViewById(R.id.runBenchmarkButton).setOnClickListener(v -> showBenchmarkDialog(reportText));
+
+        new androidx.appcompat.app.AlertDialog.Builder(getContext())
+                .setTitle("Metrics")
+                .setView(dialogView)
+                .setPositiveButton("Dump to file", (dialog, which) -> {
+                    java.io.File file = Metrics.dumpToFile(requireContext());
+                    if (file != null) {
+                        Toast.makeText(getContext(), "Saved to " + file.getAbsolutePath(), Toast.LENGTH_LONG).show();
+                    } else {
+                        Toast.makeText(getContext(), "Failed to save metrics", Toast.LENGTH_SHORT).show();
+                    }
+                })
+                .setNeutralButton("Reset", (dialog, which) -> Metrics.reset())
+                .setNegativeButton("Close", null)
+                .show();
+    }
+
+    private void showBenchmarkDialog(android.widget.TextView progressText) {
+        String[] options = {"10k rows", "100k rows", "1M rows", "All scales"};
+        int[][] scales = {
+                {SyntheticDataGenerator.SCALE_10K},
+                {SyntheticDataGenerator.SCALE_100K},
+                {SyntheticDataGenerator.SCALE_1M},
+                {SyntheticDataGenerator.SCALE_10K, SyntheticDataGenerator.SCALE_100K, SyntheticDataGenerator.SCALE_1M}
+        };
+
+        new androidx.appcompat.app.AlertDialog.Builder(getContext())
+                .setTitle("Benchmark dataset")
+                .setItems(options, (dialog, which) -> {
+                    progressText.setText("Starting benchmark...\n");
+                    DataBenchmark benchmark = new DataBenchmark(requireContext());
+
+                    AppExecutors.getInstance().diskIO().execute(() -> {
+                        java.io.File file = benchmark.run(scales[which], false, line ->
+                                AppExecutors.getInstance().mainThread().execute(() -> progressText.append(line + "\n")));
+
+                        AppExecutors.getInstance().mainThread().execute(() -> {
+                            if (!isAdded()) return;
+                            String message = file != null
+                                    ? "Benchmark saved to " + file.getAbsolutePath()
+                                    : "Failed to save benchmark results";
+                            progressText.append(message + "\n");
+                            Toast.makeText(getContext(), message, Toast.LENGTH_LONG).show();
+                        });
+                    });
+                })
+                .setNegativeButton("Cancel", null)
+                .show();
+    }
+}
@@ -17,6 +17,7 @@ public class SignUpActivity extends AppCompatActivity {
     private Button signUpButton, backToSignInButton;
 
     private DatabaseHelper databaseHelper;
+    private AppExecutors appExecutors;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -24,6 +25,7 @@ public class SignUpActivity extends AppCompatActivity {
         setContentView(R.layout.activity_sign_up);
 
         databaseHelper = DatabaseHelper.getInstance(this);
+        appExecutors = AppExecutors.getInstance();
         initializeViews();
 
         signUpButton.setOnClickListener(v -> signUp());
@@ -68,9 +70,6 @@ public class SignUpActivity extends AppCompatActivity {
         if (email.isEmpty() || !android.util.Patterns.EMAIL_ADDRESS.matcher(email).matches()) {
             emailLayout.setError("Enter a valid email address");
             isValid = false;
-        } else if (databaseHelper.isEmailExists(email)) {
-            emailLayout.setError("Email already registered");
-            isValid = false;
         }
 
         // Validate first name
@@ -105,21 +104,39 @@ public class SignUpActivity extends AppCompatActivity {
 
         if (!isValid) return;
 
-        // Register user
-        boolean success = databaseHelper.addUser(email, firstName, lastName, password);
+        // Disable button to prevent multiple submissions
+        signUpButton.setEnabled(false);
+
+        // Check email and register user in background thread (password hashing is slow)
+        appExecutors.diskIO().execute(() -> {
+            boolean emailExists = databaseHelper.isEmailExists(email);
+            boolean success = !emailExists
+                    && databaseHelper.addUser(email, firstName, lastName, password);
+
+            // Update UI on main thread
+            runOnUiThread(() -> {
+                signUpButton.setEnabled(true);
+
+                if (emailExists) {
+                    emailLayout.setError("Email already registered");
+                } else if (success) {
+                    handleSuccessfulSignUp(email);
+                } else {
+                    Toast.makeText(this, "Registration failed. Please try again.", Toast.LENGTH_SHORT).show();
+                }
+            });
+        });
+    }
 
-        if (success) {
-            Toast.makeText(this, "Account created successfully!", Toast.LENGTH_SHORT).show();
+    private void handleSuccessfulSignUp(String email) {
+        Toast.makeText(this, "Account created successfully!", Toast.LENGTH_SHORT).show();
 
-            // Navigate to Dashboard
-            Intent intent = new Intent(SignUpActivity.this, DashboardActivity.class);
-            intent.putExtra("userEmail", email);
-            intent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TASK);
-            startActivity(intent);
-            finish();
-        } else {
-            Toast.makeText(this, "Registration failed. Please try again.", Toast.LENGTH_SHORT).show();
-        }
+        // Navigate to Dashboard
+        Intent intent = new Intent(SignUpActivity.this, DashboardActivity.class);
+        intent.putExtra("userEmail", email);
+        intent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TASK);
+        startActivity(intent);
+        finish();
     }
 
     private boolean isValidPassword(String password) {
@@ -0,0 +1,157 @@
+package com.finance.manager;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * SnapshotFormat - Layout and primitive encoding of ledger snapshots
+ *
+ * <pre>
+ * file    := magic "FMSS" | version u8 | flags u8 | block* | end block
+ * block   := kind u8 | encoding u8 | rawLength varint | storedLength varint
+ *            | crc32 of raw payload (4 bytes, big-endian) | payload
+ * payload := newStringCount varint | newString* | recordCount varint | record*
+ * </pre>
+ *
+ * Strings (categories, types) are interned in a dictionary that grows
+ * block by block; records refer to entries by index. Integers are LEB128
+ * varints, signed ones zigzag-encoded. Dates are deltas from the previous
+ * record of the same block and amounts are whole cents
+ */
+final class SnapshotFormat {
+
+    static final byte[] MAGIC = {'F', 'M', 'S', 'S'};
+    static final int VERSION = 1;
+
+    static final int FLAG_DEFLATE = 1;
+
+    static final int KIND_END = 0;
+    static final int KIND_CATEGORIES = 1;
+    static final int KIND_BUDGETS = 2;
+    static final int KIND_TRANSACTIONS = 3;
+
+    static final int ENCODING_RAW = 0;
+    static final int ENCODING_DEFLATE = 1;
+
+    // Records per block: large enough to compress well, small enough to stream
+    static final int BLOCK_RECORDS = 4096;
+
+    // Sanity cap when reading lengths from a possibly corrupt file
+    static final int MAX_BLOCK_BYTES = 64 * 1024 * 1024;
+
+    private SnapshotFormat() {
+        // Static utility
+    }
+
+    static long toCents(double amount) {
+        return Math.round(amount * 100);
+    }
+
+    static double fromCents(long cents) {
+        return cents / 100.0;
+    }
+
+    /**
+     * Growable byte buffer with varint writers and readers
+     */
+    static final class Bytes {
+        byte[] data;
+        int length;
+        int position;
+
+        Bytes(int capacity) {
+            data = new byte[capacity];
+        }
+
+        void clear() {
+            length = 0;
+            position = 0;
+        }
+
+        void ensureCapacity(int capacity) {
+            if (capacity > data.length) {
+                data = Arrays.copyOf(data, Math.max(capacity, data.length * 2));
+            }
+        }
+
+        // ==================== WRITE ====================
+
+        void writeByte(int value) {
+            ensureCapacity(length + 1);
+            data[length++] = (byte) value;
+        }
+
+        void writeVarint(long value) {
+            ensureCapacity(length + 10);
+            while ((value & ~0x7FL) != 0) {
+                data[length++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            data[length++] = (byte) value;
+        }
+
+        void writeSigned(long value) {
+            writeVarint((value << 1) ^ (value >> 63));
+        }
+
+        /**
+         * Length-prefixed UTF-8; length 0 means null, otherwise length is bytes + 1
+         */
+        void writeString(String value) {
+            if (value == null) {
+                writeVarint(0);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarint(bytes.length + 1L);
+            ensureCapacity(length + bytes.length);
+            System.arraycopy(bytes, 0, data, length, bytes.length);
+            length += bytes.length;
+        }
+
+        // ==================== READ ====================
+
+        long readVarint() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                if (position >= length) {
+                    throw new IOException("Truncated varint");
+                }
+                byte b = data[position++];
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Malformed varint");
+        }
+
+        long readSigned() throws IOException {
+            long value = readVarint();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        int readInt() throws IOException {
+            long value = readVarint();
+            if (value > Integer.MAX_VALUE) {
+                throw new IOException("Value out of range: " + value);
+            }
+            return (int) value;
+        }
+
+        String readString() throws IOException {
+            int size = readInt();
+            if (size == 0) {
+                return null;
+            }
+            size--;
+            if (size > length - position) {
+                throw new IOException("Truncated string");
+            }
+            String value = new String(data, position, size, StandardCharsets.UTF_8);
+            position += size;
+            return value;
+        }
+    }
+}
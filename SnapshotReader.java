@@ -0,0 +1,267 @@
+package com.finance.manager;
+
+import android.database.SQLException;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * SnapshotReader - Streams a SnapshotFormat file back into records
+ * One block is decoded at a time and its checksum verified before any
+ * record is handed out, so a damaged file fails before it reaches the database
+ */
+public class SnapshotReader implements Closeable {
+
+    /**
+     * Receives the records of one block
+     * Emails are filled in by the reader; ids are left unset
+     */
+    public interface Handler {
+        void onCategories(List<Category> categories);
+
+        void onBudgets(List<Budget> budgets);
+
+        void onTransactions(List<Transaction> transactions);
+    }
+
+    private final DataInputStream in;
+    private final String userEmail;
+    private final Inflater inflater = new Inflater();
+    private final CRC32 crc = new CRC32();
+
+    private final List<String> dictionary = new ArrayList<>();
+    private final SnapshotFormat.Bytes block = new SnapshotFormat.Bytes(64 * 1024);
+    private byte[] stored = new byte[64 * 1024];
+
+    /**
+     * @param in Snapshot stream; buffer it if it is a file stream
+     * @param userEmail Owner to give the restored records
+     */
+    public SnapshotReader(InputStream in, String userEmail) throws IOException {
+        this.in = new DataInputStream(in);
+        this.userEmail = userEmail;
+
+        byte[] magic = new byte[SnapshotFormat.MAGIC.length];
+        this.in.readFully(magic);
+        if (!Arrays.equals(magic, SnapshotFormat.MAGIC)) {
+            throw new IOException("Not a snapshot file");
+        }
+        int version = this.in.readUnsignedByte();
+        if (version > SnapshotFormat.VERSION) {
+            throw new IOException("Snapshot version " + version + " is newer than this app");
+        }
+        this.in.readUnsignedByte(); // flags - each block records its own encoding
+    }
+
+    /**
+     * Replace a user's ledger with a snapshot, all or nothing
+     * Each block is bulk-loaded through DatabaseHelper's batched imports
+     * inside one transaction
+     *
+     * @return true if the snapshot was committed
+     */
+    public static boolean restore(DatabaseHelper databaseHelper, String userEmail, InputStream in) throws IOException {
+        long start = Metrics.start();
+        int[] rows = new int[1];
+        try (SnapshotReader reader = new SnapshotReader(in, userEmail)) {
+            Handler loader = new Handler() {
+                @Override
+                public void onCategories(List<Category> categories) {
+                    check(databaseHelper.importCategories(userEmail, categories));
+                }
+
+                @Override
+                public void onBudgets(List<Budget> budgets) {
+                    check(databaseHelper.importBudgets(userEmail, budgets));
+                }
+
+                @Override
+                public void onTransactions(List<Transaction> transactions) {
+                    check(databaseHelper.importTransactions(userEmail, transactions));
+                    rows[0] += transactions.size();
+                }
+            };
+
+            boolean committed = databaseHelper.replaceLedger(userEmail, unit -> {
+                try {
+                    while (reader.readBlock(loader)) {
+                        // Each block is imported by the handler
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            Metrics.record("snapshot.restore", start, committed ? rows[0] : 0);
+            return committed;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static void check(boolean imported) {
+        if (!imported) {
+            throw new SQLException("Snapshot batch failed to import");
+        }
+    }
+
+    /**
+     * Read and dispatch the next block
+     *
+     * @return false once the end marker is reached
+     */
+    public boolean readBlock(Handler handler) throws IOException {
+        int kind = in.readUnsignedByte();
+        int encoding = in.readUnsignedByte();
+        int rawLength = readLength();
+        int storedLength = readLength();
+        long checksum = in.readInt() & 0xFFFFFFFFL;
+
+        if (kind == SnapshotFormat.KIND_END) {
+            return false;
+        }
+
+        if (stored.length < storedLength) {
+            stored = new byte[storedLength];
+        }
+        in.readFully(stored, 0, storedLength);
+
+        block.clear();
+        block.ensureCapacity(rawLength);
+        if (encoding == SnapshotFormat.ENCODING_DEFLATE) {
+            inflate(storedLength, rawLength);
+        } else if (encoding == SnapshotFormat.ENCODING_RAW && storedLength == rawLength) {
+            System.arraycopy(stored, 0, block.data, 0, rawLength);
+        } else {
+            throw new IOException("Unknown block encoding " + encoding);
+        }
+        block.length = rawLength;
+
+        crc.reset();
+        crc.update(block.data, 0, rawLength);
+        if (crc.getValue() != checksum) {
+            throw new IOException("Snapshot block checksum mismatch");
+        }
+
+        int newStrings = block.readInt();
+        for (int i = 0; i < newStrings; i++) {
+            dictionary.add(block.readString());
+        }
+
+        int count = block.readInt();
+        switch (kind) {
+            case SnapshotFormat.KIND_CATEGORIES:
+                handler.onCategories(readCategories(count));
+                break;
+            case SnapshotFormat.KIND_BUDGETS:
+                handler.onBudgets(readBudgets(count));
+                break;
+            case SnapshotFormat.KIND_TRANSACTIONS:
+                handler.onTransactions(readTransactions(count));
+                break;
+            default:
+                // Unknown kinds from a newer minor revision are skipped
+                break;
+        }
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        inflater.end();
+        in.close();
+    }
+
+    // ==================== RECORDS ====================
+
+    private List<Category> readCategories(int count) throws IOException {
+        List<Category> categories = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            categories.add(new Category(userEmail, string(), string()));
+        }
+        return categories;
+    }
+
+    private List<Budget> readBudgets(int count) throws IOException {
+        List<Budget> budgets = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String category = string();
+            double limit = SnapshotFormat.fromCents(block.readSigned());
+            int alertThreshold = block.readInt();
+            int period = block.readInt();
+            budgets.add(new Budget(userEmail, category, limit, alertThreshold, period % 100, period / 100));
+        }
+        return budgets;
+    }
+
+    private List<Transaction> readTransactions(int count) throws IOException {
+        List<Transaction> transactions = new ArrayList<>(count);
+        long date = 0;
+        for (int i = 0; i < count; i++) {
+            date += block.readSigned();
+            double amount = SnapshotFormat.fromCents(block.readSigned());
+            String category = string();
+            String type = string();
+            String description = block.readString();
+            transactions.add(new Transaction(userEmail, amount, date, category, description, type));
+        }
+        return transactions;
+    }
+
+    private String string() throws IOException {
+        int index = block.readInt();
+        if (index >= dictionary.size()) {
+            throw new IOException("Dictionary index out of range: " + index);
+        }
+        return dictionary.get(index);
+    }
+
+    // ==================== BLOCKS ====================
+
+    private int readLength() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.read();
+            if (b < 0) {
+                throw new EOFException("Truncated block header");
+            }
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                if (value > SnapshotFormat.MAX_BLOCK_BYTES) {
+                    throw new IOException("Block too large: " + value);
+                }
+                return (int) value;
+            }
+        }
+        throw new IOException("Malformed block length");
+    }
+
+    private void inflate(int storedLength, int rawLength) throws IOException {
+        inflater.reset();
+        inflater.setInput(stored, 0, storedLength);
+        try {
+            int size = 0;
+            while (size < rawLength && !inflater.finished()) {
+                int inflated = inflater.inflate(block.data, size, rawLength - size);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                size += inflated;
+            }
+            if (size != rawLength) {
+                throw new IOException("Block inflated to " + size + " bytes, expected " + rawLength);
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt compressed block", e);
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package com.finance.manager;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * SnapshotWriter - Streams a ledger into the SnapshotFormat layout
+ * Records are buffered one block at a time, so memory stays constant no
+ * matter how many transactions are written. Budgets and categories go
+ * first so a reader can restore them before the long transaction tail
+ */
+public class SnapshotWriter implements Closeable {
+
+    private final OutputStream out;
+    private final boolean compress;
+    private final Deflater deflater;
+    private final CRC32 crc = new CRC32();
+
+    private final Map<String, Integer> dictionary = new HashMap<>();
+    private final List<String> newStrings = new ArrayList<>();
+
+    private final SnapshotFormat.Bytes records = new SnapshotFormat.Bytes(64 * 1024);
+    private final SnapshotFormat.Bytes block = new SnapshotFormat.Bytes(64 * 1024);
+    private final SnapshotFormat.Bytes header = new SnapshotFormat.Bytes(32);
+    private byte[] compressed = new byte[64 * 1024];
+
+    private int pendingKind = SnapshotFormat.KIND_END;
+    private int pendingCount;
+    private long previousDate;
+    private boolean finished;
+
+    /**
+     * @param out Destination; buffer it if it is a file stream
+     * @param compress Deflate each block when that makes it smaller
+     */
+    public SnapshotWriter(OutputStream out, boolean compress) throws IOException {
+        this.out = out;
+        this.compress = compress;
+        this.deflater = compress ? new Deflater(Deflater.BEST_SPEED) : null;
+
+        out.write(SnapshotFormat.MAGIC);
+        out.write(SnapshotFormat.VERSION);
+        out.write(compress ? SnapshotFormat.FLAG_DEFLATE : 0);
+    }
+
+    /**
+     * Write a user's whole ledger
+     *
+     * @return Number of transactions written
+     */
+    public static int export(DatabaseHelper databaseHelper, String userEmail, OutputStream out,
+                             boolean compress) throws IOException {
+        long start = Metrics.start();
+        try (SnapshotWriter writer = new SnapshotWriter(out, compress)) {
+            for (Category category : databaseHelper.getAllCategories(userEmail)) {
+                writer.writeCategory(category);
+            }
+            for (Budget budget : databaseHelper.getAllBudgets(userEmail)) {
+                writer.writeBudget(budget);
+            }
+
+            int count;
+            try {
+                count = databaseHelper.forEachTransaction(userEmail, transaction -> {
+                    try {
+                        writer.writeTransaction(transaction);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+
+            writer.finish();
+            Metrics.record("snapshot.export", start, count);
+            return count;
+        }
+    }
+
+    // ==================== RECORDS ====================
+
+    public void writeCategory(Category category) throws IOException {
+        startRecord(SnapshotFormat.KIND_CATEGORIES);
+        records.writeVarint(intern(category.getCategoryName()));
+        records.writeVarint(intern(category.getType()));
+        endRecord();
+    }
+
+    public void writeBudget(Budget budget) throws IOException {
+        startRecord(SnapshotFormat.KIND_BUDGETS);
+        records.writeVarint(intern(budget.getCategory()));
+        records.writeSigned(SnapshotFormat.toCents(budget.getLimitAmount()));
+        records.writeVarint(budget.getAlertThreshold());
+        records.writeVarint(budget.getYear() * 100L + budget.getMonth());
+        endRecord();
+    }
+
+    public void writeTransaction(Transaction transaction) throws IOException {
+        startRecord(SnapshotFormat.KIND_TRANSACTIONS);
+        // Rows arrive mostly in date order, so deltas are small
+        records.writeSigned(transaction.getDate() - previousDate);
+        previousDate = transaction.getDate();
+        records.writeSigned(SnapshotFormat.toCents(transaction.getAmount()));
+        records.writeVarint(intern(transaction.getCategory()));
+        records.writeVarint(intern(transaction.getType()));
+        records.writeString(transaction.getDescription());
+        endRecord();
+    }
+
+    /**
+     * Flush the last block and write the end marker
+     */
+    public void finish() throws IOException {
+        if (finished) {
+            return;
+        }
+        flushBlock();
+        writeBlock(SnapshotFormat.KIND_END, block);
+        out.flush();
+        finished = true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (deflater != null) {
+            deflater.end();
+        }
+        out.close();
+    }
+
+    private void startRecord(int kind) throws IOException {
+        if (kind != pendingKind) {
+            flushBlock();
+            pendingKind = kind;
+        }
+    }
+
+    private void endRecord() throws IOException {
+        if (++pendingCount == SnapshotFormat.BLOCK_RECORDS) {
+            flushBlock();
+        }
+    }
+
+    private int intern(String value) {
+        String key = value != null ? value : "";
+        Integer index = dictionary.get(key);
+        if (index == null) {
+            index = dictionary.size();
+            dictionary.put(key, index);
+            newStrings.add(key);
+        }
+        return index;
+    }
+
+    // ==================== BLOCKS ====================
+
+    private void flushBlock() throws IOException {
+        if (pendingCount == 0) {
+            return;
+        }
+
+        // Dictionary entries first, so records can refer to strings new in this block
+        block.clear();
+        block.writeVarint(newStrings.size());
+        for (String value : newStrings) {
+            block.writeString(value);
+        }
+        block.writeVarint(pendingCount);
+        block.ensureCapacity(block.length + records.length);
+        System.arraycopy(records.data, 0, block.data, block.length, records.length);
+        block.length += records.length;
+
+        writeBlock(pendingKind, block);
+
+        newStrings.clear();
+        records.clear();
+        pendingCount = 0;
+        previousDate = 0;
+    }
+
+    private void writeBlock(int kind, SnapshotFormat.Bytes payload) throws IOException {
+        int rawLength = kind == SnapshotFormat.KIND_END ? 0 : payload.length;
+        crc.reset();
+        crc.update(payload.data, 0, rawLength);
+
+        byte[] stored = payload.data;
+        int storedLength = rawLength;
+        int encoding = SnapshotFormat.ENCODING_RAW;
+        if (compress && rawLength > 0) {
+            int deflated = deflate(payload.data, rawLength);
+            // Keep raw blocks that don't shrink
+            if (deflated < rawLength) {
+                stored = compressed;
+                storedLength = deflated;
+                encoding = SnapshotFormat.ENCODING_DEFLATE;
+            }
+        }
+
+        header.clear();
+        header.writeByte(kind);
+        header.writeByte(encoding);
+        header.writeVarint(rawLength);
+        header.writeVarint(storedLength);
+        long checksum = crc.getValue();
+        header.writeByte((int) (checksum >>> 24));
+        header.writeByte((int) (checksum >>> 16));
+        header.writeByte((int) (checksum >>> 8));
+        header.writeByte((int) checksum);
+
+        out.write(header.data, 0, header.length);
+        out.write(stored, 0, storedLength);
+    }
+
+    private int deflate(byte[] data, int length) {
+        deflater.reset();
+        deflater.setInput(data, 0, length);
+        deflater.finish();
+
+        int size = 0;
+        while (!deflater.finished()) {
+            if (size == compressed.length) {
+                compressed = Arrays.copyOf(compressed, compressed.length * 2);
+            }
+            size += deflater.deflate(compressed, size, compressed.length - size);
+        }
+        return size;
+    }
+}
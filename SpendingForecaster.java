@@ -0,0 +1,322 @@
+package com.finance.manager;
+
+import android.content.Context;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * SpendingForecaster - Singleton projecting each expense category's month-end total
+ * Two running statistics per (user, category), both updated in O(1) by
+ * TransactionObserver:
+ * - an exponentially weighted moving average of daily spend, for the
+ *   current pace
+ * - spend by day of month over the last complete months, for the usual
+ *   shape of a month (rent on the 1st, groceries every week)
+ * The forecast is what is spent so far plus the average of the two
+ * projections for the rest of the month. Each user is seeded once per
+ * month from a single grouped query over LOOKBACK_MONTHS of daily totals
+ */
+public class SpendingForecaster implements TransactionObserver {
+
+    // Complete months the day-of-month profile is learned from
+    private static final int LOOKBACK_MONTHS = 3;
+
+    // Smoothing of daily spend; 2 / (span + 1) for a two-week span
+    private static final double EWMA_ALPHA = 2.0 / 15;
+
+    // Volatile ensures visibility of changes across threads
+    private static volatile SpendingForecaster instance;
+
+    private final DatabaseHelper databaseHelper;
+
+    // Guarded by this
+    private final Map<String, UserState> users = new HashMap<>();
+    private final Set<String> loading = new HashSet<>();
+    // Users written to while they were being seeded; the seed is redone
+    private final Set<String> raced = new HashSet<>();
+
+    /**
+     * Private constructor to prevent direct instantiation
+     * Always use getInstance() method
+     */
+    private SpendingForecaster(Context context) {
+        databaseHelper = DatabaseHelper.getInstance(context);
+        databaseHelper.addTransactionObserver(this);
+    }
+
+    /**
+     * Double-checked locking singleton pattern
+     * Thread-safe and efficient
+     *
+     * @param context Application context
+     * @return Singleton instance of SpendingForecaster
+     */
+    public static SpendingForecaster getInstance(Context context) {
+        if (instance == null) { // First check (no locking)
+            synchronized (SpendingForecaster.class) {
+                if (instance == null) { // Second check (with locking)
+                    instance = new SpendingForecaster(context.getApplicationContext());
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Prevent cloning of singleton instance
+     */
+    @Override
+    protected Object clone() throws CloneNotSupportedException {
+        throw new CloneNotSupportedException("Cannot clone singleton instance");
+    }
+
+    // ==================== QUERIES ====================
+
+    /**
+     * Seed a user's statistics on diskIO, unless they are seeded or seeding already
+     */
+    public void prepare(String userEmail) {
+        synchronized (this) {
+            if (users.containsKey(userEmail) || !loading.add(userEmail)) {
+                return;
+            }
+        }
+        AppExecutors.getInstance().diskIO().execute(() -> seed(userEmail));
+    }
+
+    /**
+     * Projected total of a category for the current month
+     * Only reads memory; until the user is seeded for this month it returns
+     * NaN and seeds them in the background
+     *
+     * @param spent Spent in the category so far this month
+     * @return Month-end total, at least spent, or NaN if not known yet
+     */
+    public double getProjectedTotal(String userEmail, String category, double spent) {
+        long start = Metrics.start();
+        PeriodResolver resolver = PeriodResolver.getInstance();
+        long now = System.currentTimeMillis();
+        double projected = Double.NaN;
+        boolean stale;
+        synchronized (this) {
+            UserState state = users.get(userEmail);
+            stale = state == null || state.period != resolver.yearMonthOf(now);
+            if (stale) {
+                users.remove(userEmail);
+            } else {
+                Series series = state.series.get(category);
+                projected = spent + (series != null ? series.projectRemaining(state, resolver.epochDayOf(now)) : 0);
+            }
+        }
+        if (stale) {
+            // First use, or a new month has begun since the seed
+            prepare(userEmail);
+        }
+        Metrics.record("forecast.project", start, 1);
+        return projected;
+    }
+
+    // ==================== TRANSACTION OBSERVER ====================
+
+    @Override
+    public synchronized void onTransactionAdded(Transaction transaction) {
+        apply(transaction, transaction.getAmount());
+    }
+
+    @Override
+    public synchronized void onTransactionUpdated(Transaction before, Transaction after) {
+        apply(before, -before.getAmount());
+        apply(after, after.getAmount());
+    }
+
+    @Override
+    public synchronized void onTransactionDeleted(Transaction transaction) {
+        apply(transaction, -transaction.getAmount());
+    }
+
+    @Override
+    public synchronized void onTransactionsReloaded(String userEmail) {
+        if (userEmail == null) {
+            users.clear();
+            raced.addAll(loading);
+        } else {
+            users.remove(userEmail);
+            if (loading.contains(userEmail)) {
+                raced.add(userEmail);
+            }
+        }
+    }
+
+    private void apply(Transaction transaction, double delta) {
+        if (!"expense".equals(transaction.getType())) {
+            return;
+        }
+        String userEmail = transaction.getUserEmail();
+        UserState state = users.get(userEmail);
+        if (state == null) {
+            if (loading.contains(userEmail)) {
+                raced.add(userEmail);
+            }
+            return;
+        }
+
+        long day = PeriodResolver.getInstance().epochDayOf(transaction.getDate());
+        if (day < state.windowStart) {
+            return;
+        }
+        Series series = state.series.get(transaction.getCategory());
+        if (series == null) {
+            series = new Series(state.windowStart);
+            state.series.put(transaction.getCategory(), series);
+        }
+        series.add(state, day, delta);
+    }
+
+    // ==================== SEEDING ====================
+
+    /**
+     * Read the lookback window's daily totals without holding the lock and
+     * fold them into new statistics. Package-private for DataBenchmark
+     */
+    void seed(String userEmail) {
+        long start = Metrics.start();
+        PeriodResolver resolver = PeriodResolver.getInstance();
+        long now = System.currentTimeMillis();
+        UserState state = new UserState(resolver.yearMonthOf(now));
+
+        int count = 0;
+        long today = resolver.epochDayOf(now);
+        for (Map.Entry<String, Map<Long, Double>> category :
+                databaseHelper.getDailyExpenseTotals(userEmail, state.windowStart).entrySet()) {
+            Series series = new Series(state.windowStart);
+            for (Map.Entry<Long, Double> day : category.getValue().entrySet()) {
+                series.add(state, day.getKey(), day.getValue());
+                count++;
+            }
+            series.rollTo(today);
+            state.series.put(category.getKey(), series);
+        }
+
+        boolean again;
+        synchronized (this) {
+            loading.remove(userEmail);
+            again = raced.remove(userEmail);
+            if (!again) {
+                users.put(userEmail, state);
+            }
+        }
+        Metrics.record("forecast.seed", start, count);
+
+        if (again) {
+            // A write landed mid-read; it may or may not be counted, so start over
+            prepare(userEmail);
+        }
+    }
+
+    // ==================== STATISTICS ====================
+
+    /**
+     * Calendar of the month a user was seeded in
+     */
+    private static final class UserState {
+        final int period;
+        // First day of the current month, and of the month after
+        final long monthStart;
+        final long monthEnd;
+        // First day of the lookback window
+        final long windowStart;
+        final Map<String, Series> series = new HashMap<>();
+
+        UserState(int period) {
+            this.period = period;
+            LocalDate first = LocalDate.of(period / 100, period % 100, 1);
+            monthStart = first.toEpochDay();
+            monthEnd = first.plusMonths(1).toEpochDay();
+            windowStart = first.minusMonths(LOOKBACK_MONTHS).toEpochDay();
+        }
+    }
+
+    /**
+     * Running statistics of one category's daily spend
+     */
+    private static final class Series {
+        // EWMA over the days before asOf, started at zero on the window's first day
+        double ewma;
+        long asOf;
+        // Days from asOf on, not folded into the average yet
+        final Map<Long, Double> pending = new HashMap<>();
+        // Earliest day with spend; the average is debiased from here
+        long firstDay = Long.MAX_VALUE;
+
+        // Spend by day of month (1-31) over the complete months of the window
+        final double[] byDayOfMonth = new double[32];
+        double pastTotal;
+
+        Series(long windowStart) {
+            asOf = windowStart;
+        }
+
+        void add(UserState state, long day, double delta) {
+            if (delta > 0) {
+                firstDay = Math.min(firstDay, day);
+            }
+            if (day < state.monthStart) {
+                byDayOfMonth[LocalDate.ofEpochDay(day).getDayOfMonth()] += delta;
+                pastTotal += delta;
+            }
+            if (day < asOf) {
+                // The day's weight in the average has decayed once per day since
+                ewma += EWMA_ALPHA * Math.pow(1 - EWMA_ALPHA, asOf - 1 - day) * delta;
+            } else {
+                pending.merge(day, delta, Double::sum);
+            }
+        }
+
+        /**
+         * Fold every day before today into the average
+         */
+        void rollTo(long today) {
+            while (asOf < today) {
+                Double total = pending.remove(asOf);
+                ewma = EWMA_ALPHA * (total != null ? total : 0) + (1 - EWMA_ALPHA) * ewma;
+                asOf++;
+            }
+        }
+
+        /**
+         * Expected spend from tomorrow to the end of the month
+         */
+        double projectRemaining(UserState state, long today) {
+            rollTo(today);
+            long daysLeft = state.monthEnd - today - 1;
+            if (daysLeft <= 0 || firstDay == Long.MAX_VALUE) {
+                return 0;
+            }
+
+            // Days before the first spend were zeros the average never saw
+            double daily = 0;
+            if (today > firstDay) {
+                daily = ewma / (1 - Math.pow(1 - EWMA_ALPHA, today - firstDay));
+            }
+            double byPace = daily * daysLeft;
+
+            // Complete months since the category was first used, within the window
+            LocalDate first = LocalDate.ofEpochDay(Math.max(firstDay, state.windowStart));
+            int pastMonths = (state.period / 100 * 12 + state.period % 100)
+                    - (first.getYear() * 12 + first.getMonthValue());
+            if (pastMonths <= 0 || pastTotal <= 0) {
+                return Math.max(0, byPace);
+            }
+            double spentByToday = 0;
+            for (int dayOfMonth = 1; dayOfMonth <= today - state.monthStart + 1; dayOfMonth++) {
+                spentByToday += byDayOfMonth[dayOfMonth];
+            }
+            double byCalendar = (pastTotal - spentByToday) / pastMonths;
+            return Math.max(0, (byPace + byCalendar) / 2);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.finance.manager;
+
+import android.app.Activity;
+import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
+import android.os.Trace;
+import android.util.Log;
+import android.view.View;
+import android.view.ViewTreeObserver;
+
+/**
+ * StartupTracer - Records cold-start phases
+ * Each phase is emitted as a systrace/Perfetto section and logged with
+ * its duration and the thread it ran on, measured from process start
+ */
+public final class StartupTracer {
+
+    private static final String TAG = "StartupTracer";
+
+    private static volatile boolean firstFrameReported = false;
+
+    private StartupTracer() {
+        // Static utility
+    }
+
+    /**
+     * Run a startup phase inside a trace section
+     *
+     * @param name Section name shown in the trace
+     * @param phase Work to run on the current thread
+     */
+    public static void trace(String name, Runnable phase) {
+        long start = SystemClock.elapsedRealtime();
+        Trace.beginSection(name);
+        try {
+            phase.run();
+        } finally {
+            Trace.endSection();
+            long end = SystemClock.elapsedRealtime();
+            Log.i(TAG, name + ": " + (end - start) + "ms"
+                    + " (+" + sinceProcessStart(end) + "ms, "
+                    + (isMainThread() ? "main" : Thread.currentThread().getName()) + ")");
+        }
+    }
+
+    /**
+     * Report time from process start to the first drawn dashboard frame
+     * Only the first call per process is reported
+     *
+     * @param activity Activity whose first frame ends the cold start
+     */
+    public static void reportFirstFrame(Activity activity) {
+        if (firstFrameReported) {
+            return;
+        }
+
+        View decorView = activity.getWindow().getDecorView();
+        decorView.getViewTreeObserver().addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                decorView.getViewTreeObserver().removeOnPreDrawListener(this);
+
+                // Runs after the frame has been handed to the renderer
+                decorView.post(() -> {
+                    if (firstFrameReported) return;
+                    firstFrameReported = true;
+
+                    long now = SystemClock.elapsedRealtime();
+                    Log.i(TAG, "Time to first dashboard frame: " + sinceProcessStart(now) + "ms");
+                    activity.reportFullyDrawn();
+                });
+                return true;
+            }
+        });
+    }
+
+    /**
+     * Log a warning when startup-only work lands on the UI thread
+     *
+     * @param what Description of the work
+     */
+    public static void warnIfMainThread(String what) {
+        if (isMainThread()) {
+            Log.w(TAG, what + " on the main thread", new Throwable());
+        }
+    }
+
+    public static boolean isMainThread() {
+        return Looper.myLooper() == Looper.getMainLooper();
+    }
+
+    private static long sinceProcessStart(long elapsedRealtime) {
+        return elapsedRealtime - Process.getStartElapsedRealtime();
+    }
+}
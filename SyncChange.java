@@ -0,0 +1,53 @@
+package com.finance.manager;
+
+/**
+ * One version of a synced row: a transaction, budget or category as last
+ * written by some device, or its deletion
+ * Rows are identified across devices by syncId, since local ids differ.
+ * Conflicts resolve last-writer-wins on (version, deviceId)
+ */
+public class SyncChange {
+    private final String entity;
+    private final String syncId;
+    private final long version;
+    private final long deviceId;
+    private final boolean deleted;
+    private final Object row;
+
+    /**
+     * @param entity One of the ChangeLog.ENTITY_* constants
+     * @param version Writer's clock in milliseconds when the row was changed
+     * @param row Transaction, Budget or Category matching the entity; null for deletions
+     */
+    public SyncChange(String entity, String syncId, long version, long deviceId, Object row) {
+        this.entity = entity;
+        this.syncId = syncId;
+        this.version = version;
+        this.deviceId = deviceId;
+        this.deleted = row == null;
+        this.row = row;
+    }
+
+    public String getEntity() { return entity; }
+
+    public String getSyncId() { return syncId; }
+
+    public long getVersion() { return version; }
+
+    public long getDeviceId() { return deviceId; }
+
+    public boolean isDeleted() { return deleted; }
+
+    public Transaction getTransaction() { return (Transaction) row; }
+
+    public Budget getBudget() { return (Budget) row; }
+
+    public Category getCategory() { return (Category) row; }
+
+    /**
+     * Last-writer-wins order; the device id breaks ties between equal clocks
+     */
+    public boolean isNewerThan(long otherVersion, long otherDeviceId) {
+        return version != otherVersion ? version > otherVersion : deviceId > otherDeviceId;
+    }
+}
@@ -0,0 +1,140 @@
+package com.finance.manager;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * SyncEngine - Keeps a user's ledger in step with a sync account
+ * Local writes are read from the ledger's change log, so a sync only sends
+ * rows written since the last one. Each exchange pushes a page of local
+ * changes and pulls a page of remote ones in a single round trip, and the
+ * remote page is applied in one transaction. Conflicts resolve
+ * last-writer-wins on the writer's clock, ties broken by device id.
+ * The first sync uploads the whole ledger. Call sync() from a background thread
+ */
+public class SyncEngine {
+
+    // Change log consumer name; its acknowledgement is the push watermark
+    static final String CONSUMER = "sync";
+
+    // Rows per exchange in each direction
+    private static final int PAGE_SIZE = 500;
+
+    /**
+     * What one sync did
+     */
+    public static final class Result {
+        public final int pushed;
+        public final int pulled;
+        public final int roundTrips;
+        public final long bytesSent;
+        public final long bytesReceived;
+
+        Result(int pushed, int pulled, int roundTrips, long bytesSent, long bytesReceived) {
+            this.pushed = pushed;
+            this.pulled = pulled;
+            this.roundTrips = roundTrips;
+            this.bytesSent = bytesSent;
+            this.bytesReceived = bytesReceived;
+        }
+    }
+
+    private final DatabaseHelper databaseHelper;
+    private final SyncServer server;
+    private final String userEmail;
+    private final String account;
+
+    /**
+     * @param userEmail Owner of the local ledger
+     * @param account Server account the ledger syncs with
+     */
+    public SyncEngine(DatabaseHelper databaseHelper, SyncServer server, String userEmail, String account) {
+        this.databaseHelper = databaseHelper;
+        this.server = server;
+        this.userEmail = userEmail;
+        this.account = account;
+    }
+
+    /**
+     * Push local changes and pull remote ones until both sides are drained
+     * A failed exchange leaves both watermarks where they were; the next
+     * sync resends the same changes and the server ignores repeats
+     *
+     * @throws IOException If the server can't be reached or a page fails to apply
+     */
+    public synchronized Result sync() throws IOException {
+        long start = Metrics.start();
+        ChangeLog changeLog = databaseHelper.getChangeLog(userEmail);
+        long deviceId = databaseHelper.getSyncDeviceId(userEmail);
+
+        // Register before reading the backlog, so writes made during the upload are logged
+        long acknowledged = changeLog.getAcknowledged(CONSUMER);
+        if (acknowledged < 0) {
+            acknowledged = changeLog.register(CONSUMER);
+        }
+        List<ChangeLogEntry> backlog = databaseHelper.getUnsyncedRows(userEmail);
+
+        int pushed = 0;
+        int pulled = 0;
+        int roundTrips = 0;
+        long bytesSent = 0;
+        long bytesReceived = 0;
+        int offset = 0;
+        boolean more = true;
+        while (more) {
+            // The initial upload goes first, then the change log
+            List<ChangeLogEntry> entries;
+            long pushedThrough = acknowledged;
+            if (offset < backlog.size()) {
+                entries = backlog.subList(offset, Math.min(offset + PAGE_SIZE, backlog.size()));
+                offset += entries.size();
+            } else {
+                entries = changeLog.getChangesSince(acknowledged, PAGE_SIZE);
+                if (!entries.isEmpty()) {
+                    pushedThrough = entries.get(entries.size() - 1).getSequence();
+                }
+            }
+
+            List<SyncChange> outgoing = databaseHelper.readSyncChanges(userEmail, entries);
+            if (outgoing == null) {
+                throw new IOException("Could not read local changes");
+            }
+            byte[] request = SyncProtocol.encode(new SyncProtocol.Request(account, deviceId,
+                    databaseHelper.getSyncWatermark(userEmail), PAGE_SIZE, outgoing));
+            byte[] reply = server.exchange(request);
+            roundTrips++;
+            bytesSent += request.length;
+            bytesReceived += reply.length;
+
+            SyncProtocol.Response response = SyncProtocol.decodeResponse(reply);
+            int applied = databaseHelper.applySyncChanges(userEmail, outgoing, response.changes,
+                    pushedThrough, response.watermark);
+            if (applied < 0) {
+                throw new IOException("Could not apply remote changes");
+            }
+            if (pushedThrough > acknowledged) {
+                changeLog.acknowledge(CONSUMER, pushedThrough);
+                acknowledged = pushedThrough;
+            }
+            pushed += outgoing.size();
+            pulled += applied;
+
+            more = response.hasMore || offset < backlog.size() || entries.size() == PAGE_SIZE;
+        }
+        if (!backlog.isEmpty()) {
+            databaseHelper.markSyncUploaded(userEmail);
+        }
+
+        Metrics.record("sync.run", start, pushed + pulled);
+        return new Result(pushed, pulled, roundTrips, bytesSent, bytesReceived);
+    }
+
+    /**
+     * Stop syncing this ledger: the change log stops keeping entries for
+     * sync and sync ids are forgotten, so a later sync starts with a full upload
+     */
+    public synchronized void disconnect() {
+        databaseHelper.getChangeLog(userEmail).unregister(CONSUMER);
+        databaseHelper.clearSyncState(userEmail);
+    }
+}
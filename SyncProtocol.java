@@ -0,0 +1,310 @@
+package com.finance.manager;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * SyncProtocol - Wire format of SyncServer exchanges
+ *
+ * <pre>
+ * message  := magic "FMSY" | version u8 | encoding u8 | rawLength varint | body
+ * request  := account string | deviceId | watermark varint | limit varint | count varint | change*
+ * response := watermark varint | hasMore u8 | count varint | change*
+ * change   := entity u8 | syncId string | version | deviceId | deleted u8 | row fields
+ * </pre>
+ *
+ * Integers use the SnapshotFormat varints and amounts are whole cents.
+ * The body is deflated when that makes it smaller; repeated categories and
+ * types compress well enough that no dictionary is needed
+ */
+final class SyncProtocol {
+
+    static final byte[] MAGIC = {'F', 'M', 'S', 'Y'};
+    static final int VERSION = 1;
+
+    private static final int ENTITY_TRANSACTION = 1;
+    private static final int ENTITY_BUDGET = 2;
+    private static final int ENTITY_CATEGORY = 3;
+
+    private SyncProtocol() {
+        // Static utility
+    }
+
+    /**
+     * Local changes to push, and where to resume pulling
+     */
+    static final class Request {
+        final String account;
+        final long deviceId;
+        final long watermark;
+        final int limit;
+        final List<SyncChange> changes;
+
+        Request(String account, long deviceId, long watermark, int limit, List<SyncChange> changes) {
+            this.account = account;
+            this.deviceId = deviceId;
+            this.watermark = watermark;
+            this.limit = limit;
+            this.changes = changes;
+        }
+    }
+
+    /**
+     * Remote changes to apply, including the winning version of any pushed
+     * change that lost a conflict
+     */
+    static final class Response {
+        final long watermark;
+        final boolean hasMore;
+        final List<SyncChange> changes;
+
+        Response(long watermark, boolean hasMore, List<SyncChange> changes) {
+            this.watermark = watermark;
+            this.hasMore = hasMore;
+            this.changes = changes;
+        }
+    }
+
+    // ==================== MESSAGES ====================
+
+    static byte[] encode(Request request) {
+        SnapshotFormat.Bytes body = new SnapshotFormat.Bytes(4096);
+        body.writeString(request.account);
+        body.writeSigned(request.deviceId);
+        body.writeVarint(request.watermark);
+        body.writeVarint(request.limit);
+        writeChanges(body, request.changes);
+        return pack(body);
+    }
+
+    static Request decodeRequest(byte[] message) throws IOException {
+        SnapshotFormat.Bytes body = unpack(message);
+        String account = body.readString();
+        long deviceId = body.readSigned();
+        long watermark = body.readVarint();
+        int limit = body.readInt();
+        return new Request(account, deviceId, watermark, limit, readChanges(body));
+    }
+
+    static byte[] encode(Response response) {
+        SnapshotFormat.Bytes body = new SnapshotFormat.Bytes(4096);
+        body.writeVarint(response.watermark);
+        body.writeByte(response.hasMore ? 1 : 0);
+        writeChanges(body, response.changes);
+        return pack(body);
+    }
+
+    static Response decodeResponse(byte[] message) throws IOException {
+        SnapshotFormat.Bytes body = unpack(message);
+        long watermark = body.readVarint();
+        boolean hasMore = readByte(body) != 0;
+        return new Response(watermark, hasMore, readChanges(body));
+    }
+
+    // ==================== CHANGES ====================
+
+    private static void writeChanges(SnapshotFormat.Bytes body, List<SyncChange> changes) {
+        body.writeVarint(changes.size());
+        for (SyncChange change : changes) {
+            body.writeByte(entityCode(change.getEntity()));
+            body.writeString(change.getSyncId());
+            body.writeSigned(change.getVersion());
+            body.writeSigned(change.getDeviceId());
+            body.writeByte(change.isDeleted() ? 1 : 0);
+            if (change.isDeleted()) {
+                continue;
+            }
+
+            switch (change.getEntity()) {
+                case ChangeLog.ENTITY_TRANSACTION:
+                    Transaction transaction = change.getTransaction();
+                    body.writeSigned(SnapshotFormat.toCents(transaction.getAmount()));
+                    body.writeSigned(transaction.getDate());
+                    body.writeString(transaction.getCategory());
+                    body.writeString(transaction.getType());
+                    body.writeString(transaction.getDescription());
+                    break;
+                case ChangeLog.ENTITY_BUDGET:
+                    Budget budget = change.getBudget();
+                    body.writeString(budget.getCategory());
+                    body.writeSigned(SnapshotFormat.toCents(budget.getLimitAmount()));
+                    body.writeVarint(budget.getAlertThreshold());
+                    body.writeVarint(budget.getYear() * 100L + budget.getMonth());
+                    break;
+                default:
+                    Category category = change.getCategory();
+                    body.writeString(category.getCategoryName());
+                    body.writeString(category.getType());
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Rows are decoded without an owner; the receiver fills in its own
+     */
+    private static List<SyncChange> readChanges(SnapshotFormat.Bytes body) throws IOException {
+        int count = body.readInt();
+        List<SyncChange> changes = new ArrayList<>(Math.min(count, 4096));
+        for (int i = 0; i < count; i++) {
+            int code = readByte(body);
+            String syncId = body.readString();
+            long version = body.readSigned();
+            long deviceId = body.readSigned();
+            boolean deleted = readByte(body) != 0;
+
+            String entity;
+            Object row = null;
+            switch (code) {
+                case ENTITY_TRANSACTION:
+                    entity = ChangeLog.ENTITY_TRANSACTION;
+                    if (!deleted) {
+                        double amount = SnapshotFormat.fromCents(body.readSigned());
+                        long date = body.readSigned();
+                        String category = body.readString();
+                        String type = body.readString();
+                        row = new Transaction(null, amount, date, category, body.readString(), type);
+                    }
+                    break;
+                case ENTITY_BUDGET:
+                    entity = ChangeLog.ENTITY_BUDGET;
+                    if (!deleted) {
+                        String category = body.readString();
+                        double limit = SnapshotFormat.fromCents(body.readSigned());
+                        int alertThreshold = body.readInt();
+                        int period = body.readInt();
+                        row = new Budget(null, category, limit, alertThreshold, period % 100, period / 100);
+                    }
+                    break;
+                case ENTITY_CATEGORY:
+                    entity = ChangeLog.ENTITY_CATEGORY;
+                    if (!deleted) {
+                        String name = body.readString();
+                        row = new Category(null, name, body.readString());
+                    }
+                    break;
+                default:
+                    throw new IOException("Unknown sync entity " + code);
+            }
+            changes.add(new SyncChange(entity, syncId, version, deviceId, row));
+        }
+        return changes;
+    }
+
+    private static int entityCode(String entity) {
+        switch (entity) {
+            case ChangeLog.ENTITY_TRANSACTION:
+                return ENTITY_TRANSACTION;
+            case ChangeLog.ENTITY_BUDGET:
+                return ENTITY_BUDGET;
+            case ChangeLog.ENTITY_CATEGORY:
+                return ENTITY_CATEGORY;
+            default:
+                throw new IllegalArgumentException("Entity is not synced: " + entity);
+        }
+    }
+
+    private static int readByte(SnapshotFormat.Bytes body) throws IOException {
+        if (body.position >= body.length) {
+            throw new IOException("Truncated sync message");
+        }
+        return body.data[body.position++] & 0xFF;
+    }
+
+    // ==================== FRAMING ====================
+
+    private static byte[] pack(SnapshotFormat.Bytes body) {
+        byte[] stored = body.data;
+        int storedLength = body.length;
+        int encoding = SnapshotFormat.ENCODING_RAW;
+
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(body.data, 0, body.length);
+            deflater.finish();
+            byte[] compressed = new byte[Math.max(64, body.length / 2)];
+            int size = 0;
+            while (!deflater.finished()) {
+                if (size == compressed.length) {
+                    compressed = Arrays.copyOf(compressed, compressed.length * 2);
+                }
+                size += deflater.deflate(compressed, size, compressed.length - size);
+            }
+            // Keep bodies that don't shrink raw
+            if (size < body.length) {
+                stored = compressed;
+                storedLength = size;
+                encoding = SnapshotFormat.ENCODING_DEFLATE;
+            }
+        } finally {
+            deflater.end();
+        }
+
+        SnapshotFormat.Bytes message = new SnapshotFormat.Bytes(storedLength + 16);
+        for (byte b : MAGIC) {
+            message.writeByte(b);
+        }
+        message.writeByte(VERSION);
+        message.writeByte(encoding);
+        message.writeVarint(body.length);
+        message.ensureCapacity(message.length + storedLength);
+        System.arraycopy(stored, 0, message.data, message.length, storedLength);
+        message.length += storedLength;
+        return Arrays.copyOf(message.data, message.length);
+    }
+
+    private static SnapshotFormat.Bytes unpack(byte[] message) throws IOException {
+        SnapshotFormat.Bytes header = new SnapshotFormat.Bytes(0);
+        header.data = message;
+        header.length = message.length;
+        for (byte b : MAGIC) {
+            if (readByte(header) != (b & 0xFF)) {
+                throw new IOException("Not a sync message");
+            }
+        }
+        int version = readByte(header);
+        if (version > VERSION) {
+            throw new IOException("Sync protocol version " + version + " is newer than this app");
+        }
+        int encoding = readByte(header);
+        int rawLength = header.readInt();
+        if (rawLength > SnapshotFormat.MAX_BLOCK_BYTES) {
+            throw new IOException("Sync message too large: " + rawLength);
+        }
+        int storedLength = message.length - header.position;
+
+        SnapshotFormat.Bytes body = new SnapshotFormat.Bytes(rawLength);
+        if (encoding == SnapshotFormat.ENCODING_DEFLATE) {
+            Inflater inflater = new Inflater();
+            try {
+                inflater.setInput(message, header.position, storedLength);
+                int size = 0;
+                while (size < rawLength && !inflater.finished()) {
+                    int inflated = inflater.inflate(body.data, size, rawLength - size);
+                    if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                        break;
+                    }
+                    size += inflated;
+                }
+                if (size != rawLength) {
+                    throw new IOException("Sync message inflated to " + size + " bytes, expected " + rawLength);
+                }
+            } catch (DataFormatException e) {
+                throw new IOException("Corrupt compressed sync message", e);
+            } finally {
+                inflater.end();
+            }
+        } else if (encoding == SnapshotFormat.ENCODING_RAW && storedLength == rawLength) {
+            System.arraycopy(message, header.position, body.data, 0, rawLength);
+        } else {
+            throw new IOException("Unknown sync message encoding " + encoding);
+        }
+        body.length = rawLength;
+        return body;
+    }
+}
@@ -0,0 +1,14 @@
+package com.finance.manager;
+
+import java.io.IOException;
+
+/**
+ * SyncServer - Transport between SyncEngine and wherever the account's
+ * rows are kept. Each exchange is one round trip: the request pushes local
+ * changes and asks for remote ones, the response carries both results.
+ * Payloads are SyncProtocol messages
+ */
+public interface SyncServer {
+
+    byte[] exchange(byte[] request) throws IOException;
+}
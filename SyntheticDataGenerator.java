@@ -0,0 +1,123 @@
+package com.finance.manager;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * SyntheticDataGenerator - Deterministic fake data for benchmarking
+ * The same (rows, seed, endDate) always produces the same dataset:
+ * one user with the default categories, transactions spread evenly over
+ * the given number of years, and a budget per expense category per month.
+ * Data is written through DatabaseHelper's batched import paths
+ */
+public final class SyntheticDataGenerator {
+
+    public static final int SCALE_10K = 10_000;
+    public static final int SCALE_100K = 100_000;
+    public static final int SCALE_1M = 1_000_000;
+
+    public static final long DEFAULT_SEED = 42L;
+    public static final int DEFAULT_YEARS = 3;
+
+    // Rows per database transaction, so a 1M-row import doesn't hold one giant write
+    private static final int BATCH_SIZE = 20_000;
+
+    // Same defaults DatabaseHelper gives every new user
+    private static final String[] EXPENSE_CATEGORIES =
+            {"Food", "Transportation", "Bills", "Entertainment", "Shopping", "Health", "Other"};
+    private static final String[] INCOME_CATEGORIES =
+            {"Salary", "Scholarship", "Freelance", "Investment", "Gift", "Other"};
+
+    private static final String[] DESCRIPTIONS = {
+            "Groceries", "Coffee", "Lunch", "Bus ticket", "Fuel", "Electricity bill", "Internet",
+            "Movie night", "Concert", "New shoes", "Pharmacy", "Gym membership", "Taxi",
+            "Monthly salary", "Freelance project", "Dividends", "Birthday gift", "Refund"
+    };
+
+    private SyntheticDataGenerator() {
+        // Static utility
+    }
+
+    /**
+     * Email of the synthetic user for a scale, e.g. synthetic-10000@bench.local
+     */
+    public static String userEmail(int rows) {
+        return "synthetic-" + rows + "@bench.local";
+    }
+
+    /**
+     * Create (or re-create) the synthetic dataset for a scale
+     * Slow at large scales - call from a background thread
+     *
+     * @param rows Number of transactions to generate
+     * @param seed Random seed
+     * @param years Years of history ending at endDate
+     * @param endDate Newest transaction date in milliseconds
+     * @return true if every batch was committed
+     */
+    public static boolean generate(DatabaseHelper databaseHelper, int rows, long seed, int years, long endDate) {
+        String email = userEmail(rows);
+        databaseHelper.deleteUserData(email);
+        if (!databaseHelper.addUser(email, "Synthetic", "User " + rows, "benchmark")) {
+            return false;
+        }
+
+        Random random = new Random(seed);
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(endDate);
+        calendar.add(Calendar.YEAR, -years);
+        long startDate = calendar.getTimeInMillis();
+        long span = endDate - startDate;
+
+        List<Transaction> batch = new ArrayList<>(Math.min(rows, BATCH_SIZE));
+        for (int i = 0; i < rows; i++) {
+            // Evenly spaced with jitter, so every month has data
+            long date = startDate + (long) ((i + random.nextDouble()) * span / rows);
+            batch.add(nextTransaction(random, email, Math.min(date, endDate)));
+
+            if (batch.size() == BATCH_SIZE || i == rows - 1) {
+                if (!databaseHelper.importTransactions(email, batch)) {
+                    return false;
+                }
+                batch.clear();
+            }
+        }
+
+        return databaseHelper.importBudgets(email, budgets(random, email, startDate, endDate));
+    }
+
+    private static Transaction nextTransaction(Random random, String email, long date) {
+        // Roughly one income per six expenses
+        boolean income = random.nextInt(7) == 0;
+        String category = income
+                ? INCOME_CATEGORIES[random.nextInt(INCOME_CATEGORIES.length)]
+                : EXPENSE_CATEGORIES[random.nextInt(EXPENSE_CATEGORIES.length)];
+
+        // Skewed amounts: mostly small, occasionally large
+        double base = income ? 500 : 40;
+        double amount = Math.round(base * Math.exp(random.nextGaussian() * 0.8) * 100) / 100.0;
+
+        String description = DESCRIPTIONS[random.nextInt(DESCRIPTIONS.length)];
+        return new Transaction(email, amount, date, category, description, income ? "income" : "expense");
+    }
+
+    private static List<Budget> budgets(Random random, String email, long startDate, long endDate) {
+        List<Budget> budgets = new ArrayList<>();
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(startDate);
+        calendar.set(Calendar.DAY_OF_MONTH, 1);
+
+        while (calendar.getTimeInMillis() <= endDate) {
+            int month = calendar.get(Calendar.MONTH) + 1;
+            int year = calendar.get(Calendar.YEAR);
+            for (String category : EXPENSE_CATEGORIES) {
+                double limit = 100 * (1 + random.nextInt(20));
+                budgets.add(new Budget(email, category, limit, 50 + 10 * random.nextInt(5), month, year));
+            }
+            calendar.add(Calendar.MONTH, 1);
+        }
+        return budgets;
+    }
+}
@@ -1,6 +1,5 @@
 package com.finance.manager;
 
-import java.text.NumberFormat;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.Locale;
@@ -47,8 +46,7 @@ public class Transaction {
     public void setType(String type) { this.type = type; }
 
     public String getFormattedAmount() {
-        NumberFormat formatter = NumberFormat.getCurrencyInstance(new Locale("en", "US"));
-        return formatter.format(amount);
+        return TransactionOps.formatCurrency(amount);
     }
 
     public String getFormattedDate() {
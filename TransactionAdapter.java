@@ -8,16 +8,36 @@ import android.widget.ImageButton;
 import android.widget.TextView;
 import androidx.annotation.NonNull;
 import androidx.recyclerview.widget.RecyclerView;
+import com.google.android.material.card.MaterialCardView;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 public class TransactionAdapter extends RecyclerView.Adapter<TransactionAdapter.TransactionViewHolder> {
     
+    private static final int COLOR_SELECTED = Color.parseColor("#E3F2FD");
+    
     private List<Transaction> transactions;
     private OnTransactionClickListener listener;
     
+    // Multi-select: picked rows by id, in the order they were picked
+    private final Map<Integer, Transaction> selected = new LinkedHashMap<>();
+    private boolean selectionMode;
+    
     public interface OnTransactionClickListener {
         void onEditClick(Transaction transaction);
         void onDeleteClick(Transaction transaction);
+        
+        /**
+         * Long press on a row; starts multi-select
+         */
+        default void onLongClick(Transaction transaction) {}
+        
+        /**
+         * A row was picked or unpicked in multi-select
+         */
+        default void onSelectionChanged(int selectedCount) {}
     }
     
     public TransactionAdapter(List<Transaction> transactions, OnTransactionClickListener listener) {
@@ -49,6 +69,25 @@ public class TransactionAdapter extends RecyclerView.Adapter<TransactionAdapter.
             holder.amountText.setTextColor(Color.parseColor("#F44336")); // Red
         }
         
+        boolean isSelected = selected.containsKey(transaction.getId());
+        ((MaterialCardView) holder.itemView).setCardBackgroundColor(isSelected ? COLOR_SELECTED : Color.WHITE);
+        holder.editButton.setVisibility(selectionMode ? View.GONE : View.VISIBLE);
+        holder.deleteButton.setVisibility(selectionMode ? View.GONE : View.VISIBLE);
+        
+        holder.itemView.setOnClickListener(v -> {
+            if (selectionMode) {
+                toggleSelection(transaction, holder.getAdapterPosition());
+            }
+        });
+        
+        holder.itemView.setOnLongClickListener(v -> {
+            if (selectionMode || listener == null) {
+                return false;
+            }
+            listener.onLongClick(transaction);
+            return true;
+        });
+        
         holder.editButton.setOnClickListener(v -> {
             if (listener != null) {
                 listener.onEditClick(transaction);
@@ -72,6 +111,56 @@ public class TransactionAdapter extends RecyclerView.Adapter<TransactionAdapter.
         notifyDataSetChanged();
     }
     
+    // ==================== MULTI-SELECT ====================
+    
+    /**
+     * Enter multi-select with one row picked
+     */
+    public void startSelection(Transaction first) {
+        selectionMode = true;
+        selected.clear();
+        selected.put(first.getId(), first);
+        notifyItemRangeChanged(0, transactions.size());
+        if (listener != null) {
+            listener.onSelectionChanged(selected.size());
+        }
+    }
+    
+    /**
+     * Leave multi-select and unpick every row
+     */
+    public void endSelection() {
+        if (!selectionMode) {
+            return;
+        }
+        selectionMode = false;
+        selected.clear();
+        notifyItemRangeChanged(0, transactions.size());
+    }
+    
+    public boolean isSelectionMode() {
+        return selectionMode;
+    }
+    
+    /**
+     * Picked rows, in the order they were picked
+     */
+    public List<Transaction> getSelected() {
+        return new ArrayList<>(selected.values());
+    }
+    
+    private void toggleSelection(Transaction transaction, int position) {
+        if (selected.remove(transaction.getId()) == null) {
+            selected.put(transaction.getId(), transaction);
+        }
+        if (position != RecyclerView.NO_POSITION) {
+            notifyItemChanged(position);
+        }
+        if (listener != null) {
+            listener.onSelectionChanged(selected.size());
+        }
+    }
+    
     static class TransactionViewHolder extends RecyclerView.ViewHolder {
         TextView categoryText, amountText, dateText, descriptionText;
         ImageButton editButton, deleteButton;
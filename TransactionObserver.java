@@ -0,0 +1,30 @@
+package com.finance.manager;
+
+/**
+ * TransactionObserver - Callback for in-memory indexes kept in step with
+ * DatabaseHelper writes. Register with DatabaseHelper.addTransactionObserver()
+ * Callbacks run on the writing thread after the write succeeded, so they
+ * must be cheap and must not write to the database themselves
+ */
+public interface TransactionObserver {
+
+    default void onTransactionAdded(Transaction transaction) {}
+
+    default void onTransactionUpdated(Transaction before, Transaction after) {}
+
+    default void onTransactionDeleted(Transaction transaction) {}
+
+    /**
+     * Many of a user's transactions changed at once in ways the writer
+     * doesn't list row by row (import, sync, restore, user deletion)
+     * Drop that user's cached state and rebuild lazily
+     *
+     * @param userEmail User whose ledger changed, or null if every ledger was replaced
+     */
+    default void onTransactionsReloaded(String userEmail) {}
+
+    /**
+     * A budget row was added, updated or deleted
+     */
+    default void onBudgetsChanged() {}
+}
@@ -0,0 +1,118 @@
+package com.finance.manager;
+
+import java.text.NumberFormat;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * TransactionOps - Filtering, sorting, aggregation and formatting of transactions
+ * Plain Java with no Android dependencies, so it runs (and can be measured)
+ * on any JVM. Fragments keep only the view code and delegate here
+ */
+public final class TransactionOps {
+
+    public static final int SORT_NEWEST_FIRST = 0;
+    public static final int SORT_OLDEST_FIRST = 1;
+    public static final int SORT_HIGHEST_AMOUNT = 2;
+    public static final int SORT_LOWEST_AMOUNT = 3;
+
+    private static final Comparator<Transaction> NEWEST_FIRST = (t1, t2) -> Long.compare(t2.getDate(), t1.getDate());
+    private static final Comparator<Transaction> OLDEST_FIRST = (t1, t2) -> Long.compare(t1.getDate(), t2.getDate());
+    private static final Comparator<Transaction> HIGHEST_AMOUNT = (t1, t2) -> Double.compare(t2.getAmount(), t1.getAmount());
+    private static final Comparator<Transaction> LOWEST_AMOUNT = (t1, t2) -> Double.compare(t1.getAmount(), t2.getAmount());
+
+    // NumberFormat is not thread-safe; one instance per thread instead of one per call
+    private static final ThreadLocal<NumberFormat> CURRENCY_FORMAT =
+            ThreadLocal.withInitial(() -> NumberFormat.getCurrencyInstance(new Locale("en", "US")));
+
+    private TransactionOps() {
+        // Static utility
+    }
+
+    // ==================== FILTERING ====================
+
+    /**
+     * Keep transactions whose category, description or formatted amount
+     * contains the query and whose category matches
+     *
+     * @param source Transactions to filter
+     * @param query Search text, empty for no text filter
+     * @param category Category name, or "All"
+     * @param out Receives the matches (not cleared)
+     */
+    public static void filter(List<Transaction> source, String query, String category, List<Transaction> out) {
+        String lowerQuery = query.toLowerCase();
+        boolean anyCategory = category.equals("All");
+
+        for (Transaction transaction : source) {
+            if (!anyCategory && !transaction.getCategory().equals(category)) {
+                continue;
+            }
+
+            if (query.isEmpty()
+                    || transaction.getCategory().toLowerCase().contains(lowerQuery)
+                    || transaction.getDescription().toLowerCase().contains(lowerQuery)
+                    || formatCurrency(transaction.getAmount()).contains(query)) {
+                out.add(transaction);
+            }
+        }
+    }
+
+    // ==================== SORTING ====================
+
+    /**
+     * Comparator for one of the SORT_* options
+     */
+    public static Comparator<Transaction> comparator(int sortOption) {
+        switch (sortOption) {
+            case SORT_OLDEST_FIRST:
+                return OLDEST_FIRST;
+            case SORT_HIGHEST_AMOUNT:
+                return HIGHEST_AMOUNT;
+            case SORT_LOWEST_AMOUNT:
+                return LOWEST_AMOUNT;
+            case SORT_NEWEST_FIRST:
+            default:
+                return NEWEST_FIRST;
+        }
+    }
+
+    public static void sort(List<Transaction> transactions, int sortOption) {
+        Collections.sort(transactions, comparator(sortOption));
+    }
+
+    // ==================== AGGREGATION ====================
+
+    public static double sum(List<Transaction> transactions) {
+        double total = 0;
+        for (Transaction transaction : transactions) {
+            total += transaction.getAmount();
+        }
+        return total;
+    }
+
+    /**
+     * Total amount per category, in order of first appearance
+     */
+    public static Map<String, Double> sumByCategory(List<Transaction> transactions) {
+        Map<String, Double> totals = new LinkedHashMap<>();
+        for (Transaction transaction : transactions) {
+            Double total = totals.get(transaction.getCategory());
+            totals.put(transaction.getCategory(), (total != null ? total : 0) + transaction.getAmount());
+        }
+        return totals;
+    }
+
+    // ==================== FORMATTING ====================
+
+    /**
+     * Format an amount as US currency, e.g. $1,234.50
+     */
+    public static String formatCurrency(double amount) {
+        return CURRENCY_FORMAT.get().format(amount);
+    }
+}
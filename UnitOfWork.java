@@ -0,0 +1,110 @@
+package com.finance.manager;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * UnitOfWork - Batches several writes into one SQLite transaction
+ * Compiled statements are cached by SQL text, so a loop of inserts
+ * compiles its statement once and only rebinds arguments.
+ * Obtain one through DatabaseHelper.runInTransaction()
+ */
+public class UnitOfWork {
+
+    /**
+     * Operations to run inside the transaction
+     * Throwing any RuntimeException rolls the whole unit back
+     */
+    public interface Work {
+        void run(UnitOfWork unit);
+    }
+
+    private final SQLiteDatabase db;
+    private final Map<String, SQLiteStatement> statements = new HashMap<>();
+
+    UnitOfWork(SQLiteDatabase db) {
+        this.db = db;
+    }
+
+    /**
+     * Get the database the transaction is running on
+     * For queries and helpers that need ContentValues
+     *
+     * @return Writable database inside the open transaction
+     */
+    public SQLiteDatabase getDatabase() {
+        return db;
+    }
+
+    /**
+     * Get a compiled statement, compiling it only on first use
+     *
+     * @param sql SQL with ? placeholders
+     * @return Reusable statement with bindings cleared
+     */
+    public SQLiteStatement statement(String sql) {
+        SQLiteStatement statement = statements.get(sql);
+        if (statement == null) {
+            statement = db.compileStatement(sql);
+            statements.put(sql, statement);
+        } else {
+            statement.clearBindings();
+        }
+        return statement;
+    }
+
+    /**
+     * Run an INSERT statement
+     *
+     * @param sql INSERT with ? placeholders
+     * @param args Values to bind (String, Number or null)
+     * @return Row ID of the inserted row
+     */
+    public long insert(String sql, Object... args) {
+        SQLiteStatement statement = statement(sql);
+        bind(statement, args);
+        return statement.executeInsert();
+    }
+
+    /**
+     * Run an UPDATE or DELETE statement
+     *
+     * @param sql UPDATE or DELETE with ? placeholders
+     * @param args Values to bind (String, Number or null)
+     * @return Number of rows affected
+     */
+    public int update(String sql, Object... args) {
+        SQLiteStatement statement = statement(sql);
+        bind(statement, args);
+        return statement.executeUpdateDelete();
+    }
+
+    private void bind(SQLiteStatement statement, Object[] args) {
+        for (int i = 0; i < args.length; i++) {
+            Object arg = args[i];
+            int index = i + 1;
+            if (arg == null) {
+                statement.bindNull(index);
+            } else if (arg instanceof Double || arg instanceof Float) {
+                statement.bindDouble(index, ((Number) arg).doubleValue());
+            } else if (arg instanceof Number) {
+                statement.bindLong(index, ((Number) arg).longValue());
+            } else {
+                statement.bindString(index, arg.toString());
+            }
+        }
+    }
+
+    /**
+     * Release all compiled statements
+     */
+    void close() {
+        for (SQLiteStatement statement : statements.values()) {
+            statement.close();
+        }
+        statements.clear();
+    }
+}